@@ -122,6 +122,10 @@ public class AdminResourceService {
         return labRoomManagementService.exportLabRoomsExcel(actor);
     }
 
+    public byte[] buildLabRoomsExcel() {
+        return labRoomManagementService.buildLabRoomsExcel();
+    }
+
     public List<AdminDeviceVO> listDevices(String q, String status) {
         LambdaQueryWrapper<DeviceEntity> w = new LambdaQueryWrapper<DeviceEntity>().orderByAsc(DeviceEntity::getId);
         if (StringUtils.hasText(q)) {
@@ -214,18 +218,30 @@ public class AdminResourceService {
 
     public byte[] exportDevicesExcel(AuthenticatedUser actor) {
         List<AdminDeviceVO> devices = listDevices(null, null);
+        byte[] bytes = devicesWorkbook(devices);
+        adminAuditService.record(actor, AdminAuditActions.DEVICE_EXPORT, "device", null, Map.of("count", devices.size(), "format", "excel"));
+        return bytes;
+    }
+
+    /**
+     * The same file as {@link #exportDevicesExcel} without the audit entry, for export jobs: the job row is the log.
+     * The other build*Excel methods are the same.
+     */
+    public byte[] buildDevicesExcel() {
+        return devicesWorkbook(listDevices(null, null));
+    }
+
+    private byte[] devicesWorkbook(List<AdminDeviceVO> devices) {
         var deviceRows = devices.stream()
                 .map(d -> row(d.id(), d.code(), d.name(), d.totalQuantity(), d.status(), d.location(), d.description(), d.createdAt(), d.updatedAt()))
                 .toList();
-        byte[] bytes = excelExportService.writeWorkbook(List.of(
+        return excelExportService.writeWorkbook(List.of(
                 new ExcelExportService.SheetSpec(
                         "设备",
                         List.of("ID", "编码", "名称", "总数量", "状态", "位置", "描述", "创建时间", "更新时间"),
                         deviceRows
                 )
         ));
-        adminAuditService.record(actor, AdminAuditActions.DEVICE_EXPORT, "device", null, Map.of("count", devices.size(), "format", "excel"));
-        return bytes;
     }
 
     public List<AdminSemesterVO> listSemesters() {
@@ -308,18 +324,26 @@ public class AdminResourceService {
 
     public byte[] exportSemestersExcel(AuthenticatedUser actor) {
         List<AdminSemesterVO> semesters = listSemesters();
+        byte[] bytes = semestersWorkbook(semesters);
+        adminAuditService.record(actor, AdminAuditActions.SEMESTER_EXPORT, "semester", null, Map.of("count", semesters.size(), "format", "excel"));
+        return bytes;
+    }
+
+    public byte[] buildSemestersExcel() {
+        return semestersWorkbook(listSemesters());
+    }
+
+    private byte[] semestersWorkbook(List<AdminSemesterVO> semesters) {
         var semesterRows = semesters.stream()
                 .map(s -> row(s.id(), s.name(), s.startDate(), s.endDate(), s.createdAt(), s.updatedAt()))
                 .toList();
-        byte[] bytes = excelExportService.writeWorkbook(List.of(
+        return excelExportService.writeWorkbook(List.of(
                 new ExcelExportService.SheetSpec(
                         "学期",
                         List.of("ID", "名称", "开始日期", "结束日期", "创建时间", "更新时间"),
                         semesterRows
                 )
         ));
-        adminAuditService.record(actor, AdminAuditActions.SEMESTER_EXPORT, "semester", null, Map.of("count", semesters.size(), "format", "excel"));
-        return bytes;
     }
 
     public PageResult<AdminAuditLogVO> listAuditLogs(
@@ -402,39 +426,37 @@ public class AdminResourceService {
         return csv.toString();
     }
 
-    public byte[] exportAuditLogsExcel(AuthenticatedUser actor, String action, String actorUsername, String targetType, LocalDateTime from, LocalDateTime to) {
-        LambdaQueryWrapper<AuditLogEntity> w = new LambdaQueryWrapper<>();
-        if (StringUtils.hasText(action)) {
-            w.eq(AuditLogEntity::getAction, action.trim());
-        }
-        if (StringUtils.hasText(actorUsername)) {
-            w.like(AuditLogEntity::getActorUsername, actorUsername.trim());
-        }
-        if (StringUtils.hasText(targetType)) {
-            w.eq(AuditLogEntity::getTargetType, targetType.trim());
-        }
-        if (from != null) {
-            w.ge(AuditLogEntity::getCreatedAt, from);
-        }
-        if (to != null) {
-            w.le(AuditLogEntity::getCreatedAt, to);
-        }
-        List<AuditLogEntity> logs = auditLogMapper.selectList(w.orderByDesc(AuditLogEntity::getId));
-        List<AdminAuditLogVO> items = logs.stream()
-                .map(l -> new AdminAuditLogVO(l.getId(), l.getActorId(), l.getActorUsername(), l.getAction(), l.getTargetType(), l.getTargetId(), l.getDetailJson(), l.getCreatedAt()))
-                .toList();
-        var auditRows = items.stream()
-                .map(l -> row(l.id(), l.actorId(), l.actorUsername(), l.action(), l.targetType(), l.targetId(), l.detailJson(), l.createdAt()))
-                .toList();
-        byte[] bytes = excelExportService.writeWorkbook(List.of(
+    /**
+     * Unpaged, so the log is read row by row through a database cursor straight into the streamed workbook instead
+     * of through entity, VO and row lists.
+     */
+    public ExcelExportService.ExcelFile exportAuditLogsExcel(AuthenticatedUser actor, String action, String actorUsername, String targetType, LocalDateTime from, LocalDateTime to) {
+        int[] count = {0};
+        ExcelExportService.ExcelFile file = auditLogsWorkbook(action, actorUsername, targetType, from, to, count);
+        adminAuditService.record(actor, AdminAuditActions.AUDIT_EXPORT, "audit_log", null, Map.of("count", count[0], "format", "excel"));
+        return file;
+    }
+
+    public ExcelExportService.ExcelFile buildAuditLogsExcel(String action, String actorUsername, String targetType, LocalDateTime from, LocalDateTime to) {
+        return auditLogsWorkbook(action, actorUsername, targetType, from, to, new int[1]);
+    }
+
+    private ExcelExportService.ExcelFile auditLogsWorkbook(String action, String actorUsername, String targetType, LocalDateTime from, LocalDateTime to, int[] count) {
+        String actionFilter = StringUtils.hasText(action) ? action.trim() : null;
+        String actorFilter = StringUtils.hasText(actorUsername) ? actorUsername.trim() : null;
+        String targetTypeFilter = StringUtils.hasText(targetType) ? targetType.trim() : null;
+        ExcelExportService.RowSource auditRows = sink -> auditLogMapper.streamForExport(actionFilter, actorFilter, targetTypeFilter, from, to, context -> {
+            AuditLogEntity l = context.getResultObject();
+            count[0]++;
+            sink.accept(row(l.getId(), l.getActorId(), l.getActorUsername(), l.getAction(), l.getTargetType(), l.getTargetId(), l.getDetailJson(), l.getCreatedAt()));
+        });
+        return excelExportService.build(List.of(
                 new ExcelExportService.SheetSpec(
                         "审计日志",
                         List.of("ID", "操作者ID", "操作者用户名", "动作", "目标类型", "目标ID", "明细JSON", "创建时间"),
                         auditRows
                 )
         ));
-        adminAuditService.record(actor, AdminAuditActions.AUDIT_EXPORT, "audit_log", null, Map.of("count", items.size(), "format", "excel"));
-        return bytes;
     }
 
     private List<?> row(Object... values) {
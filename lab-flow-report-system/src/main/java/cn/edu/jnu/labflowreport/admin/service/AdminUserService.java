@@ -476,8 +476,22 @@ public class AdminUserService {
     }
 
     public byte[] exportUsersExcel(AuthenticatedUser actor) {
-        List<SysUserEntity> users = sysUserMapper.selectList(new LambdaQueryWrapper<SysUserEntity>().orderByAsc(SysUserEntity::getId));
-        List<AdminUserVO> vos = toUserVOs(users);
+        List<AdminUserVO> vos = allUserVOs();
+        byte[] bytes = usersWorkbook(vos);
+        adminAuditService.record(actor, AdminAuditActions.USER_EXPORT, "sys_user", null, Map.of("count", vos.size(), "format", "excel"));
+        return bytes;
+    }
+
+    /** The same file as {@link #exportUsersExcel} without the audit entry, for export jobs: the job row is the log. */
+    public byte[] buildUsersExcel() {
+        return usersWorkbook(allUserVOs());
+    }
+
+    private List<AdminUserVO> allUserVOs() {
+        return toUserVOs(sysUserMapper.selectList(new LambdaQueryWrapper<SysUserEntity>().orderByAsc(SysUserEntity::getId)));
+    }
+
+    private byte[] usersWorkbook(List<AdminUserVO> vos) {
         var summaryRows = vos.stream()
                 .map(u -> List.of(
                         u.id(),
@@ -499,7 +513,7 @@ public class AdminUserService {
         var roleRows = roleCounts.entrySet().stream()
                 .map(entry -> List.of(entry.getKey(), entry.getValue()))
                 .toList();
-        byte[] bytes = excelExportService.writeWorkbook(List.of(
+        return excelExportService.writeWorkbook(List.of(
                 new ExcelExportService.SheetSpec(
                         "汇总",
                         List.of("ID", "用户名", "姓名", "启用", "角色", "院系", "班级", "创建时间", "更新时间"),
@@ -511,8 +525,6 @@ public class AdminUserService {
                         roleRows
                 )
         ));
-        adminAuditService.record(actor, AdminAuditActions.USER_EXPORT, "sys_user", null, Map.of("count", vos.size(), "format", "excel"));
-        return bytes;
     }
 
     private void setUserRolesInternal(Long userId, List<String> roleCodes) {
@@ -142,6 +142,17 @@ public class LabRoomManagementService {
 
     public byte[] exportLabRoomsExcel(AuthenticatedUser actor) {
         List<AdminLabRoomVO> rooms = listLabRooms();
+        byte[] bytes = labRoomsWorkbook(rooms);
+        adminAuditService.record(actor, AdminAuditActions.LAB_ROOM_EXPORT, "lab_room", null, Map.of("count", rooms.size(), "format", "excel"));
+        return bytes;
+    }
+
+    /** The same file as {@link #exportLabRoomsExcel} without the audit entry, for export jobs: the job row is the log. */
+    public byte[] buildLabRoomsExcel() {
+        return labRoomsWorkbook(listLabRooms());
+    }
+
+    private byte[] labRoomsWorkbook(List<AdminLabRoomVO> rooms) {
         var roomRows = rooms.stream()
                 .map(room -> List.of(room.id(), room.name(), room.location(), room.openHours(), room.createdAt(), room.updatedAt()))
                 .toList();
@@ -156,7 +167,7 @@ public class LabRoomManagementService {
                         slot.updatedAt()
                 )))
                 .toList();
-        byte[] bytes = excelExportService.writeWorkbook(List.of(
+        return excelExportService.writeWorkbook(List.of(
                 new ExcelExportService.SheetSpec(
                         "实验室",
                         List.of("ID", "名称", "地点", "开放时间摘要", "创建时间", "更新时间"),
@@ -168,8 +179,6 @@ public class LabRoomManagementService {
                         slotRows
                 )
         ));
-        adminAuditService.record(actor, AdminAuditActions.LAB_ROOM_EXPORT, "lab_room", null, Map.of("count", rooms.size(), "format", "excel"));
-        return bytes;
     }
 
     private Map<Long, List<LabRoomOpenSlotEntity>> loadSlotMap(List<Long> labRoomIds) {
@@ -32,6 +32,7 @@ import cn.edu.jnu.labflowreport.persistence.mapper.ExperimentCourseSlotMapper;
 import cn.edu.jnu.labflowreport.persistence.mapper.SysUserMapper;
 import cn.edu.jnu.labflowreport.schedule.entity.CourseScheduleEntity;
 import cn.edu.jnu.labflowreport.schedule.mapper.CourseScheduleMapper;
+import cn.edu.jnu.labflowreport.statistics.service.StatisticsRollupService;
 import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
 import java.security.SecureRandom;
 import java.time.Instant;
@@ -65,6 +66,7 @@ public class AttendanceService {
     private final ExperimentCourseSlotInstanceMapper experimentCourseSlotInstanceMapper;
     private final ExperimentCourseEnrollmentMapper experimentCourseEnrollmentMapper;
     private final ExcelExportService excelExportService;
+    private final StatisticsRollupService statisticsRollupService;
     private final SecureRandom random = new SecureRandom();
     private final int defaultTokenTtlSeconds;
 
@@ -80,6 +82,7 @@ public class AttendanceService {
             ExperimentCourseSlotInstanceMapper experimentCourseSlotInstanceMapper,
             ExperimentCourseEnrollmentMapper experimentCourseEnrollmentMapper,
             ExcelExportService excelExportService,
+            StatisticsRollupService statisticsRollupService,
             @Value("${ATT_TOKEN_TTL_SECONDS:6}") int defaultTokenTtlSeconds
     ) {
         this.sessionMapper = sessionMapper;
@@ -93,6 +96,7 @@ public class AttendanceService {
         this.experimentCourseSlotInstanceMapper = experimentCourseSlotInstanceMapper;
         this.experimentCourseEnrollmentMapper = experimentCourseEnrollmentMapper;
         this.excelExportService = excelExportService;
+        this.statisticsRollupService = statisticsRollupService;
         this.defaultTokenTtlSeconds = clampTtl(defaultTokenTtlSeconds);
     }
 
@@ -182,6 +186,7 @@ public class AttendanceService {
 
         sessionMapper.insert(entity);
         ensureExperimentCourseRosterSnapshot(entity);
+        statisticsRollupService.markAttendanceSession(entity.getId());
         AttendanceSessionVO vo = toVo(entity);
         vo.setId(entity.getId());
         return vo;
@@ -281,6 +286,7 @@ public class AttendanceService {
         entity.setOperatorId(null);
         entity.setCreatedAt(LocalDateTime.now());
         recordMapper.insert(entity);
+        statisticsRollupService.markAttendanceSession(session.getId());
 
         return new CheckinResult(entity.getId(), false, entity.getCheckedInAt());
     }
@@ -338,6 +344,7 @@ public class AttendanceService {
         entity.setOperatorId(null);
         entity.setCreatedAt(LocalDateTime.now());
         recordMapper.insert(entity);
+        statisticsRollupService.markAttendanceSession(session.getId());
 
         return new CheckinResult(entity.getId(), false, entity.getCheckedInAt());
     }
@@ -370,6 +377,7 @@ public class AttendanceService {
         entity.setOperatorId(actor.userId());
         entity.setCreatedAt(LocalDateTime.now());
         recordMapper.insert(entity);
+        statisticsRollupService.markAttendanceSession(sessionId);
     }
 
     public List<AttendanceRecordVO> listRecords(AuthenticatedUser actor, Long sessionId) {
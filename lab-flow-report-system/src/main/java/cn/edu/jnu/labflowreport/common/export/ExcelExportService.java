@@ -2,28 +2,39 @@ package cn.edu.jnu.labflowreport.common.export;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
 import java.time.format.DateTimeFormatter;
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Objects;
 import java.util.Set;
+import java.util.function.Consumer;
 import org.apache.poi.ss.usermodel.BorderStyle;
 import org.apache.poi.ss.usermodel.Cell;
 import org.apache.poi.ss.usermodel.CellStyle;
 import org.apache.poi.ss.usermodel.FillPatternType;
+import org.apache.poi.ss.usermodel.Font;
 import org.apache.poi.ss.usermodel.HorizontalAlignment;
 import org.apache.poi.ss.usermodel.IndexedColors;
 import org.apache.poi.ss.usermodel.Row;
 import org.apache.poi.ss.usermodel.VerticalAlignment;
-import org.apache.poi.xssf.usermodel.XSSFFont;
-import org.apache.poi.xssf.usermodel.XSSFSheet;
-import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.apache.poi.xssf.streaming.SXSSFSheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
 import org.springframework.stereotype.Service;
 
+/**
+ * Builds .xlsx exports with POI's streaming workbook: only the last {@value #ROW_WINDOW} rows of a sheet are kept
+ * in memory, older ones are flushed to a compressed temp file, so the heap an export needs no longer grows with its
+ * row count. Rows are pulled from a {@link RowSource} while the sheet is written and need not exist as a list.
+ * <p>
+ * {@link #build} returns the finished workbook for the caller to write wherever it goes, usually straight to the
+ * response ({@link ExportResponseHelper#xlsx(jakarta.servlet.http.HttpServletResponse, String, ExcelFile)});
+ * {@link #writeWorkbook} is the same as bytes, for small exports.
+ */
 @Service
 public class ExcelExportService {
 
@@ -31,53 +42,81 @@ public class ExcelExportService {
     private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ISO_LOCAL_DATE;
     private static final DateTimeFormatter TIME_FORMATTER = DateTimeFormatter.ofPattern("HH:mm:ss");
 
+    static final int ROW_WINDOW = 100;
+    /** Column widths follow the header and the first rows; a streamed sheet cannot be measured as a whole. */
+    static final int WIDTH_SAMPLE_ROWS = 200;
+
     public byte[] writeWorkbook(List<SheetSpec> sheets) {
-        try (XSSFWorkbook workbook = new XSSFWorkbook(); ByteArrayOutputStream out = new ByteArrayOutputStream()) {
+        try (ExcelFile file = build(sheets); ByteArrayOutputStream out = new ByteArrayOutputStream()) {
+            file.writeTo(out);
+            return out.toByteArray();
+        } catch (IOException e) {
+            throw new IllegalStateException("生成 Excel 失败", e);
+        }
+    }
+
+    /**
+     * Writes every sheet; the rows go to temp files as they are produced. Close the result to delete them.
+     */
+    public ExcelFile build(List<SheetSpec> sheets) {
+        SXSSFWorkbook workbook = new SXSSFWorkbook(null, ROW_WINDOW, true);
+        try {
             CellStyle headerStyle = buildHeaderStyle(workbook);
             CellStyle bodyStyle = buildBodyStyle(workbook);
             Set<String> usedNames = new LinkedHashSet<>();
             for (SheetSpec spec : sheets) {
-                String sheetName = uniqueSheetName(usedNames, spec.name());
-                XSSFSheet sheet = workbook.createSheet(sheetName);
-                int rowIndex = 0;
-                if (spec.headers() != null && !spec.headers().isEmpty()) {
-                    Row headerRow = sheet.createRow(rowIndex++);
-                    for (int i = 0; i < spec.headers().size(); i++) {
-                        Cell cell = headerRow.createCell(i);
-                        cell.setCellValue(Objects.toString(spec.headers().get(i), ""));
-                        cell.setCellStyle(headerStyle);
-                    }
-                }
-                List<Integer> widths = new ArrayList<>();
-                for (List<?> rowData : spec.rows()) {
-                    Row row = sheet.createRow(rowIndex++);
-                    for (int i = 0; i < rowData.size(); i++) {
-                        Cell cell = row.createCell(i);
-                        String text = formatCellValue(rowData.get(i));
-                        cell.setCellValue(text);
-                        cell.setCellStyle(bodyStyle);
-                        ensureWidth(widths, i, text);
-                    }
-                }
-                for (int i = 0; i < (spec.headers() == null ? 0 : spec.headers().size()); i++) {
-                    ensureWidth(widths, i, spec.headers().get(i));
-                }
-                for (int i = 0; i < widths.size(); i++) {
-                    int width = Math.min(Math.max(widths.get(i) + 2, 12), 60);
-                    sheet.setColumnWidth(i, width * 256);
-                }
-                if (sheet.getPhysicalNumberOfRows() > 0) {
-                    sheet.createFreezePane(0, spec.headers() == null || spec.headers().isEmpty() ? 0 : 1);
+                writeSheet(workbook.createSheet(uniqueSheetName(usedNames, spec.name())), spec, headerStyle, bodyStyle);
+            }
+            return new ExcelFile(workbook);
+        } catch (RuntimeException e) {
+            closeQuietly(workbook);
+            throw e;
+        }
+    }
+
+    /** Closing the workbook also deletes its temp files. */
+    private static void closeQuietly(SXSSFWorkbook workbook) {
+        try {
+            workbook.close();
+        } catch (IOException ignored) {
+            // Nothing was opened from a file; there is nothing left to release.
+        }
+    }
+
+    private void writeSheet(SXSSFSheet sheet, SheetSpec spec, CellStyle headerStyle, CellStyle bodyStyle) {
+        List<String> headers = spec.headers() == null ? List.of() : spec.headers();
+        ColumnWidths widths = new ColumnWidths();
+        int[] rowIndex = {0};
+        if (!headers.isEmpty()) {
+            Row headerRow = sheet.createRow(rowIndex[0]++);
+            for (int i = 0; i < headers.size(); i++) {
+                String text = Objects.toString(headers.get(i), "");
+                Cell cell = headerRow.createCell(i);
+                cell.setCellValue(text);
+                cell.setCellStyle(headerStyle);
+                widths.measure(i, text);
+            }
+        }
+        spec.rows().forEach(rowData -> {
+            boolean sampled = rowIndex[0] <= WIDTH_SAMPLE_ROWS;
+            Row row = sheet.createRow(rowIndex[0]++);
+            for (int i = 0; i < rowData.size(); i++) {
+                String text = formatCellValue(rowData.get(i));
+                Cell cell = row.createCell(i);
+                cell.setCellValue(text);
+                cell.setCellStyle(bodyStyle);
+                if (sampled) {
+                    widths.measure(i, text);
                 }
             }
-            workbook.write(out);
-            return out.toByteArray();
-        } catch (IOException e) {
-            throw new IllegalStateException("生成 Excel 失败", e);
+        });
+        widths.applyTo(sheet);
+        if (rowIndex[0] > 0) {
+            sheet.createFreezePane(0, headers.isEmpty() ? 0 : 1);
         }
     }
 
-    private CellStyle buildHeaderStyle(XSSFWorkbook workbook) {
+    private CellStyle buildHeaderStyle(SXSSFWorkbook workbook) {
         CellStyle style = workbook.createCellStyle();
         style.setAlignment(HorizontalAlignment.CENTER);
         style.setVerticalAlignment(VerticalAlignment.CENTER);
@@ -87,13 +126,13 @@ public class ExcelExportService {
         style.setBorderLeft(BorderStyle.THIN);
         style.setBorderRight(BorderStyle.THIN);
         style.setBorderTop(BorderStyle.THIN);
-        XSSFFont font = workbook.createFont();
+        Font font = workbook.createFont();
         font.setBold(true);
         style.setFont(font);
         return style;
     }
 
-    private CellStyle buildBodyStyle(XSSFWorkbook workbook) {
+    private CellStyle buildBodyStyle(SXSSFWorkbook workbook) {
         CellStyle style = workbook.createCellStyle();
         style.setVerticalAlignment(VerticalAlignment.TOP);
         style.setBorderBottom(BorderStyle.THIN);
@@ -141,15 +180,64 @@ public class ExcelExportService {
         return String.valueOf(value);
     }
 
-    private void ensureWidth(List<Integer> widths, int index, Object value) {
-        while (widths.size() <= index) {
-            widths.add(0);
+    /** Longest text seen per column, in characters. */
+    private static final class ColumnWidths {
+
+        private int[] widths = new int[16];
+        private int columns;
+
+        void measure(int index, String text) {
+            if (index >= widths.length) {
+                widths = Arrays.copyOf(widths, Math.max(widths.length * 2, index + 1));
+            }
+            widths[index] = Math.max(widths[index], text.length());
+            columns = Math.max(columns, index + 1);
+        }
+
+        void applyTo(SXSSFSheet sheet) {
+            for (int i = 0; i < columns; i++) {
+                int width = Math.min(Math.max(widths[i] + 2, 12), 60);
+                sheet.setColumnWidth(i, width * 256);
+            }
         }
-        String text = formatCellValue(value);
-        int current = widths.get(index);
-        widths.set(index, Math.max(current, text == null ? 0 : text.length()));
     }
 
-    public record SheetSpec(String name, List<String> headers, List<? extends List<?>> rows) {
+    /**
+     * The rows of a sheet, handed to the writer one at a time: a list, or a query result read row by row.
+     */
+    @FunctionalInterface
+    public interface RowSource {
+
+        void forEach(Consumer<? super List<?>> sink);
+
+        static RowSource of(List<? extends List<?>> rows) {
+            return rows == null ? sink -> { } : sink -> rows.forEach(sink::accept);
+        }
+    }
+
+    public record SheetSpec(String name, List<String> headers, RowSource rows) {
+
+        public SheetSpec(String name, List<String> headers, List<? extends List<?>> rows) {
+            this(name, headers, RowSource.of(rows));
+        }
+    }
+
+    /** A written workbook whose rows live in temp files until it is closed. */
+    public static final class ExcelFile implements AutoCloseable {
+
+        private final SXSSFWorkbook workbook;
+
+        private ExcelFile(SXSSFWorkbook workbook) {
+            this.workbook = workbook;
+        }
+
+        public void writeTo(OutputStream out) throws IOException {
+            workbook.write(out);
+        }
+
+        @Override
+        public void close() {
+            closeQuietly(workbook);
+        }
     }
 }
@@ -1,6 +1,8 @@
 package cn.edu.jnu.labflowreport.common.export;
 
+import jakarta.servlet.http.HttpServletResponse;
 import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
@@ -8,6 +10,8 @@ import org.springframework.http.ResponseEntity;
 
 public final class ExportResponseHelper {
 
+    private static final String XLSX_CONTENT_TYPE = "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet";
+
     private ExportResponseHelper() {
     }
 
@@ -26,8 +30,21 @@ public final class ExportResponseHelper {
 
     public static ResponseEntity<byte[]> xlsx(String filename, byte[] bytes) {
         return ResponseEntity.ok()
-                .contentType(MediaType.parseMediaType("application/vnd.openxmlformats-officedocument.spreadsheetml.sheet"))
+                .contentType(MediaType.parseMediaType(XLSX_CONTENT_TYPE))
                 .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + filename + "\"")
                 .body(bytes);
     }
+
+    /**
+     * Streams a built workbook into the response and deletes its temp files. The workbook is complete before
+     * anything is written, so a failed query or permission check still ends in the usual JSON error.
+     */
+    public static void xlsx(HttpServletResponse response, String filename, ExcelExportService.ExcelFile file) throws IOException {
+        try (file) {
+            response.setContentType(XLSX_CONTENT_TYPE);
+            response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + filename + "\"");
+            file.writeTo(response.getOutputStream());
+            response.flushBuffer();
+        }
+    }
 }
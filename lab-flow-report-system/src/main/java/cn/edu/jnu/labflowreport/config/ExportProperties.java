@@ -0,0 +1,19 @@
+package cn.edu.jnu.labflowreport.config;
+
+import java.time.Duration;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+@ConfigurationProperties(prefix = "app.export")
+public record ExportProperties(
+        // Background export pool: worker threads and jobs queued beyond them; a submit past that is refused.
+        @DefaultValue("2") int workerThreads,
+        @DefaultValue("16") int queueCapacity,
+        // Finished files are kept for file-ttl, then deleted by the cleanup pass that runs every cleanup-interval.
+        @DefaultValue("PT24H") Duration fileTtl,
+        // A job still queued or running job-timeout after it was submitted is marked failed (node restart, hang).
+        @DefaultValue("PT30M") Duration jobTimeout,
+        // Jobs expired or failed per cleanup pass.
+        @DefaultValue("100") int cleanupBatch
+) {
+}
@@ -1,25 +1,64 @@
 package cn.edu.jnu.labflowreport.config;
 
 import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
 
 @ConfigurationProperties(prefix = "app.plag")
 public record PlagiarismProperties(
-        double textThreshold,
-        double imageThreshold,
-        int resultTopK,
-        int maxAttachmentsPerSubmission,
-        int maxTextAttachmentBytes,
-        int maxImageBytes
+        @DefaultValue("0.85") double textThreshold,
+        @DefaultValue("0.92") double imageThreshold,
+        @DefaultValue("30") int resultTopK,
+        // Most similar other submissions kept per submission for the cluster / similarity-matrix view.
+        @DefaultValue("10") int pairTopK,
+        @DefaultValue("20") int maxAttachmentsPerSubmission,
+        @DefaultValue("2097152") int maxTextAttachmentBytes,
+        @DefaultValue("6291456") int maxImageBytes,
+        // Tasks with at least this many submissions use the LSH band index instead of all-pairs comparison.
+        @DefaultValue("200") int lshMinSubmissions,
+        // Background run pool: worker threads, queued runs beyond them, and how long a RUNNING run may go
+        // without a heartbeat before another node (or a restarted one) resumes it.
+        @DefaultValue("2") int workerThreads,
+        @DefaultValue("16") int queueCapacity,
+        @DefaultValue("120") int runStaleSeconds,
+        // In-memory LRU entries in front of the persistent sha256 -> fingerprint cache.
+        @DefaultValue("20000") int fpCacheEntries,
+        // Rows per multi-VALUES INSERT, and submissions fingerprinted per committed chunk.
+        @DefaultValue("500") int insertBatchSize,
+        @DefaultValue("25") int fingerprintChunkSubmissions,
+        // Threads reading and hashing attachments, shared by all runs; 0 uses one per CPU core.
+        @DefaultValue("0") int fingerprintParallelism,
+        // Text tokenizer for SimHash64/sentence evidence: "cjk-shingle" (character n-grams for CJK runs,
+        // words otherwise) or "word" (the original whole-run tokens). Recorded in plag_task_run.algo_version.
+        @DefaultValue("cjk-shingle") String tokenizer,
+        @DefaultValue("2") int shingleSize,
+        // Text evidence: passages shared with the best match and the next (top-K - 1) other students among the
+        // pair-top-k neighbours, at least evidence-min-passage-chars letters/digits long, at most
+        // evidence-max-passages per match.
+        @DefaultValue("3") int evidenceTopK,
+        @DefaultValue("12") int evidenceMinPassageChars,
+        @DefaultValue("20") int evidenceMaxPassages,
+        // Source attachments (java, py, c, ...): winnowing over normalized tokens with k-grams of code-kgram
+        // tokens and windows of code-window hashes; fingerprints in more than code-boilerplate-ratio of the
+        // submissions are ignored when scoring.
+        @DefaultValue("5") int codeKgram,
+        @DefaultValue("4") int codeWindow,
+        @DefaultValue("0.5") double codeBoilerplateRatio,
+        // Document attachments (docx/xlsx/pptx): file size limit, then a per-file extraction budget of
+        // inflated bytes (skipped parts included), extracted characters and milliseconds; past it the text
+        // read so far is used.
+        @DefaultValue("20971520") int maxDocumentBytes,
+        @DefaultValue("67108864") int extractMaxXmlBytes,
+        @DefaultValue("200000") int extractMaxChars,
+        @DefaultValue("5000") int extractMaxMillis,
+        // Cross-task matching (run scope COURSE/TEACHER/ALL): fingerprints looked up per corpus query, and
+        // finished runs indexed per backfill pass.
+        @DefaultValue("16") int corpusQueryBatch,
+        @DefaultValue("20") int corpusBackfillRuns,
+        // Retention: fingerprint and result rows are kept for the latest retain-runs-per-task runs of a task
+        // (plus pinned runs and the latest DONE run); the compaction job deletes the rest compact-batch-rows
+        // at a time, at most compact-max-batches statements per pass.
+        @DefaultValue("3") int retainRunsPerTask,
+        @DefaultValue("1000") int compactBatchRows,
+        @DefaultValue("50") int compactMaxBatches
 ) {
-    public PlagiarismProperties() {
-        this(
-                0.85,
-                0.92,
-                30,
-                20,
-                2 * 1024 * 1024,
-                6 * 1024 * 1024
-        );
-    }
 }
-
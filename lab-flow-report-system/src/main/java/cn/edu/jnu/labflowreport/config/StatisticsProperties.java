@@ -0,0 +1,18 @@
+package cn.edu.jnu.labflowreport.config;
+
+import java.time.Duration;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+@ConfigurationProperties(prefix = "app.statistics")
+public record StatisticsProperties(
+        // Built statistics and teaching-analytics dashboards kept in memory per filter combination: at most
+        // cache-entries of them, each for at most cache-ttl. Writes that change the numbers drop them earlier;
+        // the ttl bounds how long changes nothing reports (users, classes, semesters) stay unseen.
+        @DefaultValue("PT5M") Duration cacheTtl,
+        @DefaultValue("200") int cacheEntries,
+        // A dashboard refreshes at most this many stale days of its range itself; beyond that (a backfill after
+        // deploy, a large rebuild pending) it reads the rollups as they are and the background job catches up.
+        @DefaultValue("7") int catchUpDays
+) {
+}
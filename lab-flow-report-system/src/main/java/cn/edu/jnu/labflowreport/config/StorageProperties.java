@@ -1,10 +1,49 @@
 package cn.edu.jnu.labflowreport.config;
 
+import java.time.Duration;
 import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
 
 @ConfigurationProperties(prefix = "app.storage")
 public record StorageProperties(
-        String dir
+        // Local upload directory; with the s3 backend it only holds staging files of uploads in progress.
+        String dir,
+        // Where stored files live: "local" (under dir) or "s3" (an S3-compatible bucket, see s3.*).
+        @DefaultValue("local") String backend,
+        // Store uploads once per distinct content under blobs/ab/cd/<sha256>, reference-counted across
+        // attachment rows; false keeps one file per upload under <kind>/<owner id>/.
+        @DefaultValue("true") boolean contentAddressed,
+        // Chunked uploads: largest chunk per PUT, largest file, and how long an unfinished or unused session
+        // (and its staging file) is kept.
+        @DefaultValue("5242880") int uploadChunkBytes,
+        @DefaultValue("1073741824") long uploadMaxBytes,
+        @DefaultValue("PT24H") Duration uploadSessionTtl,
+        // Orphan-file reconciler: stored files no row refers to are removed once older than gc-grace-period;
+        // each pass lists gc-batch-size files at a time, at most gc-max-batches times, pausing in between.
+        @DefaultValue("PT24H") Duration gcGracePeriod,
+        @DefaultValue("500") int gcBatchSize,
+        @DefaultValue("20") int gcMaxBatches,
+        @DefaultValue("PT0.2S") Duration gcBatchPause,
+        @DefaultValue S3 s3
 ) {
-}
 
+    public record S3(
+            // e.g. https://s3.amazonaws.com or http://minio:9000
+            String endpoint,
+            @DefaultValue("us-east-1") String region,
+            String bucket,
+            String accessKey,
+            String secretKey,
+            // bucket in the path (MinIO and most self-hosted stores) instead of the host name
+            @DefaultValue("true") boolean pathStyle,
+            // objects larger than this go up as a multipart upload of parts this size (S3 minimum is 5 MiB)
+            @DefaultValue("8388608") int partSize,
+            // answer downloads with a redirect to a short-lived presigned URL instead of proxying the bytes
+            @DefaultValue("true") boolean presignDownloads,
+            @DefaultValue("PT15M") Duration presignTtl,
+            // key prefix of this application's objects, e.g. "lab-flow/", so the bucket can be shared; listing
+            // and the orphan-file reconciler never look outside it
+            @DefaultValue("") String prefix
+    ) {
+    }
+}
@@ -15,7 +15,9 @@ import cn.edu.jnu.labflowreport.auth.model.AuthenticatedUser;
 import cn.edu.jnu.labflowreport.auth.security.SecurityUtils;
 import cn.edu.jnu.labflowreport.common.api.ApiResponse;
 import cn.edu.jnu.labflowreport.common.export.ExportResponseHelper;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
+import java.io.IOException;
 import java.time.LocalDateTime;
 import java.util.List;
 import org.springframework.format.annotation.DateTimeFormat;
@@ -184,14 +186,15 @@ public class AdminResourceController {
     }
 
     @GetMapping("/audit-logs/export/excel")
-    public ResponseEntity<byte[]> exportAuditLogsExcel(
+    public void exportAuditLogsExcel(
             @RequestParam(required = false) String action,
             @RequestParam(required = false) String actorUsername,
             @RequestParam(required = false) String targetType,
             @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
-            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to
-    ) {
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            HttpServletResponse response
+    ) throws IOException {
         AuthenticatedUser actor = SecurityUtils.currentUser();
-        return ExportResponseHelper.xlsx("audit-logs.xlsx", adminResourceService.exportAuditLogsExcel(actor, action, actorUsername, targetType, from, to));
+        ExportResponseHelper.xlsx(response, "audit-logs.xlsx", adminResourceService.exportAuditLogsExcel(actor, action, actorUsername, targetType, from, to));
     }
 }
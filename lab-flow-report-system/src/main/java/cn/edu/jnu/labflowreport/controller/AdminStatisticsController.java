@@ -4,13 +4,17 @@ import cn.edu.jnu.labflowreport.auth.model.AuthenticatedUser;
 import cn.edu.jnu.labflowreport.auth.security.SecurityUtils;
 import cn.edu.jnu.labflowreport.common.api.ApiResponse;
 import cn.edu.jnu.labflowreport.common.export.ExportResponseHelper;
+import cn.edu.jnu.labflowreport.statistics.service.StatisticsRollupService;
 import cn.edu.jnu.labflowreport.statistics.service.StatisticsService;
 import cn.edu.jnu.labflowreport.statistics.vo.AdminStatisticsDashboardVO;
+import jakarta.servlet.http.HttpServletResponse;
+import java.io.IOException;
 import java.time.LocalDate;
 import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
@@ -21,9 +25,11 @@ import org.springframework.web.bind.annotation.RestController;
 public class AdminStatisticsController {
 
     private final StatisticsService statisticsService;
+    private final StatisticsRollupService statisticsRollupService;
 
-    public AdminStatisticsController(StatisticsService statisticsService) {
+    public AdminStatisticsController(StatisticsService statisticsService, StatisticsRollupService statisticsRollupService) {
         this.statisticsService = statisticsService;
+        this.statisticsRollupService = statisticsRollupService;
     }
 
     @GetMapping("/dashboard")
@@ -38,6 +44,15 @@ public class AdminStatisticsController {
         return ApiResponse.success(statisticsService.getAdminDashboard(user, semesterId, from, to, teacherId, classId));
     }
 
+    /** Recomputes the daily rollups of a date range from the raw tables, e.g. after students were moved between classes. */
+    @PostMapping("/rollup/rebuild")
+    public ApiResponse<StatisticsRollupService.Rebuild> rebuildRollup(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to
+    ) {
+        return ApiResponse.success(statisticsRollupService.rebuild(from, to));
+    }
+
     @GetMapping("/reports/teachers/export")
     public ResponseEntity<byte[]> exportTeachers(
             @RequestParam(required = false) Long semesterId,
@@ -75,38 +90,41 @@ public class AdminStatisticsController {
     }
 
     @GetMapping("/reports/teachers/export/excel")
-    public ResponseEntity<byte[]> exportTeachersExcel(
+    public void exportTeachersExcel(
             @RequestParam(required = false) Long semesterId,
             @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
             @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
             @RequestParam(required = false) Long teacherId,
-            @RequestParam(required = false) Long classId
-    ) {
+            @RequestParam(required = false) Long classId,
+            HttpServletResponse response
+    ) throws IOException {
         AuthenticatedUser user = SecurityUtils.currentUser();
-        return ExportResponseHelper.xlsx("admin-teacher-stats.xlsx", statisticsService.exportAdminTeacherStatsExcel(user, semesterId, from, to, teacherId, classId));
+        ExportResponseHelper.xlsx(response, "admin-teacher-stats.xlsx", statisticsService.exportAdminTeacherStatsExcel(user, semesterId, from, to, teacherId, classId));
     }
 
     @GetMapping("/reports/classes/export/excel")
-    public ResponseEntity<byte[]> exportClassesExcel(
+    public void exportClassesExcel(
             @RequestParam(required = false) Long semesterId,
             @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
             @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
             @RequestParam(required = false) Long teacherId,
-            @RequestParam(required = false) Long classId
-    ) {
+            @RequestParam(required = false) Long classId,
+            HttpServletResponse response
+    ) throws IOException {
         AuthenticatedUser user = SecurityUtils.currentUser();
-        return ExportResponseHelper.xlsx("admin-class-stats.xlsx", statisticsService.exportAdminClassStatsExcel(user, semesterId, from, to, teacherId, classId));
+        ExportResponseHelper.xlsx(response, "admin-class-stats.xlsx", statisticsService.exportAdminClassStatsExcel(user, semesterId, from, to, teacherId, classId));
     }
 
     @GetMapping("/reports/experiment-courses/export/excel")
-    public ResponseEntity<byte[]> exportExperimentCoursesExcel(
+    public void exportExperimentCoursesExcel(
             @RequestParam(required = false) Long semesterId,
             @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
             @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
             @RequestParam(required = false) Long teacherId,
-            @RequestParam(required = false) Long classId
-    ) {
+            @RequestParam(required = false) Long classId,
+            HttpServletResponse response
+    ) throws IOException {
         AuthenticatedUser user = SecurityUtils.currentUser();
-        return ExportResponseHelper.xlsx("admin-experiment-course-stats.xlsx", statisticsService.exportAdminExperimentCourseStatsExcel(user, semesterId, from, to, teacherId, classId));
+        ExportResponseHelper.xlsx(response, "admin-experiment-course-stats.xlsx", statisticsService.exportAdminExperimentCourseStatsExcel(user, semesterId, from, to, teacherId, classId));
     }
 }
@@ -0,0 +1,47 @@
+package cn.edu.jnu.labflowreport.controller;
+
+import cn.edu.jnu.labflowreport.common.api.ApiResponse;
+import cn.edu.jnu.labflowreport.storage.StorageReconciler;
+import cn.edu.jnu.labflowreport.storage.StorageUsageService;
+import cn.edu.jnu.labflowreport.storage.vo.StorageUsageSummaryVO;
+import cn.edu.jnu.labflowreport.storage.vo.StorageUsageVO;
+import java.util.List;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequestMapping("/api/admin/storage")
+@PreAuthorize("hasRole('ADMIN')")
+public class AdminStorageController {
+
+    private final StorageUsageService usageService;
+    private final StorageReconciler reconciler;
+
+    public AdminStorageController(StorageUsageService usageService, StorageReconciler reconciler) {
+        this.usageService = usageService;
+        this.reconciler = reconciler;
+    }
+
+    @GetMapping("/usage")
+    public ApiResponse<List<StorageUsageVO>> listUsage(
+            @RequestParam(defaultValue = "TASK") String scope,
+            @RequestParam(defaultValue = "50") int limit
+    ) {
+        return ApiResponse.success(usageService.listUsage(scope, limit));
+    }
+
+    @GetMapping("/usage/summary")
+    public ApiResponse<StorageUsageSummaryVO> summary() {
+        return ApiResponse.success(usageService.summary());
+    }
+
+    /** Runs one reconciler pass now instead of waiting for the schedule. */
+    @PostMapping("/reconcile")
+    public ApiResponse<StorageReconciler.Pass> reconcile() {
+        return ApiResponse.success(reconciler.runPass());
+    }
+}
@@ -9,9 +9,10 @@ import cn.edu.jnu.labflowreport.flow.vo.TaskCompletionVO;
 import cn.edu.jnu.labflowreport.flow.vo.TaskDeviceConfigVO;
 import cn.edu.jnu.labflowreport.flow.vo.TaskDeviceRequestVO;
 import cn.edu.jnu.labflowreport.flow.vo.TaskProgressVO;
+import cn.edu.jnu.labflowreport.storage.DownloadResponseHelper;
 import jakarta.validation.Valid;
 import java.util.List;
-import org.springframework.http.HttpHeaders;
+import org.springframework.core.io.Resource;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
@@ -46,10 +47,11 @@ public class ExperimentFlowController {
     public ApiResponse<TaskProgressVO> addProgress(
             @PathVariable Long taskId,
             @RequestParam(value = "content", required = false) String content,
-            @RequestParam(value = "files", required = false) MultipartFile[] files
+            @RequestParam(value = "files", required = false) MultipartFile[] files,
+            @RequestParam(value = "uploadIds", required = false) List<String> uploadIds
     ) {
         AuthenticatedUser user = SecurityUtils.currentUser();
-        return ApiResponse.success("记录成功", experimentFlowService.addProgress(taskId, user, content, files));
+        return ApiResponse.success("记录成功", experimentFlowService.addProgress(taskId, user, content, files, uploadIds));
     }
 
     @GetMapping("/tasks/{taskId}/completion/me")
@@ -92,16 +94,10 @@ public class ExperimentFlowController {
 
     @GetMapping("/progress-attachments/{attachmentId}/download")
     @PreAuthorize("hasRole('STUDENT') or hasRole('TEACHER') or hasRole('ADMIN')")
-    public ResponseEntity<byte[]> downloadProgressAttachment(@PathVariable Long attachmentId) {
+    public ResponseEntity<Resource> downloadProgressAttachment(@PathVariable Long attachmentId) {
         AuthenticatedUser user = SecurityUtils.currentUser();
         ExperimentFlowService.DownloadData data = experimentFlowService.downloadProgressAttachment(attachmentId, user);
         String filename = data.filename() == null ? ("progress-attachment-" + attachmentId) : data.filename();
-        String contentType = (data.contentType() == null || data.contentType().isBlank())
-                ? MediaType.APPLICATION_OCTET_STREAM_VALUE
-                : data.contentType();
-        return ResponseEntity.ok()
-                .contentType(MediaType.parseMediaType(contentType))
-                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + filename + "\"")
-                .body(data.bytes());
+        return DownloadResponseHelper.attachment(filename, data.contentType(), data.sha256(), data.resource());
     }
 }
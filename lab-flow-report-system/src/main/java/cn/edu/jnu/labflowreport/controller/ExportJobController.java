@@ -0,0 +1,61 @@
+package cn.edu.jnu.labflowreport.controller;
+
+import cn.edu.jnu.labflowreport.auth.model.AuthenticatedUser;
+import cn.edu.jnu.labflowreport.auth.security.SecurityUtils;
+import cn.edu.jnu.labflowreport.common.api.ApiResponse;
+import cn.edu.jnu.labflowreport.export.dto.ExportJobCreateRequest;
+import cn.edu.jnu.labflowreport.export.service.ExportJobService;
+import cn.edu.jnu.labflowreport.export.vo.ExportJobVO;
+import cn.edu.jnu.labflowreport.storage.DownloadResponseHelper;
+import jakarta.validation.Valid;
+import java.util.List;
+import org.springframework.core.io.Resource;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * Exports generated in the background: submit, poll the job until it is DONE, then download the file. Which
+ * export types a role may submit is decided per type by the export catalog.
+ */
+@RestController
+@RequestMapping("/api/exports")
+@PreAuthorize("hasRole('TEACHER') or hasRole('ADMIN')")
+public class ExportJobController {
+
+    private final ExportJobService exportJobService;
+
+    public ExportJobController(ExportJobService exportJobService) {
+        this.exportJobService = exportJobService;
+    }
+
+    @PostMapping
+    public ApiResponse<ExportJobVO> submit(@Valid @RequestBody ExportJobCreateRequest request) {
+        AuthenticatedUser actor = SecurityUtils.currentUser();
+        return ApiResponse.success("已提交导出", exportJobService.submit(actor, request.type(), request.params()));
+    }
+
+    @GetMapping
+    public ApiResponse<List<ExportJobVO>> listRecent() {
+        AuthenticatedUser actor = SecurityUtils.currentUser();
+        return ApiResponse.success(exportJobService.listRecent(actor));
+    }
+
+    @GetMapping("/{jobId}")
+    public ApiResponse<ExportJobVO> get(@PathVariable Long jobId) {
+        AuthenticatedUser actor = SecurityUtils.currentUser();
+        return ApiResponse.success(exportJobService.get(actor, jobId));
+    }
+
+    @GetMapping("/{jobId}/download")
+    public ResponseEntity<Resource> download(@PathVariable Long jobId) {
+        AuthenticatedUser actor = SecurityUtils.currentUser();
+        ExportJobService.DownloadData data = exportJobService.download(actor, jobId);
+        return DownloadResponseHelper.attachment(data.fileName(), data.contentType(), null, data.resource());
+    }
+}
@@ -3,11 +3,12 @@ package cn.edu.jnu.labflowreport.controller;
 import cn.edu.jnu.labflowreport.auth.model.AuthenticatedUser;
 import cn.edu.jnu.labflowreport.auth.security.SecurityUtils;
 import cn.edu.jnu.labflowreport.common.api.ApiResponse;
+import cn.edu.jnu.labflowreport.storage.DownloadResponseHelper;
 import cn.edu.jnu.labflowreport.workflow.service.ReportAttachmentService;
 import cn.edu.jnu.labflowreport.workflow.vo.AttachmentVO;
 import jakarta.validation.constraints.NotNull;
 import java.util.List;
-import org.springframework.http.HttpHeaders;
+import org.springframework.core.io.Resource;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
@@ -48,19 +49,12 @@ public class ReportAttachmentController {
 
     @GetMapping("/attachments/{attachmentId}/download")
     @PreAuthorize("hasRole('STUDENT') or hasRole('TEACHER') or hasRole('ADMIN')")
-    public ResponseEntity<byte[]> downloadAttachment(@PathVariable Long attachmentId) {
+    public ResponseEntity<Resource> downloadAttachment(@PathVariable Long attachmentId) {
         AuthenticatedUser user = SecurityUtils.currentUser();
         ReportAttachmentService.DownloadData data = reportAttachmentService.downloadAttachment(attachmentId, user);
 
         String filename = data.filename() == null ? ("attachment-" + attachmentId) : data.filename();
-        String contentType = (data.contentType() == null || data.contentType().isBlank())
-                ? MediaType.APPLICATION_OCTET_STREAM_VALUE
-                : data.contentType();
-
-        return ResponseEntity.ok()
-                .contentType(MediaType.parseMediaType(contentType))
-                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + filename + "\"")
-                .body(data.bytes());
+        return DownloadResponseHelper.attachment(filename, data.contentType(), data.sha256(), data.resource());
     }
 }
 
@@ -4,6 +4,7 @@ import cn.edu.jnu.labflowreport.auth.model.AuthenticatedUser;
 import cn.edu.jnu.labflowreport.auth.security.SecurityUtils;
 import cn.edu.jnu.labflowreport.common.api.ApiResponse;
 import cn.edu.jnu.labflowreport.common.export.ExportResponseHelper;
+import cn.edu.jnu.labflowreport.storage.DownloadResponseHelper;
 import cn.edu.jnu.labflowreport.workflow.dto.ReviewCreateRequest;
 import cn.edu.jnu.labflowreport.workflow.dto.SubmissionCreateRequest;
 import cn.edu.jnu.labflowreport.workflow.dto.TaskCreateRequest;
@@ -24,6 +25,7 @@ import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.util.List;
+import org.springframework.core.io.Resource;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
@@ -91,10 +93,11 @@ public class ReportWorkflowController {
     @PreAuthorize("hasRole('TEACHER') or hasRole('ADMIN')")
     public ApiResponse<List<TaskAttachmentVO>> uploadTaskAttachments(
             @PathVariable Long taskId,
-            @RequestParam(value = "files", required = false) MultipartFile[] files
+            @RequestParam(value = "files", required = false) MultipartFile[] files,
+            @RequestParam(value = "uploadIds", required = false) List<String> uploadIds
     ) {
         AuthenticatedUser user = SecurityUtils.currentUser();
-        return ApiResponse.success("任务附件上传成功", reportWorkflowService.uploadTaskAttachments(taskId, user, files));
+        return ApiResponse.success("任务附件上传成功", reportWorkflowService.uploadTaskAttachments(taskId, user, files, uploadIds));
     }
 
     @DeleteMapping("/tasks/{taskId}/attachments/{attachmentId}")
@@ -106,17 +109,11 @@ public class ReportWorkflowController {
     }
 
     @GetMapping("/task-attachments/{attachmentId}/download")
-    public ResponseEntity<byte[]> downloadTaskAttachment(@PathVariable Long attachmentId) {
+    public ResponseEntity<Resource> downloadTaskAttachment(@PathVariable Long attachmentId) {
         AuthenticatedUser user = SecurityUtils.currentUser();
         ReportWorkflowService.DownloadData data = reportWorkflowService.downloadTaskAttachment(attachmentId, user);
         String filename = data.filename() == null ? ("task-attachment-" + attachmentId) : data.filename();
-        MediaType contentType = data.contentType() == null || data.contentType().isBlank()
-                ? MediaType.APPLICATION_OCTET_STREAM
-                : MediaType.parseMediaType(data.contentType());
-        return ResponseEntity.status(HttpStatus.OK)
-                .contentType(contentType)
-                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + filename + "\"")
-                .body(data.bytes());
+        return DownloadResponseHelper.attachment(filename, data.contentType(), data.sha256(), data.resource());
     }
 
     @DeleteMapping("/tasks/{taskId}")
@@ -174,17 +171,11 @@ public class ReportWorkflowController {
     }
 
     @GetMapping("/tasks/{taskId}/prestudy/attachments/{attachmentId}/download")
-    public ResponseEntity<byte[]> downloadPrestudyAttachment(@PathVariable Long taskId, @PathVariable Long attachmentId) {
+    public ResponseEntity<Resource> downloadPrestudyAttachment(@PathVariable Long taskId, @PathVariable Long attachmentId) {
         AuthenticatedUser user = SecurityUtils.currentUser();
         ReportWorkflowService.DownloadData data = reportWorkflowService.downloadPrestudyAttachment(taskId, attachmentId, user);
         String filename = data.filename() == null ? ("prestudy-attachment-" + attachmentId) : data.filename();
-        MediaType contentType = data.contentType() == null || data.contentType().isBlank()
-                ? MediaType.APPLICATION_OCTET_STREAM
-                : MediaType.parseMediaType(data.contentType());
-        return ResponseEntity.status(HttpStatus.OK)
-                .contentType(contentType)
-                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + filename + "\"")
-                .body(data.bytes());
+        return DownloadResponseHelper.attachment(filename, data.contentType(), data.sha256(), data.resource());
     }
 
     @PostMapping("/tasks/{taskId}/submissions")
@@ -203,12 +194,13 @@ public class ReportWorkflowController {
             @PathVariable Long taskId,
             @RequestParam(value = "contentMd", required = false) String contentMd,
             @RequestParam(value = "confirmEmptyContent", required = false, defaultValue = "false") boolean confirmEmptyContent,
-            @RequestParam(value = "files", required = false) MultipartFile[] files
+            @RequestParam(value = "files", required = false) MultipartFile[] files,
+            @RequestParam(value = "uploadIds", required = false) List<String> uploadIds
     ) {
         AuthenticatedUser user = SecurityUtils.currentUser();
         return ApiResponse.success(
                 "提交成功",
-                reportWorkflowService.submitReportMultipart(taskId, user, contentMd, confirmEmptyContent, files)
+                reportWorkflowService.submitReportMultipart(taskId, user, contentMd, confirmEmptyContent, files, uploadIds)
         );
     }
 
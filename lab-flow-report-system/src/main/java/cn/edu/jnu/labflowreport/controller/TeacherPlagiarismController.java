@@ -4,14 +4,18 @@ import cn.edu.jnu.labflowreport.auth.model.AuthenticatedUser;
 import cn.edu.jnu.labflowreport.auth.security.SecurityUtils;
 import cn.edu.jnu.labflowreport.common.api.ApiResponse;
 import cn.edu.jnu.labflowreport.plagiarism.service.PlagiarismService;
+import cn.edu.jnu.labflowreport.plagiarism.vo.PlagiarismClusterVO;
 import cn.edu.jnu.labflowreport.plagiarism.vo.PlagiarismRunVO;
 import cn.edu.jnu.labflowreport.plagiarism.vo.PlagiarismSummaryVO;
 import cn.edu.jnu.labflowreport.plagiarism.vo.PlagiarismStudentHistoryVO;
+import java.math.BigDecimal;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 @RestController
@@ -26,9 +30,44 @@ public class TeacherPlagiarismController {
 
     @PostMapping("/tasks/{taskId}/plagiarism/run")
     @PreAuthorize("hasRole('TEACHER') or hasRole('ADMIN')")
-    public ApiResponse<PlagiarismRunVO> run(@PathVariable Long taskId) {
+    public ApiResponse<PlagiarismRunVO> run(
+            @PathVariable Long taskId,
+            @RequestParam(required = false) String mode,
+            @RequestParam(required = false) String scope
+    ) {
         AuthenticatedUser actor = SecurityUtils.currentUser();
-        return ApiResponse.success("已运行", plagiarismService.runForTask(actor, taskId));
+        return ApiResponse.success("已提交查重", plagiarismService.runForTask(actor, taskId, mode, scope));
+    }
+
+    @GetMapping("/tasks/{taskId}/plagiarism/runs/latest")
+    @PreAuthorize("hasRole('TEACHER') or hasRole('ADMIN')")
+    public ApiResponse<PlagiarismRunVO> latestRun(@PathVariable Long taskId) {
+        AuthenticatedUser actor = SecurityUtils.currentUser();
+        return ApiResponse.success(plagiarismService.getLatestRun(actor, taskId));
+    }
+
+    @GetMapping("/plagiarism/runs/{runId}")
+    @PreAuthorize("hasRole('TEACHER') or hasRole('ADMIN')")
+    public ApiResponse<PlagiarismRunVO> runProgress(@PathVariable Long runId) {
+        AuthenticatedUser actor = SecurityUtils.currentUser();
+        return ApiResponse.success(plagiarismService.getRun(actor, runId));
+    }
+
+    @PutMapping("/plagiarism/runs/{runId}/pinned")
+    @PreAuthorize("hasRole('TEACHER') or hasRole('ADMIN')")
+    public ApiResponse<PlagiarismRunVO> pin(@PathVariable Long runId, @RequestParam boolean pinned) {
+        AuthenticatedUser actor = SecurityUtils.currentUser();
+        return ApiResponse.success(pinned ? "已保留" : "已取消保留", plagiarismService.setPinned(actor, runId, pinned));
+    }
+
+    @GetMapping("/plagiarism/runs/{runId}/clusters")
+    @PreAuthorize("hasRole('TEACHER') or hasRole('ADMIN')")
+    public ApiResponse<PlagiarismClusterVO> clusters(
+            @PathVariable Long runId,
+            @RequestParam(required = false) BigDecimal threshold
+    ) {
+        AuthenticatedUser actor = SecurityUtils.currentUser();
+        return ApiResponse.success(plagiarismService.getClusters(actor, runId, threshold));
     }
 
     @GetMapping("/submissions/{submissionId}/plagiarism-summary")
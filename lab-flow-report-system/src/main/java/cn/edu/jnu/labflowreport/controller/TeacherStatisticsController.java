@@ -6,6 +6,8 @@ import cn.edu.jnu.labflowreport.common.api.ApiResponse;
 import cn.edu.jnu.labflowreport.common.export.ExportResponseHelper;
 import cn.edu.jnu.labflowreport.statistics.service.StatisticsService;
 import cn.edu.jnu.labflowreport.statistics.vo.TeacherStatisticsDashboardVO;
+import jakarta.servlet.http.HttpServletResponse;
+import java.io.IOException;
 import java.time.LocalDate;
 import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.ResponseEntity;
@@ -67,32 +69,35 @@ public class TeacherStatisticsController {
     }
 
     @GetMapping("/reports/tasks/export/excel")
-    public ResponseEntity<byte[]> exportTasksExcel(
+    public void exportTasksExcel(
             @RequestParam(required = false) Long semesterId,
             @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
-            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to
-    ) {
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            HttpServletResponse response
+    ) throws IOException {
         AuthenticatedUser user = SecurityUtils.currentUser();
-        return ExportResponseHelper.xlsx("teacher-task-stats.xlsx", statisticsService.exportTeacherTaskStatsExcel(user, semesterId, from, to));
+        ExportResponseHelper.xlsx(response, "teacher-task-stats.xlsx", statisticsService.exportTeacherTaskStatsExcel(user, semesterId, from, to));
     }
 
     @GetMapping("/reports/experiment-courses/export/excel")
-    public ResponseEntity<byte[]> exportExperimentCoursesExcel(
+    public void exportExperimentCoursesExcel(
             @RequestParam(required = false) Long semesterId,
             @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
-            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to
-    ) {
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            HttpServletResponse response
+    ) throws IOException {
         AuthenticatedUser user = SecurityUtils.currentUser();
-        return ExportResponseHelper.xlsx("teacher-experiment-course-stats.xlsx", statisticsService.exportTeacherExperimentCourseStatsExcel(user, semesterId, from, to));
+        ExportResponseHelper.xlsx(response, "teacher-experiment-course-stats.xlsx", statisticsService.exportTeacherExperimentCourseStatsExcel(user, semesterId, from, to));
     }
 
     @GetMapping("/reports/device-requests/export/excel")
-    public ResponseEntity<byte[]> exportDeviceRequestsExcel(
+    public void exportDeviceRequestsExcel(
             @RequestParam(required = false) Long semesterId,
             @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
-            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to
-    ) {
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            HttpServletResponse response
+    ) throws IOException {
         AuthenticatedUser user = SecurityUtils.currentUser();
-        return ExportResponseHelper.xlsx("teacher-device-request-stats.xlsx", statisticsService.exportTeacherDeviceRequestStatsExcel(user, semesterId, from, to));
+        ExportResponseHelper.xlsx(response, "teacher-device-request-stats.xlsx", statisticsService.exportTeacherDeviceRequestStatsExcel(user, semesterId, from, to));
     }
 }
@@ -0,0 +1,66 @@
+package cn.edu.jnu.labflowreport.controller;
+
+import cn.edu.jnu.labflowreport.auth.model.AuthenticatedUser;
+import cn.edu.jnu.labflowreport.auth.security.SecurityUtils;
+import cn.edu.jnu.labflowreport.common.api.ApiResponse;
+import cn.edu.jnu.labflowreport.storage.ChunkedUploadService;
+import cn.edu.jnu.labflowreport.storage.dto.UploadInitRequest;
+import cn.edu.jnu.labflowreport.storage.vo.UploadSessionVO;
+import jakarta.validation.Valid;
+import java.io.InputStream;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * Chunked uploads. A completed upload is attached by passing its id as {@code uploadIds} to the report,
+ * task attachment or progress multipart endpoints.
+ */
+@RestController
+@RequestMapping("/api/uploads")
+@PreAuthorize("hasRole('STUDENT') or hasRole('TEACHER') or hasRole('ADMIN')")
+public class UploadController {
+
+    private final ChunkedUploadService chunkedUploadService;
+
+    public UploadController(ChunkedUploadService chunkedUploadService) {
+        this.chunkedUploadService = chunkedUploadService;
+    }
+
+    @PostMapping
+    public ApiResponse<UploadSessionVO> init(@Valid @RequestBody UploadInitRequest request) {
+        AuthenticatedUser user = SecurityUtils.currentUser();
+        return ApiResponse.success(chunkedUploadService.init(user, request));
+    }
+
+    @GetMapping("/{uploadId}")
+    public ApiResponse<UploadSessionVO> getSession(@PathVariable String uploadId) {
+        AuthenticatedUser user = SecurityUtils.currentUser();
+        return ApiResponse.success(chunkedUploadService.getSession(uploadId, user));
+    }
+
+    /** The raw request body is the chunk; {@code X-Chunk-Sha256} is checked when present. */
+    @PutMapping("/{uploadId}/chunks")
+    public ApiResponse<UploadSessionVO> writeChunk(
+            @PathVariable String uploadId,
+            @RequestParam("offset") long offset,
+            @RequestHeader(value = "X-Chunk-Sha256", required = false) String chunkSha256,
+            InputStream body
+    ) {
+        AuthenticatedUser user = SecurityUtils.currentUser();
+        return ApiResponse.success(chunkedUploadService.writeChunk(uploadId, user, offset, body, chunkSha256));
+    }
+
+    @PostMapping("/{uploadId}/complete")
+    public ApiResponse<UploadSessionVO> complete(@PathVariable String uploadId) {
+        AuthenticatedUser user = SecurityUtils.currentUser();
+        return ApiResponse.success("上传完成", chunkedUploadService.complete(uploadId, user));
+    }
+}
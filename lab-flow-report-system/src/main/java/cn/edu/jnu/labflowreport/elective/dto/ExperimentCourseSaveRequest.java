@@ -22,7 +22,9 @@ public record ExperimentCourseSaveRequest(
         List<Long> targetClassIds,
         List<Long> targetStudentIds,
         @NotEmpty(message = "至少配置一个可选场次")
-        List<@Valid ExperimentCourseSlotRequest> slots
+        List<@Valid ExperimentCourseSlotRequest> slots,
+        // On creation: an earlier offering of the same course, which this one continues.
+        Long previousCourseId
 ) {
     public record ExperimentCourseSlotRequest(
             Long id,
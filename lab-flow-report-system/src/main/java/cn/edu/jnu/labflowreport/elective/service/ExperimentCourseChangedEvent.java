@@ -0,0 +1,8 @@
+package cn.edu.jnu.labflowreport.elective.service;
+
+/**
+ * A course was created or edited, or a student joined or left it. Published inside the transaction that made
+ * the change.
+ */
+public record ExperimentCourseChangedEvent(Long courseId) {
+}
@@ -61,6 +61,7 @@ import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
 import java.util.stream.Collectors;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -86,6 +87,7 @@ public class ExperimentCourseService {
     private final LabRoomMapper labRoomMapper;
     private final TimeSlotMapper timeSlotMapper;
     private final LabRoomManagementService labRoomManagementService;
+    private final ApplicationEventPublisher eventPublisher;
 
     public ExperimentCourseService(
             ExperimentCourseMapper experimentCourseMapper,
@@ -101,7 +103,8 @@ public class ExperimentCourseService {
             SysUserMapper sysUserMapper,
             LabRoomMapper labRoomMapper,
             TimeSlotMapper timeSlotMapper,
-            LabRoomManagementService labRoomManagementService
+            LabRoomManagementService labRoomManagementService,
+            ApplicationEventPublisher eventPublisher
     ) {
         this.experimentCourseMapper = experimentCourseMapper;
         this.experimentCourseSlotMapper = experimentCourseSlotMapper;
@@ -117,6 +120,7 @@ public class ExperimentCourseService {
         this.labRoomMapper = labRoomMapper;
         this.timeSlotMapper = timeSlotMapper;
         this.labRoomManagementService = labRoomManagementService;
+        this.eventPublisher = eventPublisher;
     }
 
     public List<ExperimentCourseVO> listTeacherCourses(AuthenticatedUser actor) {
@@ -162,6 +166,10 @@ public class ExperimentCourseService {
         entity.setDescription(blankToNull(request.description()));
         entity.setTeacherId(actor.userId());
         entity.setSemesterId(request.semesterId());
+        if (request.previousCourseId() != null) {
+            ExperimentCourseEntity previous = requireManageableCourse(request.previousCourseId(), actor);
+            entity.setOriginCourseId(previous.getOriginCourseId() == null ? previous.getId() : previous.getOriginCourseId());
+        }
         entity.setStatus("OPEN");
         entity.setEnrollDeadlineAt(request.enrollDeadlineAt());
         entity.setCreatedAt(LocalDateTime.now());
@@ -169,6 +177,7 @@ public class ExperimentCourseService {
         experimentCourseMapper.insert(entity);
         replaceTargets(entity.getId(), request);
         replaceSlots(entity.getId(), request, semester);
+        eventPublisher.publishEvent(new ExperimentCourseChangedEvent(entity.getId()));
         return requireCourseVo(entity.getId());
     }
 
@@ -185,6 +194,7 @@ public class ExperimentCourseService {
         experimentCourseMapper.updateById(entity);
         replaceTargets(courseId, request);
         replaceSlots(courseId, request, semester);
+        eventPublisher.publishEvent(new ExperimentCourseChangedEvent(courseId));
         return requireCourseVo(courseId);
     }
 
@@ -299,6 +309,7 @@ public class ExperimentCourseService {
             existing.setRemovedByTeacherId(null);
             experimentCourseEnrollmentMapper.updateById(existing);
         }
+        eventPublisher.publishEvent(new ExperimentCourseChangedEvent(courseId));
         return listStudentMyCourses(student).stream()
                 .filter(item -> Objects.equals(item.getId(), courseId))
                 .findFirst()
@@ -347,6 +358,7 @@ public class ExperimentCourseService {
             existing.setRemovedByTeacherId(null);
             experimentCourseEnrollmentMapper.updateById(existing);
         }
+        eventPublisher.publishEvent(new ExperimentCourseChangedEvent(courseId));
         return getTeacherCourseRoster(courseId, actor);
     }
 
@@ -362,6 +374,7 @@ public class ExperimentCourseService {
         existing.setRemovedByTeacherId(actor.userId());
         experimentCourseEnrollmentMapper.updateById(existing);
         upsertBlocked(courseId, request.studentId(), actor.userId());
+        eventPublisher.publishEvent(new ExperimentCourseChangedEvent(courseId));
         return getTeacherCourseRoster(courseId, actor);
     }
 
@@ -0,0 +1,11 @@
+package cn.edu.jnu.labflowreport.export.dto;
+
+import jakarta.validation.constraints.NotBlank;
+import java.util.Map;
+
+public record ExportJobCreateRequest(
+        @NotBlank(message = "type 不能为空")
+        String type,
+        Map<String, Object> params
+) {
+}
@@ -0,0 +1,233 @@
+package cn.edu.jnu.labflowreport.export.service;
+
+import cn.edu.jnu.labflowreport.admin.service.AdminResourceService;
+import cn.edu.jnu.labflowreport.admin.service.AdminUserService;
+import cn.edu.jnu.labflowreport.attendance.service.AttendanceService;
+import cn.edu.jnu.labflowreport.auth.model.AuthenticatedUser;
+import cn.edu.jnu.labflowreport.common.api.ApiCode;
+import cn.edu.jnu.labflowreport.common.exception.BusinessException;
+import cn.edu.jnu.labflowreport.common.export.ExcelExportService.ExcelFile;
+import cn.edu.jnu.labflowreport.flow.service.ExperimentFlowService;
+import cn.edu.jnu.labflowreport.statistics.service.StatisticsService;
+import cn.edu.jnu.labflowreport.statistics.service.TeachingAnalyticsService;
+import cn.edu.jnu.labflowreport.workflow.service.ReportWorkflowService;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import org.springframework.stereotype.Component;
+
+/**
+ * The exports that can run as jobs: per type, the roles that may submit it, the parameters it takes, its file
+ * name and how the file is written. Every entry builds the same file as the synchronous endpoint, with the same
+ * checks on what the actor may see (own tasks, own sessions), but through the service's build method where the
+ * endpoint's also logs the export: the job's own {@code export_record} row is the only record of it.
+ */
+@Component
+public class ExportCatalog {
+
+    private static final List<String> TEACHER_OR_ADMIN = List.of("ROLE_TEACHER", "ROLE_ADMIN");
+    private static final List<String> ADMIN = List.of("ROLE_ADMIN");
+
+    private static final Param SEMESTER_ID = new Param("semesterId", Kind.ID, false);
+    private static final Param FROM = new Param("from", Kind.DATE, false);
+    private static final Param TO = new Param("to", Kind.DATE, false);
+    private static final Param TEACHER_ID = new Param("teacherId", Kind.ID, false);
+    private static final Param CLASS_ID = new Param("classId", Kind.ID, false);
+    private static final Param STUDENT_ID = new Param("studentId", Kind.ID, false);
+    private static final Param TASK_ID = new Param("taskId", Kind.ID, true);
+
+    private final Map<String, Definition> definitions = new LinkedHashMap<>();
+
+    public ExportCatalog(
+            StatisticsService statisticsService,
+            TeachingAnalyticsService teachingAnalyticsService,
+            AttendanceService attendanceService,
+            ExperimentFlowService experimentFlowService,
+            AdminUserService adminUserService,
+            AdminResourceService adminResourceService,
+            ReportWorkflowService reportWorkflowService
+    ) {
+        List<Param> teacherRange = List.of(SEMESTER_ID, FROM, TO);
+        excelFile("TEACHER_TASK_STATS", TEACHER_OR_ADMIN, teacherRange, p -> "teacher-task-stats.xlsx",
+                (actor, p) -> statisticsService.buildTeacherTaskStatsExcel(actor, p.id("semesterId"), p.date("from"), p.date("to")));
+        excelFile("TEACHER_EXPERIMENT_COURSE_STATS", TEACHER_OR_ADMIN, teacherRange, p -> "teacher-experiment-course-stats.xlsx",
+                (actor, p) -> statisticsService.buildTeacherExperimentCourseStatsExcel(actor, p.id("semesterId"), p.date("from"), p.date("to")));
+        excelFile("TEACHER_DEVICE_REQUEST_STATS", TEACHER_OR_ADMIN, teacherRange, p -> "teacher-device-request-stats.xlsx",
+                (actor, p) -> statisticsService.buildTeacherDeviceRequestStatsExcel(actor, p.id("semesterId"), p.date("from"), p.date("to")));
+
+        List<Param> adminRange = List.of(SEMESTER_ID, FROM, TO, TEACHER_ID, CLASS_ID);
+        excelFile("ADMIN_TEACHER_STATS", ADMIN, adminRange, p -> "admin-teacher-stats.xlsx",
+                (actor, p) -> statisticsService.buildAdminTeacherStatsExcel(
+                        actor, p.id("semesterId"), p.date("from"), p.date("to"), p.id("teacherId"), p.id("classId")));
+        excelFile("ADMIN_CLASS_STATS", ADMIN, adminRange, p -> "admin-class-stats.xlsx",
+                (actor, p) -> statisticsService.buildAdminClassStatsExcel(
+                        actor, p.id("semesterId"), p.date("from"), p.date("to"), p.id("teacherId"), p.id("classId")));
+        excelFile("ADMIN_EXPERIMENT_COURSE_STATS", ADMIN, adminRange, p -> "admin-experiment-course-stats.xlsx",
+                (actor, p) -> statisticsService.buildAdminExperimentCourseStatsExcel(
+                        actor, p.id("semesterId"), p.date("from"), p.date("to"), p.id("teacherId"), p.id("classId")));
+
+        List<Param> teacherAnalytics = List.of(SEMESTER_ID, FROM, TO, CLASS_ID, STUDENT_ID);
+        bytes("TEACHER_EXPERIMENT_ANALYTICS", TEACHER_OR_ADMIN, teacherAnalytics, p -> "teacher-teaching-experiment-analytics.xlsx",
+                (actor, p) -> teachingAnalyticsService.buildTeacherExperimentAnalyticsExcel(
+                        actor, p.id("semesterId"), p.date("from"), p.date("to"), p.id("classId"), p.id("studentId")));
+        bytes("TEACHER_STUDENT_ANALYTICS", TEACHER_OR_ADMIN, teacherAnalytics, p -> "teacher-teaching-student-analytics.xlsx",
+                (actor, p) -> teachingAnalyticsService.buildTeacherStudentAnalyticsExcel(
+                        actor, p.id("semesterId"), p.date("from"), p.date("to"), p.id("classId"), p.id("studentId")));
+        bytes("TEACHER_REPORT_QUALITY_ANALYTICS", TEACHER_OR_ADMIN, teacherAnalytics, p -> "teacher-teaching-report-quality-analytics.xlsx",
+                (actor, p) -> teachingAnalyticsService.buildTeacherReportQualityAnalyticsExcel(
+                        actor, p.id("semesterId"), p.date("from"), p.date("to"), p.id("classId"), p.id("studentId")));
+
+        List<Param> adminAnalytics = List.of(SEMESTER_ID, FROM, TO, TEACHER_ID, CLASS_ID, STUDENT_ID);
+        bytes("ADMIN_EXPERIMENT_ANALYTICS", ADMIN, adminAnalytics, p -> "admin-teaching-experiment-analytics.xlsx",
+                (actor, p) -> teachingAnalyticsService.buildAdminExperimentAnalyticsExcel(
+                        actor, p.id("semesterId"), p.date("from"), p.date("to"), p.id("teacherId"), p.id("classId"), p.id("studentId")));
+        bytes("ADMIN_STUDENT_ANALYTICS", ADMIN, adminAnalytics, p -> "admin-teaching-student-analytics.xlsx",
+                (actor, p) -> teachingAnalyticsService.buildAdminStudentAnalyticsExcel(
+                        actor, p.id("semesterId"), p.date("from"), p.date("to"), p.id("teacherId"), p.id("classId"), p.id("studentId")));
+        bytes("ADMIN_REPORT_QUALITY_ANALYTICS", ADMIN, adminAnalytics, p -> "admin-teaching-report-quality-analytics.xlsx",
+                (actor, p) -> teachingAnalyticsService.buildAdminReportQualityAnalyticsExcel(
+                        actor, p.id("semesterId"), p.date("from"), p.date("to"), p.id("teacherId"), p.id("classId"), p.id("studentId")));
+
+        bytes("ATTENDANCE_SESSION_RECORDS", TEACHER_OR_ADMIN, List.of(new Param("sessionId", Kind.ID, true)),
+                p -> "attendance-session-" + p.id("sessionId") + ".xlsx",
+                (actor, p) -> attendanceService.exportRecordsExcel(actor, p.id("sessionId")));
+        bytes("TASK_PROGRESS_COMPLETION", TEACHER_OR_ADMIN, List.of(TASK_ID),
+                p -> "task-" + p.id("taskId") + "-progress-completion.xlsx",
+                (actor, p) -> experimentFlowService.exportTaskProgressCompletionExcel(p.id("taskId"), actor));
+        bytes("TASK_DEVICE_REQUESTS", TEACHER_OR_ADMIN, List.of(TASK_ID),
+                p -> "task-" + p.id("taskId") + "-device-requests.xlsx",
+                (actor, p) -> experimentFlowService.exportTaskDeviceRequestsExcel(p.id("taskId"), actor));
+        bytes("TASK_SCORES", TEACHER_OR_ADMIN, List.of(TASK_ID),
+                p -> "task-" + p.id("taskId") + "-scores.xlsx",
+                (actor, p) -> reportWorkflowService.buildScoresExcel(p.id("taskId"), actor));
+
+        bytes("ADMIN_USERS", ADMIN, List.of(), p -> "users.xlsx", (actor, p) -> adminUserService.buildUsersExcel());
+        bytes("ADMIN_LAB_ROOMS", ADMIN, List.of(), p -> "lab-rooms.xlsx", (actor, p) -> adminResourceService.buildLabRoomsExcel());
+        bytes("ADMIN_DEVICES", ADMIN, List.of(), p -> "devices.xlsx", (actor, p) -> adminResourceService.buildDevicesExcel());
+        bytes("ADMIN_SEMESTERS", ADMIN, List.of(), p -> "semesters.xlsx", (actor, p) -> adminResourceService.buildSemestersExcel());
+        excelFile("ADMIN_AUDIT_LOGS", ADMIN,
+                List.of(new Param("action", Kind.TEXT, false), new Param("actorUsername", Kind.TEXT, false),
+                        new Param("targetType", Kind.TEXT, false), new Param("from", Kind.DATE_TIME, false),
+                        new Param("to", Kind.DATE_TIME, false)),
+                p -> "audit-logs.xlsx",
+                (actor, p) -> adminResourceService.buildAuditLogsExcel(
+                        p.text("action"), p.text("actorUsername"), p.text("targetType"), p.dateTime("from"), p.dateTime("to")));
+    }
+
+    public Definition find(String type) {
+        Definition definition = type == null ? null : definitions.get(type.trim());
+        if (definition == null) {
+            throw new BusinessException(ApiCode.BAD_REQUEST, "不支持的导出类型");
+        }
+        return definition;
+    }
+
+    private void excelFile(String type, List<String> roles, List<Param> params, Function<Params, String> fileName,
+                           BiFunction<AuthenticatedUser, Params, ExcelFile> build) {
+        definitions.put(type, new Definition(type, roles, params, fileName, (actor, p, out) -> {
+            try (ExcelFile file = build.apply(actor, p)) {
+                file.writeTo(out);
+            }
+        }));
+    }
+
+    private void bytes(String type, List<String> roles, List<Param> params, Function<Params, String> fileName,
+                       BiFunction<AuthenticatedUser, Params, byte[]> build) {
+        definitions.put(type, new Definition(type, roles, params, fileName, (actor, p, out) -> out.write(build.apply(actor, p))));
+    }
+
+    @FunctionalInterface
+    public interface Producer {
+
+        void write(AuthenticatedUser actor, Params params, OutputStream out) throws IOException;
+    }
+
+    enum Kind { ID, DATE, DATE_TIME, TEXT }
+
+    record Param(String name, Kind kind, boolean required) {
+    }
+
+    public record Definition(
+            String type,
+            List<String> roles,
+            List<Param> params,
+            Function<Params, String> fileName,
+            Producer producer
+    ) {
+
+        public boolean allows(AuthenticatedUser actor) {
+            return actor != null && actor.roleCodes() != null && actor.roleCodes().stream().anyMatch(roles::contains);
+        }
+
+        /**
+         * Keeps the declared parameters only, parsed and written back in one form, so that requests asking for
+         * the same file produce the same {@link Params#canonical()} string; unknown ones are ignored.
+         */
+        public Params parse(Map<String, ?> raw) {
+            Map<String, String> values = new TreeMap<>();
+            for (Param param : params) {
+                Object value = raw == null ? null : raw.get(param.name());
+                String text = value == null ? null : String.valueOf(value).trim();
+                if (text == null || text.isEmpty()) {
+                    if (param.required()) {
+                        throw new BusinessException(ApiCode.BAD_REQUEST, param.name() + " 不能为空");
+                    }
+                    continue;
+                }
+                values.put(param.name(), normalize(param, text));
+            }
+            return new Params(Collections.unmodifiableMap(values));
+        }
+
+        private static String normalize(Param param, String text) {
+            try {
+                return switch (param.kind()) {
+                    case ID -> String.valueOf(Long.parseLong(text));
+                    case DATE -> LocalDate.parse(text).toString();
+                    case DATE_TIME -> LocalDateTime.parse(text).toString();
+                    case TEXT -> text;
+                };
+            } catch (NumberFormatException | DateTimeParseException e) {
+                throw new BusinessException(ApiCode.BAD_REQUEST, param.name() + " 格式不正确");
+            }
+        }
+    }
+
+    /** Parsed export parameters by name, in name order. */
+    public record Params(Map<String, String> values) {
+
+        public Long id(String name) {
+            String value = values.get(name);
+            return value == null ? null : Long.valueOf(value);
+        }
+
+        public LocalDate date(String name) {
+            String value = values.get(name);
+            return value == null ? null : LocalDate.parse(value);
+        }
+
+        public LocalDateTime dateTime(String name) {
+            String value = values.get(name);
+            return value == null ? null : LocalDateTime.parse(value);
+        }
+
+        public String text(String name) {
+            return values.get(name);
+        }
+
+        public String canonical() {
+            StringBuilder sb = new StringBuilder();
+            values.forEach((name, value) -> sb.append(name).append('=').append(value).append('\n'));
+            return sb.toString();
+        }
+    }
+}
@@ -0,0 +1,267 @@
+package cn.edu.jnu.labflowreport.export.service;
+
+import cn.edu.jnu.labflowreport.auth.model.AuthenticatedUser;
+import cn.edu.jnu.labflowreport.common.api.ApiCode;
+import cn.edu.jnu.labflowreport.common.exception.BusinessException;
+import cn.edu.jnu.labflowreport.common.util.HashUtils;
+import cn.edu.jnu.labflowreport.config.ExportProperties;
+import cn.edu.jnu.labflowreport.export.vo.ExportJobVO;
+import cn.edu.jnu.labflowreport.persistence.entity.ExportRecordEntity;
+import cn.edu.jnu.labflowreport.persistence.mapper.ExportRecordMapper;
+import cn.edu.jnu.labflowreport.storage.FileStorageService;
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.io.Resource;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+/**
+ * Export jobs: a submit records a QUEUED row in {@code export_record} and returns at once, a bounded background
+ * pool writes the file into storage and records its size and duration (DONE) or the error (FAILED), and the
+ * operator downloads it until {@code app.export.file-ttl} has passed (EXPIRED).
+ *
+ * <p>A submit with the same operator, type and parameters as a job that is still queued or running returns that
+ * job instead of starting another. A unique index on the active request key makes this hold across nodes: of two
+ * concurrent submits only one insert succeeds, and the other returns the job it lost to. Jobs keep the submitter's identity in memory only, so a job whose node went
+ * away is not resumed: the cleanup pass marks it FAILED once {@code app.export.job-timeout} has passed.
+ */
+@Service
+public class ExportJobService {
+
+    static final String STATUS_QUEUED = "QUEUED";
+    static final String STATUS_RUNNING = "RUNNING";
+    static final String STATUS_DONE = "DONE";
+    static final String STATUS_FAILED = "FAILED";
+    static final String STATUS_EXPIRED = "EXPIRED";
+
+    private static final Logger log = LoggerFactory.getLogger(ExportJobService.class);
+    private static final String XLSX_CONTENT_TYPE = "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet";
+    private static final int RECENT_JOBS = 20;
+    private static final int MAX_ERROR_LENGTH = 500;
+
+    private final ExportProperties props;
+    private final ExportCatalog catalog;
+    private final ExportRecordMapper exportRecordMapper;
+    private final FileStorageService storageService;
+    private final ObjectMapper objectMapper;
+    private final ThreadPoolExecutor executor;
+
+    public ExportJobService(
+            ExportProperties props,
+            ExportCatalog catalog,
+            ExportRecordMapper exportRecordMapper,
+            FileStorageService storageService,
+            ObjectMapper objectMapper
+    ) {
+        this.props = props;
+        this.catalog = catalog;
+        this.exportRecordMapper = exportRecordMapper;
+        this.storageService = storageService;
+        this.objectMapper = objectMapper;
+        int threads = Math.max(1, props.workerThreads());
+        AtomicInteger seq = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(
+                threads,
+                threads,
+                60L,
+                TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, props.queueCapacity())),
+                r -> {
+                    Thread t = new Thread(r, "export-job-" + seq.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                }
+        );
+    }
+
+    /**
+     * Synchronized so that identical submits on this node queue up on the lookup rather than on the unique index;
+     * the lookup and the insert are short, the export itself runs on the pool.
+     */
+    public synchronized ExportJobVO submit(AuthenticatedUser actor, String type, Map<String, ?> rawParams) {
+        ExportCatalog.Definition definition = catalog.find(type);
+        if (!definition.allows(actor)) {
+            throw new BusinessException(ApiCode.FORBIDDEN, HttpStatus.FORBIDDEN, "无权限导出该数据");
+        }
+        ExportCatalog.Params params = definition.parse(rawParams);
+        String requestKey = HashUtils.sha256Hex(
+                (actor.userId() + "|" + definition.type() + "|" + params.canonical()).getBytes(StandardCharsets.UTF_8));
+        ExportRecordEntity active = exportRecordMapper.findActiveByRequestKey(requestKey);
+        if (active != null) {
+            return toVO(active);
+        }
+        if (executor.getQueue().remainingCapacity() == 0) {
+            throw new BusinessException(ApiCode.BAD_REQUEST, HttpStatus.TOO_MANY_REQUESTS, "导出任务排队已满，请稍后再试");
+        }
+
+        ExportRecordEntity job = new ExportRecordEntity();
+        job.setOperatorId(actor.userId());
+        job.setExportType(definition.type());
+        job.setConditionJson(toJson(params.values()));
+        job.setStatus(STATUS_QUEUED);
+        job.setRequestKey(requestKey);
+        job.setFileName(definition.fileName().apply(params));
+        job.setContentType(XLSX_CONTENT_TYPE);
+        job.setCreatedAt(LocalDateTime.now());
+        try {
+            exportRecordMapper.insert(job);
+        } catch (DuplicateKeyException e) {
+            // Another node submitted the same export between the lookup and the insert.
+            active = exportRecordMapper.findActiveByRequestKey(requestKey);
+            if (active == null) {
+                throw new BusinessException(ApiCode.BAD_REQUEST, HttpStatus.CONFLICT, "相同的导出任务刚刚结束，请重新提交");
+            }
+            return toVO(active);
+        }
+        try {
+            executor.execute(() -> execute(job.getId(), job.getFileName(), actor, definition, params));
+        } catch (RejectedExecutionException e) {
+            exportRecordMapper.markFailed(job.getId(), "导出任务排队已满", null, LocalDateTime.now());
+            throw new BusinessException(ApiCode.BAD_REQUEST, HttpStatus.TOO_MANY_REQUESTS, "导出任务排队已满，请稍后再试");
+        }
+        return toVO(job);
+    }
+
+    public ExportJobVO get(AuthenticatedUser actor, Long jobId) {
+        return toVO(ownJob(actor, jobId));
+    }
+
+    public List<ExportJobVO> listRecent(AuthenticatedUser actor) {
+        return exportRecordMapper.selectList(new LambdaQueryWrapper<ExportRecordEntity>()
+                        .eq(ExportRecordEntity::getOperatorId, actor.userId())
+                        .isNotNull(ExportRecordEntity::getRequestKey)
+                        .orderByDesc(ExportRecordEntity::getId)
+                        .last("LIMIT " + RECENT_JOBS))
+                .stream()
+                .map(this::toVO)
+                .toList();
+    }
+
+    public DownloadData download(AuthenticatedUser actor, Long jobId) {
+        ExportRecordEntity job = ownJob(actor, jobId);
+        if (STATUS_EXPIRED.equals(job.getStatus())) {
+            throw new BusinessException(ApiCode.BAD_REQUEST, HttpStatus.GONE, "导出文件已过期，请重新导出");
+        }
+        if (!STATUS_DONE.equals(job.getStatus()) || job.getFilePath() == null) {
+            throw new BusinessException(ApiCode.BAD_REQUEST, HttpStatus.CONFLICT, "导出文件尚未生成");
+        }
+        return new DownloadData(job.getFileName(), job.getContentType(), storageService.loadAsResource(job.getFilePath()));
+    }
+
+    /**
+     * Fails jobs that outlived {@code job-timeout} without finishing, then deletes the files of expired ones.
+     */
+    @Scheduled(
+            initialDelayString = "${app.export.cleanup-interval:PT10M}",
+            fixedDelayString = "${app.export.cleanup-interval:PT10M}"
+    )
+    public void cleanup() {
+        LocalDateTime now = LocalDateTime.now();
+        int batch = Math.max(1, props.cleanupBatch());
+        for (Long jobId : exportRecordMapper.findStaleActiveIds(now.minus(props.jobTimeout()), batch)) {
+            exportRecordMapper.markFailed(jobId, "导出超时", null, now);
+        }
+        for (ExportRecordEntity job : exportRecordMapper.findExpired(now, batch)) {
+            try {
+                storageService.delete(job.getFilePath());
+            } catch (BusinessException e) {
+                // The reconciler removes the file once the row no longer points at it.
+                log.warn("failed to delete expired export {}: {}", job.getFilePath(), e.getMessage());
+            }
+            exportRecordMapper.markExpired(job.getId());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    void execute(Long jobId, String fileName, AuthenticatedUser actor, ExportCatalog.Definition definition,
+                 ExportCatalog.Params params) {
+        if (exportRecordMapper.markRunning(jobId, LocalDateTime.now()) == 0) {
+            return;
+        }
+        long started = System.nanoTime();
+        try {
+            FileStorageService.StoredFile file = storageService.saveExportFile(
+                    jobId, fileName, out -> definition.producer().write(actor, params, out));
+            LocalDateTime now = LocalDateTime.now();
+            if (exportRecordMapper.markDone(jobId, file.relativePath(), file.size(), elapsedMillis(started), now,
+                    now.plus(props.fileTtl())) == 0) {
+                // Timed out by the cleanup pass meanwhile; nothing will point at the file.
+                storageService.delete(file.relativePath());
+            }
+        } catch (BusinessException e) {
+            exportRecordMapper.markFailed(jobId, truncate(e.getMessage()), elapsedMillis(started), LocalDateTime.now());
+        } catch (RuntimeException e) {
+            log.warn("export job {} ({}) failed", jobId, definition.type(), e);
+            exportRecordMapper.markFailed(jobId, "导出失败", elapsedMillis(started), LocalDateTime.now());
+        }
+    }
+
+    private ExportRecordEntity ownJob(AuthenticatedUser actor, Long jobId) {
+        ExportRecordEntity job = jobId == null ? null : exportRecordMapper.selectById(jobId);
+        if (job == null || job.getRequestKey() == null) {
+            throw new BusinessException(ApiCode.BAD_REQUEST, HttpStatus.NOT_FOUND, "导出任务不存在");
+        }
+        if (!job.getOperatorId().equals(actor.userId())) {
+            throw new BusinessException(ApiCode.FORBIDDEN, HttpStatus.FORBIDDEN, "无权访问该导出任务");
+        }
+        return job;
+    }
+
+    private ExportJobVO toVO(ExportRecordEntity job) {
+        return new ExportJobVO(
+                job.getId(),
+                job.getExportType(),
+                job.getStatus(),
+                job.getFileName(),
+                job.getSizeBytes(),
+                job.getDurationMs(),
+                job.getErrorMessage(),
+                job.getCreatedAt(),
+                job.getStartedAt(),
+                job.getFinishedAt(),
+                job.getExpiresAt()
+        );
+    }
+
+    private String toJson(Object value) {
+        try {
+            return objectMapper.writeValueAsString(value);
+        } catch (JsonProcessingException e) {
+            return "{}";
+        }
+    }
+
+    private static long elapsedMillis(long startedNanos) {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedNanos);
+    }
+
+    private static String truncate(String message) {
+        if (message == null || message.length() <= MAX_ERROR_LENGTH) {
+            return message;
+        }
+        return message.substring(0, MAX_ERROR_LENGTH);
+    }
+
+    /** A finished export file and how to name it in the response. */
+    public record DownloadData(String fileName, String contentType, Resource resource) {
+    }
+}
@@ -0,0 +1,18 @@
+package cn.edu.jnu.labflowreport.export.vo;
+
+import java.time.LocalDateTime;
+
+public record ExportJobVO(
+        Long jobId,
+        String type,
+        String status,
+        String fileName,
+        Long sizeBytes,
+        Long durationMs,
+        String errorMessage,
+        LocalDateTime createdAt,
+        LocalDateTime startedAt,
+        LocalDateTime finishedAt,
+        LocalDateTime expiresAt
+) {
+}
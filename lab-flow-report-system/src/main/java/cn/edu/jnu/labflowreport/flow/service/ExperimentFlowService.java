@@ -37,6 +37,8 @@ import cn.edu.jnu.labflowreport.persistence.mapper.TaskDeviceConfigMapper;
 import cn.edu.jnu.labflowreport.persistence.mapper.TaskDeviceRequestMapper;
 import cn.edu.jnu.labflowreport.persistence.mapper.TaskProgressAttachmentMapper;
 import cn.edu.jnu.labflowreport.persistence.mapper.TaskProgressLogMapper;
+import cn.edu.jnu.labflowreport.statistics.service.StatisticsRollupService;
+import cn.edu.jnu.labflowreport.storage.ChunkedUploadService;
 import cn.edu.jnu.labflowreport.storage.FileStorageService;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
@@ -49,6 +51,7 @@ import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
 import java.util.stream.Collectors;
+import org.springframework.core.io.Resource;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -75,7 +78,9 @@ public class ExperimentFlowService {
     private final TaskDeviceConfigMapper taskDeviceConfigMapper;
     private final TaskDeviceRequestMapper taskDeviceRequestMapper;
     private final FileStorageService fileStorageService;
+    private final ChunkedUploadService chunkedUploadService;
     private final ExcelExportService excelExportService;
+    private final StatisticsRollupService statisticsRollupService;
 
     public ExperimentFlowService(
             ExpTaskMapper expTaskMapper,
@@ -89,7 +94,9 @@ public class ExperimentFlowService {
             TaskDeviceConfigMapper taskDeviceConfigMapper,
             TaskDeviceRequestMapper taskDeviceRequestMapper,
             FileStorageService fileStorageService,
-            ExcelExportService excelExportService
+            ChunkedUploadService chunkedUploadService,
+            ExcelExportService excelExportService,
+            StatisticsRollupService statisticsRollupService
     ) {
         this.expTaskMapper = expTaskMapper;
         this.expTaskTargetClassMapper = expTaskTargetClassMapper;
@@ -102,7 +109,9 @@ public class ExperimentFlowService {
         this.taskDeviceConfigMapper = taskDeviceConfigMapper;
         this.taskDeviceRequestMapper = taskDeviceRequestMapper;
         this.fileStorageService = fileStorageService;
+        this.chunkedUploadService = chunkedUploadService;
         this.excelExportService = excelExportService;
+        this.statisticsRollupService = statisticsRollupService;
     }
 
     public List<TaskProgressVO> listMyProgress(Long taskId, AuthenticatedUser student) {
@@ -111,12 +120,19 @@ public class ExperimentFlowService {
     }
 
     @Transactional
-    public TaskProgressVO addProgress(Long taskId, AuthenticatedUser student, String content, MultipartFile[] files) {
+    public TaskProgressVO addProgress(
+            Long taskId,
+            AuthenticatedUser student,
+            String content,
+            MultipartFile[] files,
+            List<String> uploadIds
+    ) {
         ensureStudentCanWriteTask(taskId, student);
 
         String normalizedContent = Objects.toString(content, "").trim();
         List<MultipartFile> incomingFiles = normalizeFiles(files);
-        if (normalizedContent.isBlank() && incomingFiles.isEmpty()) {
+        List<ChunkedUploadService.CompletedUpload> uploaded = chunkedUploadService.consume(uploadIds, student);
+        if (normalizedContent.isBlank() && incomingFiles.isEmpty() && uploaded.isEmpty()) {
             throw new BusinessException(ApiCode.BAD_REQUEST, HttpStatus.BAD_REQUEST, "步骤内容和附件不能同时为空");
         }
 
@@ -143,6 +159,17 @@ public class ExperimentFlowService {
             att.setCreatedAt(LocalDateTime.now());
             taskProgressAttachmentMapper.insert(att);
         }
+        for (ChunkedUploadService.CompletedUpload upload : uploaded) {
+            TaskProgressAttachmentEntity att = new TaskProgressAttachmentEntity();
+            att.setProgressLogId(entity.getId());
+            att.setFileName(upload.fileName());
+            att.setContentType(upload.contentType());
+            att.setFileSize(upload.fileSize());
+            att.setRelativePath(upload.relativePath());
+            att.setFileSha256(upload.sha256());
+            att.setCreatedAt(LocalDateTime.now());
+            taskProgressAttachmentMapper.insert(att);
+        }
 
         return toProgressVos(taskId, student.userId()).stream()
                 .filter(v -> Objects.equals(v.id(), entity.getId()))
@@ -180,6 +207,7 @@ public class ExperimentFlowService {
         entity.setCompletionSource(COMPLETION_SOURCE_STUDENT_REQUEST);
         entity.setRequestedAt(LocalDateTime.now());
         taskCompletionMapper.insert(entity);
+        statisticsRollupService.markToday();
         return toCompletionVo(taskId, student.userId());
     }
 
@@ -287,6 +315,7 @@ public class ExperimentFlowService {
                 .set(TaskCompletionEntity::getCompletionSource, normalizeCompletionSource(completion.getCompletionSource(), false))
                 .set(TaskCompletionEntity::getConfirmedAt, LocalDateTime.now())
                 .set(TaskCompletionEntity::getConfirmedBy, teacher.userId()));
+        statisticsRollupService.markToday();
         return toCompletionVo(taskId, studentId);
     }
 
@@ -306,6 +335,7 @@ public class ExperimentFlowService {
             entity.setConfirmedAt(now);
             entity.setConfirmedBy(teacher.userId());
             taskCompletionMapper.insert(entity);
+            statisticsRollupService.markToday();
             return toCompletionVo(taskId, studentId);
         }
         if (COMPLETION_CONFIRMED.equals(completion.getStatus())) {
@@ -317,6 +347,7 @@ public class ExperimentFlowService {
                 .set(TaskCompletionEntity::getCompletionSource, normalizeCompletionSource(completion.getCompletionSource(), true))
                 .set(TaskCompletionEntity::getConfirmedAt, now)
                 .set(TaskCompletionEntity::getConfirmedBy, teacher.userId()));
+        statisticsRollupService.markToday();
         return toCompletionVo(taskId, studentId);
     }
 
@@ -376,6 +407,7 @@ public class ExperimentFlowService {
         entity.setNote(request.note());
         entity.setCreatedAt(LocalDateTime.now());
         taskDeviceRequestMapper.insert(entity);
+        statisticsRollupService.markToday();
         return requireDeviceRequestVo(entity.getId(), student.userId(), false);
     }
 
@@ -407,6 +439,7 @@ public class ExperimentFlowService {
                 .set(TaskDeviceRequestEntity::getStatus, "APPROVED")
                 .set(TaskDeviceRequestEntity::getApprovedBy, teacher.userId())
                 .set(TaskDeviceRequestEntity::getApprovedAt, LocalDateTime.now()));
+        statisticsRollupService.markDay(entity.getCreatedAt() == null ? null : entity.getCreatedAt().toLocalDate());
         return requireDeviceRequestVo(requestId, teacher.userId(), true);
     }
 
@@ -422,6 +455,7 @@ public class ExperimentFlowService {
                 .set(TaskDeviceRequestEntity::getStatus, "REJECTED")
                 .set(TaskDeviceRequestEntity::getRejectedBy, teacher.userId())
                 .set(TaskDeviceRequestEntity::getRejectedAt, LocalDateTime.now()));
+        statisticsRollupService.markDay(entity.getCreatedAt() == null ? null : entity.getCreatedAt().toLocalDate());
         return requireDeviceRequestVo(requestId, teacher.userId(), true);
     }
 
@@ -438,6 +472,7 @@ public class ExperimentFlowService {
                 .set(TaskDeviceRequestEntity::getStatus, "BORROWED")
                 .set(TaskDeviceRequestEntity::getCheckoutBy, teacher.userId())
                 .set(TaskDeviceRequestEntity::getCheckoutAt, LocalDateTime.now()));
+        statisticsRollupService.markDay(entity.getCreatedAt() == null ? null : entity.getCreatedAt().toLocalDate());
         return requireDeviceRequestVo(requestId, teacher.userId(), true);
     }
 
@@ -453,6 +488,7 @@ public class ExperimentFlowService {
                 .set(TaskDeviceRequestEntity::getStatus, "RETURNED")
                 .set(TaskDeviceRequestEntity::getReturnBy, teacher.userId())
                 .set(TaskDeviceRequestEntity::getReturnAt, LocalDateTime.now()));
+        statisticsRollupService.markDay(entity.getCreatedAt() == null ? null : entity.getCreatedAt().toLocalDate());
         return requireDeviceRequestVo(requestId, teacher.userId(), true);
     }
 
@@ -597,7 +633,8 @@ public class ExperimentFlowService {
             throw new BusinessException(ApiCode.BAD_REQUEST, HttpStatus.NOT_FOUND, "步骤记录不存在");
         }
         ensureCanAccessProgress(log, user);
-        return new DownloadData(entity.getFileName(), entity.getContentType(), fileStorageService.readBytes(entity.getRelativePath()));
+        return new DownloadData(entity.getFileName(), entity.getContentType(), entity.getFileSha256(),
+                fileStorageService.loadAsResource(entity.getRelativePath()));
     }
 
     private void ensureCanAccessProgress(TaskProgressLogEntity log, AuthenticatedUser user) {
@@ -915,6 +952,6 @@ public class ExperimentFlowService {
         return "\"" + text + "\"";
     }
 
-    public record DownloadData(String filename, String contentType, byte[] bytes) {
+    public record DownloadData(String filename, String contentType, String sha256, Resource resource) {
     }
 }
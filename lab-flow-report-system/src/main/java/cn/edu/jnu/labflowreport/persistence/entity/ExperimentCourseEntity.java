@@ -16,6 +16,7 @@ public class ExperimentCourseEntity {
     private String description;
     private Long teacherId;
     private Long semesterId;
+    private Long originCourseId;
     private String status;
     private LocalDateTime enrollDeadlineAt;
     private LocalDateTime createdAt;
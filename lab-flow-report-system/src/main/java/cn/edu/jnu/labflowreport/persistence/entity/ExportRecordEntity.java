@@ -16,5 +16,15 @@ public class ExportRecordEntity {
     private String exportType;
     private String conditionJson;
     private LocalDateTime createdAt;
+    private String status;
+    private String requestKey;
+    private String fileName;
+    private String filePath;
+    private String contentType;
+    private Long sizeBytes;
+    private Long durationMs;
+    private String errorMessage;
+    private LocalDateTime startedAt;
+    private LocalDateTime finishedAt;
+    private LocalDateTime expiresAt;
 }
-
@@ -19,7 +19,10 @@ public class PlagArtifactFpEntity {
     private Long attachmentId;
     private String artifactType;
     private String algo;
+    private Long fp64;
+    /** Only set on rows written before fp64 existed; the compaction job converts them. */
     private String fp64Hex;
+    private String fpSet;
     private Long byteLen;
     private String contentType;
     private String fileName;
@@ -0,0 +1,28 @@
+package cn.edu.jnu.labflowreport.persistence.entity;
+
+import com.baomidou.mybatisplus.annotation.IdType;
+import com.baomidou.mybatisplus.annotation.TableId;
+import com.baomidou.mybatisplus.annotation.TableName;
+import java.time.LocalDateTime;
+import lombok.Data;
+
+@Data
+@TableName("plag_corpus_fp")
+public class PlagCorpusFpEntity {
+
+    @TableId(type = IdType.AUTO)
+    private Long id;
+    private String algoKey;
+    private Long fp64;
+    private Integer band0;
+    private Integer band1;
+    private Integer band2;
+    private Integer band3;
+    private Long taskId;
+    private Long submissionId;
+    private Long studentId;
+    private Long attachmentId;
+    private String artifactType;
+    private String fileName;
+    private LocalDateTime createdAt;
+}
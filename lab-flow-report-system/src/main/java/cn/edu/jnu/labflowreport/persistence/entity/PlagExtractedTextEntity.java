@@ -0,0 +1,21 @@
+package cn.edu.jnu.labflowreport.persistence.entity;
+
+import com.baomidou.mybatisplus.annotation.IdType;
+import com.baomidou.mybatisplus.annotation.TableId;
+import com.baomidou.mybatisplus.annotation.TableName;
+import java.time.LocalDateTime;
+import lombok.Data;
+
+@Data
+@TableName("plag_extracted_text")
+public class PlagExtractedTextEntity {
+
+    @TableId(type = IdType.AUTO)
+    private Long id;
+    private String sha256;
+    private String extractorVersion;
+    private String textContent;
+    private Integer charLen;
+    private Boolean truncated;
+    private LocalDateTime createdAt;
+}
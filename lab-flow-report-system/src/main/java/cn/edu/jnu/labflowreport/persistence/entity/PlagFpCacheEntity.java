@@ -0,0 +1,21 @@
+package cn.edu.jnu.labflowreport.persistence.entity;
+
+import com.baomidou.mybatisplus.annotation.IdType;
+import com.baomidou.mybatisplus.annotation.TableId;
+import com.baomidou.mybatisplus.annotation.TableName;
+import java.time.LocalDateTime;
+import lombok.Data;
+
+@Data
+@TableName("plag_fp_cache")
+public class PlagFpCacheEntity {
+
+    @TableId(type = IdType.AUTO)
+    private Long id;
+    private String sha256;
+    private String algo;
+    private String algoVersion;
+    private String fp64Hex;
+    private String fpSet;
+    private LocalDateTime createdAt;
+}
@@ -21,6 +21,7 @@ public class PlagSubmissionBestMatchEntity {
     private java.math.BigDecimal maxScore;
     private String evidenceJson;
     private String skippedAttachmentsJson;
+    private String neighbours;
     private LocalDateTime createdAt;
 }
 
@@ -15,11 +15,23 @@ public class PlagTaskRunEntity {
     private Long id;
     private Long taskId;
     private String status;
+    private String stage;
+    private String runMode;
+    private String scope;
+    private Long baseRunId;
+    private Boolean pinned;
     private String algoVersion;
     private BigDecimal textThreshold;
     private BigDecimal imageThreshold;
+    private Integer progressDone;
+    private Integer progressTotal;
+    private String workerId;
+    private LocalDateTime heartbeatAt;
+    private String errorMessage;
+    private Long createdBy;
     private LocalDateTime startedAt;
     private LocalDateTime finishedAt;
+    private LocalDateTime compactedAt;
+    private LocalDateTime indexedAt;
     private String summaryJson;
 }
-
@@ -0,0 +1,19 @@
+package cn.edu.jnu.labflowreport.persistence.entity;
+
+import com.baomidou.mybatisplus.annotation.IdType;
+import com.baomidou.mybatisplus.annotation.TableId;
+import com.baomidou.mybatisplus.annotation.TableName;
+import java.time.LocalDateTime;
+import lombok.Data;
+
+@Data
+@TableName("storage_blob")
+public class StorageBlobEntity {
+
+    @TableId(type = IdType.INPUT)
+    private String sha256;
+    private Long fileSize;
+    private Integer refCount;
+    private LocalDateTime createdAt;
+    private LocalDateTime releasedAt;
+}
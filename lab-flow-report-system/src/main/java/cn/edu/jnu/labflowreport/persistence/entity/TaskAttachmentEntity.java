@@ -17,6 +17,7 @@ public class TaskAttachmentEntity {
     private String filePath;
     private Long fileSize;
     private String contentType;
+    private String fileSha256;
     private Long uploadedBy;
     private LocalDateTime uploadedAt;
     private LocalDateTime createdAt;
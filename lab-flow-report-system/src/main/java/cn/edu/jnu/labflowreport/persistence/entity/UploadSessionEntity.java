@@ -0,0 +1,29 @@
+package cn.edu.jnu.labflowreport.persistence.entity;
+
+import com.baomidou.mybatisplus.annotation.IdType;
+import com.baomidou.mybatisplus.annotation.TableId;
+import com.baomidou.mybatisplus.annotation.TableName;
+import java.time.LocalDateTime;
+import lombok.Data;
+
+@Data
+@TableName("upload_session")
+public class UploadSessionEntity {
+
+    @TableId(type = IdType.INPUT)
+    private String id;
+    private Long ownerId;
+    private String fileName;
+    private String contentType;
+    private Long fileSize;
+    private String expectedSha256;
+    private Integer chunkSize;
+    private Long receivedBytes;
+    /** UPLOADING, COMPLETED, CONSUMED, FAILED or EXPIRED. */
+    private String status;
+    private String sha256;
+    private String relativePath;
+    private LocalDateTime createdAt;
+    private LocalDateTime updatedAt;
+    private LocalDateTime expiresAt;
+}
@@ -2,8 +2,48 @@ package cn.edu.jnu.labflowreport.persistence.mapper;
 
 import cn.edu.jnu.labflowreport.persistence.entity.AuditLogEntity;
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import java.time.LocalDateTime;
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Options;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.ResultType;
+import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.mapping.ResultSetType;
+import org.apache.ibatis.session.ResultHandler;
 
 @Mapper
-public interface AuditLogMapper extends BaseMapper<AuditLogEntity> {}
+public interface AuditLogMapper extends BaseMapper<AuditLogEntity> {
 
+    /** Rows the export reads from the server per round trip. */
+    int EXPORT_FETCH_SIZE = 1000;
+
+    /**
+     * The filtered log, newest first, handed to {@code handler} row by row. Forward-only with a fetch size, so
+     * with {@code useCursorFetch} the MySQL driver reads it through a server-side cursor instead of buffering the
+     * whole result in memory.
+     */
+    @Select("""
+            <script>
+            SELECT id, actor_id, actor_username, action, target_type, target_id, detail_json, created_at
+            FROM audit_log
+            <where>
+              <if test="action != null"> AND action = #{action}</if>
+              <if test="actorUsername != null"> AND actor_username LIKE CONCAT('%', #{actorUsername}, '%')</if>
+              <if test="targetType != null"> AND target_type = #{targetType}</if>
+              <if test="from != null"> AND created_at &gt;= #{from}</if>
+              <if test="to != null"> AND created_at &lt;= #{to}</if>
+            </where>
+            ORDER BY id DESC
+            </script>
+            """)
+    @Options(resultSetType = ResultSetType.FORWARD_ONLY, fetchSize = EXPORT_FETCH_SIZE)
+    @ResultType(AuditLogEntity.class)
+    void streamForExport(
+            @Param("action") String action,
+            @Param("actorUsername") String actorUsername,
+            @Param("targetType") String targetType,
+            @Param("from") LocalDateTime from,
+            @Param("to") LocalDateTime to,
+            ResultHandler<AuditLogEntity> handler
+    );
+}
@@ -137,6 +137,24 @@ public interface ExpTaskMapper extends BaseMapper<ExpTaskEntity> {
     @Select("SELECT publisher_id FROM exp_task WHERE id = #{taskId}")
     Long findPublisherId(Long taskId);
 
+    @Select("""
+            SELECT id FROM exp_task WHERE publisher_id = #{publisherId}
+            """)
+    List<Long> findIdsByPublisherId(Long publisherId);
+
+    /**
+     * Tasks of every offering of a course, in any semester: the offerings that share the course's origin.
+     */
+    @Select("""
+            SELECT t.id
+            FROM exp_task t
+            JOIN experiment_course ec ON ec.id = t.experiment_course_id
+            JOIN experiment_course cur ON cur.id = #{courseId}
+            WHERE ec.id = COALESCE(cur.origin_course_id, cur.id)
+               OR ec.origin_course_id = COALESCE(cur.origin_course_id, cur.id)
+            """)
+    List<Long> findIdsInCourseOfferings(Long courseId);
+
     @Select("""
             SELECT COUNT(*)
             FROM exp_task t
@@ -170,4 +188,7 @@ public interface ExpTaskMapper extends BaseMapper<ExpTaskEntity> {
               )
             """)
     Integer countStudentAccessibleTask(Long taskId, Long studentId);
+
+    @Select("SELECT * FROM exp_task WHERE id = #{taskId} LIMIT 1 FOR UPDATE")
+    ExpTaskEntity findByIdForUpdate(Long taskId);
 }
@@ -2,9 +2,62 @@ package cn.edu.jnu.labflowreport.persistence.mapper;
 
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 import cn.edu.jnu.labflowreport.persistence.entity.ExportRecordEntity;
+import java.time.LocalDateTime;
+import java.util.List;
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.annotations.Update;
 
 @Mapper
 public interface ExportRecordMapper extends BaseMapper<ExportRecordEntity> {
-}
 
+    @Select("""
+            SELECT id, operator_id, export_type, condition_json, created_at, status, request_key, file_name, file_path,
+                   content_type, size_bytes, duration_ms, error_message, started_at, finished_at, expires_at
+            FROM export_record
+            WHERE request_key = #{requestKey} AND status IN ('QUEUED', 'RUNNING')
+            ORDER BY id DESC
+            LIMIT 1
+            """)
+    ExportRecordEntity findActiveByRequestKey(String requestKey);
+
+    @Update("UPDATE export_record SET status = 'RUNNING', started_at = #{now} WHERE id = #{id} AND status = 'QUEUED'")
+    int markRunning(Long id, LocalDateTime now);
+
+    @Update("""
+            UPDATE export_record
+            SET status = 'DONE', file_path = #{filePath}, size_bytes = #{sizeBytes}, duration_ms = #{durationMs},
+                finished_at = #{now}, expires_at = #{expiresAt}
+            WHERE id = #{id} AND status = 'RUNNING'
+            """)
+    int markDone(Long id, String filePath, long sizeBytes, long durationMs, LocalDateTime now, LocalDateTime expiresAt);
+
+    @Update("""
+            UPDATE export_record
+            SET status = 'FAILED', error_message = #{errorMessage}, duration_ms = #{durationMs}, finished_at = #{now}
+            WHERE id = #{id} AND status IN ('QUEUED', 'RUNNING')
+            """)
+    int markFailed(Long id, String errorMessage, Long durationMs, LocalDateTime now);
+
+    @Update("UPDATE export_record SET status = 'EXPIRED', file_path = NULL WHERE id = #{id} AND status = 'DONE'")
+    int markExpired(Long id);
+
+    /** Jobs still queued or running since before the cutoff: their worker is gone (restart) or stuck. */
+    @Select("""
+            SELECT id FROM export_record
+            WHERE status IN ('QUEUED', 'RUNNING') AND request_key IS NOT NULL AND created_at < #{before}
+            ORDER BY id ASC
+            LIMIT #{limit}
+            """)
+    List<Long> findStaleActiveIds(LocalDateTime before, int limit);
+
+    @Select("""
+            SELECT id, operator_id, export_type, condition_json, created_at, status, request_key, file_name, file_path,
+                   content_type, size_bytes, duration_ms, error_message, started_at, finished_at, expires_at
+            FROM export_record
+            WHERE status = 'DONE' AND expires_at < #{now}
+            ORDER BY expires_at ASC
+            LIMIT #{limit}
+            """)
+    List<ExportRecordEntity> findExpired(LocalDateTime now, int limit);
+}
@@ -3,20 +3,46 @@ package cn.edu.jnu.labflowreport.persistence.mapper;
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 import cn.edu.jnu.labflowreport.persistence.entity.PlagArtifactFpEntity;
 import java.util.List;
+import org.apache.ibatis.annotations.Insert;
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
 import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.annotations.Update;
 
 @Mapper
 public interface PlagArtifactFpMapper extends BaseMapper<PlagArtifactFpEntity> {
 
     @Select("""
             SELECT id, run_id, task_id, submission_id, student_id, attachment_id,
-                   artifact_type, algo, fp64_hex, byte_len, content_type, file_name, created_at
+                   artifact_type, algo, fp64, fp64_hex, fp_set, byte_len, content_type, file_name, created_at
             FROM plag_artifact_fp
             WHERE run_id = #{runId}
             """)
     List<PlagArtifactFpEntity> findByRunId(Long runId);
 
+    @Insert("""
+            INSERT INTO plag_artifact_fp (run_id, task_id, submission_id, student_id, attachment_id,
+                                          artifact_type, algo, fp64, fp64_hex, fp_set, byte_len, content_type, file_name, created_at)
+            SELECT #{toRunId}, task_id, submission_id, student_id, attachment_id,
+                   artifact_type, algo, fp64, fp64_hex, fp_set, byte_len, content_type, file_name, created_at
+            FROM plag_artifact_fp
+            WHERE run_id = #{fromRunId}
+            """)
+    int copyRun(Long fromRunId, Long toRunId);
+
+    @Insert({
+            "<script>",
+            "INSERT INTO plag_artifact_fp (run_id, task_id, submission_id, student_id, attachment_id,",
+            "artifact_type, algo, fp64, fp_set, byte_len, content_type, file_name, created_at)",
+            "VALUES",
+            "<foreach collection='rows' item='r' separator=','>",
+            "(#{r.runId}, #{r.taskId}, #{r.submissionId}, #{r.studentId}, #{r.attachmentId},",
+            "#{r.artifactType}, #{r.algo}, #{r.fp64}, #{r.fpSet}, #{r.byteLen}, #{r.contentType}, #{r.fileName}, #{r.createdAt})",
+            "</foreach>",
+            "</script>"
+    })
+    int insertBatch(@Param("rows") List<PlagArtifactFpEntity> rows);
+
     @Select("""
             SELECT artifact_type AS artifactType, COUNT(1) AS cnt
             FROM plag_artifact_fp
@@ -25,6 +51,16 @@ public interface PlagArtifactFpMapper extends BaseMapper<PlagArtifactFpEntity> {
             """)
     List<ArtifactTypeCountRow> countByRunIdAndSubmissionId(Long runId, Long submissionId);
 
+    @Select("SELECT id FROM plag_artifact_fp WHERE run_id = #{runId} ORDER BY id ASC LIMIT #{limit}")
+    List<Long> findIdsByRunId(Long runId, int limit);
+
+    /** Rows still holding a hex fingerprint, for the conversion to fp64. */
+    @Select("SELECT id, fp64_hex FROM plag_artifact_fp WHERE fp64 IS NULL ORDER BY id ASC LIMIT #{limit}")
+    List<PlagArtifactFpEntity> findLegacyHex(int limit);
+
+    @Update("UPDATE plag_artifact_fp SET fp64 = #{fp64}, fp64_hex = NULL WHERE id = #{id}")
+    int convertHex(Long id, long fp64);
+
     class ArtifactTypeCountRow {
         private String artifactType;
         private Long cnt;
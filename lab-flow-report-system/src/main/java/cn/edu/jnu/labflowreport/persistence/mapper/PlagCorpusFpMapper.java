@@ -0,0 +1,65 @@
+package cn.edu.jnu.labflowreport.persistence.mapper;
+
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import cn.edu.jnu.labflowreport.persistence.entity.PlagCorpusFpEntity;
+import java.util.List;
+import org.apache.ibatis.annotations.Insert;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+
+@Mapper
+public interface PlagCorpusFpMapper extends BaseMapper<PlagCorpusFpEntity> {
+
+    @Insert({
+            "<script>",
+            "INSERT INTO plag_corpus_fp (algo_key, fp64, band0, band1, band2, band3, task_id,",
+            "submission_id, student_id, attachment_id, artifact_type, file_name, created_at)",
+            "VALUES",
+            "<foreach collection='rows' item='r' separator=','>",
+            "(#{r.algoKey}, #{r.fp64}, #{r.band0}, #{r.band1}, #{r.band2}, #{r.band3}, #{r.taskId},",
+            "#{r.submissionId}, #{r.studentId}, #{r.attachmentId}, #{r.artifactType}, #{r.fileName}, #{r.createdAt})",
+            "</foreach>",
+            "</script>"
+    })
+    int insertBatch(@Param("rows") List<PlagCorpusFpEntity> rows);
+
+    /**
+     * Rows sharing at least one band value with the query, one indexed lookup per band; a row can appear
+     * once per matching band.
+     */
+    @Select({
+            "<script>",
+            "<foreach collection='q.bands' item='values' index='b' separator=' UNION ALL '>",
+            "SELECT id, algo_key, fp64, task_id, submission_id, student_id, attachment_id,",
+            "artifact_type, file_name",
+            "FROM plag_corpus_fp",
+            "WHERE algo_key = #{q.algoKey}",
+            "AND band${b} IN <foreach collection='values' item='v' open='(' separator=',' close=')'>#{v}</foreach>",
+            "AND task_id &lt;&gt; #{q.excludeTaskId}",
+            "<if test='q.taskIds != null'>",
+            "AND task_id IN <foreach collection='q.taskIds' item='t' open='(' separator=',' close=')'>#{t}</foreach>",
+            "</if>",
+            "</foreach>",
+            "</script>"
+    })
+    List<PlagCorpusFpEntity> search(@Param("q") CorpusQuery q);
+
+    @Select({
+            "<script>",
+            "SELECT id, algo_key, fp64, task_id, submission_id, student_id, attachment_id,",
+            "artifact_type, file_name",
+            "FROM plag_corpus_fp",
+            "WHERE algo_key = #{algoKey} AND artifact_type = 'SUBMISSION_TEXT' AND submission_id IN",
+            "<foreach collection='ids' item='id' open='(' separator=',' close=')'>#{id}</foreach>",
+            "</script>"
+    })
+    List<PlagCorpusFpEntity> findSubmissionTextFps(@Param("algoKey") String algoKey, @Param("ids") List<Long> ids);
+
+    /**
+     * Band values to probe per band column, and the tasks to search ({@code null} for all history). The run's
+     * own task is always excluded; it is matched in memory.
+     */
+    record CorpusQuery(String algoKey, List<List<Integer>> bands, Long excludeTaskId, List<Long> taskIds) {
+    }
+}
@@ -0,0 +1,17 @@
+package cn.edu.jnu.labflowreport.persistence.mapper;
+
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import cn.edu.jnu.labflowreport.persistence.entity.PlagExtractedTextEntity;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Select;
+
+@Mapper
+public interface PlagExtractedTextMapper extends BaseMapper<PlagExtractedTextEntity> {
+
+    @Select("""
+            SELECT id, sha256, extractor_version, text_content, char_len, truncated, created_at
+            FROM plag_extracted_text
+            WHERE sha256 = #{sha256} AND extractor_version = #{extractorVersion}
+            """)
+    PlagExtractedTextEntity findOne(String sha256, String extractorVersion);
+}
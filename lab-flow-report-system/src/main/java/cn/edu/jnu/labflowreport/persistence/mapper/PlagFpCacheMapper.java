@@ -0,0 +1,32 @@
+package cn.edu.jnu.labflowreport.persistence.mapper;
+
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import cn.edu.jnu.labflowreport.persistence.entity.PlagFpCacheEntity;
+import java.util.Collection;
+import java.util.List;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+
+@Mapper
+public interface PlagFpCacheMapper extends BaseMapper<PlagFpCacheEntity> {
+
+    @Select("""
+            SELECT id, sha256, algo, algo_version, fp64_hex, fp_set, created_at
+            FROM plag_fp_cache
+            WHERE sha256 = #{sha256} AND algo = #{algo} AND algo_version = #{algoVersion}
+            """)
+    PlagFpCacheEntity findOne(String sha256, String algo, String algoVersion);
+
+    @Select({
+            "<script>",
+            "SELECT id, sha256, algo, algo_version, fp64_hex, created_at",
+            "FROM plag_fp_cache",
+            "WHERE fp_set IS NULL AND sha256 IN",
+            "<foreach collection='sha256s' item='sha' open='(' separator=',' close=')'>",
+            "#{sha}",
+            "</foreach>",
+            "</script>"
+    })
+    List<PlagFpCacheEntity> findBySha256In(@Param("sha256s") Collection<String> sha256s);
+}
@@ -2,7 +2,10 @@ package cn.edu.jnu.labflowreport.persistence.mapper;
 
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 import cn.edu.jnu.labflowreport.persistence.entity.PlagSubmissionBestMatchEntity;
+import java.util.List;
+import org.apache.ibatis.annotations.Insert;
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
 import org.apache.ibatis.annotations.Select;
 
 @Mapper
@@ -17,5 +20,55 @@ public interface PlagSubmissionBestMatchMapper extends BaseMapper<PlagSubmission
             LIMIT 1
             """)
     PlagSubmissionBestMatchEntity findByRunIdAndSubmissionId(Long runId, Long submissionId);
-}
 
+    @Select("""
+            SELECT id, run_id, task_id, submission_id, student_id,
+                   best_other_submission_id, best_other_student_id,
+                   max_score, evidence_json, skipped_attachments_json, neighbours, created_at
+            FROM plag_submission_best_match
+            WHERE run_id = #{runId}
+            ORDER BY id ASC
+            """)
+    List<PlagSubmissionBestMatchEntity> findByRunId(Long runId);
+
+    @Insert("""
+            INSERT INTO plag_submission_best_match (run_id, task_id, submission_id, student_id,
+                                                    best_other_submission_id, best_other_student_id,
+                                                    max_score, evidence_json, skipped_attachments_json, neighbours, created_at)
+            SELECT #{toRunId}, task_id, submission_id, student_id,
+                   best_other_submission_id, best_other_student_id,
+                   max_score, evidence_json, skipped_attachments_json, neighbours, created_at
+            FROM plag_submission_best_match
+            WHERE run_id = #{fromRunId}
+            """)
+    int copyRun(Long fromRunId, Long toRunId);
+
+    @Insert({
+            "<script>",
+            "INSERT INTO plag_submission_best_match (run_id, task_id, submission_id, student_id,",
+            "best_other_submission_id, best_other_student_id, max_score, evidence_json, skipped_attachments_json, created_at)",
+            "VALUES",
+            "<foreach collection='rows' item='r' separator=','>",
+            "(#{r.runId}, #{r.taskId}, #{r.submissionId}, #{r.studentId},",
+            "#{r.bestOtherSubmissionId}, #{r.bestOtherStudentId}, #{r.maxScore}, #{r.evidenceJson}, #{r.skippedAttachmentsJson}, #{r.createdAt})",
+            "</foreach>",
+            "</script>"
+    })
+    int insertBatch(@Param("rows") List<PlagSubmissionBestMatchEntity> rows);
+
+    /** Scores and packed neighbour lists of a run, without the evidence JSON. */
+    @Select("""
+            SELECT id, run_id, task_id, submission_id, student_id,
+                   best_other_submission_id, best_other_student_id, max_score, neighbours
+            FROM plag_submission_best_match
+            WHERE run_id = #{runId}
+            ORDER BY id ASC
+            """)
+    List<PlagSubmissionBestMatchEntity> findScoresByRunId(Long runId);
+
+    @Select("SELECT id FROM plag_submission_best_match WHERE run_id = #{runId} ORDER BY id ASC LIMIT #{limit}")
+    List<Long> findIdsByRunId(Long runId, int limit);
+
+    @Select("SELECT submission_id FROM plag_submission_best_match WHERE run_id = #{runId}")
+    List<Long> findSubmissionIdsByRunId(Long runId);
+}
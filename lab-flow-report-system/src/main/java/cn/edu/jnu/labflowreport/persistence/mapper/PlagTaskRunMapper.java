@@ -2,20 +2,152 @@ package cn.edu.jnu.labflowreport.persistence.mapper;
 
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 import cn.edu.jnu.labflowreport.persistence.entity.PlagTaskRunEntity;
+import java.time.LocalDateTime;
+import java.util.List;
 import org.apache.ibatis.annotations.Mapper;
 import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.annotations.Update;
 
 @Mapper
 public interface PlagTaskRunMapper extends BaseMapper<PlagTaskRunEntity> {
 
     @Select("""
-            SELECT id, task_id, status, algo_version, text_threshold, image_threshold,
-                   started_at, finished_at, summary_json
+            SELECT id, task_id, status, stage, run_mode, scope, base_run_id, pinned, algo_version, text_threshold, image_threshold,
+                   progress_done, progress_total, worker_id, heartbeat_at, error_message, created_by,
+                   started_at, finished_at, compacted_at, summary_json
             FROM plag_task_run
             WHERE task_id = #{taskId}
             ORDER BY started_at DESC, id DESC
             LIMIT 1
             """)
     PlagTaskRunEntity findLatestByTaskId(Long taskId);
-}
 
+    @Select("""
+            SELECT id, task_id, status, stage, run_mode, scope, base_run_id, pinned, algo_version, text_threshold, image_threshold,
+                   progress_done, progress_total, worker_id, heartbeat_at, error_message, created_by,
+                   started_at, finished_at, compacted_at, summary_json
+            FROM plag_task_run
+            WHERE task_id = #{taskId} AND status = 'DONE'
+            ORDER BY started_at DESC, id DESC
+            LIMIT 1
+            """)
+    PlagTaskRunEntity findLatestDoneByTaskId(Long taskId);
+
+    @Select("""
+            SELECT id, task_id, status, stage, run_mode, scope, base_run_id, pinned, algo_version, text_threshold, image_threshold,
+                   progress_done, progress_total, worker_id, heartbeat_at, error_message, created_by,
+                   started_at, finished_at, compacted_at, summary_json
+            FROM plag_task_run
+            WHERE task_id = #{taskId} AND status IN ('QUEUED', 'RUNNING')
+            ORDER BY id DESC
+            LIMIT 1
+            """)
+    PlagTaskRunEntity findActiveByTaskId(Long taskId);
+
+    @Select("""
+            SELECT id
+            FROM plag_task_run
+            WHERE status IN ('QUEUED', 'RUNNING')
+              AND (heartbeat_at IS NULL OR heartbeat_at < #{staleBefore})
+            ORDER BY id ASC
+            """)
+    List<Long> findStaleActiveRunIds(LocalDateTime staleBefore);
+
+    @Update("""
+            UPDATE plag_task_run
+            SET status = 'RUNNING', worker_id = #{workerId}, heartbeat_at = #{now}
+            WHERE id = #{runId}
+              AND status IN ('QUEUED', 'RUNNING')
+              AND (worker_id IS NULL OR worker_id = #{workerId} OR heartbeat_at IS NULL OR heartbeat_at < #{staleBefore})
+            """)
+    int claim(Long runId, String workerId, LocalDateTime now, LocalDateTime staleBefore);
+
+    @Update("""
+            UPDATE plag_task_run
+            SET stage = #{stage}, progress_done = #{progressDone}, progress_total = #{progressTotal}, heartbeat_at = #{now}
+            WHERE id = #{runId} AND status = 'RUNNING'
+            """)
+    int updateProgress(Long runId, String stage, int progressDone, int progressTotal, LocalDateTime now);
+
+    /** Only the worker that still owns the RUNNING run can finish it; a taken-over or cancelled run is left alone. */
+    @Update("""
+            UPDATE plag_task_run
+            SET status = #{status}, summary_json = #{summaryJson}, error_message = #{errorMessage}, finished_at = #{finishedAt}
+            WHERE id = #{runId} AND status = 'RUNNING' AND worker_id = #{workerId}
+            """)
+    int finish(Long runId, String workerId, String status, String summaryJson, String errorMessage, LocalDateTime finishedAt);
+
+    /** {@link #finish} for a run that completed; every chunk it fingerprinted is already in the corpus. */
+    @Update("""
+            UPDATE plag_task_run
+            SET status = 'DONE', summary_json = #{summaryJson}, finished_at = #{finishedAt}, indexed_at = #{finishedAt}
+            WHERE id = #{runId} AND status = 'RUNNING' AND worker_id = #{workerId}
+            """)
+    int finishDone(Long runId, String workerId, String summaryJson, LocalDateTime finishedAt);
+
+    /** Finished runs whose fingerprints are not in the corpus yet, e.g. runs from before it existed. */
+    @Select("""
+            SELECT id
+            FROM plag_task_run
+            WHERE indexed_at IS NULL AND status = 'DONE'
+            ORDER BY id ASC
+            LIMIT #{limit}
+            """)
+    List<Long> findUnindexedDoneRunIds(int limit);
+
+    @Update("UPDATE plag_task_run SET indexed_at = #{now} WHERE id = #{runId}")
+    int markIndexed(Long runId, LocalDateTime now);
+
+    /** Fails a run that never reached a worker. */
+    @Update("""
+            UPDATE plag_task_run
+            SET status = 'FAILED', error_message = #{errorMessage}, finished_at = #{finishedAt}
+            WHERE id = #{runId} AND status = 'QUEUED'
+            """)
+    int failQueued(Long runId, String errorMessage, LocalDateTime finishedAt);
+
+    /**
+     * Finished runs outside the retention window: not pinned, not yet compacted, with at least {@code keep}
+     * newer runs of the same task, not the task's latest DONE run and not the base of an active incremental run.
+     */
+    @Select("""
+            SELECT r.id
+            FROM plag_task_run r
+            WHERE r.compacted_at IS NULL
+              AND r.pinned = FALSE
+              AND r.status IN ('DONE', 'FAILED')
+              AND (SELECT COUNT(1) FROM plag_task_run n
+                   WHERE n.task_id = r.task_id
+                     AND (n.started_at > r.started_at OR (n.started_at = r.started_at AND n.id > r.id))) >= #{keep}
+              AND (r.status <> 'DONE' OR EXISTS (
+                   SELECT 1 FROM plag_task_run d
+                   WHERE d.task_id = r.task_id AND d.status = 'DONE'
+                     AND (d.started_at > r.started_at OR (d.started_at = r.started_at AND d.id > r.id))))
+              AND NOT EXISTS (
+                   SELECT 1 FROM plag_task_run a
+                   WHERE a.base_run_id = r.id AND a.status IN ('QUEUED', 'RUNNING'))
+            ORDER BY r.id ASC
+            LIMIT #{limit}
+            """)
+    List<Long> findCompactableRunIds(int keep, int limit);
+
+    /** Compacted runs keep only their run row, so they can no longer be pinned. */
+    @Update("UPDATE plag_task_run SET pinned = #{pinned} WHERE id = #{runId} AND compacted_at IS NULL")
+    int updatePinned(Long runId, boolean pinned);
+
+    /** Marks the run compacted before its rows are deleted; a pin set in the meantime wins. */
+    @Update("UPDATE plag_task_run SET compacted_at = #{now} WHERE id = #{runId} AND pinned = FALSE AND compacted_at IS NULL")
+    int claimCompaction(Long runId, LocalDateTime now);
+
+    /** Compacted runs that still have rows, e.g. because a node stopped half-way. */
+    @Select("""
+            SELECT r.id
+            FROM plag_task_run r
+            WHERE r.compacted_at IS NOT NULL
+              AND (EXISTS (SELECT 1 FROM plag_artifact_fp f WHERE f.run_id = r.id)
+                   OR EXISTS (SELECT 1 FROM plag_submission_best_match b WHERE b.run_id = r.id))
+            ORDER BY r.id ASC
+            LIMIT #{limit}
+            """)
+    List<Long> findCompactingRunIds(int limit);
+}
@@ -0,0 +1,32 @@
+package cn.edu.jnu.labflowreport.persistence.mapper;
+
+import cn.edu.jnu.labflowreport.persistence.entity.StorageBlobEntity;
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import java.time.LocalDateTime;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.annotations.Update;
+
+@Mapper
+public interface StorageBlobMapper extends BaseMapper<StorageBlobEntity> {
+
+    @Update("UPDATE storage_blob SET ref_count = ref_count + 1, released_at = NULL WHERE sha256 = #{sha256}")
+    int retain(String sha256);
+
+    /** released_at is assigned first: MySQL evaluates SET left to right against the updated row. */
+    @Update("""
+            UPDATE storage_blob
+            SET released_at = CASE WHEN ref_count = 1 THEN #{now} ELSE released_at END,
+                ref_count = ref_count - 1
+            WHERE sha256 = #{sha256} AND ref_count > 0
+            """)
+    int release(String sha256, LocalDateTime now);
+
+    @Select("""
+            SELECT sha256, file_size, ref_count, created_at, released_at
+            FROM storage_blob
+            WHERE sha256 = #{sha256}
+            FOR UPDATE
+            """)
+    StorageBlobEntity lockBySha256(String sha256);
+}
@@ -10,7 +10,7 @@ import org.apache.ibatis.annotations.Select;
 public interface TaskAttachmentMapper extends BaseMapper<TaskAttachmentEntity> {
 
     @Select("""
-            SELECT id, task_id, file_name, file_path, file_size, content_type, uploaded_by, uploaded_at, created_at
+            SELECT id, task_id, file_name, file_path, file_size, content_type, file_sha256, uploaded_by, uploaded_at, created_at
             FROM task_attachment
             WHERE task_id = #{taskId}
             ORDER BY uploaded_at ASC, id ASC
@@ -10,7 +10,7 @@ import org.apache.ibatis.annotations.Select;
 public interface TaskPrestudyAttachmentMapper extends BaseMapper<TaskPrestudyAttachmentEntity> {
 
     @Select("""
-            SELECT id, prestudy_id, file_name, file_path, file_size, content_type, uploaded_by, uploaded_at, created_at
+            SELECT id, prestudy_id, file_name, file_path, file_size, content_type, file_sha256, uploaded_by, uploaded_at, created_at
             FROM task_prestudy_attachment
             WHERE prestudy_id = #{prestudyId}
             ORDER BY uploaded_at ASC, id ASC
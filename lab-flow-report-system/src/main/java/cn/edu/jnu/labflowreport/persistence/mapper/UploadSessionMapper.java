@@ -0,0 +1,44 @@
+package cn.edu.jnu.labflowreport.persistence.mapper;
+
+import cn.edu.jnu.labflowreport.persistence.entity.UploadSessionEntity;
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import java.time.LocalDateTime;
+import java.util.List;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.annotations.Update;
+
+@Mapper
+public interface UploadSessionMapper extends BaseMapper<UploadSessionEntity> {
+
+    /**
+     * Commits a chunk written at the current offset and pushes the expiry back; 0 rows when another request
+     * got there first.
+     */
+    @Update("""
+            UPDATE upload_session
+            SET received_bytes = #{end}, updated_at = #{now}, expires_at = #{expiresAt}
+            WHERE id = #{id} AND received_bytes = #{offset} AND status = 'UPLOADING'
+            """)
+    int commitChunk(String id, long offset, long end, LocalDateTime now, LocalDateTime expiresAt);
+
+    @Update("""
+            UPDATE upload_session
+            SET status = 'COMPLETED', sha256 = #{sha256}, relative_path = #{relativePath}, updated_at = #{now}
+            WHERE id = #{id} AND status = 'UPLOADING' AND received_bytes = file_size
+            """)
+    int markCompleted(String id, String sha256, String relativePath, LocalDateTime now);
+
+    @Update("UPDATE upload_session SET status = #{to}, updated_at = #{now} WHERE id = #{id} AND status = #{from}")
+    int transition(String id, String from, String to, LocalDateTime now);
+
+    @Select("""
+            SELECT id, owner_id, file_name, content_type, file_size, expected_sha256, chunk_size, received_bytes,
+                   status, sha256, relative_path, created_at, updated_at, expires_at
+            FROM upload_session
+            WHERE status IN ('UPLOADING', 'COMPLETED') AND expires_at < #{now}
+            ORDER BY expires_at ASC
+            LIMIT #{limit}
+            """)
+    List<UploadSessionEntity> findExpired(LocalDateTime now, int limit);
+}
@@ -0,0 +1,381 @@
+package cn.edu.jnu.labflowreport.plagiarism.service;
+
+import cn.edu.jnu.labflowreport.plagiarism.vo.PlagiarismSummaryVO;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Predicate;
+
+/**
+ * Finds, for every submission, the other student's submission with the highest artifact similarity.
+ *
+ * <p>Small tasks compare every pair. Larger tasks only evaluate submissions that share an LSH band with
+ * one of their artifacts ({@link Fp64BandIndex}); pairs at or above the text/image threshold are never
+ * missed, scores below the threshold are a lower bound.
+ *
+ * <p>Source-code attachments additionally carry a winnowing fingerprint set ({@link CodeWinnow}) scored by
+ * Jaccard similarity. Fingerprints found in more than {@code codeBoilerplateRatio} of the submissions
+ * (given skeleton code, common imports) are ignored, and an inverted index over the remaining
+ * fingerprints supplies code candidates when the LSH index is used.
+ */
+final class ArtifactMatcher {
+
+    static final String ALGO_SIMHASH64 = "SIMHASH64";
+    static final String ALGO_DHASH64 = "DHASH64";
+    static final String ALGO_CODE_WINNOW = "CODE_WINNOW";
+    static final String ART_SUBMISSION_TEXT = "SUBMISSION_TEXT";
+    static final String ART_SUBMISSION_TEXT_MATCH = "SUBMISSION_TEXT_MATCH";
+    static final String ART_ATTACHMENT_TEXT = "ATTACHMENT_TEXT";
+    static final String ART_ATTACHMENT_IMAGE = "ATTACHMENT_IMAGE";
+    static final String ART_ATTACHMENT_CODE = "ATTACHMENT_CODE";
+    static final String ART_CORPUS_MATCH = "CORPUS_MATCH";
+
+    private final List<Long> submissionIds = new ArrayList<>();
+    private final List<Long> studentIds = new ArrayList<>();
+    private final List<List<Artifact>> artifacts = new ArrayList<>();
+    private final Map<Long, Integer> indexBySubmission = new HashMap<>();
+
+    private final double textThreshold;
+    private final double imageThreshold;
+    private final boolean useIndex;
+    private final double codeBoilerplateRatio;
+
+    private Fp64BandIndex textIndex;
+    private Fp64BandIndex imageIndex;
+    private int[] textOwner;
+    private int[] imageOwner;
+
+    private Map<Artifact, int[]> codeSets;
+    private Map<Integer, IntBuffer> codePostings;
+
+    ArtifactMatcher(double textThreshold, double imageThreshold, boolean useIndex) {
+        this(textThreshold, imageThreshold, useIndex, 1.0);
+    }
+
+    ArtifactMatcher(double textThreshold, double imageThreshold, boolean useIndex, double codeBoilerplateRatio) {
+        this.textThreshold = textThreshold;
+        this.imageThreshold = imageThreshold;
+        this.useIndex = useIndex;
+        this.codeBoilerplateRatio = codeBoilerplateRatio;
+    }
+
+    void add(Long submissionId, Long studentId, List<Artifact> list) {
+        indexBySubmission.put(submissionId, submissionIds.size());
+        submissionIds.add(submissionId);
+        studentIds.add(studentId);
+        artifacts.add(list == null ? List.of() : list);
+        textIndex = null;
+        imageIndex = null;
+        codeSets = null;
+    }
+
+    Best findBest(Long submissionId) {
+        return findBest(submissionId, other -> true);
+    }
+
+    /**
+     * Best match for {@code submissionId} among the other submissions accepted by {@code include}; used by
+     * incremental runs to compare existing submissions against the new ones only.
+     */
+    Best findBest(Long submissionId, Predicate<Long> include) {
+        return findBest(submissionId, include, null);
+    }
+
+    /**
+     * Same as {@link #findBest(Long, Predicate)}; every evaluated pair is also offered to {@code neighbours}
+     * when it is not null.
+     */
+    Best findBest(Long submissionId, Predicate<Long> include, NeighbourList.Builder neighbours) {
+        Integer self = indexBySubmission.get(submissionId);
+        Best best = new Best();
+        if (self == null) {
+            return best;
+        }
+        ensureCodeSets();
+        int[] others = useIndex ? candidates(self) : null;
+        int count = others == null ? submissionIds.size() : others.length;
+        for (int i = 0; i < count; i++) {
+            int other = others == null ? i : others[i];
+            if (include.test(submissionIds.get(other))) {
+                double score = evaluate(self, other, best);
+                if (neighbours != null) {
+                    neighbours.offer(submissionIds.get(other), score);
+                }
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Candidate submissions for {@code self}, in insertion order so ties resolve like the full scan.
+     */
+    int[] candidates(int self) {
+        ensureIndex();
+        ensureCodeSets();
+        boolean[] seen = new boolean[submissionIds.size()];
+        IntBuffer out = new IntBuffer();
+        for (Artifact a : artifacts.get(self)) {
+            Fp64BandIndex idx;
+            int[] owner;
+            if (ALGO_SIMHASH64.equals(a.algo())) {
+                idx = textIndex;
+                owner = textOwner;
+            } else if (ALGO_DHASH64.equals(a.algo())) {
+                idx = imageIndex;
+                owner = imageOwner;
+            } else if (ALGO_CODE_WINNOW.equals(a.algo())) {
+                for (int h : codeSets.get(a)) {
+                    IntBuffer posting = codePostings.get(h);
+                    for (int i = 0; i < posting.size; i++) {
+                        int o = posting.values[i];
+                        if (o == self || seen[o]) continue;
+                        seen[o] = true;
+                        out.add(o);
+                    }
+                }
+                continue;
+            } else {
+                continue;
+            }
+            idx.forEachCandidate(a.fp(), item -> {
+                int o = owner[item];
+                if (o == self || seen[o]) return;
+                seen[o] = true;
+                out.add(o);
+            });
+        }
+        int[] result = out.toArray();
+        Arrays.sort(result);
+        return result;
+    }
+
+    private void ensureIndex() {
+        if (textIndex != null) {
+            return;
+        }
+        int textCount = 0;
+        int imageCount = 0;
+        for (List<Artifact> list : artifacts) {
+            for (Artifact a : list) {
+                if (ALGO_SIMHASH64.equals(a.algo())) textCount++;
+                else if (ALGO_DHASH64.equals(a.algo())) imageCount++;
+            }
+        }
+        textIndex = new Fp64BandIndex(textThreshold, textCount);
+        imageIndex = new Fp64BandIndex(imageThreshold, imageCount);
+        textOwner = new int[textCount];
+        imageOwner = new int[imageCount];
+        for (int s = 0; s < artifacts.size(); s++) {
+            for (Artifact a : artifacts.get(s)) {
+                if (ALGO_SIMHASH64.equals(a.algo())) {
+                    textOwner[textIndex.size()] = s;
+                    textIndex.add(a.fp(), textIndex.size());
+                } else if (ALGO_DHASH64.equals(a.algo())) {
+                    imageOwner[imageIndex.size()] = s;
+                    imageIndex.add(a.fp(), imageIndex.size());
+                }
+            }
+        }
+    }
+
+    /**
+     * Drops boilerplate fingerprints from every code set and indexes the rest by fingerprint. A fingerprint
+     * is boilerplate when more than {@code codeBoilerplateRatio} of the submissions (and at least three)
+     * contain it; a pair of copies alone never is.
+     */
+    private void ensureCodeSets() {
+        if (codeSets != null) {
+            return;
+        }
+        Map<Integer, int[]> frequency = new HashMap<>(); // fingerprint -> {submissions containing it, last one}
+        for (int s = 0; s < artifacts.size(); s++) {
+            for (Artifact a : artifacts.get(s)) {
+                if (!ALGO_CODE_WINNOW.equals(a.algo()) || a.codeSet() == null) continue;
+                for (int h : a.codeSet()) {
+                    int[] f = frequency.computeIfAbsent(h, x -> new int[] {0, -1});
+                    if (f[1] != s) {
+                        f[0]++;
+                        f[1] = s;
+                    }
+                }
+            }
+        }
+        int limit = Math.max(2, (int) Math.floor(codeBoilerplateRatio * submissionIds.size()));
+        Map<Artifact, int[]> sets = new IdentityHashMap<>();
+        Map<Integer, IntBuffer> postings = new HashMap<>();
+        for (int s = 0; s < artifacts.size(); s++) {
+            for (Artifact a : artifacts.get(s)) {
+                if (!ALGO_CODE_WINNOW.equals(a.algo())) continue;
+                int[] all = a.codeSet() == null ? new int[0] : a.codeSet();
+                IntBuffer kept = new IntBuffer();
+                for (int h : all) {
+                    if (frequency.get(h)[0] <= limit) {
+                        kept.add(h);
+                        IntBuffer posting = postings.computeIfAbsent(h, x -> new IntBuffer());
+                        if (posting.size == 0 || posting.values[posting.size - 1] != s) {
+                            posting.add(s);
+                        }
+                    }
+                }
+                sets.put(a, kept.toArray());
+            }
+        }
+        codePostings = postings;
+        codeSets = sets;
+    }
+
+    /**
+     * Scores the pair, updates {@code best} when it wins and returns the score (0 for the same submission or
+     * student).
+     */
+    private double evaluate(int self, int other, Best best) {
+        if (other == self) return 0.0;
+        Long selfStudent = studentIds.get(self);
+        Long otherStudent = studentIds.get(other);
+        if (selfStudent != null && otherStudent != null && Objects.equals(selfStudent, otherStudent)) {
+            return 0.0; // do not match against the same student's other versions
+        }
+        double max = 0.0;
+        List<PlagiarismSummaryVO.EvidenceItem> ev = new ArrayList<>();
+
+        ArtifactPair bestText = bestPair(artifacts.get(self), artifacts.get(other), ALGO_SIMHASH64);
+        if (bestText != null) {
+            max = Math.max(max, bestText.score);
+            if (bestText.a != null && bestText.a.type().equals(ART_ATTACHMENT_TEXT) && bestText.a.attachmentId() != null) {
+                ev.add(new PlagiarismSummaryVO.EvidenceItem(
+                        ART_ATTACHMENT_TEXT,
+                        BigDecimal.valueOf(bestText.score).setScale(4, RoundingMode.HALF_UP),
+                        Map.of("attachmentId", bestText.a.attachmentId(), "fileName", Objects.toString(bestText.a.fileName(), ""))
+                ));
+            }
+        }
+
+        ArtifactPair bestImg = bestPair(artifacts.get(self), artifacts.get(other), ALGO_DHASH64);
+        if (bestImg != null) {
+            max = Math.max(max, bestImg.score);
+            if (bestImg.a != null && bestImg.b != null && bestImg.a.attachmentId() != null && bestImg.b.attachmentId() != null) {
+                ev.add(new PlagiarismSummaryVO.EvidenceItem(
+                        ART_ATTACHMENT_IMAGE,
+                        BigDecimal.valueOf(bestImg.score).setScale(4, RoundingMode.HALF_UP),
+                        Map.of(
+                                "attachmentIdA", bestImg.a.attachmentId(),
+                                "attachmentIdB", bestImg.b.attachmentId(),
+                                "fileNameA", Objects.toString(bestImg.a.fileName(), ""),
+                                "fileNameB", Objects.toString(bestImg.b.fileName(), ""),
+                                "similarity", BigDecimal.valueOf(bestImg.score).setScale(4, RoundingMode.HALF_UP)
+                        )
+                ));
+            }
+        }
+
+        ArtifactPair bestCode = bestPair(artifacts.get(self), artifacts.get(other), ALGO_CODE_WINNOW);
+        if (bestCode != null) {
+            max = Math.max(max, bestCode.score);
+            ev.add(new PlagiarismSummaryVO.EvidenceItem(
+                    ART_ATTACHMENT_CODE,
+                    BigDecimal.valueOf(bestCode.score).setScale(4, RoundingMode.HALF_UP),
+                    Map.of(
+                            "attachmentIdA", bestCode.a.attachmentId(),
+                            "attachmentIdB", bestCode.b.attachmentId(),
+                            "fileNameA", Objects.toString(bestCode.a.fileName(), ""),
+                            "fileNameB", Objects.toString(bestCode.b.fileName(), ""),
+                            "sharedFingerprints", CodeWinnow.shared(codeSets.get(bestCode.a), codeSets.get(bestCode.b))
+                    )
+            ));
+        }
+
+        if (max > best.maxScore) {
+            best.maxScore = max;
+            best.bestOtherSubmissionId = submissionIds.get(other);
+            best.bestOtherStudentId = otherStudent;
+            best.evidence = ev;
+        }
+        return max;
+    }
+
+    private ArtifactPair bestPair(List<Artifact> a, List<Artifact> b, String algo) {
+        if (a == null || b == null) return null;
+        double best = 0.0;
+        Artifact bestA = null;
+        Artifact bestB = null;
+        for (Artifact x : a) {
+            if (!algo.equals(x.algo())) continue;
+            for (Artifact y : b) {
+                if (!algo.equals(y.algo())) continue;
+                double score;
+                if (algo.equals(ALGO_DHASH64)) {
+                    score = DHash64.similarity(x.fp(), y.fp());
+                } else if (algo.equals(ALGO_CODE_WINNOW)) {
+                    score = CodeWinnow.similarity(codeSets.get(x), codeSets.get(y));
+                } else {
+                    score = SimHash64.similarity(x.fp(), y.fp());
+                }
+                if (score > best) {
+                    best = score;
+                    bestA = x;
+                    bestB = y;
+                }
+            }
+        }
+        if (bestA == null || bestB == null) return null;
+        return new ArtifactPair(bestA, bestB, best);
+    }
+
+    /**
+     * {@code codeSet} holds the sorted winnowing fingerprints of {@link #ALGO_CODE_WINNOW} artifacts and is
+     * {@code null} for the 64-bit algorithms.
+     */
+    record Artifact(String type, String algo, long fp, Long attachmentId, String fileName, int[] codeSet) {
+        Artifact(String type, String algo, long fp, Long attachmentId, String fileName) {
+            this(type, algo, fp, attachmentId, fileName, null);
+        }
+
+        static Artifact submissionText(long fp) {
+            return new Artifact(ART_SUBMISSION_TEXT, ALGO_SIMHASH64, fp, null, "submission.md");
+        }
+
+        static Artifact attachmentText(Long id, String name, long fp) {
+            return new Artifact(ART_ATTACHMENT_TEXT, ALGO_SIMHASH64, fp, id, name);
+        }
+
+        static Artifact attachmentImage(Long id, String name, long fp) {
+            return new Artifact(ART_ATTACHMENT_IMAGE, ALGO_DHASH64, fp, id, name);
+        }
+
+        static Artifact attachmentCode(Long id, String name, int[] codeSet) {
+            return new Artifact(ART_ATTACHMENT_CODE, ALGO_CODE_WINNOW, CodeWinnow.summary(codeSet), id, name, codeSet);
+        }
+    }
+
+    static final class Best {
+        Long bestOtherSubmissionId;
+        Long bestOtherStudentId;
+        double maxScore;
+        List<PlagiarismSummaryVO.EvidenceItem> evidence = List.of();
+    }
+
+    private record ArtifactPair(Artifact a, Artifact b, double score) {
+    }
+
+    private static final class IntBuffer {
+        private int[] values = new int[16];
+        private int size;
+
+        void add(int v) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size << 1);
+            }
+            values[size++] = v;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package cn.edu.jnu.labflowreport.plagiarism.service;
+
+import java.util.Locale;
+import java.util.Objects;
+import java.util.Set;
+
+final class AttachmentClassifier {
+
+    private static final Set<String> TEXT_EXTS = Set.of(
+            "txt", "md", "json", "xml", "yml", "yaml", "sql",
+            "java", "py", "js", "ts", "c", "cpp", "h", "hpp", "cs", "go", "rs", "kt",
+            "sh", "bat", "ps1"
+    );
+
+    // OOXML packages whose text is extracted by OoxmlTextExtractor.
+    private static final Set<String> DOCUMENT_EXTS = Set.of("docx", "xlsx", "pptx");
+
+    private static final Set<String> SKIP_EXTS = Set.of(
+            "xls", "doc", "pdf", "ppt", "zip", "rar", "7z"
+    );
+
+    enum AttachmentType {TEXT, IMAGE, DOCUMENT, SKIP}
+
+    private AttachmentClassifier() {
+    }
+
+    static AttachmentType classify(String fileName, String contentType) {
+        String name = Objects.toString(fileName, "");
+        String ct = Objects.toString(contentType, "");
+        String ext = extLower(name);
+
+        if (DOCUMENT_EXTS.contains(ext)) {
+            return AttachmentType.DOCUMENT;
+        }
+        if (!ext.isBlank() && SKIP_EXTS.contains(ext)) {
+            return AttachmentType.SKIP;
+        }
+        if (ct.toLowerCase(Locale.ROOT).contains("spreadsheet") || ext.equals("xls")) {
+            return AttachmentType.SKIP;
+        }
+        if (ct.toLowerCase(Locale.ROOT).startsWith("image/")) {
+            return AttachmentType.IMAGE;
+        }
+        if (ct.toLowerCase(Locale.ROOT).startsWith("text/")) {
+            return AttachmentType.TEXT;
+        }
+        if (!ext.isBlank() && TEXT_EXTS.contains(ext)) {
+            return AttachmentType.TEXT;
+        }
+        if (!ext.isBlank() && (ext.equals("png") || ext.equals("jpg") || ext.equals("jpeg"))) {
+            return AttachmentType.IMAGE;
+        }
+        return AttachmentType.SKIP;
+    }
+
+    static String extLower(String name) {
+        int idx = name.lastIndexOf('.');
+        if (idx < 0 || idx == name.length() - 1) return "";
+        return name.substring(idx + 1).toLowerCase(Locale.ROOT);
+    }
+}
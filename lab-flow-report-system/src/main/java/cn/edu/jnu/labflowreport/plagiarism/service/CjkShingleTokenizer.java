@@ -0,0 +1,93 @@
+package cn.edu.jnu.labflowreport.plagiarism.service;
+
+import java.util.Locale;
+import java.util.function.LongConsumer;
+
+/**
+ * Character n-gram shingles for CJK runs and word tokens for everything else.
+ *
+ * <p>Chinese has no spaces, so a changed character only disturbs the {@code n} shingles covering it instead
+ * of the whole sentence-long token. Runs of Han, Hiragana, Katakana or Hangul emit every overlapping
+ * n-gram (runs of length 2..n-1 are emitted whole); Latin words, numbers and identifiers are tokenized
+ * like {@link WordTokenizer}. Code points of the current window are kept in a small ring buffer.
+ */
+final class CjkShingleTokenizer implements TextTokenizer {
+
+    private final int n;
+
+    CjkShingleTokenizer(int n) {
+        this.n = Math.max(2, Math.min(8, n));
+    }
+
+    @Override
+    public String id() {
+        return "cjk" + n;
+    }
+
+    @Override
+    public void forEachToken(String text, LongConsumer sink) {
+        if (text == null || text.isEmpty()) {
+            return;
+        }
+        String s = text.toLowerCase(Locale.ROOT);
+        int[] ring = new int[n];
+        int cjkLen = 0;
+        long wordHash = TextTokenizer.hashStart();
+        int wordLen = 0;
+        for (int i = 0; i < s.length(); ) {
+            int cp = s.codePointAt(i);
+            i += Character.charCount(cp);
+            if (isCjk(cp)) {
+                if (wordLen >= 2) {
+                    sink.accept(TextTokenizer.hashFinish(wordHash));
+                }
+                wordHash = TextTokenizer.hashStart();
+                wordLen = 0;
+                ring[cjkLen % n] = cp;
+                cjkLen++;
+                if (cjkLen >= n) {
+                    sink.accept(shingle(ring, cjkLen - n, n));
+                }
+                continue;
+            }
+            flushShortRun(ring, cjkLen, sink);
+            cjkLen = 0;
+            if (TextTokenizer.isWordChar(cp)) {
+                wordHash = TextTokenizer.hashCodePoint(wordHash, cp);
+                wordLen++;
+                continue;
+            }
+            if (wordLen >= 2) {
+                sink.accept(TextTokenizer.hashFinish(wordHash));
+            }
+            wordHash = TextTokenizer.hashStart();
+            wordLen = 0;
+        }
+        flushShortRun(ring, cjkLen, sink);
+        if (wordLen >= 2) {
+            sink.accept(TextTokenizer.hashFinish(wordHash));
+        }
+    }
+
+    private void flushShortRun(int[] ring, int cjkLen, LongConsumer sink) {
+        if (cjkLen >= 2 && cjkLen < n) {
+            sink.accept(shingle(ring, 0, cjkLen));
+        }
+    }
+
+    private long shingle(int[] ring, int start, int len) {
+        long hash = TextTokenizer.hashStart();
+        for (int k = 0; k < len; k++) {
+            hash = TextTokenizer.hashCodePoint(hash, ring[(start + k) % n]);
+        }
+        return TextTokenizer.hashFinish(hash);
+    }
+
+    static boolean isCjk(int cp) {
+        Character.UnicodeScript script = Character.UnicodeScript.of(cp);
+        return script == Character.UnicodeScript.HAN
+                || script == Character.UnicodeScript.HIRAGANA
+                || script == Character.UnicodeScript.KATAKANA
+                || script == Character.UnicodeScript.HANGUL;
+    }
+}
@@ -0,0 +1,200 @@
+package cn.edu.jnu.labflowreport.plagiarism.service;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Turns source code into a normalized token stream for {@link CodeWinnow}.
+ *
+ * <p>Comments and whitespace are dropped; identifiers become {@link #IDENT}, numbers {@link #NUMBER} and
+ * string/char literals {@link #STRING}, so renaming variables, changing constants or re-indenting does not
+ * change the stream. Keywords of the file's language and operator characters are kept as themselves.
+ */
+final class CodeLexer {
+
+    static final int IDENT = -1;
+    static final int NUMBER = -2;
+    static final int STRING = -3;
+
+    // Keyword tokens are numbered above the code point range so they never collide with operators.
+    private static final int KEYWORD_BASE = 0x110000;
+
+    enum Language {
+        JAVA(Comments.C, "abstract assert boolean break byte case catch char class const continue default do double"
+                + " else enum extends final finally float for goto if implements import instanceof int interface"
+                + " long native new null package private protected public return short static super switch"
+                + " synchronized this throw throws try void volatile while true false var record yield"),
+        KOTLIN(Comments.C, "as break class continue do else false for fun if in interface is null object package"
+                + " return super this throw true try typealias val var when while by catch constructor finally get"
+                + " import init set where data override open private public protected internal companion"),
+        C(Comments.C, "auto break case char const continue default do double else enum extern float for goto if"
+                + " int long register return short signed sizeof static struct switch typedef union unsigned void"
+                + " volatile while include define ifdef ifndef endif NULL"),
+        CPP(Comments.C, "auto break case char const continue default do double else enum extern float for goto if"
+                + " int long register return short signed sizeof static struct switch typedef union unsigned void"
+                + " volatile while include define ifdef ifndef endif class namespace using template typename public"
+                + " private protected virtual new delete this true false nullptr bool try catch throw operator std"
+                + " cout cin endl"),
+        CSHARP(Comments.C, "abstract as base bool break byte case catch char class const continue decimal default"
+                + " delegate do double else enum event false finally float for foreach if in int interface internal"
+                + " is long namespace new null object out override private protected public readonly ref return"
+                + " static string struct switch this throw true try using var virtual void while"),
+        JAVASCRIPT(Comments.C, "break case catch class const continue debugger default delete do else export extends"
+                + " false finally for function if import in instanceof let new null return super switch this throw"
+                + " true try typeof undefined var void while yield async await of interface type enum implements"),
+        GO(Comments.C, "break case chan const continue default defer else fallthrough for func go goto if import"
+                + " interface map package range return select struct switch type var nil true false make len append"),
+        RUST(Comments.C, "as break const continue crate else enum extern false fn for if impl in let loop match mod"
+                + " move mut pub ref return self Self static struct super trait true type unsafe use where while"
+                + " Some None Ok Err"),
+        PYTHON(Comments.HASH, "False None True and as assert async await break class continue def del elif else"
+                + " except finally for from global if import in is lambda nonlocal not or pass raise return try"
+                + " while with yield self print range len"),
+        SHELL(Comments.HASH, "if then else elif fi case esac for while until do done in function select time"
+                + " return exit local export echo");
+
+        private final Comments comments;
+        private final Set<String> keywords;
+
+        Language(Comments comments, String keywords) {
+            this.comments = comments;
+            this.keywords = new HashSet<>(Arrays.asList(keywords.split(" ")));
+        }
+    }
+
+    private enum Comments {C, HASH}
+
+    private static final Map<String, Language> BY_EXT = new HashMap<>();
+    private static final Map<String, Integer> KEYWORD_IDS = new HashMap<>();
+
+    static {
+        BY_EXT.put("java", Language.JAVA);
+        BY_EXT.put("kt", Language.KOTLIN);
+        BY_EXT.put("c", Language.C);
+        BY_EXT.put("h", Language.C);
+        BY_EXT.put("cpp", Language.CPP);
+        BY_EXT.put("hpp", Language.CPP);
+        BY_EXT.put("cs", Language.CSHARP);
+        BY_EXT.put("js", Language.JAVASCRIPT);
+        BY_EXT.put("ts", Language.JAVASCRIPT);
+        BY_EXT.put("go", Language.GO);
+        BY_EXT.put("rs", Language.RUST);
+        BY_EXT.put("py", Language.PYTHON);
+        BY_EXT.put("sh", Language.SHELL);
+        for (Language lang : Language.values()) {
+            for (String kw : lang.keywords) {
+                KEYWORD_IDS.putIfAbsent(kw, KEYWORD_BASE + KEYWORD_IDS.size());
+            }
+        }
+    }
+
+    private CodeLexer() {
+    }
+
+    /**
+     * Language of a source file by extension, or {@code null} for prose and data files.
+     */
+    static Language languageOf(String fileName) {
+        String ext = AttachmentClassifier.extLower(fileName == null ? "" : fileName);
+        return BY_EXT.get(ext);
+    }
+
+    static int[] tokens(String source, Language lang) {
+        String s = source == null ? "" : source;
+        int n = s.length();
+        int[] out = new int[Math.max(16, n / 4)];
+        int size = 0;
+        int i = 0;
+        while (i < n) {
+            char c = s.charAt(i);
+            if (Character.isWhitespace(c)) {
+                i++;
+                continue;
+            }
+            if (lang.comments == Comments.C && c == '/' && i + 1 < n && s.charAt(i + 1) == '/') {
+                i = lineEnd(s, i);
+                continue;
+            }
+            if (lang.comments == Comments.C && c == '/' && i + 1 < n && s.charAt(i + 1) == '*') {
+                int end = s.indexOf("*/", i + 2);
+                i = end < 0 ? n : end + 2;
+                continue;
+            }
+            if (lang.comments == Comments.HASH && c == '#') {
+                i = lineEnd(s, i);
+                continue;
+            }
+
+            int token;
+            if (c == '"' || c == '`' || (c == '\'' && lang != Language.RUST)) {
+                i = skipString(s, i, lang);
+                token = STRING;
+            } else if (c == '\'') {
+                // Rust: a char literal closes within a few characters, otherwise it is a lifetime.
+                int close = s.indexOf('\'', i + 1);
+                if (close > 0 && close - i <= 3 + (s.charAt(i + 1) == '\\' ? 7 : 0)) {
+                    i = close + 1;
+                    token = STRING;
+                } else {
+                    i++;
+                    token = c;
+                }
+            } else if (Character.isDigit(c)) {
+                while (i < n && (Character.isLetterOrDigit(s.charAt(i)) || s.charAt(i) == '_' || s.charAt(i) == '.')) {
+                    i++;
+                }
+                token = NUMBER;
+            } else if (Character.isLetter(c) || c == '_' || c == '$') {
+                int start = i;
+                while (i < n && (Character.isLetterOrDigit(s.charAt(i)) || s.charAt(i) == '_' || s.charAt(i) == '$')) {
+                    i++;
+                }
+                String word = s.substring(start, i);
+                token = lang.keywords.contains(word) ? KEYWORD_IDS.get(word) : IDENT;
+            } else {
+                int cp = s.codePointAt(i);
+                i += Character.charCount(cp);
+                token = cp;
+            }
+            if (size == out.length) {
+                out = Arrays.copyOf(out, size << 1);
+            }
+            out[size++] = token;
+        }
+        return Arrays.copyOf(out, size);
+    }
+
+    private static int lineEnd(String s, int i) {
+        int end = s.indexOf('\n', i);
+        return end < 0 ? s.length() : end + 1;
+    }
+
+    private static int skipString(String s, int i, Language lang) {
+        int n = s.length();
+        char quote = s.charAt(i);
+        if (lang == Language.PYTHON && s.startsWith(String.valueOf(quote).repeat(3), i)) {
+            String close = String.valueOf(quote).repeat(3);
+            int end = s.indexOf(close, i + 3);
+            return end < 0 ? n : end + 3;
+        }
+        int j = i + 1;
+        while (j < n) {
+            char c = s.charAt(j);
+            if (c == '\\' && quote != '`') {
+                j += 2;
+                continue;
+            }
+            if (c == quote) {
+                return j + 1;
+            }
+            if (c == '\n' && quote != '`') {
+                return j;
+            }
+            j++;
+        }
+        return n;
+    }
+}
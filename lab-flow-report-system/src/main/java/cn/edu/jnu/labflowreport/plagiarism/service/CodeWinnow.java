@@ -0,0 +1,132 @@
+package cn.edu.jnu.labflowreport.plagiarism.service;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Base64;
+
+/**
+ * Winnowing fingerprints of a normalized code token stream (Schleimer, Wilkerson and Aiken).
+ *
+ * <p>Every run of {@code k} tokens is hashed; in each window of {@code w} consecutive k-gram hashes the
+ * minimum (rightmost on ties) is selected. Any shared fragment of at least {@code k + w - 1} tokens is
+ * guaranteed to contribute a common fingerprint. The result is the sorted set of distinct selected hashes,
+ * stored base64-encoded in {@code fp_set}.
+ */
+final class CodeWinnow {
+
+    private CodeWinnow() {
+    }
+
+    static int[] fingerprint(int[] tokens, int k, int w) {
+        int kk = Math.max(1, k);
+        int ww = Math.max(1, w);
+        if (tokens.length < kk) {
+            return new int[0];
+        }
+        int grams = tokens.length - kk + 1;
+        int[] hashes = new int[grams];
+        for (int i = 0; i < grams; i++) {
+            long h = 0xcbf29ce484222325L;
+            for (int j = 0; j < kk; j++) {
+                h = (h ^ (tokens[i + j] & 0xffffffffL)) * 0x100000001b3L;
+            }
+            hashes[i] = (int) TextTokenizer.hashFinish(h);
+        }
+
+        int[] selected = new int[grams];
+        int size = 0;
+        int last = -1;
+        int windows = Math.max(1, grams - ww + 1);
+        for (int start = 0; start < windows; start++) {
+            int end = Math.min(grams, start + ww);
+            int min = start;
+            for (int i = start + 1; i < end; i++) {
+                if (hashes[i] <= hashes[min]) {
+                    min = i;
+                }
+            }
+            if (min != last) {
+                selected[size++] = hashes[min];
+                last = min;
+            }
+        }
+        int[] set = Arrays.copyOf(selected, size);
+        Arrays.sort(set);
+        int distinct = 0;
+        for (int i = 0; i < set.length; i++) {
+            if (i == 0 || set[i] != set[i - 1]) {
+                set[distinct++] = set[i];
+            }
+        }
+        return Arrays.copyOf(set, distinct);
+    }
+
+    /**
+     * Jaccard similarity of two sorted fingerprint sets.
+     */
+    static double similarity(int[] a, int[] b) {
+        if (a == null || b == null || a.length == 0 || b.length == 0) {
+            return 0.0;
+        }
+        int shared = shared(a, b);
+        return shared * 1.0 / (a.length + b.length - shared);
+    }
+
+    static int shared(int[] a, int[] b) {
+        int i = 0;
+        int j = 0;
+        int shared = 0;
+        while (i < a.length && j < b.length) {
+            if (a[i] == b[j]) {
+                shared++;
+                i++;
+                j++;
+            } else if (a[i] < b[j]) {
+                i++;
+            } else {
+                j++;
+            }
+        }
+        return shared;
+    }
+
+    /**
+     * A 64-bit SimHash of the set, stored in {@code fp64} next to the full set.
+     */
+    static long summary(int[] set) {
+        int[] v = new int[64];
+        for (int x : set) {
+            long h = TextTokenizer.hashFinish(x & 0xffffffffL);
+            for (int i = 0; i < 64; i++) {
+                v[i] += ((h >>> i) & 1L) == 1L ? 1 : -1;
+            }
+        }
+        long out = 0L;
+        for (int i = 0; i < 64; i++) {
+            if (v[i] > 0) {
+                out |= (1L << i);
+            }
+        }
+        return out;
+    }
+
+    static String encode(int[] set) {
+        ByteBuffer buf = ByteBuffer.allocate(set.length * 4);
+        for (int x : set) {
+            buf.putInt(x);
+        }
+        return Base64.getEncoder().encodeToString(buf.array());
+    }
+
+    static int[] decode(String encoded) {
+        if (encoded == null || encoded.isEmpty()) {
+            return new int[0];
+        }
+        ByteBuffer buf = ByteBuffer.wrap(Base64.getDecoder().decode(encoded));
+        int[] set = new int[buf.remaining() / 4];
+        for (int i = 0; i < set.length; i++) {
+            set[i] = buf.getInt();
+        }
+        return set;
+    }
+}
@@ -3,10 +3,20 @@ package cn.edu.jnu.labflowreport.plagiarism.service;
 import java.awt.image.BufferedImage;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.util.Iterator;
 import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
 
 final class DHash64 {
 
+    // Fingerprint cache version; also part of plag_task_run.algo_version. v2 samples a subsampled raster.
+    static final String VERSION = "dhash-v2";
+
+    // Decode at roughly this many pixels per side; only a 9x8 grid is sampled from the result.
+    private static final int TARGET_SIDE = 128;
+
     private DHash64() {
     }
 
@@ -14,21 +24,54 @@ final class DHash64 {
         if (bytes == null || bytes.length == 0) {
             return 0L;
         }
-        BufferedImage src = ImageIO.read(new ByteArrayInputStream(bytes));
-        if (src == null) {
-            throw new IOException("unsupported image");
+        return fromGrid(sampleGrid(bytes));
+    }
+
+    /**
+     * Reads the image through an {@link ImageReader} with source subsampling, so a 12 MP photo is decoded
+     * into a raster of about 128x128 pixels instead of a full-size {@link BufferedImage}. Grid points map to the
+     * nearest decoded pixel at or before the original sample position; images under 256 pixels per side are
+     * sampled exactly as before.
+     */
+    private static int[] sampleGrid(byte[] bytes) throws IOException {
+        try (ImageInputStream in = ImageIO.createImageInputStream(new ByteArrayInputStream(bytes))) {
+            Iterator<ImageReader> readers = in == null ? null : ImageIO.getImageReaders(in);
+            if (readers == null || !readers.hasNext()) {
+                throw new IOException("unsupported image");
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(in, true, true);
+                int sw = Math.max(1, reader.getWidth(0));
+                int sh = Math.max(1, reader.getHeight(0));
+                int px = Math.max(1, sw / TARGET_SIDE);
+                int py = Math.max(1, sh / TARGET_SIDE);
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setSourceSubsampling(px, py, 0, 0);
+                BufferedImage src = reader.read(0, param);
+                if (src == null) {
+                    throw new IOException("unsupported image");
+                }
+                return grid(src, sw, sh, px, py);
+            } finally {
+                reader.dispose();
+            }
         }
+    }
 
-        int sw = Math.max(1, src.getWidth());
-        int sh = Math.max(1, src.getHeight());
+    private static int[] grid(BufferedImage src, int sw, int sh, int px, int py) {
+        int dw = src.getWidth();
+        int dh = src.getHeight();
         int[] g9x8 = new int[9 * 8];
         for (int y = 0; y < 8; y++) {
             int sy = (int) ((y / 8.0) * sh);
             if (sy >= sh) sy = sh - 1;
+            int dy = Math.min(dh - 1, sy / py);
             for (int x = 0; x < 9; x++) {
                 int sx = (int) ((x / 9.0) * sw);
                 if (sx >= sw) sx = sw - 1;
-                int rgb = src.getRGB(sx, sy);
+                int dx = Math.min(dw - 1, sx / px);
+                int rgb = src.getRGB(dx, dy);
                 int r = (rgb >> 16) & 0xFF;
                 int g = (rgb >> 8) & 0xFF;
                 int b = rgb & 0xFF;
@@ -36,7 +79,10 @@ final class DHash64 {
                 g9x8[y * 9 + x] = gray;
             }
         }
+        return g9x8;
+    }
 
+    private static long fromGrid(int[] g9x8) {
         long hash = 0L;
         int bitIndex = 0;
         for (int y = 0; y < 8; y++) {
@@ -0,0 +1,47 @@
+package cn.edu.jnu.labflowreport.plagiarism.service;
+
+import cn.edu.jnu.labflowreport.persistence.entity.PlagExtractedTextEntity;
+import cn.edu.jnu.labflowreport.persistence.mapper.PlagExtractedTextMapper;
+import java.time.LocalDateTime;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.stereotype.Component;
+
+/**
+ * Text extracted from document attachments, keyed by {@code file_sha256} and extractor version, so a
+ * document is unpacked once no matter how many runs, tokenizers or submissions use it.
+ */
+@Component
+class ExtractedTextCache {
+
+    private final PlagExtractedTextMapper mapper;
+
+    ExtractedTextCache(PlagExtractedTextMapper mapper) {
+        this.mapper = mapper;
+    }
+
+    OoxmlTextExtractor.Result get(String sha256) {
+        if (sha256 == null || sha256.isBlank()) {
+            return null;
+        }
+        PlagExtractedTextEntity e = mapper.findOne(sha256, OoxmlTextExtractor.VERSION);
+        return e == null ? null : new OoxmlTextExtractor.Result(e.getTextContent(), Boolean.TRUE.equals(e.getTruncated()), false);
+    }
+
+    void put(String sha256, OoxmlTextExtractor.Result result) {
+        if (sha256 == null || sha256.isBlank() || result.timedOut()) {
+            return;
+        }
+        PlagExtractedTextEntity e = new PlagExtractedTextEntity();
+        e.setSha256(sha256);
+        e.setExtractorVersion(OoxmlTextExtractor.VERSION);
+        e.setTextContent(result.text());
+        e.setCharLen(result.text().length());
+        e.setTruncated(result.truncated());
+        e.setCreatedAt(LocalDateTime.now());
+        try {
+            mapper.insert(e);
+        } catch (DuplicateKeyException ignore) {
+            // Another run stored this document first; either text is fine.
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package cn.edu.jnu.labflowreport.plagiarism.service;
+
+import cn.edu.jnu.labflowreport.config.PlagiarismProperties;
+import cn.edu.jnu.labflowreport.persistence.entity.PlagFpCacheEntity;
+import cn.edu.jnu.labflowreport.persistence.mapper.PlagFpCacheMapper;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.stereotype.Component;
+
+/**
+ * Content-addressed fingerprint cache shared by all plagiarism runs.
+ *
+ * <p>Entries are keyed by {@code sha256 + algo + algoVersion}, so an attachment or submission text whose
+ * bytes did not change is never read or hashed again. A bounded in-memory LRU sits in front of the
+ * {@code plag_fp_cache} table; the table survives restarts and is shared between nodes. Code fingerprint
+ * sets ({@code fp_set}) are larger and only looked up in the table.
+ */
+@Component
+class FingerprintCache {
+
+    private static final int PRELOAD_CHUNK = 500;
+
+    private final PlagFpCacheMapper mapper;
+    private final Map<String, Long> lru;
+
+    FingerprintCache(PlagiarismProperties props, PlagFpCacheMapper mapper) {
+        this.mapper = mapper;
+        int capacity = Math.max(0, props.fpCacheEntries());
+        this.lru = new LinkedHashMap<>(Math.min(capacity, 1024), 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * Warms the in-memory layer with every stored entry for the given hashes in a few queries, so a run
+     * does not issue one lookup per artifact.
+     */
+    void preload(Collection<String> sha256s) {
+        List<String> keys = new ArrayList<>(new LinkedHashSet<>(sha256s));
+        keys.removeIf(s -> s == null || s.isBlank());
+        for (int from = 0; from < keys.size(); from += PRELOAD_CHUNK) {
+            List<String> chunk = keys.subList(from, Math.min(keys.size(), from + PRELOAD_CHUNK));
+            for (PlagFpCacheEntity e : mapper.findBySha256In(chunk)) {
+                remember(key(e.getSha256(), e.getAlgo(), e.getAlgoVersion()), Long.parseUnsignedLong(e.getFp64Hex(), 16));
+            }
+        }
+    }
+
+    Long get(String sha256, String algo, String algoVersion) {
+        if (sha256 == null || sha256.isBlank()) {
+            return null;
+        }
+        String key = key(sha256, algo, algoVersion);
+        synchronized (lru) {
+            Long hit = lru.get(key);
+            if (hit != null) {
+                return hit;
+            }
+        }
+        PlagFpCacheEntity e = mapper.findOne(sha256, algo, algoVersion);
+        if (e == null) {
+            return null;
+        }
+        long fp = Long.parseUnsignedLong(e.getFp64Hex(), 16);
+        remember(key, fp);
+        return fp;
+    }
+
+    void put(String sha256, String algo, String algoVersion, long fp) {
+        if (sha256 == null || sha256.isBlank()) {
+            return;
+        }
+        PlagFpCacheEntity e = new PlagFpCacheEntity();
+        e.setSha256(sha256);
+        e.setAlgo(algo);
+        e.setAlgoVersion(algoVersion);
+        e.setFp64Hex(String.format(Locale.ROOT, "%016x", fp));
+        e.setCreatedAt(LocalDateTime.now());
+        try {
+            mapper.insert(e);
+        } catch (DuplicateKeyException ignore) {
+            // Another run stored the same content first; fingerprints are deterministic so either row is fine.
+        }
+        remember(key(sha256, algo, algoVersion), fp);
+    }
+
+    int[] getCodeSet(String sha256, String algoVersion) {
+        if (sha256 == null || sha256.isBlank()) {
+            return null;
+        }
+        PlagFpCacheEntity e = mapper.findOne(sha256, ArtifactMatcher.ALGO_CODE_WINNOW, algoVersion);
+        return e == null ? null : CodeWinnow.decode(e.getFpSet());
+    }
+
+    void putCodeSet(String sha256, String algoVersion, int[] set) {
+        if (sha256 == null || sha256.isBlank()) {
+            return;
+        }
+        PlagFpCacheEntity e = new PlagFpCacheEntity();
+        e.setSha256(sha256);
+        e.setAlgo(ArtifactMatcher.ALGO_CODE_WINNOW);
+        e.setAlgoVersion(algoVersion);
+        e.setFp64Hex(String.format(Locale.ROOT, "%016x", CodeWinnow.summary(set)));
+        e.setFpSet(CodeWinnow.encode(set));
+        e.setCreatedAt(LocalDateTime.now());
+        try {
+            mapper.insert(e);
+        } catch (DuplicateKeyException ignore) {
+            // Same as put: deterministic, either row is fine.
+        }
+    }
+
+    private void remember(String key, long fp) {
+        synchronized (lru) {
+            lru.put(key, fp);
+        }
+    }
+
+    private static String key(String sha256, String algo, String algoVersion) {
+        return sha256 + ':' + algo + ':' + algoVersion;
+    }
+}
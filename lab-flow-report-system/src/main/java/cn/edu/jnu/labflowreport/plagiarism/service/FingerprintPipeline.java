@@ -0,0 +1,80 @@
+package cn.edu.jnu.labflowreport.plagiarism.service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Parallel map with a single batching consumer, used by the FINGERPRINT stage.
+ *
+ * <p>Items are handed to a shared worker pool, but never more than {@code maxInFlight} of one call at a
+ * time, so the memory a run holds is bounded by the attachments its workers are reading right now plus
+ * one batch of finished results, however large the task is. The calling thread is the only writer: it
+ * collects results as they complete and passes them on in batches of {@code batchSize}, each batch in
+ * input order. Workers keep going while a batch is being written.
+ */
+final class FingerprintPipeline {
+
+    private FingerprintPipeline() {
+    }
+
+    private record Done<R>(int index, R result) {
+    }
+
+    /**
+     * Returns false when the writer asked to stop. A worker failure cancels the remaining work and is
+     * rethrown here; batches written before it stay written.
+     */
+    static <T, R> boolean run(
+            Executor pool,
+            List<T> items,
+            int maxInFlight,
+            int batchSize,
+            Function<T, R> work,
+            Predicate<List<R>> writer
+    ) {
+        CompletionService<Done<R>> completion = new ExecutorCompletionService<>(pool);
+        Map<Integer, Future<Done<R>>> inFlight = new HashMap<>();
+        List<Done<R>> batch = new ArrayList<>();
+        int next = 0;
+        try {
+            while (next < items.size() || !inFlight.isEmpty()) {
+                while (next < items.size() && inFlight.size() < Math.max(1, maxInFlight)) {
+                    int index = next++;
+                    T item = items.get(index);
+                    inFlight.put(index, completion.submit(() -> new Done<>(index, work.apply(item))));
+                }
+                Done<R> done = completion.take().get();
+                inFlight.remove(done.index());
+                batch.add(done);
+                if (batch.size() >= Math.max(1, batchSize) || (next == items.size() && inFlight.isEmpty())) {
+                    batch.sort(Comparator.comparingInt(Done::index));
+                    if (!writer.test(batch.stream().map(Done::result).toList())) {
+                        return false;
+                    }
+                    batch.clear();
+                }
+            }
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("fingerprinting interrupted", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException re) {
+                throw re;
+            }
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            inFlight.values().forEach(f -> f.cancel(true));
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package cn.edu.jnu.labflowreport.plagiarism.service;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * Banded LSH index over 64-bit fingerprints (SimHash64 / DHash64).
+ *
+ * <p>The 64 bits are split into {@code maxDistance + 1} contiguous bands. By the pigeonhole principle
+ * two fingerprints whose Hamming distance is at most {@code maxDistance} agree exactly on at least one
+ * band, so looking up every band of a query returns a superset of all items at or above the similarity
+ * threshold. Each band is an open-addressing table keyed by the primitive band value, with items chained
+ * through an {@code int[]} so no boxing happens on insert or lookup.
+ */
+final class Fp64BandIndex {
+
+    private static final int EMPTY = -1;
+
+    private final int[] bandShift;
+    private final long[] bandMask;
+    private final BandTable[] tables;
+    private int size;
+
+    Fp64BandIndex(double threshold, int expectedSize) {
+        int bands = bandsFor(threshold);
+        this.bandShift = new int[bands];
+        this.bandMask = new long[bands];
+        int base = 64 / bands;
+        int extra = 64 % bands;
+        int shift = 0;
+        for (int i = 0; i < bands; i++) {
+            int width = base + (i < extra ? 1 : 0);
+            bandShift[i] = shift;
+            bandMask[i] = width == 64 ? -1L : (1L << width) - 1;
+            shift += width;
+        }
+        this.tables = new BandTable[bands];
+        for (int i = 0; i < bands; i++) {
+            tables[i] = new BandTable(Math.max(16, expectedSize));
+        }
+    }
+
+    /**
+     * Number of bands needed so that every pair with {@code similarity >= threshold} shares a band.
+     */
+    static int bandsFor(double threshold) {
+        return maxDistance(threshold) + 1;
+    }
+
+    static int maxDistance(double threshold) {
+        double t = Math.max(0.0, Math.min(1.0, threshold));
+        // similarity = 1 - dist / 64  =>  dist <= 64 * (1 - t); the epsilon absorbs 0.85 * 64 style rounding.
+        int d = (int) Math.floor(64.0 * (1.0 - t) + 1e-9);
+        return Math.min(63, Math.max(0, d));
+    }
+
+    int bandCount() {
+        return tables.length;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Adds a fingerprint. Items must be added with consecutive ids starting at 0.
+     */
+    void add(long fp, int item) {
+        if (item != size) {
+            throw new IllegalArgumentException("items must be added in order");
+        }
+        for (int b = 0; b < tables.length; b++) {
+            tables[b].add(band(fp, b), item);
+        }
+        size++;
+    }
+
+    /**
+     * Visits every item sharing at least one band with {@code fp}. An item can be visited once per shared
+     * band; callers de-duplicate.
+     */
+    void forEachCandidate(long fp, IntConsumer consumer) {
+        for (int b = 0; b < tables.length; b++) {
+            tables[b].forEach(band(fp, b), consumer);
+        }
+    }
+
+    private long band(long fp, int b) {
+        return (fp >>> bandShift[b]) & bandMask[b];
+    }
+
+    private static final class BandTable {
+        private long[] keys;
+        private int[] heads;
+        private int[] next;
+        private int used;
+
+        BandTable(int expected) {
+            int cap = Integer.highestOneBit(Math.max(16, expected * 2 - 1)) << 1;
+            keys = new long[cap];
+            heads = new int[cap];
+            Arrays.fill(heads, EMPTY);
+            next = new int[Math.max(16, expected)];
+        }
+
+        void add(long key, int item) {
+            if ((used + 1) * 2 > keys.length) {
+                rehash(keys.length << 1);
+            }
+            if (item >= next.length) {
+                next = Arrays.copyOf(next, Math.max(item + 1, next.length << 1));
+            }
+            int slot = find(keys, heads, key);
+            if (heads[slot] == EMPTY) {
+                keys[slot] = key;
+                used++;
+            }
+            next[item] = heads[slot];
+            heads[slot] = item;
+        }
+
+        void forEach(long key, IntConsumer consumer) {
+            int slot = find(keys, heads, key);
+            for (int it = heads[slot]; it != EMPTY; it = next[it]) {
+                consumer.accept(it);
+            }
+        }
+
+        private void rehash(int cap) {
+            long[] newKeys = new long[cap];
+            int[] newHeads = new int[cap];
+            Arrays.fill(newHeads, EMPTY);
+            for (int i = 0; i < keys.length; i++) {
+                if (heads[i] == EMPTY) continue;
+                int slot = find(newKeys, newHeads, keys[i]);
+                newKeys[slot] = keys[i];
+                newHeads[slot] = heads[i];
+            }
+            keys = newKeys;
+            heads = newHeads;
+        }
+
+        private static int find(long[] keys, int[] heads, long key) {
+            int mask = keys.length - 1;
+            int slot = (int) mix(key) & mask;
+            while (heads[slot] != EMPTY && keys[slot] != key) {
+                slot = (slot + 1) & mask;
+            }
+            return slot;
+        }
+
+        private static long mix(long z) {
+            z ^= (z >>> 33);
+            z *= 0xff51afd7ed558ccdL;
+            z ^= (z >>> 33);
+            return z;
+        }
+    }
+}
@@ -1,7 +1,5 @@
 package cn.edu.jnu.labflowreport.plagiarism.service;
 
-import java.util.ArrayList;
-import java.util.List;
 import java.util.regex.Pattern;
 
 final class MarkdownText {
@@ -27,17 +25,4 @@ final class MarkdownText {
         s = s.replaceAll("[\\r\\t]+", " ");
         return s;
     }
-
-    static List<String> splitSentences(String plain) {
-        if (plain == null || plain.isBlank()) return List.of();
-        String[] parts = plain.split("[。！？!?;；\\n]+");
-        List<String> out = new ArrayList<>(parts.length);
-        for (String p : parts) {
-            String t = p == null ? "" : p.trim();
-            if (t.length() < 10) continue;
-            out.add(t);
-        }
-        return out;
-    }
 }
-
@@ -0,0 +1,124 @@
+package cn.edu.jnu.labflowreport.plagiarism.service;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The top-K most similar other submissions of one submission, highest score first, as two parallel
+ * primitive arrays. Scores are kept in units of 1/10000, the precision of {@code max_score}, and the list is
+ * stored base64-encoded as (long submission id, short score) pairs in {@code plag_submission_best_match.neighbours}.
+ */
+final class NeighbourList {
+
+    static final int SCALE = 10_000;
+    static final NeighbourList EMPTY = new NeighbourList(new long[0], new short[0]);
+
+    private final long[] ids;
+    private final short[] scores;
+
+    private NeighbourList(long[] ids, short[] scores) {
+        this.ids = ids;
+        this.scores = scores;
+    }
+
+    int size() {
+        return ids.length;
+    }
+
+    long id(int i) {
+        return ids[i];
+    }
+
+    /** Score in units of 1/10000. */
+    int score(int i) {
+        return scores[i];
+    }
+
+    static int quantize(double score) {
+        return (int) Math.round(Math.max(0.0, Math.min(1.0, score)) * SCALE);
+    }
+
+    /**
+     * Union of both lists, keeping the higher score of an id present in both, cut to the {@code k} best.
+     */
+    NeighbourList merge(NeighbourList other, int k) {
+        Map<Long, Integer> best = new HashMap<>();
+        for (NeighbourList list : new NeighbourList[] {this, other}) {
+            for (int i = 0; i < list.size(); i++) {
+                best.merge(list.ids[i], (int) list.scores[i], Math::max);
+            }
+        }
+        Builder b = new Builder(k);
+        best.entrySet().stream()
+                .sorted(Map.Entry.comparingByKey())
+                .forEach(e -> b.offerQuantized(e.getKey(), e.getValue()));
+        return b.build();
+    }
+
+    String encode() {
+        ByteBuffer buf = ByteBuffer.allocate(ids.length * 10);
+        for (int i = 0; i < ids.length; i++) {
+            buf.putLong(ids[i]);
+            buf.putShort(scores[i]);
+        }
+        return Base64.getEncoder().encodeToString(buf.array());
+    }
+
+    static NeighbourList decode(String encoded) {
+        if (encoded == null || encoded.isEmpty()) {
+            return EMPTY;
+        }
+        ByteBuffer buf = ByteBuffer.wrap(Base64.getDecoder().decode(encoded));
+        int n = buf.remaining() / 10;
+        long[] ids = new long[n];
+        short[] scores = new short[n];
+        for (int i = 0; i < n; i++) {
+            ids[i] = buf.getLong();
+            scores[i] = buf.getShort();
+        }
+        return new NeighbourList(ids, scores);
+    }
+
+    /**
+     * Keeps the {@code k} highest offers in descending order; on equal scores the earlier offer wins, like
+     * the best-match scan.
+     */
+    static final class Builder {
+        private final long[] ids;
+        private final short[] scores;
+        private int size;
+
+        Builder(int k) {
+            this.ids = new long[Math.max(0, k)];
+            this.scores = new short[Math.max(0, k)];
+        }
+
+        void offer(long id, double score) {
+            offerQuantized(id, quantize(score));
+        }
+
+        private void offerQuantized(long id, int score) {
+            if (score <= 0 || ids.length == 0 || (size == ids.length && score <= scores[size - 1])) {
+                return;
+            }
+            int pos = size == ids.length ? size - 1 : size;
+            while (pos > 0 && scores[pos - 1] < score) {
+                ids[pos] = ids[pos - 1];
+                scores[pos] = scores[pos - 1];
+                pos--;
+            }
+            ids[pos] = id;
+            scores[pos] = (short) score;
+            if (size < ids.length) {
+                size++;
+            }
+        }
+
+        NeighbourList build() {
+            return size == 0 ? EMPTY : new NeighbourList(Arrays.copyOf(ids, size), Arrays.copyOf(scores, size));
+        }
+    }
+}
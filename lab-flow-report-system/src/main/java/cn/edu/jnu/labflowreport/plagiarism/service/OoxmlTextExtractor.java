@@ -0,0 +1,318 @@
+package cn.edu.jnu.labflowreport.plagiarism.service;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import javax.xml.parsers.ParserConfigurationException;
+import org.apache.poi.ss.usermodel.BuiltinFormats;
+import org.apache.poi.ss.usermodel.DataFormatter;
+import org.apache.poi.util.XMLHelper;
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * Plain text of docx/xlsx/pptx attachments, read as a stream.
+ *
+ * <p>The package is walked entry by entry with a {@link ZipInputStream}; only the parts that carry body text
+ * (the document, shared strings and worksheets, slides) are parsed, each with a SAX reader, so neither the
+ * zip nor any XML part is held in memory. WordprocessingML, SpreadsheetML and DrawingML all keep runs of
+ * text in {@code <t>} elements, which makes one handler enough; numeric worksheet cells are the exception
+ * and are written as Excel would display them, using the number formats of {@code xl/styles.xml}.
+ *
+ * <p>Work is bounded by a {@link Budget}: when the inflated bytes (parts that are skipped have to be
+ * inflated too), the extracted characters or the time run out, the text read so far is returned and
+ * marked truncated. A result cut short by the clock also says so, since another attempt may get further.
+ */
+final class OoxmlTextExtractor {
+
+    static final String VERSION = "ooxml-v2";
+
+    enum Format {DOCX, XLSX, PPTX}
+
+    record Budget(long maxXmlBytes, int maxChars, long maxMillis) {
+    }
+
+    /** {@code timedOut} results depend on the machine and its load; they are used once, never cached. */
+    record Result(String text, boolean truncated, boolean timedOut) {
+    }
+
+    private OoxmlTextExtractor() {
+    }
+
+    static Format formatOf(String fileName) {
+        return switch (AttachmentClassifier.extLower(fileName == null ? "" : fileName)) {
+            case "docx" -> Format.DOCX;
+            case "xlsx" -> Format.XLSX;
+            case "pptx" -> Format.PPTX;
+            default -> null;
+        };
+    }
+
+    static Result extract(InputStream in, Format format, Budget budget) throws IOException {
+        long deadline = System.currentTimeMillis() + budget.maxMillis();
+        TextHandler handler = new TextHandler(budget.maxChars(), deadline);
+        XMLReader reader;
+        try {
+            reader = XMLHelper.newXMLReader();
+        } catch (SAXException | ParserConfigurationException e) {
+            throw new IOException("no XML parser", e);
+        }
+        reader.setContentHandler(handler);
+
+        long xmlBytes = 0L;
+        boolean sawPart = false;
+        ZipInputStream zip = new ZipInputStream(in);
+        ZipEntry entry;
+        while ((entry = zip.getNextEntry()) != null) {
+            // The stream cannot seek, so skipping an entry inflates it; that counts against the budget.
+            PartStream part = new PartStream(zip, budget.maxXmlBytes() - xmlBytes, deadline);
+            try {
+                if (entry.isDirectory() || !isTextPart(format, entry.getName())) {
+                    part.drain();
+                } else {
+                    sawPart = true;
+                    handler.startPart(entry.getName());
+                    reader.parse(new InputSource(part));
+                    handler.paragraphBreak();
+                }
+            } catch (SAXException e) {
+                if (!(e instanceof BudgetExhausted) && !part.exhausted && !part.timedOut) {
+                    throw new IOException("malformed " + entry.getName(), e);
+                }
+            } finally {
+                xmlBytes += part.count;
+            }
+            if (part.exhausted || part.timedOut || handler.exhausted || handler.timedOut) {
+                return new Result(handler.text(), true, part.timedOut || handler.timedOut);
+            }
+        }
+        if (!sawPart) {
+            throw new IOException("not an OOXML " + format.name().toLowerCase(Locale.ROOT));
+        }
+        return new Result(handler.text(), false, false);
+    }
+
+    private static boolean isTextPart(Format format, String name) {
+        return switch (format) {
+            case DOCX -> name.equals("word/document.xml");
+            case XLSX -> name.equals("xl/sharedStrings.xml") || name.equals("xl/styles.xml")
+                    || (name.startsWith("xl/worksheets/sheet") && name.endsWith(".xml"));
+            case PPTX -> name.startsWith("ppt/slides/slide") && name.endsWith(".xml");
+        };
+    }
+
+    private static final class TextHandler extends DefaultHandler {
+        private final StringBuilder out = new StringBuilder();
+        private final int maxChars;
+        private final long deadline;
+        private boolean inText;
+        boolean exhausted;
+        boolean timedOut;
+
+        // Worksheet state. Number formats come from xl/styles.xml, which in practice precedes the sheets;
+        // a package that orders them the other way gets General formatting.
+        private final DataFormatter formatter = new DataFormatter(Locale.ROOT);
+        private final Map<Integer, String> numFmts = new HashMap<>();
+        private final List<Integer> cellXfs = new ArrayList<>();
+        private boolean inSheet;
+        private boolean inCellXfs;
+        private String cellType;
+        private int cellStyle;
+        private StringBuilder value;
+
+        TextHandler(int maxChars, long deadline) {
+            this.maxChars = maxChars;
+            this.deadline = deadline;
+        }
+
+        void startPart(String name) {
+            inSheet = name.startsWith("xl/worksheets/");
+        }
+
+        @Override
+        public void startElement(String uri, String localName, String qName, Attributes attributes) throws SAXException {
+            switch (localName) {
+                case "t" -> inText = true;
+                case "tab" -> out.append('\t');
+                case "br" -> out.append('\n');
+                case "numFmt" -> numFmts.put(intAttr(attributes, "numFmtId", 0), attributes.getValue("formatCode"));
+                case "cellXfs" -> inCellXfs = true;
+                case "xf" -> {
+                    if (inCellXfs) {
+                        cellXfs.add(intAttr(attributes, "numFmtId", 0));
+                    }
+                }
+                case "c" -> {
+                    cellType = attributes.getValue("t");
+                    cellStyle = intAttr(attributes, "s", 0);
+                }
+                case "v" -> {
+                    if (inSheet) {
+                        value = new StringBuilder();
+                    }
+                }
+                default -> {
+                }
+            }
+            if (System.currentTimeMillis() > deadline) {
+                timedOut = true;
+                throw new BudgetExhausted();
+            }
+        }
+
+        @Override
+        public void endElement(String uri, String localName, String qName) throws SAXException {
+            switch (localName) {
+                case "t" -> inText = false;
+                case "p", "si", "row" -> paragraphBreak();
+                case "cellXfs" -> inCellXfs = false;
+                case "v" -> {
+                    if (value != null) {
+                        String v = cellValue(value.toString());
+                        value = null;
+                        if (v != null) {
+                            append(v.toCharArray(), 0, v.length());
+                        }
+                    }
+                }
+                case "c" -> {
+                    if (out.length() > 0 && !Character.isWhitespace(out.charAt(out.length() - 1))) {
+                        out.append(' ');
+                    }
+                }
+                default -> {
+                }
+            }
+        }
+
+        @Override
+        public void characters(char[] ch, int start, int length) throws SAXException {
+            if (value != null) {
+                value.append(ch, start, length);
+            } else if (inText) {
+                append(ch, start, length);
+            }
+        }
+
+        /**
+         * The displayed text of a {@code <v>}: shared-string cells only hold an index (their text comes from
+         * sharedStrings.xml), numbers are formatted by the cell's style.
+         */
+        private String cellValue(String raw) {
+            if (cellType == null || cellType.equals("n")) {
+                try {
+                    int style = cellStyle < cellXfs.size() ? cellXfs.get(cellStyle) : 0;
+                    String fmt = numFmts.getOrDefault(style, BuiltinFormats.getBuiltinFormat(style));
+                    return formatter.formatRawCellContents(Double.parseDouble(raw), style, fmt == null ? "General" : fmt);
+                } catch (NumberFormatException e) {
+                    return raw;
+                }
+            }
+            return switch (cellType) {
+                case "s" -> null;
+                case "b" -> "1".equals(raw) ? "TRUE" : "FALSE";
+                default -> raw;
+            };
+        }
+
+        private void append(char[] ch, int start, int length) throws SAXException {
+            int room = maxChars - out.length();
+            out.append(ch, start, Math.min(length, Math.max(0, room)));
+            if (length > room) {
+                exhausted = true;
+                throw new BudgetExhausted();
+            }
+        }
+
+        private static int intAttr(Attributes attributes, String name, int fallback) {
+            String v = attributes.getValue(name);
+            try {
+                return v == null ? fallback : Integer.parseInt(v);
+            } catch (NumberFormatException e) {
+                return fallback;
+            }
+        }
+
+        void paragraphBreak() {
+            if (out.length() > 0 && out.charAt(out.length() - 1) != '\n') {
+                out.append('\n');
+            }
+        }
+
+        String text() {
+            return out.toString();
+        }
+    }
+
+    private static final class BudgetExhausted extends SAXException {
+    }
+
+    /**
+     * The current zip entry, counted against the remaining byte budget and the deadline, and left open for
+     * the next entry (SAX parsers close their input).
+     */
+    private static final class PartStream extends FilterInputStream {
+        private final long limit;
+        private final long deadline;
+        long count;
+        boolean exhausted;
+        boolean timedOut;
+
+        PartStream(InputStream in, long limit, long deadline) {
+            super(in);
+            this.limit = limit;
+            this.deadline = deadline;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (outOfBudget()) {
+                return -1;
+            }
+            int b = super.read();
+            if (b >= 0) count++;
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (outOfBudget()) {
+                return -1;
+            }
+            int n = super.read(b, off, (int) Math.min(len, limit - count));
+            if (n > 0) count += n;
+            return n;
+        }
+
+        /** Reads the entry to its end, or until the budget runs out. */
+        void drain() throws IOException {
+            byte[] buf = new byte[8192];
+            while (read(buf, 0, buf.length) >= 0) {
+                // counted by read
+            }
+        }
+
+        private boolean outOfBudget() {
+            if (count >= limit) {
+                exhausted = true;
+            } else if (System.currentTimeMillis() > deadline) {
+                timedOut = true;
+            }
+            return exhausted || timedOut;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
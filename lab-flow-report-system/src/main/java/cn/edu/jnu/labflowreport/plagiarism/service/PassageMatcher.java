@@ -0,0 +1,289 @@
+package cn.edu.jnu.labflowreport.plagiarism.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Finds the passages two plain texts share, in time linear in their length.
+ *
+ * <p>Both texts are reduced to their letters and digits (lower-cased, whitespace and punctuation dropped) so
+ * re-punctuated or re-wrapped copies still line up; every kept code point remembers its offset in the
+ * original string. A suffix automaton over B is then walked with A, which yields for each position of A the
+ * longest substring ending there that also occurs in B. Right-maximal runs of at least {@code minChars}
+ * become passages, trimmed so they do not overlap in A.
+ */
+final class PassageMatcher {
+
+    private PassageMatcher() {
+    }
+
+    /**
+     * A shared passage. Offsets index the original strings (end exclusive); {@code length} counts the
+     * normalized code points it covers.
+     */
+    record Passage(int aStart, int aEnd, int bStart, int bEnd, int length) {
+    }
+
+    record Result(List<Passage> passages, int coveredChars, int totalChars) {
+        double coverage() {
+            return totalChars == 0 ? 0.0 : coveredChars * 1.0 / totalChars;
+        }
+    }
+
+    static Result match(String a, String b, int minChars) {
+        Normalized na = Normalized.of(a);
+        Normalized nb = Normalized.of(b);
+        int min = Math.max(1, minChars);
+        if (na.size() < min || nb.size() < min) {
+            return new Result(List.of(), 0, na.size());
+        }
+
+        SuffixAutomaton sam = new SuffixAutomaton(nb.cps, nb.size());
+        int n = na.size();
+        int[] matchLen = new int[n];
+        int[] matchState = new int[n];
+        int v = 0;
+        int l = 0;
+        for (int i = 0; i < n; i++) {
+            int c = na.cps[i];
+            while (v != 0 && sam.next(v, c) < 0) {
+                v = sam.link[v];
+                l = sam.len[v];
+            }
+            int t = sam.next(v, c);
+            if (t >= 0) {
+                v = t;
+                l++;
+            } else {
+                v = 0;
+                l = 0;
+            }
+            matchLen[i] = l;
+            matchState[i] = v;
+        }
+
+        List<Passage> out = new ArrayList<>();
+        int covered = 0;
+        int coveredUntil = -1; // last normalized index of A already part of an emitted passage
+        for (int i = 0; i < n; i++) {
+            int len = matchLen[i];
+            boolean rightMaximal = i == n - 1 || matchLen[i + 1] != len + 1;
+            if (len < min || !rightMaximal) {
+                continue;
+            }
+            int start = i - len + 1;
+            int bEnd = sam.firstEnd[matchState[i]];
+            int bStart = bEnd - len + 1;
+            if (start <= coveredUntil) {
+                int cut = coveredUntil + 1 - start;
+                start += cut;
+                bStart += cut;
+            }
+            int kept = i - start + 1;
+            if (kept < min) {
+                continue;
+            }
+            out.add(new Passage(na.start(start), na.end(i), nb.start(bStart), nb.end(bEnd), kept));
+            covered += kept;
+            coveredUntil = i;
+        }
+        return new Result(out, covered, n);
+    }
+
+    /**
+     * Letters and digits of a string, lower-cased, with their offsets in the original.
+     */
+    private static final class Normalized {
+        private final String source;
+        private final int[] cps;
+        private final int[] offsets;
+        private final int size;
+
+        private Normalized(String source, int[] cps, int[] offsets, int size) {
+            this.source = source;
+            this.cps = cps;
+            this.offsets = offsets;
+            this.size = size;
+        }
+
+        static Normalized of(String s) {
+            String src = s == null ? "" : s;
+            int[] cps = new int[src.length()];
+            int[] offsets = new int[src.length()];
+            int size = 0;
+            for (int i = 0; i < src.length(); ) {
+                int cp = src.codePointAt(i);
+                if (TextTokenizer.isWordChar(cp) && cp != '_') {
+                    cps[size] = lower(cp);
+                    offsets[size] = i;
+                    size++;
+                }
+                i += Character.charCount(cp);
+            }
+            return new Normalized(src, cps, offsets, size);
+        }
+
+        private static int lower(int cp) {
+            if (cp < 0x80) {
+                return cp >= 'A' && cp <= 'Z' ? cp + 32 : cp;
+            }
+            return Character.toLowerCase(cp);
+        }
+
+        int size() {
+            return size;
+        }
+
+        int start(int idx) {
+            return offsets[idx];
+        }
+
+        int end(int idx) {
+            return offsets[idx] + Character.charCount(source.codePointAt(offsets[idx]));
+        }
+    }
+
+    /**
+     * Suffix automaton over an int (code point) alphabet. Transitions live in one open-addressing table
+     * keyed by {@code state << 21 | codePoint}; each state also chains its outgoing edges so a clone can
+     * copy them.
+     */
+    private static final class SuffixAutomaton {
+        private static final int NONE = -1;
+
+        final int[] len;
+        final int[] link;
+        final int[] firstEnd;
+        private int states;
+
+        private int[] edgeChar;
+        private int[] edgeTarget;
+        private int[] edgeNext;
+        private final int[] edgeHead;
+        private int edges;
+
+        private long[] keys;
+        private int[] slots;
+        private int used;
+
+        SuffixAutomaton(int[] s, int n) {
+            int maxStates = Math.max(2, 2 * n);
+            len = new int[maxStates];
+            link = new int[maxStates];
+            firstEnd = new int[maxStates];
+            edgeHead = new int[maxStates];
+            Arrays.fill(edgeHead, NONE);
+            int edgeCap = Math.max(16, 3 * n);
+            edgeChar = new int[edgeCap];
+            edgeTarget = new int[edgeCap];
+            edgeNext = new int[edgeCap];
+            int cap = Integer.highestOneBit(Math.max(16, edgeCap * 2 - 1)) << 1;
+            keys = new long[cap];
+            slots = new int[cap];
+            Arrays.fill(slots, NONE);
+
+            link[0] = NONE;
+            states = 1;
+            int last = 0;
+            for (int i = 0; i < n; i++) {
+                int c = s[i];
+                int cur = states++;
+                len[cur] = len[last] + 1;
+                firstEnd[cur] = i;
+                int p = last;
+                while (p != NONE && next(p, c) < 0) {
+                    addEdge(p, c, cur);
+                    p = link[p];
+                }
+                if (p == NONE) {
+                    link[cur] = 0;
+                } else {
+                    int q = next(p, c);
+                    if (len[p] + 1 == len[q]) {
+                        link[cur] = q;
+                    } else {
+                        int clone = states++;
+                        len[clone] = len[p] + 1;
+                        link[clone] = link[q];
+                        firstEnd[clone] = firstEnd[q];
+                        for (int e = edgeHead[q]; e != NONE; e = edgeNext[e]) {
+                            addEdge(clone, edgeChar[e], edgeTarget[e]);
+                        }
+                        while (p != NONE && next(p, c) == q) {
+                            edgeTarget[slots[find(p, c)]] = clone;
+                            p = link[p];
+                        }
+                        link[q] = clone;
+                        link[cur] = clone;
+                    }
+                }
+                last = cur;
+            }
+        }
+
+        int next(int state, int c) {
+            int slot = find(state, c);
+            return slots[slot] == NONE ? NONE : edgeTarget[slots[slot]];
+        }
+
+        private void addEdge(int state, int c, int target) {
+            if (edges == edgeChar.length) {
+                int cap = edges << 1;
+                edgeChar = Arrays.copyOf(edgeChar, cap);
+                edgeTarget = Arrays.copyOf(edgeTarget, cap);
+                edgeNext = Arrays.copyOf(edgeNext, cap);
+            }
+            if ((used + 1) * 2 > keys.length) {
+                rehash(keys.length << 1);
+            }
+            int e = edges++;
+            edgeChar[e] = c;
+            edgeTarget[e] = target;
+            edgeNext[e] = edgeHead[state];
+            edgeHead[state] = e;
+            int slot = find(state, c);
+            keys[slot] = key(state, c);
+            slots[slot] = e;
+            used++;
+        }
+
+        private int find(int state, int c) {
+            return find(keys, slots, key(state, c));
+        }
+
+        private static int find(long[] keys, int[] slots, long key) {
+            int mask = keys.length - 1;
+            int slot = (int) mix(key) & mask;
+            while (slots[slot] != NONE && keys[slot] != key) {
+                slot = (slot + 1) & mask;
+            }
+            return slot;
+        }
+
+        private void rehash(int cap) {
+            long[] newKeys = new long[cap];
+            int[] newSlots = new int[cap];
+            Arrays.fill(newSlots, NONE);
+            for (int i = 0; i < keys.length; i++) {
+                if (slots[i] == NONE) continue;
+                int slot = find(newKeys, newSlots, keys[i]);
+                newKeys[slot] = keys[i];
+                newSlots[slot] = slots[i];
+            }
+            keys = newKeys;
+            slots = newSlots;
+        }
+
+        private static long key(int state, int c) {
+            return ((long) state << 21) | c;
+        }
+
+        private static long mix(long z) {
+            z ^= (z >>> 33);
+            z *= 0xff51afd7ed558ccdL;
+            z ^= (z >>> 33);
+            return z;
+        }
+    }
+}
@@ -0,0 +1,330 @@
+package cn.edu.jnu.labflowreport.plagiarism.service;
+
+import cn.edu.jnu.labflowreport.common.api.ApiCode;
+import cn.edu.jnu.labflowreport.common.exception.BusinessException;
+import cn.edu.jnu.labflowreport.config.PlagiarismProperties;
+import cn.edu.jnu.labflowreport.persistence.entity.ExpTaskEntity;
+import cn.edu.jnu.labflowreport.persistence.entity.PlagArtifactFpEntity;
+import cn.edu.jnu.labflowreport.persistence.entity.PlagCorpusFpEntity;
+import cn.edu.jnu.labflowreport.persistence.entity.PlagTaskRunEntity;
+import cn.edu.jnu.labflowreport.persistence.mapper.ExpTaskMapper;
+import cn.edu.jnu.labflowreport.persistence.mapper.PlagArtifactFpMapper;
+import cn.edu.jnu.labflowreport.persistence.mapper.PlagCorpusFpMapper;
+import cn.edu.jnu.labflowreport.persistence.mapper.PlagTaskRunMapper;
+import cn.edu.jnu.labflowreport.plagiarism.service.ArtifactMatcher.Artifact;
+import cn.edu.jnu.labflowreport.plagiarism.vo.PlagiarismSummaryVO;
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Persistent corpus of every submission's 64-bit fingerprints, used to match a run against other tasks:
+ * offerings of the same course in any semester, all tasks of the same teacher, or all history.
+ *
+ * <p>Each text/image fingerprint is stored once per submission in {@code plag_corpus_fp} with its four
+ * 16-bit substrings in separately indexed columns (multi-index hashing). Two fingerprints within Hamming
+ * distance {@code d} differ in at most {@code d / 4} bits in at least one substring, so a lookup probes every
+ * value within that radius in each substring index and verifies the returned rows exactly; its cost depends
+ * on how many rows share a substring, not on the corpus size. Code winnowing sets are matched within the task
+ * only.
+ *
+ * <p>Rows are written with the run's fingerprint chunks, and a run is marked {@code indexed_at} when it
+ * finishes; DONE runs without the mark (those finished before the corpus existed) are indexed by a periodic
+ * backfill.
+ */
+@Component
+class PlagiarismCorpus {
+
+    static final String SCOPE_TASK = "TASK";
+    static final String SCOPE_COURSE = "COURSE";
+    static final String SCOPE_TEACHER = "TEACHER";
+    static final String SCOPE_ALL = "ALL";
+
+    static final int BANDS = 4;
+    private static final int BAND_BITS = 64 / BANDS;
+    // Probing radius cap: 697 values per band. Thresholds that need more (text below ~0.81) become best-effort.
+    private static final int MAX_RADIUS = 3;
+
+    private final PlagiarismProperties props;
+    private final PlagCorpusFpMapper corpusMapper;
+    private final PlagArtifactFpMapper fpMapper;
+    private final PlagTaskRunMapper runMapper;
+    private final ExpTaskMapper expTaskMapper;
+    private final TransactionTemplate tx;
+
+    PlagiarismCorpus(
+            PlagiarismProperties props,
+            PlagCorpusFpMapper corpusMapper,
+            PlagArtifactFpMapper fpMapper,
+            PlagTaskRunMapper runMapper,
+            ExpTaskMapper expTaskMapper,
+            PlatformTransactionManager transactionManager
+    ) {
+        this.props = props;
+        this.corpusMapper = corpusMapper;
+        this.fpMapper = fpMapper;
+        this.runMapper = runMapper;
+        this.expTaskMapper = expTaskMapper;
+        this.tx = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * The other tasks a run is matched against, resolved when the run starts so that moving a task to another
+     * course needs no re-indexing; {@code otherTaskIds} is null for all history.
+     */
+    record Scope(String name, Long taskId, List<Long> otherTaskIds) {
+        boolean crossTask() {
+            return !SCOPE_TASK.equals(name) && (otherTaskIds == null || !otherTaskIds.isEmpty());
+        }
+    }
+
+    static String normalizeScope(String scope) {
+        String s = scope == null || scope.isBlank() ? SCOPE_TASK : scope.trim().toUpperCase(Locale.ROOT);
+        if (!List.of(SCOPE_TASK, SCOPE_COURSE, SCOPE_TEACHER, SCOPE_ALL).contains(s)) {
+            throw new BusinessException(ApiCode.BAD_REQUEST, HttpStatus.BAD_REQUEST, "scope 仅支持 TASK、COURSE、TEACHER 或 ALL");
+        }
+        return s;
+    }
+
+    Scope resolve(Long taskId, String scope) {
+        String name = normalizeScope(scope);
+        if (SCOPE_TASK.equals(name) || SCOPE_ALL.equals(name)) {
+            return new Scope(name, taskId, SCOPE_TASK.equals(name) ? List.of() : null);
+        }
+        ExpTaskEntity task = expTaskMapper.selectById(taskId);
+        if (task == null) {
+            throw new BusinessException(ApiCode.BAD_REQUEST, HttpStatus.NOT_FOUND, "任务不存在");
+        }
+        List<Long> taskIds;
+        if (SCOPE_COURSE.equals(name)) {
+            if (task.getExperimentCourseId() == null) {
+                throw new BusinessException(ApiCode.BAD_REQUEST, HttpStatus.BAD_REQUEST, "该任务未关联实验课程，无法按课程范围查重");
+            }
+            taskIds = expTaskMapper.findIdsInCourseOfferings(task.getExperimentCourseId());
+        } else {
+            taskIds = expTaskMapper.findIdsByPublisherId(task.getPublisherId());
+        }
+        return new Scope(name, taskId, taskIds.stream().filter(id -> !id.equals(taskId)).toList());
+    }
+
+    static String algoKey(String algo, String algoVersion) {
+        return algo + "@" + algoVersion;
+    }
+
+    static int band(long fp, int b) {
+        return (int) ((fp >>> (b * BAND_BITS)) & 0xffffL);
+    }
+
+    /**
+     * Replaces the corpus rows of the submissions in {@code fps}. Runs inside the caller's transaction.
+     */
+    void index(Long taskId, String algoVersion, List<PlagArtifactFpEntity> fps) {
+        Set<Long> submissionIds = new LinkedHashSet<>();
+        List<PlagCorpusFpEntity> rows = new ArrayList<>();
+        LocalDateTime now = LocalDateTime.now();
+        for (PlagArtifactFpEntity fp : fps) {
+            submissionIds.add(fp.getSubmissionId());
+            if (ArtifactMatcher.ALGO_CODE_WINNOW.equals(fp.getAlgo())) {
+                continue;
+            }
+            long v = PlagiarismRunner.fp64(fp);
+            PlagCorpusFpEntity e = new PlagCorpusFpEntity();
+            e.setAlgoKey(algoKey(fp.getAlgo(), algoVersion));
+            e.setFp64(v);
+            e.setBand0(band(v, 0));
+            e.setBand1(band(v, 1));
+            e.setBand2(band(v, 2));
+            e.setBand3(band(v, 3));
+            e.setTaskId(taskId);
+            e.setSubmissionId(fp.getSubmissionId());
+            e.setStudentId(fp.getStudentId());
+            e.setAttachmentId(fp.getAttachmentId());
+            e.setArtifactType(fp.getArtifactType());
+            e.setFileName(fp.getFileName());
+            e.setCreatedAt(now);
+            rows.add(e);
+        }
+        if (submissionIds.isEmpty()) {
+            return;
+        }
+        corpusMapper.delete(new LambdaQueryWrapper<PlagCorpusFpEntity>()
+                .in(PlagCorpusFpEntity::getSubmissionId, submissionIds));
+        int size = Math.max(1, props.insertBatchSize());
+        for (int from = 0; from < rows.size(); from += size) {
+            corpusMapper.insertBatch(rows.subList(from, Math.min(rows.size(), from + size)));
+        }
+    }
+
+    @Scheduled(
+            initialDelayString = "${app.plag.corpus-backfill-initial-delay:PT2M}",
+            fixedDelayString = "${app.plag.corpus-backfill-interval:PT10M}"
+    )
+    public void backfill() {
+        for (Long runId : runMapper.findUnindexedDoneRunIds(Math.max(1, props.corpusBackfillRuns()))) {
+            PlagTaskRunEntity run = runMapper.selectById(runId);
+            if (run == null) {
+                continue;
+            }
+            List<PlagArtifactFpEntity> fps = fpMapper.findByRunId(runId);
+            tx.executeWithoutResult(status -> {
+                index(run.getTaskId(), run.getAlgoVersion(), fps);
+                runMapper.markIndexed(runId, LocalDateTime.now());
+            });
+        }
+    }
+
+    /**
+     * Best corpus match per submission: the other student's submission, outside this task and inside the
+     * scope, with the most similar text or image fingerprint at or above its threshold. Submissions without
+     * such a match are absent from the result.
+     */
+    Map<Long, ArtifactMatcher.Best> search(
+            Scope scope,
+            String algoVersion,
+            Map<Long, Long> studentBySubmission,
+            Map<Long, List<Artifact>> artifactsBySubmission
+    ) {
+        Map<Long, Hit> best = new HashMap<>();
+        for (String algo : List.of(ArtifactMatcher.ALGO_SIMHASH64, ArtifactMatcher.ALGO_DHASH64)) {
+            double threshold = ArtifactMatcher.ALGO_DHASH64.equals(algo) ? props.imageThreshold() : props.textThreshold();
+            int maxDistance = Fp64BandIndex.maxDistance(threshold);
+            int radius = Math.min(MAX_RADIUS, maxDistance / BANDS);
+
+            List<Probe> probes = new ArrayList<>();
+            for (Map.Entry<Long, List<Artifact>> e : artifactsBySubmission.entrySet()) {
+                for (Artifact a : e.getValue()) {
+                    if (algo.equals(a.algo())) {
+                        probes.add(new Probe(e.getKey(), studentBySubmission.get(e.getKey()), a));
+                    }
+                }
+            }
+            int batch = Math.max(1, props.corpusQueryBatch());
+            for (int from = 0; from < probes.size(); from += batch) {
+                List<Probe> chunk = probes.subList(from, Math.min(probes.size(), from + batch));
+                List<List<Integer>> bands = new ArrayList<>();
+                for (int b = 0; b < BANDS; b++) {
+                    Set<Integer> values = new LinkedHashSet<>();
+                    for (Probe p : chunk) {
+                        neighbours(band(p.artifact().fp(), b), radius, values);
+                    }
+                    bands.add(new ArrayList<>(values));
+                }
+                List<PlagCorpusFpEntity> rows = corpusMapper.search(new PlagCorpusFpMapper.CorpusQuery(
+                        algoKey(algo, algoVersion), bands, scope.taskId(), scope.otherTaskIds()));
+                Set<Long> seen = new HashSet<>();
+                for (PlagCorpusFpEntity row : rows) {
+                    if (!seen.add(row.getId())) {
+                        continue;
+                    }
+                    for (Probe p : chunk) {
+                        if (Objects.equals(p.studentId(), row.getStudentId())) {
+                            continue; // the same student's work in another task or semester is not copying
+                        }
+                        int distance = Long.bitCount(p.artifact().fp() ^ row.getFp64());
+                        if (distance > maxDistance) {
+                            continue;
+                        }
+                        double score = ArtifactMatcher.ALGO_DHASH64.equals(algo)
+                                ? DHash64.similarity(p.artifact().fp(), row.getFp64())
+                                : SimHash64.similarity(p.artifact().fp(), row.getFp64());
+                        Hit prev = best.get(p.submissionId());
+                        if (prev == null || score > prev.score()
+                                || (score == prev.score() && row.getSubmissionId() < prev.row().getSubmissionId())) {
+                            best.put(p.submissionId(), new Hit(p.artifact(), row, score));
+                        }
+                    }
+                }
+            }
+        }
+        if (best.isEmpty()) {
+            return Map.of();
+        }
+
+        Set<Long> taskIds = new HashSet<>();
+        best.values().forEach(h -> taskIds.add(h.row().getTaskId()));
+        Map<Long, String> taskTitles = new HashMap<>();
+        for (ExpTaskEntity t : expTaskMapper.selectBatchIds(taskIds)) {
+            taskTitles.put(t.getId(), t.getTitle());
+        }
+
+        Map<Long, ArtifactMatcher.Best> out = new HashMap<>();
+        for (Map.Entry<Long, Hit> e : best.entrySet()) {
+            Hit h = e.getValue();
+            BigDecimal score = BigDecimal.valueOf(h.score()).setScale(4, RoundingMode.HALF_UP);
+            Map<String, Object> detail = new HashMap<>();
+            detail.put("scope", scope.name());
+            detail.put("otherTaskId", h.row().getTaskId());
+            detail.put("otherTaskTitle", Objects.toString(taskTitles.get(h.row().getTaskId()), ""));
+            detail.put("otherSubmissionId", h.row().getSubmissionId());
+            detail.put("otherStudentId", h.row().getStudentId());
+            detail.put("artifactTypeA", h.artifact().type());
+            detail.put("artifactTypeB", h.row().getArtifactType());
+            detail.put("fileNameA", Objects.toString(h.artifact().fileName(), ""));
+            detail.put("fileNameB", Objects.toString(h.row().getFileName(), ""));
+            detail.put("attachmentIdA", h.artifact().attachmentId());
+            detail.put("attachmentIdB", h.row().getAttachmentId());
+            detail.put("similarity", score);
+
+            ArtifactMatcher.Best b = new ArtifactMatcher.Best();
+            b.bestOtherSubmissionId = h.row().getSubmissionId();
+            b.bestOtherStudentId = h.row().getStudentId();
+            b.maxScore = h.score();
+            b.evidence = List.of(new PlagiarismSummaryVO.EvidenceItem(ArtifactMatcher.ART_CORPUS_MATCH, score, detail));
+            out.put(e.getKey(), b);
+        }
+        return out;
+    }
+
+    /**
+     * Submission-text fingerprints of corpus submissions, for scoring text evidence against them.
+     */
+    Map<Long, Long> submissionTextFps(String algoVersion, List<Long> submissionIds) {
+        if (submissionIds.isEmpty()) {
+            return Map.of();
+        }
+        Map<Long, Long> out = new HashMap<>();
+        for (PlagCorpusFpEntity row : corpusMapper.findSubmissionTextFps(
+                algoKey(ArtifactMatcher.ALGO_SIMHASH64, algoVersion), submissionIds)) {
+            out.put(row.getSubmissionId(), row.getFp64());
+        }
+        return out;
+    }
+
+    /**
+     * Adds every 16-bit value within Hamming distance {@code radius} of {@code value}.
+     */
+    static void neighbours(int value, int radius, Set<Integer> out) {
+        flip(value, 0, radius, out);
+    }
+
+    private static void flip(int value, int fromBit, int left, Set<Integer> out) {
+        out.add(value);
+        if (left == 0) {
+            return;
+        }
+        for (int bit = fromBit; bit < BAND_BITS; bit++) {
+            flip(value ^ (1 << bit), bit + 1, left - 1, out);
+        }
+    }
+
+    private record Probe(Long submissionId, Long studentId, Artifact artifact) {
+    }
+
+    private record Hit(Artifact artifact, PlagCorpusFpEntity row, double score) {
+    }
+}
@@ -0,0 +1,94 @@
+package cn.edu.jnu.labflowreport.plagiarism.service;
+
+import cn.edu.jnu.labflowreport.config.PlagiarismProperties;
+import cn.edu.jnu.labflowreport.persistence.entity.PlagArtifactFpEntity;
+import cn.edu.jnu.labflowreport.persistence.mapper.PlagArtifactFpMapper;
+import cn.edu.jnu.labflowreport.persistence.mapper.PlagSubmissionBestMatchMapper;
+import cn.edu.jnu.labflowreport.persistence.mapper.PlagTaskRunMapper;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.function.IntFunction;
+import java.util.function.ToIntFunction;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Retention for plagiarism runs. Only the latest {@code retainRunsPerTask} runs of a task keep their
+ * {@code plag_artifact_fp} and {@code plag_submission_best_match} rows, plus pinned runs, the task's latest
+ * DONE run and the base of an active incremental run. Older runs are first marked compacted, which keeps the
+ * run row and its summary, then their rows are deleted by id in batches, each statement committing on its
+ * own. A pass is bounded by {@code compactMaxBatches} statements; what is left is picked up by the next pass,
+ * also after a restart.
+ *
+ * <p>The same pass converts fingerprints written before {@code fp64} existed from hex to BIGINT.
+ */
+@Component
+class PlagiarismRunCompactor {
+
+    private final PlagiarismProperties props;
+    private final PlagTaskRunMapper runMapper;
+    private final PlagArtifactFpMapper fpMapper;
+    private final PlagSubmissionBestMatchMapper bestMapper;
+    private final TransactionTemplate tx;
+
+    PlagiarismRunCompactor(
+            PlagiarismProperties props,
+            PlagTaskRunMapper runMapper,
+            PlagArtifactFpMapper fpMapper,
+            PlagSubmissionBestMatchMapper bestMapper,
+            PlatformTransactionManager transactionManager
+    ) {
+        this.props = props;
+        this.runMapper = runMapper;
+        this.fpMapper = fpMapper;
+        this.bestMapper = bestMapper;
+        this.tx = new TransactionTemplate(transactionManager);
+    }
+
+    @Scheduled(
+            initialDelayString = "${app.plag.compact-initial-delay:PT5M}",
+            fixedDelayString = "${app.plag.compact-interval:PT15M}"
+    )
+    public void compact() {
+        int batchRows = Math.max(1, props.compactBatchRows());
+        int budget = Math.max(1, props.compactMaxBatches());
+        LocalDateTime now = LocalDateTime.now();
+        for (Long runId : runMapper.findCompactableRunIds(Math.max(1, props.retainRunsPerTask()), budget)) {
+            runMapper.claimCompaction(runId, now);
+        }
+        for (Long runId : runMapper.findCompactingRunIds(budget)) {
+            budget = deleteInBatches(budget, limit -> fpMapper.findIdsByRunId(runId, limit), fpMapper::deleteByIds, batchRows);
+            budget = deleteInBatches(budget, limit -> bestMapper.findIdsByRunId(runId, limit), bestMapper::deleteByIds, batchRows);
+            if (budget <= 0) {
+                return;
+            }
+        }
+        while (budget-- > 0) {
+            List<PlagArtifactFpEntity> legacy = fpMapper.findLegacyHex(batchRows);
+            if (legacy.isEmpty()) {
+                return;
+            }
+            tx.executeWithoutResult(status -> legacy.forEach(fp -> fpMapper.convertHex(fp.getId(), PlagiarismRunner.fp64(fp))));
+        }
+    }
+
+    /** Deletes until nothing is left or the budget runs out; returns the remaining budget. */
+    private static int deleteInBatches(
+            int budget,
+            IntFunction<List<Long>> nextIds,
+            ToIntFunction<List<Long>> delete,
+            int batchRows
+    ) {
+        while (budget > 0) {
+            List<Long> ids = nextIds.apply(batchRows);
+            if (ids.isEmpty()) {
+                break;
+            }
+            delete.applyAsInt(ids);
+            budget--;
+        }
+        return budget;
+    }
+}
@@ -0,0 +1,8 @@
+package cn.edu.jnu.labflowreport.plagiarism.service;
+
+/**
+ * A plagiarism run finished and its results became the task's latest. Published after the run row is marked
+ * done, outside any transaction.
+ */
+public record PlagiarismRunFinishedEvent(Long runId, Long taskId) {
+}
@@ -0,0 +1,969 @@
+package cn.edu.jnu.labflowreport.plagiarism.service;
+
+import cn.edu.jnu.labflowreport.common.api.ApiCode;
+import cn.edu.jnu.labflowreport.common.exception.BusinessException;
+import cn.edu.jnu.labflowreport.common.util.HashUtils;
+import cn.edu.jnu.labflowreport.config.PlagiarismProperties;
+import cn.edu.jnu.labflowreport.persistence.entity.PlagArtifactFpEntity;
+import cn.edu.jnu.labflowreport.persistence.entity.PlagSubmissionBestMatchEntity;
+import cn.edu.jnu.labflowreport.persistence.entity.PlagTaskRunEntity;
+import cn.edu.jnu.labflowreport.persistence.entity.ReportAttachmentEntity;
+import cn.edu.jnu.labflowreport.persistence.mapper.PlagArtifactFpMapper;
+import cn.edu.jnu.labflowreport.persistence.mapper.PlagSubmissionBestMatchMapper;
+import cn.edu.jnu.labflowreport.persistence.mapper.PlagTaskRunMapper;
+import cn.edu.jnu.labflowreport.persistence.mapper.ReportAttachmentMapper;
+import cn.edu.jnu.labflowreport.persistence.mapper.ReportSubmissionMapper;
+import cn.edu.jnu.labflowreport.plagiarism.service.AttachmentClassifier.AttachmentType;
+import cn.edu.jnu.labflowreport.plagiarism.service.ArtifactMatcher.Artifact;
+import cn.edu.jnu.labflowreport.plagiarism.vo.PlagiarismSummaryVO;
+import cn.edu.jnu.labflowreport.storage.FileStorageService;
+import cn.edu.jnu.labflowreport.workflow.vo.SubmissionVO;
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.baomidou.mybatisplus.core.conditions.update.LambdaUpdateWrapper;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.ToIntFunction;
+import java.util.stream.Collectors;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Executes plagiarism runs on a bounded background pool.
+ *
+ * <p>A run moves through three stages, each committing on its own: FINGERPRINT (submissions read and
+ * hashed in parallel on a shared fingerprint pool, then written by the run thread in one transaction per
+ * chunk with multi-row inserts; resumable by skipping submissions that already have a result row), MATCH
+ * and EVIDENCE
+ * (both recomputed from the stored fingerprints, so re-running them is idempotent). Runs left in
+ * QUEUED/RUNNING whose heartbeat went stale, e.g. after a node restart, are claimed and resumed by the
+ * periodic scan.
+ *
+ * <p>INCREMENTAL runs start by copying the fingerprints and best matches of their base run (the latest DONE
+ * run of the task), fingerprint only the submissions the base did not cover, and then compare just
+ * new x all pairs: new submissions get a full best-match search, existing ones are only updated when a
+ * new submission beats their carried-forward maximum.
+ *
+ * <p>Every fingerprint chunk is also written to the {@link PlagiarismCorpus}. Runs with a COURSE, TEACHER or
+ * ALL scope additionally look their fully searched submissions up in the corpus and report a match from
+ * another task when it scores higher than the best one inside the task.
+ */
+@Service
+public class PlagiarismRunner {
+
+    static final String STATUS_QUEUED = "QUEUED";
+    static final String STATUS_RUNNING = "RUNNING";
+    static final String STATUS_DONE = "DONE";
+    static final String STATUS_FAILED = "FAILED";
+
+    static final String STAGE_FINGERPRINT = "FINGERPRINT";
+    static final String STAGE_MATCH = "MATCH";
+    static final String STAGE_EVIDENCE = "EVIDENCE";
+
+    static final String MODE_FULL = "FULL";
+    static final String MODE_INCREMENTAL = "INCREMENTAL";
+
+    private static final Logger log = LoggerFactory.getLogger(PlagiarismRunner.class);
+    private static final int EVIDENCE_CHUNK = 50;
+
+    private final PlagiarismProperties props;
+    private final ObjectMapper objectMapper;
+    private final FileStorageService storageService;
+    private final ReportSubmissionMapper submissionMapper;
+    private final ReportAttachmentMapper attachmentMapper;
+    private final PlagTaskRunMapper runMapper;
+    private final PlagArtifactFpMapper fpMapper;
+    private final PlagSubmissionBestMatchMapper bestMapper;
+    private final FingerprintCache fpCache;
+    private final ExtractedTextCache extractedText;
+    private final PlagiarismCorpus corpus;
+    private final ApplicationEventPublisher eventPublisher;
+    private final TransactionTemplate tx;
+    private final TextTokenizer tokenizer;
+    private final String textVersion;
+    private final String codeVersion;
+    private final String algoVersion;
+    private final OoxmlTextExtractor.Budget extractBudget;
+
+    private final String workerId = UUID.randomUUID().toString();
+    private final Set<Long> inFlight = ConcurrentHashMap.newKeySet();
+    private final ThreadPoolExecutor executor;
+    private final int fingerprintParallelism;
+    private final ExecutorService fingerprintPool;
+
+    public PlagiarismRunner(
+            PlagiarismProperties props,
+            ObjectMapper objectMapper,
+            FileStorageService storageService,
+            ReportSubmissionMapper submissionMapper,
+            ReportAttachmentMapper attachmentMapper,
+            PlagTaskRunMapper runMapper,
+            PlagArtifactFpMapper fpMapper,
+            PlagSubmissionBestMatchMapper bestMapper,
+            FingerprintCache fpCache,
+            ExtractedTextCache extractedText,
+            PlagiarismCorpus corpus,
+            ApplicationEventPublisher eventPublisher,
+            PlatformTransactionManager transactionManager
+    ) {
+        this.props = props;
+        this.objectMapper = objectMapper;
+        this.storageService = storageService;
+        this.submissionMapper = submissionMapper;
+        this.attachmentMapper = attachmentMapper;
+        this.runMapper = runMapper;
+        this.fpMapper = fpMapper;
+        this.bestMapper = bestMapper;
+        this.fpCache = fpCache;
+        this.extractedText = extractedText;
+        this.corpus = corpus;
+        this.eventPublisher = eventPublisher;
+        this.tx = new TransactionTemplate(transactionManager);
+        this.tokenizer = TextTokenizer.of(props.tokenizer(), props.shingleSize());
+        // Text and image fingerprints are versioned separately in the cache; a run records both.
+        this.textVersion = TextTokenizer.WORD.equals(tokenizer.id()) ? "v1" : "v2-" + tokenizer.id();
+        this.codeVersion = "code-k" + props.codeKgram() + "w" + props.codeWindow();
+        this.algoVersion = textVersion + "/" + DHash64.VERSION + "/" + codeVersion;
+        this.extractBudget = new OoxmlTextExtractor.Budget(
+                props.extractMaxXmlBytes(), props.extractMaxChars(), props.extractMaxMillis());
+        int threads = Math.max(1, props.workerThreads());
+        AtomicInteger seq = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(
+                threads,
+                threads,
+                60L,
+                TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, props.queueCapacity())),
+                r -> {
+                    Thread t = new Thread(r, "plag-run-" + seq.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                }
+        );
+        // Shared by all runs; each run keeps at most twice this many submissions in flight.
+        this.fingerprintParallelism = props.fingerprintParallelism() > 0
+                ? props.fingerprintParallelism()
+                : Runtime.getRuntime().availableProcessors();
+        AtomicInteger fpSeq = new AtomicInteger();
+        this.fingerprintPool = Executors.newFixedThreadPool(fingerprintParallelism, r -> {
+            Thread t = new Thread(r, "plag-fp-" + fpSeq.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    String workerId() {
+        return workerId;
+    }
+
+    String algoVersion() {
+        return algoVersion;
+    }
+
+    void ensureCapacity() {
+        if (executor.getQueue().remainingCapacity() == 0) {
+            throw new BusinessException(ApiCode.BAD_REQUEST, HttpStatus.TOO_MANY_REQUESTS, "查重任务排队已满，请稍后再试");
+        }
+    }
+
+    void submit(Long runId) {
+        try {
+            executor.execute(() -> execute(runId));
+        } catch (RejectedExecutionException e) {
+            runMapper.failQueued(runId, "查重任务排队已满", LocalDateTime.now());
+            throw new BusinessException(ApiCode.BAD_REQUEST, HttpStatus.TOO_MANY_REQUESTS, "查重任务排队已满，请稍后再试");
+        }
+    }
+
+    @Scheduled(
+            initialDelayString = "${app.plag.resume-scan-initial-delay:PT15S}",
+            fixedDelayString = "${app.plag.resume-scan-interval:PT1M}"
+    )
+    public void resumeStaleRuns() {
+        LocalDateTime staleBefore = LocalDateTime.now().minusSeconds(props.runStaleSeconds());
+        for (Long runId : runMapper.findStaleActiveRunIds(staleBefore)) {
+            if (inFlight.contains(runId) || executor.getQueue().remainingCapacity() == 0) {
+                continue;
+            }
+            try {
+                executor.execute(() -> execute(runId));
+            } catch (RejectedExecutionException ignore) {
+                return;
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+        fingerprintPool.shutdownNow();
+    }
+
+    void execute(Long runId) {
+        if (!inFlight.add(runId)) {
+            return;
+        }
+        try {
+            LocalDateTime now = LocalDateTime.now();
+            if (runMapper.claim(runId, workerId, now, now.minusSeconds(props.runStaleSeconds())) == 0) {
+                return;
+            }
+            PlagTaskRunEntity run = runMapper.selectById(runId);
+            if (run == null) {
+                return;
+            }
+            // Resolved before any work, so a task moved out of its course fails the run here, not after fingerprinting.
+            PlagiarismCorpus.Scope scope = corpus.resolve(run.getTaskId(), run.getScope());
+            List<SubmissionVO> submissions = eligibleSubmissions(run.getTaskId());
+            Set<Long> newIds = null;
+            if (isIncremental(run)) {
+                newIds = carryForward(run, submissions);
+            }
+            int total = fingerprintStage(run, submissions);
+            if (total < 0) {
+                return;
+            }
+            MatchContext matched = matchStage(run, scope, submissions, newIds, total);
+            evidenceStage(run, submissions, newIds, matched, total);
+            finish(run, submissions, newIds);
+        } catch (Exception e) {
+            log.warn("plagiarism run {} failed", runId, e);
+            String msg = Objects.toString(e.getMessage(), e.getClass().getSimpleName());
+            runMapper.finish(runId, workerId, STATUS_FAILED, null, msg.length() > 500 ? msg.substring(0, 500) : msg, LocalDateTime.now());
+        } finally {
+            inFlight.remove(runId);
+        }
+    }
+
+    private static boolean isIncremental(PlagTaskRunEntity run) {
+        return MODE_INCREMENTAL.equals(run.getRunMode()) && run.getBaseRunId() != null;
+    }
+
+    /**
+     * Copies the base run's rows into this run (once; a resumed run already has them) and returns the ids
+     * of the submissions the base run did not cover.
+     */
+    private Set<Long> carryForward(PlagTaskRunEntity run, List<SubmissionVO> submissions) {
+        List<Long> baseIds = bestMapper.findSubmissionIdsByRunId(run.getBaseRunId());
+        tx.executeWithoutResult(status -> {
+            if (bestMapper.findSubmissionIdsByRunId(run.getId()).isEmpty()) {
+                fpMapper.copyRun(run.getBaseRunId(), run.getId());
+                bestMapper.copyRun(run.getBaseRunId(), run.getId());
+            }
+        });
+        Set<Long> base = new HashSet<>(baseIds);
+        Set<Long> newIds = new HashSet<>();
+        for (SubmissionVO s : submissions) {
+            if (!base.contains(s.getId())) {
+                newIds.add(s.getId());
+            }
+        }
+        return newIds;
+    }
+
+    private List<SubmissionVO> eligibleSubmissions(Long taskId) {
+        return submissionMapper.findSubmissionsByTask(taskId).stream()
+                .filter(s -> s != null && s.getId() != null && s.getStudentId() != null)
+                .toList();
+    }
+
+    /**
+     * Returns the artifact total, or -1 when the run row disappeared (e.g. the task was deleted) and work
+     * should stop.
+     */
+    private int fingerprintStage(PlagTaskRunEntity run, List<SubmissionVO> submissions) {
+        Set<Long> done = new HashSet<>(bestMapper.findSubmissionIdsByRunId(run.getId()));
+        Map<Long, List<ReportAttachmentEntity>> attachmentsBySubmission = new HashMap<>();
+        List<String> pendingSha256 = new ArrayList<>();
+        int total = 0;
+        int processed = 0;
+        for (SubmissionVO s : submissions) {
+            List<ReportAttachmentEntity> atts = attachmentMapper.findBySubmissionId(s.getId());
+            attachmentsBySubmission.put(s.getId(), atts);
+            total += 1 + atts.size();
+            if (done.contains(s.getId())) {
+                processed += 1 + atts.size();
+            } else {
+                pendingSha256.add(contentSha256(s));
+                atts.forEach(a -> pendingSha256.add(a.getFileSha256()));
+            }
+        }
+        fpCache.preload(pendingSha256);
+        if (runMapper.updateProgress(run.getId(), STAGE_FINGERPRINT, processed, total, LocalDateTime.now()) == 0) {
+            return -1;
+        }
+
+        // Workers read and hash in parallel outside any transaction; this thread is the single writer and
+        // commits each chunk's batched inserts in one transaction.
+        List<SubmissionVO> pending = submissions.stream().filter(s -> !done.contains(s.getId())).toList();
+        int[] progress = {processed, total};
+        boolean completed = FingerprintPipeline.run(
+                fingerprintPool,
+                pending,
+                fingerprintParallelism * 2,
+                Math.max(1, props.fingerprintChunkSubmissions()),
+                s -> fingerprintSubmission(run, s, attachmentsBySubmission.getOrDefault(s.getId(), List.of())),
+                chunk -> {
+                    List<PlagArtifactFpEntity> fps = new ArrayList<>();
+                    List<PlagSubmissionBestMatchEntity> bests = new ArrayList<>();
+                    int next = progress[0];
+                    for (Fingerprinted f : chunk) {
+                        fps.addAll(f.fps());
+                        bests.add(f.best());
+                        next += f.artifacts();
+                    }
+                    int progressDone = next;
+                    Integer updated = tx.execute(status -> {
+                        // Progress first: it locks the run row and tells whether this worker still owns the run,
+                        // so nothing is written for a run that was deleted, cancelled or taken over.
+                        int owned = runMapper.updateProgress(run.getId(), STAGE_FINGERPRINT, progressDone, progress[1], LocalDateTime.now());
+                        if (owned == 0) {
+                            return 0;
+                        }
+                        insertInBatches(fps, fpMapper::insertBatch);
+                        insertInBatches(bests, bestMapper::insertBatch);
+                        corpus.index(run.getTaskId(), algoVersion, fps);
+                        return owned;
+                    });
+                    progress[0] = progressDone;
+                    return updated != null && updated > 0;
+                });
+        if (!completed) {
+            return -1;
+        }
+        return total;
+    }
+
+    private <T> void insertInBatches(List<T> rows, ToIntFunction<List<T>> insert) {
+        int size = Math.max(1, props.insertBatchSize());
+        for (int from = 0; from < rows.size(); from += size) {
+            insert.applyAsInt(rows.subList(from, Math.min(rows.size(), from + size)));
+        }
+    }
+
+    /** Fingerprint rows and the result row of one submission, computed on a fingerprint worker. */
+    private record Fingerprinted(List<PlagArtifactFpEntity> fps, PlagSubmissionBestMatchEntity best, int artifacts) {
+    }
+
+    private Fingerprinted fingerprintSubmission(PlagTaskRunEntity run, SubmissionVO s, List<ReportAttachmentEntity> atts) {
+        List<PlagArtifactFpEntity> fps = new ArrayList<>();
+        List<PlagiarismSummaryVO.SkippedAttachment> skipped = new ArrayList<>();
+
+        String contentSha = contentSha256(s);
+        Long fpText = fpCache.get(contentSha, ArtifactMatcher.ALGO_SIMHASH64, "md-" + textVersion);
+        String plain = MarkdownText.toPlainText(Objects.toString(s.getContentMd(), ""));
+        if (fpText == null) {
+            fpText = SimHash64.fingerprint(plain, tokenizer);
+            fpCache.put(contentSha, ArtifactMatcher.ALGO_SIMHASH64, "md-" + textVersion, fpText);
+        }
+        fps.add(toFpEntity(run, s, null, ArtifactMatcher.ART_SUBMISSION_TEXT, ArtifactMatcher.ALGO_SIMHASH64, fpText, plain.length(), "text/plain", "submission.md"));
+
+        int count = 0;
+        for (ReportAttachmentEntity att : atts) {
+            if (count >= props.maxAttachmentsPerSubmission()) {
+                skipped.add(new PlagiarismSummaryVO.SkippedAttachment(att.getFileName(), att.getContentType(), "超过附件数量上限"));
+                continue;
+            }
+            count++;
+
+            AttachmentType type = AttachmentClassifier.classify(att.getFileName(), att.getContentType());
+            if (type == AttachmentType.SKIP) {
+                skipped.add(new PlagiarismSummaryVO.SkippedAttachment(att.getFileName(), att.getContentType(), "已跳过类型"));
+                continue;
+            }
+            if (type == AttachmentType.DOCUMENT) {
+                PlagArtifactFpEntity doc = documentFingerprint(run, s, att, skipped);
+                if (doc != null) {
+                    fps.add(doc);
+                }
+                continue;
+            }
+
+            boolean text = type == AttachmentType.TEXT;
+            CodeLexer.Language lang = text ? CodeLexer.languageOf(att.getFileName()) : null;
+            if (lang != null) {
+                PlagArtifactFpEntity code = codeFingerprint(run, s, att, lang, skipped);
+                if (code != null) {
+                    fps.add(code);
+                }
+                continue;
+            }
+            String algo = text ? ArtifactMatcher.ALGO_SIMHASH64 : ArtifactMatcher.ALGO_DHASH64;
+            String version = text ? "text-" + textVersion : DHash64.VERSION;
+            String artifactType = text ? ArtifactMatcher.ART_ATTACHMENT_TEXT : ArtifactMatcher.ART_ATTACHMENT_IMAGE;
+            long limit = text ? props.maxTextAttachmentBytes() : props.maxImageBytes();
+            String tooLarge = text ? "文本附件过大" : "图片附件过大";
+
+            if (att.getFileSize() != null && att.getFileSize() > limit) {
+                skipped.add(new PlagiarismSummaryVO.SkippedAttachment(att.getFileName(), att.getContentType(), tooLarge));
+                continue;
+            }
+            Long cached = att.getFileSize() == null ? null : fpCache.get(att.getFileSha256(), algo, version);
+            if (cached != null) {
+                fps.add(toFpEntity(run, s, att, artifactType, algo, cached, att.getFileSize(), att.getContentType(), att.getFileName()));
+                continue;
+            }
+
+            byte[] bytes = readAttachment(att, limit, tooLarge, skipped);
+            if (bytes == null) {
+                continue;
+            }
+            long fp;
+            if (text) {
+                fp = SimHash64.fingerprint(new String(bytes, StandardCharsets.UTF_8), tokenizer);
+            } else {
+                try {
+                    fp = DHash64.fingerprint(bytes);
+                } catch (Exception ex) {
+                    skipped.add(new PlagiarismSummaryVO.SkippedAttachment(att.getFileName(), att.getContentType(), "图片解析失败"));
+                    continue;
+                }
+            }
+            fpCache.put(sha256(att, bytes), algo, version, fp);
+            fps.add(toFpEntity(run, s, att, artifactType, algo, fp, bytes.length, att.getContentType(), att.getFileName()));
+        }
+
+        // The result row doubles as the "fingerprinted" marker used when a run is resumed.
+        PlagSubmissionBestMatchEntity bm = new PlagSubmissionBestMatchEntity();
+        bm.setRunId(run.getId());
+        bm.setTaskId(run.getTaskId());
+        bm.setSubmissionId(s.getId());
+        bm.setStudentId(s.getStudentId());
+        bm.setMaxScore(BigDecimal.ZERO.setScale(4, RoundingMode.HALF_UP));
+        bm.setCreatedAt(LocalDateTime.now());
+        bm.setEvidenceJson("[]");
+        bm.setSkippedAttachmentsJson(writeJsonSafe(skipped));
+        return new Fingerprinted(fps, bm, 1 + atts.size());
+    }
+
+    /**
+     * Source files are compared by their winnowing set only. A prose SimHash of the same file would bring
+     * back the shared skeleton code and imports the set leaves out as boilerplate, and win the max score.
+     */
+    private PlagArtifactFpEntity codeFingerprint(
+            PlagTaskRunEntity run,
+            SubmissionVO s,
+            ReportAttachmentEntity att,
+            CodeLexer.Language lang,
+            List<PlagiarismSummaryVO.SkippedAttachment> skipped
+    ) {
+        long limit = props.maxTextAttachmentBytes();
+        if (att.getFileSize() != null && att.getFileSize() > limit) {
+            skipped.add(new PlagiarismSummaryVO.SkippedAttachment(att.getFileName(), att.getContentType(), "文本附件过大"));
+            return null;
+        }
+        int[] codeSet = att.getFileSize() == null ? null : fpCache.getCodeSet(att.getFileSha256(), codeVersion);
+        if (codeSet != null) {
+            return toCodeFpEntity(run, s, att, codeSet, att.getFileSize());
+        }
+        byte[] bytes = readAttachment(att, limit, "文本附件过大", skipped);
+        if (bytes == null) {
+            return null;
+        }
+        int[] tokens = CodeLexer.tokens(new String(bytes, StandardCharsets.UTF_8), lang);
+        codeSet = CodeWinnow.fingerprint(tokens, props.codeKgram(), props.codeWindow());
+        fpCache.putCodeSet(sha256(att, bytes), codeVersion, codeSet);
+        return toCodeFpEntity(run, s, att, codeSet, bytes.length);
+    }
+
+    /** The attachment's bytes, or null after recording why it was skipped. */
+    private byte[] readAttachment(
+            ReportAttachmentEntity att,
+            long limit,
+            String tooLarge,
+            List<PlagiarismSummaryVO.SkippedAttachment> skipped
+    ) {
+        byte[] bytes;
+        try {
+            bytes = storageService.readBytes(att.getFilePath());
+        } catch (Exception e) {
+            skipped.add(new PlagiarismSummaryVO.SkippedAttachment(att.getFileName(), att.getContentType(), "附件读取失败"));
+            return null;
+        }
+        if (bytes.length > limit) {
+            skipped.add(new PlagiarismSummaryVO.SkippedAttachment(att.getFileName(), att.getContentType(), tooLarge));
+            return null;
+        }
+        return bytes;
+    }
+
+    private static String sha256(ReportAttachmentEntity att, byte[] bytes) {
+        return att.getFileSha256() == null || att.getFileSha256().isBlank() ? HashUtils.sha256Hex(bytes) : att.getFileSha256();
+    }
+
+    /**
+     * docx/xlsx/pptx attachments are streamed from storage into {@link OoxmlTextExtractor}, never read into
+     * a byte array. The extracted text is cached by file_sha256 and fingerprinted like a text attachment;
+     * text cut short by the extraction clock is used for this run only, so a later run extracts it again.
+     */
+    private PlagArtifactFpEntity documentFingerprint(
+            PlagTaskRunEntity run,
+            SubmissionVO s,
+            ReportAttachmentEntity att,
+            List<PlagiarismSummaryVO.SkippedAttachment> skipped
+    ) {
+        if (att.getFileSize() != null && att.getFileSize() > props.maxDocumentBytes()) {
+            skipped.add(new PlagiarismSummaryVO.SkippedAttachment(att.getFileName(), att.getContentType(), "文档附件过大"));
+            return null;
+        }
+        String sha = att.getFileSha256();
+        String version = "doc-" + textVersion + "-" + OoxmlTextExtractor.VERSION;
+        Long fp = fpCache.get(sha, ArtifactMatcher.ALGO_SIMHASH64, version);
+        if (fp == null) {
+            OoxmlTextExtractor.Result text = extractedText.get(sha);
+            if (text == null) {
+                try (InputStream in = storageService.openStream(att.getFilePath())) {
+                    text = OoxmlTextExtractor.extract(in, OoxmlTextExtractor.formatOf(att.getFileName()), extractBudget);
+                } catch (BusinessException e) {
+                    skipped.add(new PlagiarismSummaryVO.SkippedAttachment(att.getFileName(), att.getContentType(), "附件读取失败"));
+                    return null;
+                } catch (Exception e) {
+                    skipped.add(new PlagiarismSummaryVO.SkippedAttachment(att.getFileName(), att.getContentType(), "文档解析失败"));
+                    return null;
+                }
+                extractedText.put(sha, text);
+            }
+            if (text.text().isBlank()) {
+                skipped.add(new PlagiarismSummaryVO.SkippedAttachment(att.getFileName(), att.getContentType(), "文档无可提取文本"));
+                return null;
+            }
+            fp = SimHash64.fingerprint(text.text(), tokenizer);
+            if (!text.timedOut()) {
+                fpCache.put(sha, ArtifactMatcher.ALGO_SIMHASH64, version, fp);
+            }
+        }
+        long byteLen = att.getFileSize() == null ? 0L : att.getFileSize();
+        return toFpEntity(run, s, att, ArtifactMatcher.ART_ATTACHMENT_TEXT, ArtifactMatcher.ALGO_SIMHASH64, fp, byteLen,
+                att.getContentType(), att.getFileName());
+    }
+
+    private MatchContext matchStage(
+            PlagTaskRunEntity run,
+            PlagiarismCorpus.Scope scope,
+            List<SubmissionVO> submissions,
+            Set<Long> newIds,
+            int total
+    ) {
+        runMapper.updateProgress(run.getId(), STAGE_MATCH, total, total, LocalDateTime.now());
+
+        Map<Long, List<Artifact>> artifactsBySubmission = new HashMap<>();
+        Map<Long, Long> submissionTextFp = new HashMap<>();
+        for (PlagArtifactFpEntity fp : fpMapper.findByRunId(run.getId())) {
+            if (isSourceProse(fp)) {
+                continue;
+            }
+            long v = fp64(fp);
+            int[] codeSet = ArtifactMatcher.ALGO_CODE_WINNOW.equals(fp.getAlgo()) ? CodeWinnow.decode(fp.getFpSet()) : null;
+            artifactsBySubmission.computeIfAbsent(fp.getSubmissionId(), k -> new ArrayList<>())
+                    .add(new Artifact(fp.getArtifactType(), fp.getAlgo(), v, fp.getAttachmentId(), fp.getFileName(), codeSet));
+            if (ArtifactMatcher.ART_SUBMISSION_TEXT.equals(fp.getArtifactType())) {
+                submissionTextFp.put(fp.getSubmissionId(), v);
+            }
+        }
+
+        // Cross-task scopes: look the submissions that get a full search up in the corpus as well.
+        Map<Long, ArtifactMatcher.Best> external = Map.of();
+        if (scope.crossTask()) {
+            Map<Long, Long> studentBySubmission = new HashMap<>();
+            Map<Long, List<Artifact>> searched = new HashMap<>();
+            for (SubmissionVO s : submissions) {
+                studentBySubmission.put(s.getId(), s.getStudentId());
+                if ((newIds == null || newIds.contains(s.getId())) && artifactsBySubmission.containsKey(s.getId())) {
+                    searched.put(s.getId(), artifactsBySubmission.get(s.getId()));
+                }
+            }
+            external = corpus.search(scope, algoVersion, studentBySubmission, searched);
+            submissionTextFp.putAll(corpus.submissionTextFps(algoVersion,
+                    external.values().stream().map(b -> b.bestOtherSubmissionId).distinct().toList()));
+        }
+        Map<Long, ArtifactMatcher.Best> corpusBest = external;
+
+        ArtifactMatcher matcher = new ArtifactMatcher(
+                props.textThreshold(),
+                props.imageThreshold(),
+                submissions.size() >= props.lshMinSubmissions(),
+                props.codeBoilerplateRatio()
+        );
+        for (SubmissionVO s : submissions) {
+            if (artifactsBySubmission.containsKey(s.getId())) {
+                matcher.add(s.getId(), s.getStudentId(), artifactsBySubmission.get(s.getId()));
+            }
+        }
+
+        Map<Long, PlagSubmissionBestMatchEntity> carried = new HashMap<>();
+        if (newIds != null) {
+            for (PlagSubmissionBestMatchEntity bm : bestMapper.findScoresByRunId(run.getId())) {
+                carried.put(bm.getSubmissionId(), bm);
+            }
+        }
+
+        int topK = Math.max(0, props.pairTopK());
+        tx.executeWithoutResult(status -> {
+            for (SubmissionVO s : submissions) {
+                if (!artifactsBySubmission.containsKey(s.getId())) continue;
+                ArtifactMatcher.Best best;
+                NeighbourList.Builder top = new NeighbourList.Builder(topK);
+                NeighbourList neighbours;
+                if (newIds == null || newIds.contains(s.getId())) {
+                    best = matcher.findBest(s.getId(), other -> true, top);
+                    neighbours = top.build();
+                    ArtifactMatcher.Best outside = corpusBest.get(s.getId());
+                    if (outside != null) {
+                        best = withCorpusMatch(best, outside);
+                    }
+                } else {
+                    // Existing submission: only a new one can change its result or join its neighbours.
+                    best = matcher.findBest(s.getId(), newIds::contains, top);
+                    NeighbourList found = top.build();
+                    PlagSubmissionBestMatchEntity prev = carried.get(s.getId());
+                    neighbours = prev == null ? found : NeighbourList.decode(prev.getNeighbours()).merge(found, topK);
+                    BigDecimal score = BigDecimal.valueOf(best.maxScore).setScale(4, RoundingMode.HALF_UP);
+                    BigDecimal carriedMax = prev == null ? null : prev.getMaxScore();
+                    if (best.bestOtherSubmissionId == null || (carriedMax != null && score.compareTo(carriedMax) <= 0)) {
+                        if (found.size() > 0) {
+                            bestMapper.update(null, new LambdaUpdateWrapper<PlagSubmissionBestMatchEntity>()
+                                    .eq(PlagSubmissionBestMatchEntity::getRunId, run.getId())
+                                    .eq(PlagSubmissionBestMatchEntity::getSubmissionId, s.getId())
+                                    .set(PlagSubmissionBestMatchEntity::getNeighbours, neighbours.encode()));
+                        }
+                        continue;
+                    }
+                }
+                bestMapper.update(null, new LambdaUpdateWrapper<PlagSubmissionBestMatchEntity>()
+                        .eq(PlagSubmissionBestMatchEntity::getRunId, run.getId())
+                        .eq(PlagSubmissionBestMatchEntity::getSubmissionId, s.getId())
+                        .set(PlagSubmissionBestMatchEntity::getBestOtherSubmissionId, best.bestOtherSubmissionId)
+                        .set(PlagSubmissionBestMatchEntity::getBestOtherStudentId, best.bestOtherStudentId)
+                        .set(PlagSubmissionBestMatchEntity::getMaxScore, BigDecimal.valueOf(best.maxScore).setScale(4, RoundingMode.HALF_UP))
+                        .set(PlagSubmissionBestMatchEntity::getEvidenceJson, writeJsonSafe(best.evidence))
+                        .set(PlagSubmissionBestMatchEntity::getNeighbours, neighbours.encode()));
+            }
+        });
+        return new MatchContext(submissionTextFp);
+    }
+
+    /**
+     * The higher of the in-task and the corpus match becomes the reported best match; the corpus evidence is
+     * kept either way.
+     */
+    private static ArtifactMatcher.Best withCorpusMatch(ArtifactMatcher.Best inTask, ArtifactMatcher.Best outside) {
+        List<PlagiarismSummaryVO.EvidenceItem> evidence = new ArrayList<>(inTask.evidence);
+        evidence.addAll(outside.evidence);
+        ArtifactMatcher.Best winner = outside.maxScore > inTask.maxScore ? outside : inTask;
+        winner.evidence = evidence;
+        return winner;
+    }
+
+    private void evidenceStage(
+            PlagTaskRunEntity run,
+            List<SubmissionVO> submissions,
+            Set<Long> newIds,
+            MatchContext matched,
+            int total
+    ) {
+        runMapper.updateProgress(run.getId(), STAGE_EVIDENCE, total, total, LocalDateTime.now());
+
+        Map<Long, SubmissionVO> byId = submissions.stream()
+                .collect(Collectors.toMap(SubmissionVO::getId, s -> s, (a, b) -> a));
+        Map<Long, String> plainCache = new HashMap<>();
+        List<PlagSubmissionBestMatchEntity> rows = bestMapper.findByRunId(run.getId());
+        if (newIds != null) {
+            // Carried-forward rows still pointing at an existing submission kept their evidence.
+            rows = rows.stream()
+                    .filter(bm -> newIds.contains(bm.getSubmissionId()) || newIds.contains(bm.getBestOtherSubmissionId()))
+                    .toList();
+        }
+
+        for (int from = 0; from < rows.size(); from += EVIDENCE_CHUNK) {
+            List<PlagSubmissionBestMatchEntity> chunk = rows.subList(from, Math.min(rows.size(), from + EVIDENCE_CHUNK));
+            tx.executeWithoutResult(status -> {
+                for (PlagSubmissionBestMatchEntity bm : chunk) {
+                    List<PlagiarismSummaryVO.EvidenceItem> evidence = new ArrayList<>();
+                    Long otherId = bm.getBestOtherSubmissionId();
+                    // Shared passages with the best match (for highlighting).
+                    if (otherId != null) {
+                        PlagiarismSummaryVO.EvidenceItem text = textEvidence(
+                                ArtifactMatcher.ART_SUBMISSION_TEXT, bm.getSubmissionId(), otherId, matched, byId, plainCache);
+                        if (text != null) {
+                            evidence.add(text);
+                        }
+                    }
+
+                    // Attachment/image evidence written by the match stage; drop stale text evidence on resume.
+                    for (PlagiarismSummaryVO.EvidenceItem item : readEvidenceList(bm.getEvidenceJson())) {
+                        if (!ArtifactMatcher.ART_SUBMISSION_TEXT.equals(item.type())
+                                && !ArtifactMatcher.ART_SUBMISSION_TEXT_MATCH.equals(item.type())) {
+                            evidence.add(item);
+                        }
+                    }
+
+                    // Keep top K.
+                    evidence.sort((x, y) -> y.score().compareTo(x.score()));
+                    if (evidence.size() > 5) {
+                        evidence = new ArrayList<>(evidence.subList(0, 5));
+                    }
+
+                    // Passages shared with the runner-up students.
+                    for (Long alt : runnersUp(bm, byId)) {
+                        PlagiarismSummaryVO.EvidenceItem item = textEvidence(
+                                ArtifactMatcher.ART_SUBMISSION_TEXT_MATCH, bm.getSubmissionId(), alt, matched, byId, plainCache);
+                        if (item != null) {
+                            evidence.add(item);
+                        }
+                    }
+                    bestMapper.update(null, new LambdaUpdateWrapper<PlagSubmissionBestMatchEntity>()
+                            .eq(PlagSubmissionBestMatchEntity::getId, bm.getId())
+                            .set(PlagSubmissionBestMatchEntity::getEvidenceJson, writeJsonSafe(evidence)));
+                }
+                runMapper.updateProgress(run.getId(), STAGE_EVIDENCE, total, total, LocalDateTime.now());
+            });
+        }
+    }
+
+    /**
+     * The most similar submission of each of the top evidence-top-k other students apart from the best match,
+     * read from the neighbour list the match stage stored instead of scoring every pair again.
+     */
+    private List<Long> runnersUp(PlagSubmissionBestMatchEntity bm, Map<Long, SubmissionVO> byId) {
+        NeighbourList neighbours = NeighbourList.decode(bm.getNeighbours());
+        Set<Long> students = new HashSet<>();
+        List<Long> out = new ArrayList<>();
+        for (int i = 0; i < neighbours.size() && students.size() < props.evidenceTopK(); i++) {
+            SubmissionVO other = submission(byId, neighbours.id(i));
+            if (other == null || !students.add(other.getStudentId())) {
+                continue;
+            }
+            if (!Objects.equals(other.getStudentId(), bm.getBestOtherStudentId())) {
+                out.add(other.getId());
+            }
+        }
+        return out;
+    }
+
+    /**
+     * Text evidence between two submissions: every shared passage with character offsets into both plain
+     * texts, or null when they share none.
+     */
+    private PlagiarismSummaryVO.EvidenceItem textEvidence(
+            String type,
+            Long submissionId,
+            Long otherId,
+            MatchContext matched,
+            Map<Long, SubmissionVO> byId,
+            Map<Long, String> plainCache
+    ) {
+        String a = plainText(plainCache, byId, submissionId);
+        String b = plainText(plainCache, byId, otherId);
+        PassageMatcher.Result result = PassageMatcher.match(a, b, props.evidenceMinPassageChars());
+        if (result.passages().isEmpty()) {
+            return null;
+        }
+        List<PassageMatcher.Passage> kept = new ArrayList<>(result.passages());
+        kept.sort((x, y) -> Integer.compare(y.length(), x.length()));
+        if (kept.size() > props.evidenceMaxPassages()) {
+            kept = new ArrayList<>(kept.subList(0, props.evidenceMaxPassages()));
+        }
+
+        List<Map<String, Object>> fragments = new ArrayList<>();
+        for (PassageMatcher.Passage p : kept.subList(0, Math.min(10, kept.size()))) {
+            fragments.add(Map.of(
+                    "text", a.substring(p.aStart(), p.aEnd()),
+                    "score", BigDecimal.ONE.setScale(4, RoundingMode.HALF_UP)
+            ));
+        }
+        kept.sort((x, y) -> Integer.compare(x.aStart(), y.aStart()));
+        List<Map<String, Object>> passages = new ArrayList<>();
+        for (PassageMatcher.Passage p : kept) {
+            passages.add(Map.of(
+                    "aStart", p.aStart(),
+                    "aEnd", p.aEnd(),
+                    "bStart", p.bStart(),
+                    "bEnd", p.bEnd(),
+                    "length", p.length()
+            ));
+        }
+
+        Map<String, Object> detail = new HashMap<>();
+        detail.put("fragments", fragments);
+        detail.put("passages", passages);
+        detail.put("coverage", BigDecimal.valueOf(result.coverage()).setScale(4, RoundingMode.HALF_UP));
+        detail.put("otherSubmissionId", otherId);
+        SubmissionVO other = submission(byId, otherId);
+        if (other != null) {
+            detail.put("otherStudentId", other.getStudentId());
+            detail.put("otherStudentName", Objects.toString(
+                    other.getStudentDisplayName() != null ? other.getStudentDisplayName() : other.getStudentUsername(), ""));
+        }
+        double simText = SimHash64.similarity(
+                matched.submissionTextFp().getOrDefault(submissionId, 0L),
+                matched.submissionTextFp().getOrDefault(otherId, 0L)
+        );
+        return new PlagiarismSummaryVO.EvidenceItem(type, BigDecimal.valueOf(simText).setScale(4, RoundingMode.HALF_UP), detail);
+    }
+
+    private void finish(PlagTaskRunEntity run, List<SubmissionVO> submissions, Set<Long> newIds) {
+        List<PlagSubmissionBestMatchEntity> rows = bestMapper.findByRunId(run.getId());
+        Set<Long> included = rows.stream().map(PlagSubmissionBestMatchEntity::getSubmissionId).collect(Collectors.toSet());
+        int skippedTotal = 0;
+        for (PlagSubmissionBestMatchEntity bm : rows) {
+            skippedTotal += readSkippedCount(bm.getSkippedAttachmentsJson());
+        }
+        long artifacts = fpMapper.selectCount(new LambdaQueryWrapper<PlagArtifactFpEntity>()
+                .eq(PlagArtifactFpEntity::getRunId, run.getId()));
+
+        Map<String, Object> summary = new HashMap<>();
+        summary.put("submissionsTotal", included.size());
+        summary.put("studentsDistinct", submissions.stream()
+                .filter(s -> included.contains(s.getId()))
+                .map(SubmissionVO::getStudentId)
+                .collect(Collectors.toSet())
+                .size());
+        summary.put("mode", "ALL_VERSIONS");
+        summary.put("artifacts", artifacts);
+        summary.put("skippedAttachments", skippedTotal);
+        summary.put("runMode", newIds == null ? MODE_FULL : MODE_INCREMENTAL);
+        summary.put("scope", run.getScope() == null ? PlagiarismCorpus.SCOPE_TASK : run.getScope());
+        if (newIds != null) {
+            summary.put("baseRunId", run.getBaseRunId());
+            summary.put("newSubmissions", newIds.size());
+        }
+
+        if (runMapper.finishDone(run.getId(), workerId, writeJsonSafe(summary), LocalDateTime.now()) == 0) {
+            return;
+        }
+        // The report quality analytics list the risk rows of the latest finished run.
+        eventPublisher.publishEvent(new PlagiarismRunFinishedEvent(run.getId(), run.getTaskId()));
+    }
+
+    private static String contentSha256(SubmissionVO s) {
+        // Hash of the exact markdown, not report_submission.content_sha256: that one is taken after
+        // CRLF/trim normalisation, which the plain-text extraction does not apply.
+        return HashUtils.sha256Hex(Objects.toString(s.getContentMd(), "").getBytes(StandardCharsets.UTF_8));
+    }
+
+    private record MatchContext(Map<Long, Long> submissionTextFp) {
+    }
+
+    private String plainText(Map<Long, String> cache, Map<Long, SubmissionVO> byId, Long submissionId) {
+        return cache.computeIfAbsent(submissionId, id -> {
+            SubmissionVO s = submission(byId, id);
+            return s == null ? "" : MarkdownText.toPlainText(Objects.toString(s.getContentMd(), ""));
+        });
+    }
+
+    private SubmissionVO submission(Map<Long, SubmissionVO> byId, Long id) {
+        // Best matches found in the corpus belong to other tasks and are loaded on demand.
+        return byId.computeIfAbsent(id, submissionMapper::findSubmissionById);
+    }
+
+    private PlagArtifactFpEntity toFpEntity(
+            PlagTaskRunEntity run,
+            SubmissionVO submission,
+            ReportAttachmentEntity att,
+            String artifactType,
+            String algo,
+            long fp,
+            long byteLen,
+            String contentType,
+            String fileName
+    ) {
+        PlagArtifactFpEntity e = new PlagArtifactFpEntity();
+        e.setRunId(run.getId());
+        e.setTaskId(run.getTaskId());
+        e.setSubmissionId(submission.getId());
+        e.setStudentId(submission.getStudentId());
+        e.setAttachmentId(att == null ? null : att.getId());
+        e.setArtifactType(artifactType);
+        e.setAlgo(algo);
+        e.setFp64(fp);
+        e.setByteLen(byteLen);
+        e.setContentType(contentType);
+        e.setFileName(fileName);
+        e.setCreatedAt(LocalDateTime.now());
+        return e;
+    }
+
+    /**
+     * A prose SimHash row of a source file, carried forward from a run made before source files were only
+     * fingerprinted as code.
+     */
+    private static boolean isSourceProse(PlagArtifactFpEntity fp) {
+        return ArtifactMatcher.ALGO_SIMHASH64.equals(fp.getAlgo())
+                && ArtifactMatcher.ART_ATTACHMENT_TEXT.equals(fp.getArtifactType())
+                && CodeLexer.languageOf(fp.getFileName()) != null;
+    }
+
+    /** The stored fingerprint; rows not yet converted by the compaction job still carry it as hex. */
+    static long fp64(PlagArtifactFpEntity fp) {
+        return fp.getFp64() != null ? fp.getFp64() : Long.parseUnsignedLong(fp.getFp64Hex(), 16);
+    }
+
+    private PlagArtifactFpEntity toCodeFpEntity(
+            PlagTaskRunEntity run,
+            SubmissionVO submission,
+            ReportAttachmentEntity att,
+            int[] codeSet,
+            long byteLen
+    ) {
+        PlagArtifactFpEntity e = toFpEntity(run, submission, att, ArtifactMatcher.ART_ATTACHMENT_CODE,
+                ArtifactMatcher.ALGO_CODE_WINNOW, CodeWinnow.summary(codeSet), byteLen, att.getContentType(), att.getFileName());
+        e.setFpSet(CodeWinnow.encode(codeSet));
+        return e;
+    }
+
+    private String writeJsonSafe(Object o) {
+        if (o == null) return "[]";
+        try {
+            return objectMapper.writeValueAsString(o);
+        } catch (Exception e) {
+            return "[]";
+        }
+    }
+
+    private List<PlagiarismSummaryVO.EvidenceItem> readEvidenceList(String json) {
+        if (json == null || json.isBlank()) return List.of();
+        try {
+            return objectMapper.readValue(json, new TypeReference<List<PlagiarismSummaryVO.EvidenceItem>>() {
+            });
+        } catch (Exception e) {
+            return List.of();
+        }
+    }
+
+    private int readSkippedCount(String json) {
+        if (json == null || json.isBlank()) return 0;
+        try {
+            return objectMapper.readValue(json, new TypeReference<List<PlagiarismSummaryVO.SkippedAttachment>>() {
+            }).size();
+        } catch (Exception e) {
+            return 0;
+        }
+    }
+}
@@ -4,33 +4,32 @@ import cn.edu.jnu.labflowreport.auth.model.AuthenticatedUser;
 import cn.edu.jnu.labflowreport.common.api.ApiCode;
 import cn.edu.jnu.labflowreport.common.exception.BusinessException;
 import cn.edu.jnu.labflowreport.config.PlagiarismProperties;
-import cn.edu.jnu.labflowreport.persistence.entity.PlagArtifactFpEntity;
+import cn.edu.jnu.labflowreport.persistence.entity.ExpTaskEntity;
 import cn.edu.jnu.labflowreport.persistence.entity.PlagSubmissionBestMatchEntity;
 import cn.edu.jnu.labflowreport.persistence.entity.PlagTaskRunEntity;
-import cn.edu.jnu.labflowreport.persistence.entity.ReportAttachmentEntity;
 import cn.edu.jnu.labflowreport.persistence.entity.SysUserEntity;
 import cn.edu.jnu.labflowreport.persistence.mapper.PlagArtifactFpMapper;
 import cn.edu.jnu.labflowreport.persistence.mapper.PlagSubmissionBestMatchMapper;
 import cn.edu.jnu.labflowreport.persistence.mapper.PlagTaskRunMapper;
 import cn.edu.jnu.labflowreport.persistence.mapper.ExpTaskMapper;
-import cn.edu.jnu.labflowreport.persistence.mapper.ReportAttachmentMapper;
 import cn.edu.jnu.labflowreport.persistence.mapper.ReportSubmissionMapper;
 import cn.edu.jnu.labflowreport.persistence.mapper.SysUserMapper;
+import cn.edu.jnu.labflowreport.plagiarism.service.AttachmentClassifier.AttachmentType;
+import cn.edu.jnu.labflowreport.plagiarism.vo.PlagiarismClusterVO;
 import cn.edu.jnu.labflowreport.plagiarism.vo.PlagiarismRunVO;
 import cn.edu.jnu.labflowreport.plagiarism.vo.PlagiarismSummaryVO;
 import cn.edu.jnu.labflowreport.plagiarism.vo.PlagiarismStudentHistoryVO;
-import cn.edu.jnu.labflowreport.storage.FileStorageService;
 import cn.edu.jnu.labflowreport.workflow.vo.SubmissionVO;
 import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
-import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
@@ -39,244 +38,311 @@ import java.util.Set;
 import java.util.stream.Collectors;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 @Service
 public class PlagiarismService {
 
-    private static final String ALGO_SIMHASH64 = "SIMHASH64";
-    private static final String ALGO_DHASH64 = "DHASH64";
-    private static final String ART_SUBMISSION_TEXT = "SUBMISSION_TEXT";
-    private static final String ART_ATTACHMENT_TEXT = "ATTACHMENT_TEXT";
-    private static final String ART_ATTACHMENT_IMAGE = "ATTACHMENT_IMAGE";
-
-    private static final Set<String> TEXT_EXTS = Set.of(
-            "txt", "md", "json", "xml", "yml", "yaml", "sql",
-            "java", "py", "js", "ts", "c", "cpp", "h", "hpp", "cs", "go", "rs", "kt",
-            "sh", "bat", "ps1"
-    );
-
-    private static final Set<String> SKIP_EXTS = Set.of(
-            "xlsx", "xls", "doc", "docx", "pdf", "ppt", "pptx", "zip", "rar", "7z"
-    );
+    private static final String ART_ATTACHMENT_TEXT = ArtifactMatcher.ART_ATTACHMENT_TEXT;
+    private static final String ART_ATTACHMENT_IMAGE = ArtifactMatcher.ART_ATTACHMENT_IMAGE;
 
     private final PlagiarismProperties props;
     private final ObjectMapper objectMapper;
-    private final FileStorageService storageService;
+    private final PlagiarismRunner runner;
+    private final PlagiarismCorpus corpus;
     private final ReportSubmissionMapper submissionMapper;
-    private final ReportAttachmentMapper attachmentMapper;
     private final SysUserMapper sysUserMapper;
     private final ExpTaskMapper expTaskMapper;
     private final PlagTaskRunMapper runMapper;
     private final PlagArtifactFpMapper fpMapper;
     private final PlagSubmissionBestMatchMapper bestMapper;
+    private final TransactionTemplate tx;
 
     public PlagiarismService(
             PlagiarismProperties props,
             ObjectMapper objectMapper,
-            FileStorageService storageService,
+            PlagiarismRunner runner,
+            PlagiarismCorpus corpus,
             ReportSubmissionMapper submissionMapper,
-            ReportAttachmentMapper attachmentMapper,
             SysUserMapper sysUserMapper,
             ExpTaskMapper expTaskMapper,
             PlagTaskRunMapper runMapper,
             PlagArtifactFpMapper fpMapper,
-            PlagSubmissionBestMatchMapper bestMapper
+            PlagSubmissionBestMatchMapper bestMapper,
+            PlatformTransactionManager transactionManager
     ) {
         this.props = props;
         this.objectMapper = objectMapper;
-        this.storageService = storageService;
+        this.runner = runner;
+        this.corpus = corpus;
         this.submissionMapper = submissionMapper;
-        this.attachmentMapper = attachmentMapper;
         this.sysUserMapper = sysUserMapper;
         this.expTaskMapper = expTaskMapper;
         this.runMapper = runMapper;
         this.fpMapper = fpMapper;
         this.bestMapper = bestMapper;
+        this.tx = new TransactionTemplate(transactionManager);
     }
 
-    @Transactional
-    public PlagiarismRunVO runForTask(AuthenticatedUser actor, Long taskId) {
+    public PlagiarismRunVO runForTask(AuthenticatedUser actor, Long taskId, String mode, String scope) {
         ensureTeacher(actor);
         if (taskId == null) {
             throw new BusinessException(ApiCode.BAD_REQUEST, "taskId 不能为空");
         }
+        String runMode = mode == null || mode.isBlank() ? PlagiarismRunner.MODE_FULL : mode.trim().toUpperCase(Locale.ROOT);
+        if (!PlagiarismRunner.MODE_FULL.equals(runMode) && !PlagiarismRunner.MODE_INCREMENTAL.equals(runMode)) {
+            throw new BusinessException(ApiCode.BAD_REQUEST, HttpStatus.BAD_REQUEST, "mode 仅支持 FULL 或 INCREMENTAL");
+        }
         ensureTeacherCanManageTask(actor, taskId);
+        // Fails early when the scope cannot apply to this task (COURSE without a course).
+        String runScope = corpus.resolve(taskId, scope).name();
 
         List<SubmissionVO> all = submissionMapper.findSubmissionsByTask(taskId);
-        List<SubmissionVO> submissions = all.stream()
+        Set<Long> studentsDistinct = all.stream()
                 .filter(s -> s != null && s.getId() != null && s.getStudentId() != null)
-                .toList();
-        Set<Long> studentsDistinct = submissions.stream().map(SubmissionVO::getStudentId).collect(Collectors.toSet());
+                .map(SubmissionVO::getStudentId)
+                .collect(Collectors.toSet());
         if (studentsDistinct.size() < 2) {
             throw new BusinessException(ApiCode.BAD_REQUEST, HttpStatus.BAD_REQUEST, "提交数量不足，至少需要 2 位不同学生的报告才能查重");
         }
 
+        // One active run per task: a second click returns the run already in progress. The task row lock makes
+        // concurrent clicks take turns, so only the first one inserts a run.
+        RunSlot slot = tx.execute(status -> {
+            expTaskMapper.findByIdForUpdate(taskId);
+            PlagTaskRunEntity active = runMapper.findActiveByTaskId(taskId);
+            if (active != null) {
+                return new RunSlot(active, false);
+            }
+            runner.ensureCapacity();
+            return new RunSlot(insertRun(actor, taskId, runMode, runScope, all), true);
+        });
+        // Queued only after the commit, so the worker finds the run row.
+        if (slot.created()) {
+            runner.submit(slot.run().getId());
+        }
+        return toRunVO(slot.run());
+    }
+
+    private PlagTaskRunEntity insertRun(AuthenticatedUser actor, Long taskId, String requestedMode, String runScope,
+                                        List<SubmissionVO> all) {
+        String runMode = requestedMode;
+        PlagTaskRunEntity base = null;
+        if (PlagiarismRunner.MODE_INCREMENTAL.equals(runMode)) {
+            base = incrementalBase(taskId, runScope, all);
+            if (base == null) {
+                runMode = PlagiarismRunner.MODE_FULL;
+            }
+        }
+
+        LocalDateTime now = LocalDateTime.now();
         PlagTaskRunEntity run = new PlagTaskRunEntity();
         run.setTaskId(taskId);
-        run.setStatus("RUNNING");
-        run.setAlgoVersion("v1");
+        run.setStatus(PlagiarismRunner.STATUS_QUEUED);
+        run.setRunMode(runMode);
+        run.setScope(runScope);
+        run.setBaseRunId(base == null ? null : base.getId());
+        run.setAlgoVersion(runner.algoVersion());
         run.setTextThreshold(BigDecimal.valueOf(props.textThreshold()).setScale(4, RoundingMode.HALF_UP));
         run.setImageThreshold(BigDecimal.valueOf(props.imageThreshold()).setScale(4, RoundingMode.HALF_UP));
-        run.setStartedAt(LocalDateTime.now());
+        run.setProgressDone(0);
+        run.setProgressTotal(0);
+        run.setWorkerId(runner.workerId());
+        run.setHeartbeatAt(now);
+        run.setCreatedBy(actor.userId());
+        run.setStartedAt(now);
         runMapper.insert(run);
+        return run;
+    }
 
-        List<Long> submissionIds = submissions.stream().map(SubmissionVO::getId).toList();
-        Map<Long, List<ReportAttachmentEntity>> attachmentsBySubmission = new HashMap<>();
-        for (Long sid : submissionIds) {
-            attachmentsBySubmission.put(sid, attachmentMapper.findBySubmissionId(sid));
-        }
-
-        Map<Long, List<Artifact>> artifactsBySubmission = new HashMap<>();
-        Map<Long, List<PlagiarismSummaryVO.SkippedAttachment>> skippedBySubmission = new HashMap<>();
-
-        int totalArtifacts = 0;
-        int totalSkipped = 0;
-
-        for (SubmissionVO s : submissions) {
-            List<Artifact> artifacts = new ArrayList<>();
-            List<PlagiarismSummaryVO.SkippedAttachment> skipped = new ArrayList<>();
-
-            String plain = MarkdownText.toPlainText(Objects.toString(s.getContentMd(), ""));
-            long fpText = SimHash64.fingerprint(plain);
-            artifacts.add(Artifact.submissionText(fpText));
-            fpMapper.insert(toFpEntity(run.getId(), taskId, s, null, ART_SUBMISSION_TEXT, ALGO_SIMHASH64, fpText, plain.length(), "text/plain", "submission.md"));
-            totalArtifacts++;
+    /**
+     * The latest finished run an incremental run can build on, or null when a full run is required: no
+     * finished run yet, different algorithm/thresholds/scope, or a submission it covered is gone.
+     */
+    private PlagTaskRunEntity incrementalBase(Long taskId, String scope, List<SubmissionVO> current) {
+        PlagTaskRunEntity base = runMapper.findLatestDoneByTaskId(taskId);
+        if (base == null
+                || !runner.algoVersion().equals(base.getAlgoVersion())
+                || !scope.equals(Objects.toString(base.getScope(), PlagiarismCorpus.SCOPE_TASK))
+                || base.getTextThreshold() == null
+                || base.getImageThreshold() == null
+                || base.getTextThreshold().compareTo(BigDecimal.valueOf(props.textThreshold())) != 0
+                || base.getImageThreshold().compareTo(BigDecimal.valueOf(props.imageThreshold())) != 0) {
+            return null;
+        }
+        Set<Long> currentIds = current.stream()
+                .filter(s -> s != null && s.getId() != null && s.getStudentId() != null)
+                .map(SubmissionVO::getId)
+                .collect(Collectors.toSet());
+        return currentIds.containsAll(bestMapper.findSubmissionIdsByRunId(base.getId())) ? base : null;
+    }
 
-            List<ReportAttachmentEntity> atts = attachmentsBySubmission.getOrDefault(s.getId(), List.of());
-            int count = 0;
-            for (ReportAttachmentEntity att : atts) {
-                if (count >= props.maxAttachmentsPerSubmission()) {
-                    skipped.add(new PlagiarismSummaryVO.SkippedAttachment(att.getFileName(), att.getContentType(), "超过附件数量上限"));
-                    totalSkipped++;
-                    continue;
-                }
-                count++;
+    public PlagiarismRunVO getRun(AuthenticatedUser actor, Long runId) {
+        ensureTeacher(actor);
+        if (runId == null) {
+            throw new BusinessException(ApiCode.BAD_REQUEST, "runId 不能为空");
+        }
+        PlagTaskRunEntity run = runMapper.selectById(runId);
+        if (run == null) {
+            throw new BusinessException(ApiCode.BAD_REQUEST, HttpStatus.NOT_FOUND, "查重记录不存在");
+        }
+        ensureTeacherCanManageTask(actor, run.getTaskId());
+        return toRunVO(run);
+    }
 
-                AttachmentType type = classify(att);
-                if (type == AttachmentType.SKIP) {
-                    skipped.add(new PlagiarismSummaryVO.SkippedAttachment(att.getFileName(), att.getContentType(), "已跳过类型"));
-                    totalSkipped++;
-                    continue;
-                }
+    /**
+     * Pinned runs keep their fingerprints and results regardless of the retention window.
+     */
+    public PlagiarismRunVO setPinned(AuthenticatedUser actor, Long runId, boolean pinned) {
+        ensureTeacher(actor);
+        if (runId == null) {
+            throw new BusinessException(ApiCode.BAD_REQUEST, "runId 不能为空");
+        }
+        PlagTaskRunEntity run = runMapper.selectById(runId);
+        if (run == null) {
+            throw new BusinessException(ApiCode.BAD_REQUEST, HttpStatus.NOT_FOUND, "查重记录不存在");
+        }
+        ensureTeacherCanManageTask(actor, run.getTaskId());
+        if (runMapper.updatePinned(runId, pinned) == 0) {
+            throw new BusinessException(ApiCode.BAD_REQUEST, HttpStatus.BAD_REQUEST, "该查重记录的明细已按保留策略清理，无法再保留");
+        }
+        return toRunVO(runMapper.selectById(runId));
+    }
 
-                byte[] bytes;
-                try {
-                    bytes = storageService.readBytes(att.getFilePath());
-                } catch (Exception e) {
-                    skipped.add(new PlagiarismSummaryVO.SkippedAttachment(att.getFileName(), att.getContentType(), "附件读取失败"));
-                    totalSkipped++;
-                    continue;
-                }
+    public PlagiarismRunVO getLatestRun(AuthenticatedUser actor, Long taskId) {
+        ensureTeacher(actor);
+        if (taskId == null) {
+            throw new BusinessException(ApiCode.BAD_REQUEST, "taskId 不能为空");
+        }
+        ensureTeacherCanManageTask(actor, taskId);
+        PlagTaskRunEntity run = runMapper.findLatestByTaskId(taskId);
+        return run == null ? null : toRunVO(run);
+    }
 
-                if (type == AttachmentType.TEXT) {
-                    if (bytes.length > props.maxTextAttachmentBytes()) {
-                        skipped.add(new PlagiarismSummaryVO.SkippedAttachment(att.getFileName(), att.getContentType(), "文本附件过大"));
-                        totalSkipped++;
-                        continue;
-                    }
-                    String text = new String(bytes, StandardCharsets.UTF_8);
-                    long fp = SimHash64.fingerprint(text);
-                    artifacts.add(Artifact.attachmentText(att.getId(), att.getFileName(), fp));
-                    fpMapper.insert(toFpEntity(run.getId(), taskId, s, att, ART_ATTACHMENT_TEXT, ALGO_SIMHASH64, fp, bytes.length, att.getContentType(), att.getFileName()));
-                    totalArtifacts++;
-                } else if (type == AttachmentType.IMAGE) {
-                    if (bytes.length > props.maxImageBytes()) {
-                        skipped.add(new PlagiarismSummaryVO.SkippedAttachment(att.getFileName(), att.getContentType(), "图片附件过大"));
-                        totalSkipped++;
-                        continue;
-                    }
-                    try {
-                        long fp = DHash64.fingerprint(bytes);
-                        artifacts.add(Artifact.attachmentImage(att.getId(), att.getFileName(), fp));
-                        fpMapper.insert(toFpEntity(run.getId(), taskId, s, att, ART_ATTACHMENT_IMAGE, ALGO_DHASH64, fp, bytes.length, att.getContentType(), att.getFileName()));
-                        totalArtifacts++;
-                    } catch (Exception ex) {
-                        skipped.add(new PlagiarismSummaryVO.SkippedAttachment(att.getFileName(), att.getContentType(), "图片解析失败"));
-                        totalSkipped++;
-                    }
-                }
+    /**
+     * Clusters and the sparse similarity matrix of a run, built from the stored top-K neighbour lists only;
+     * evidence JSON is never read. Pairs from other tasks (corpus matches) are not part of the matrix.
+     */
+    public PlagiarismClusterVO getClusters(AuthenticatedUser actor, Long runId, BigDecimal threshold) {
+        ensureTeacher(actor);
+        if (runId == null) {
+            throw new BusinessException(ApiCode.BAD_REQUEST, "runId 不能为空");
+        }
+        if (threshold != null && (threshold.signum() <= 0 || threshold.compareTo(BigDecimal.ONE) > 0)) {
+            throw new BusinessException(ApiCode.BAD_REQUEST, "threshold 取值范围为 (0, 1]");
+        }
+        PlagTaskRunEntity run = runMapper.selectById(runId);
+        if (run == null) {
+            throw new BusinessException(ApiCode.BAD_REQUEST, HttpStatus.NOT_FOUND, "查重记录不存在");
+        }
+        ensureTeacherCanManageTask(actor, run.getTaskId());
+        BigDecimal cut = (threshold == null ? BigDecimal.valueOf(props.textThreshold()) : threshold)
+                .setScale(4, RoundingMode.HALF_UP);
+        int cutQuantized = NeighbourList.quantize(cut.doubleValue());
+
+        List<PlagSubmissionBestMatchEntity> rows = bestMapper.findScoresByRunId(runId);
+        Map<Long, Integer> indexBySubmission = new HashMap<>();
+        for (int i = 0; i < rows.size(); i++) {
+            indexBySubmission.put(rows.get(i).getSubmissionId(), i);
+        }
+
+        // Each pair keyed by (lower index, higher index), keeping the higher of the two directions.
+        Map<Long, Integer> pairScore = new HashMap<>();
+        for (int i = 0; i < rows.size(); i++) {
+            NeighbourList list = NeighbourList.decode(rows.get(i).getNeighbours());
+            for (int n = 0; n < list.size(); n++) {
+                Integer j = indexBySubmission.get(list.id(n));
+                if (j == null || j == i) continue;
+                long key = ((long) Math.min(i, j) << 32) | Math.max(i, j);
+                pairScore.merge(key, list.score(n), Math::max);
             }
-
-            artifactsBySubmission.put(s.getId(), artifacts);
-            skippedBySubmission.put(s.getId(), skipped);
-        }
-
-        // Pre-compute plain text for sentence fragments (submission text only).
-        Map<Long, String> submissionPlain = new HashMap<>();
-        for (SubmissionVO s : submissions) {
-            submissionPlain.put(s.getId(), MarkdownText.toPlainText(Objects.toString(s.getContentMd(), "")));
-        }
-
-        for (SubmissionVO s : submissions) {
-            Best best = findBest(s, submissions, artifactsBySubmission);
-            List<PlagiarismSummaryVO.EvidenceItem> evidence = new ArrayList<>();
-
-            // Submission text evidence (for highlighting).
-            if (best.bestOtherSubmissionId != null) {
-                long aText = getSubmissionTextFp(artifactsBySubmission.get(s.getId()));
-                long bText = getSubmissionTextFp(artifactsBySubmission.get(best.bestOtherSubmissionId));
-                double simText = SimHash64.similarity(aText, bText);
-                List<SentenceSimilarity.Fragment> frags = SentenceSimilarity.topFragments(
-                        submissionPlain.getOrDefault(s.getId(), ""),
-                        submissionPlain.getOrDefault(best.bestOtherSubmissionId, ""),
-                        10,
-                        0.85
-                );
-                if (!frags.isEmpty()) {
-                    Map<String, Object> detail = new HashMap<>();
-                    List<Map<String, Object>> fragments = new ArrayList<>();
-                    for (SentenceSimilarity.Fragment f : frags) {
-                        fragments.add(Map.of(
-                                "text", f.text(),
-                                "score", BigDecimal.valueOf(f.score()).setScale(4, RoundingMode.HALF_UP)
-                        ));
-                    }
-                    detail.put("fragments", fragments);
-                    evidence.add(new PlagiarismSummaryVO.EvidenceItem(
-                            ART_SUBMISSION_TEXT,
-                            BigDecimal.valueOf(simText).setScale(4, RoundingMode.HALF_UP),
-                            detail
-                    ));
-                }
+        }
+        List<long[]> pairs = new ArrayList<>(pairScore.size());
+        pairScore.forEach((key, score) -> pairs.add(new long[] {key >>> 32, key & 0xffffffffL, score}));
+        pairs.sort((a, b) -> a[2] != b[2] ? Long.compare(b[2], a[2]) : a[0] != b[0] ? Long.compare(a[0], b[0]) : Long.compare(a[1], b[1]));
+
+        SubmissionClusters uf = new SubmissionClusters(rows.size());
+        boolean[] inMatrix = new boolean[rows.size()];
+        for (long[] p : pairs) {
+            inMatrix[(int) p[0]] = true;
+            inMatrix[(int) p[1]] = true;
+            if (p[2] >= cutQuantized) {
+                uf.union((int) p[0], (int) p[1]);
             }
+        }
 
-            // Add best non-text evidence (attachments/images).
-            evidence.addAll(best.evidence);
+        Map<Integer, List<Integer>> members = new HashMap<>();
+        for (int i = 0; i < rows.size(); i++) {
+            if (uf.sizeOf(i) > 1) {
+                members.computeIfAbsent(uf.find(i), r -> new ArrayList<>()).add(i);
+            }
+        }
+        Map<Integer, Integer> maxByRoot = new HashMap<>();
+        for (long[] p : pairs) {
+            int root = uf.find((int) p[0]);
+            if (p[2] >= cutQuantized && root == uf.find((int) p[1])) {
+                maxByRoot.merge(root, (int) p[2], Math::max);
+            }
+        }
+        List<Integer> roots = new ArrayList<>(members.keySet());
+        roots.sort((a, b) -> {
+            int bySize = Integer.compare(members.get(b).size(), members.get(a).size());
+            if (bySize != 0) return bySize;
+            int byScore = Integer.compare(maxByRoot.getOrDefault(b, 0), maxByRoot.getOrDefault(a, 0));
+            return byScore != 0 ? byScore : Integer.compare(members.get(a).get(0), members.get(b).get(0));
+        });
+        Map<Integer, Integer> clusterIdByRoot = new HashMap<>();
+        List<PlagiarismClusterVO.Cluster> clusters = new ArrayList<>();
+        for (Integer root : roots) {
+            int clusterId = clusters.size() + 1;
+            clusterIdByRoot.put(root, clusterId);
+            clusters.add(new PlagiarismClusterVO.Cluster(
+                    clusterId,
+                    members.get(root).size(),
+                    toScore(maxByRoot.getOrDefault(root, 0)),
+                    members.get(root).stream().map(i -> rows.get(i).getSubmissionId()).toList()
+            ));
+        }
 
-            // Keep top K.
-            evidence.sort((x, y) -> y.score().compareTo(x.score()));
-            if (evidence.size() > 5) {
-                evidence = evidence.subList(0, 5);
+        Set<Long> studentIds = new HashSet<>();
+        for (int i = 0; i < rows.size(); i++) {
+            if (inMatrix[i] && rows.get(i).getStudentId() != null) {
+                studentIds.add(rows.get(i).getStudentId());
+            }
+        }
+        Map<Long, SysUserEntity> users = new HashMap<>();
+        if (!studentIds.isEmpty()) {
+            for (SysUserEntity u : sysUserMapper.selectBatchIds(studentIds)) {
+                users.put(u.getId(), u);
             }
+        }
+        List<PlagiarismClusterVO.Node> nodes = new ArrayList<>();
+        for (int i = 0; i < rows.size(); i++) {
+            if (!inMatrix[i]) continue;
+            PlagSubmissionBestMatchEntity r = rows.get(i);
+            SysUserEntity u = users.get(r.getStudentId());
+            nodes.add(new PlagiarismClusterVO.Node(
+                    r.getSubmissionId(),
+                    r.getStudentId(),
+                    u == null ? null : u.getUsername(),
+                    u == null ? null : u.getDisplayName(),
+                    r.getMaxScore() == null ? BigDecimal.ZERO : r.getMaxScore(),
+                    clusterIdByRoot.get(uf.find(i))
+            ));
+        }
+        List<PlagiarismClusterVO.Edge> edges = pairs.stream()
+                .map(p -> {
+                    Long x = rows.get((int) p[0]).getSubmissionId();
+                    Long y = rows.get((int) p[1]).getSubmissionId();
+                    return new PlagiarismClusterVO.Edge(Math.min(x, y), Math.max(x, y), toScore((int) p[2]));
+                })
+                .toList();
+        return new PlagiarismClusterVO(run.getId(), run.getTaskId(), run.getStatus(), cut, clusters, nodes, edges);
+    }
 
-            PlagSubmissionBestMatchEntity bm = new PlagSubmissionBestMatchEntity();
-            bm.setRunId(run.getId());
-            bm.setTaskId(taskId);
-            bm.setSubmissionId(s.getId());
-            bm.setStudentId(s.getStudentId());
-            bm.setBestOtherSubmissionId(best.bestOtherSubmissionId);
-            bm.setBestOtherStudentId(best.bestOtherStudentId);
-            bm.setMaxScore(BigDecimal.valueOf(best.maxScore).setScale(4, RoundingMode.HALF_UP));
-            bm.setCreatedAt(LocalDateTime.now());
-            bm.setEvidenceJson(writeJsonSafe(evidence));
-            bm.setSkippedAttachmentsJson(writeJsonSafe(skippedBySubmission.getOrDefault(s.getId(), List.of())));
-            bestMapper.insert(bm);
-        }
-
-        Map<String, Object> summary = new HashMap<>();
-        summary.put("submissionsTotal", submissions.size());
-        summary.put("studentsDistinct", studentsDistinct.size());
-        summary.put("mode", "ALL_VERSIONS");
-        summary.put("artifacts", totalArtifacts);
-        summary.put("skippedAttachments", totalSkipped);
-
-        run.setStatus("DONE");
-        run.setFinishedAt(LocalDateTime.now());
-        run.setSummaryJson(writeJsonSafe(summary));
-        runMapper.updateById(run);
-
-        return new PlagiarismRunVO(run.getId(), run.getStatus(), run.getStartedAt(), run.getFinishedAt());
+    private static BigDecimal toScore(int quantized) {
+        return BigDecimal.valueOf(quantized, 4);
     }
 
     public PlagiarismSummaryVO getSummary(AuthenticatedUser actor, Long submissionId) {
@@ -290,7 +356,7 @@ public class PlagiarismService {
         }
         Long taskId = submission.getTaskId();
         ensureTeacherCanManageTask(actor, taskId);
-        PlagTaskRunEntity run = runMapper.findLatestByTaskId(taskId);
+        PlagTaskRunEntity run = runMapper.findLatestDoneByTaskId(taskId);
         if (run == null) {
             return new PlagiarismSummaryVO(null, taskId, BigDecimal.ZERO, null, 0, 0, 0, 0, List.of(), List.of());
         }
@@ -299,15 +365,18 @@ public class PlagiarismService {
             return new PlagiarismSummaryVO(run.getId(), taskId, BigDecimal.ZERO, null, 0, 0, 0, 0, List.of(), List.of());
         }
 
+        OtherTasks otherTasks = new OtherTasks(actor, taskId);
         PlagiarismSummaryVO.TopMatchStudent top = null;
-        if (bm.getBestOtherStudentId() != null) {
+        if (bm.getBestOtherStudentId() != null && !otherTasks.foreign(bm.getBestOtherSubmissionId())) {
             SysUserEntity u = sysUserMapper.selectById(bm.getBestOtherStudentId());
             if (u != null) {
                 top = new PlagiarismSummaryVO.TopMatchStudent(u.getId(), u.getUsername(), u.getDisplayName());
             }
         }
 
-        List<PlagiarismSummaryVO.EvidenceItem> evidence = readEvidenceList(bm.getEvidenceJson());
+        List<PlagiarismSummaryVO.EvidenceItem> evidence = readEvidenceList(bm.getEvidenceJson()).stream()
+                .map(otherTasks::redact)
+                .toList();
         List<PlagiarismSummaryVO.SkippedAttachment> skipped = readSkippedList(bm.getSkippedAttachmentsJson());
 
         int imagesProcessed = 0;
@@ -316,15 +385,17 @@ public class PlagiarismService {
             String t = c == null ? null : c.getArtifactType();
             long n = c == null || c.getCnt() == null ? 0 : c.getCnt();
             if (ART_ATTACHMENT_IMAGE.equalsIgnoreCase(t)) imagesProcessed += (int) n;
-            if (ART_ATTACHMENT_TEXT.equalsIgnoreCase(t)) textAttProcessed += (int) n;
+            if (ART_ATTACHMENT_TEXT.equalsIgnoreCase(t) || ArtifactMatcher.ART_ATTACHMENT_CODE.equalsIgnoreCase(t)) {
+                textAttProcessed += (int) n;
+            }
         }
 
         int imagesSkipped = 0;
         int textAttSkipped = 0;
         for (var s : skipped) {
-            AttachmentType t = classify(s.fileName(), s.contentType());
+            AttachmentType t = AttachmentClassifier.classify(s.fileName(), s.contentType());
             if (t == AttachmentType.IMAGE) imagesSkipped++;
-            if (t == AttachmentType.TEXT) textAttSkipped++;
+            if (t == AttachmentType.TEXT || t == AttachmentType.DOCUMENT) textAttSkipped++;
         }
 
         return new PlagiarismSummaryVO(
@@ -372,11 +443,12 @@ public class PlagiarismService {
                 ))
                 .toList();
 
-        PlagTaskRunEntity run = runMapper.findLatestByTaskId(taskId);
+        PlagTaskRunEntity run = runMapper.findLatestDoneByTaskId(taskId);
         Long runId = run == null ? null : run.getId();
 
         Map<Long, PlagSubmissionBestMatchEntity> bmBySubmission = new HashMap<>();
         Map<Long, PlagiarismStudentHistoryVO.TopMatchStudent> topByOtherStudent = new HashMap<>();
+        OtherTasks otherTasks = new OtherTasks(actor, taskId);
 
         if (runId != null && studentId != null) {
             List<PlagSubmissionBestMatchEntity> best = bestMapper.selectList(
@@ -415,7 +487,7 @@ public class PlagiarismService {
             boolean has = bm != null;
             BigDecimal score = has && bm.getMaxScore() != null ? bm.getMaxScore() : BigDecimal.ZERO;
             PlagiarismStudentHistoryVO.TopMatchStudent top = null;
-            if (has && bm.getBestOtherStudentId() != null) {
+            if (has && bm.getBestOtherStudentId() != null && !otherTasks.foreign(bm.getBestOtherSubmissionId())) {
                 top = topByOtherStudent.get(bm.getBestOtherStudentId());
                 // If user record is missing, still return id so UI can show something stable.
                 if (top == null) {
@@ -453,6 +525,50 @@ public class PlagiarismService {
         );
     }
 
+    /**
+     * The tasks of the other submissions a result points at. Cross-task scopes can match a submission of a
+     * task the actor does not manage; its student, text and attachments stay hidden and only the score and
+     * the task title are shown.
+     */
+    private final class OtherTasks {
+        private final AuthenticatedUser actor;
+        private final Long taskId;
+        private final Map<Long, Long> taskBySubmission = new HashMap<>();
+        private final Map<Long, ExpTaskEntity> tasks = new HashMap<>();
+
+        OtherTasks(AuthenticatedUser actor, Long taskId) {
+            this.actor = actor;
+            this.taskId = taskId;
+        }
+
+        boolean foreign(Long otherSubmissionId) {
+            if (otherSubmissionId == null || actor.roleCodes().contains("ROLE_ADMIN")) {
+                return false;
+            }
+            Long otherTaskId = taskBySubmission.computeIfAbsent(otherSubmissionId, submissionMapper::findTaskIdBySubmissionId);
+            if (taskId.equals(otherTaskId)) {
+                return false;
+            }
+            ExpTaskEntity task = otherTaskId == null ? null : tasks.computeIfAbsent(otherTaskId, expTaskMapper::selectById);
+            return task == null || !Objects.equals(task.getPublisherId(), actor.userId());
+        }
+
+        PlagiarismSummaryVO.EvidenceItem redact(PlagiarismSummaryVO.EvidenceItem item) {
+            if (!(item.detail() instanceof Map<?, ?> detail) || !(detail.get("otherSubmissionId") instanceof Number other)
+                    || !foreign(other.longValue())) {
+                return item;
+            }
+            ExpTaskEntity task = tasks.get(taskBySubmission.get(other.longValue()));
+            Map<String, Object> redacted = new LinkedHashMap<>();
+            redacted.put("redacted", true);
+            redacted.put("otherTaskTitle", task == null ? "" : Objects.toString(task.getTitle(), ""));
+            if (detail.get("scope") != null) {
+                redacted.put("scope", detail.get("scope"));
+            }
+            return new PlagiarismSummaryVO.EvidenceItem(item.type(), item.score(), redacted);
+        }
+    }
+
     private void ensureTeacher(AuthenticatedUser actor) {
         if (actor == null || actor.roleCodes() == null) {
             throw new BusinessException(ApiCode.UNAUTHORIZED, HttpStatus.UNAUTHORIZED, "未登录或登录已失效");
@@ -479,172 +595,6 @@ public class PlagiarismService {
         }
     }
 
-    // Latest-by-student mode was removed; plagiarism now runs across all versions.
-
-    private PlagArtifactFpEntity toFpEntity(
-            Long runId,
-            Long taskId,
-            SubmissionVO submission,
-            ReportAttachmentEntity att,
-            String artifactType,
-            String algo,
-            long fp,
-            long byteLen,
-            String contentType,
-            String fileName
-    ) {
-        PlagArtifactFpEntity e = new PlagArtifactFpEntity();
-        e.setRunId(runId);
-        e.setTaskId(taskId);
-        e.setSubmissionId(submission.getId());
-        e.setStudentId(submission.getStudentId());
-        e.setAttachmentId(att == null ? null : att.getId());
-        e.setArtifactType(artifactType);
-        e.setAlgo(algo);
-        e.setFp64Hex(toHex64(fp));
-        e.setByteLen(byteLen);
-        e.setContentType(contentType);
-        e.setFileName(fileName);
-        e.setCreatedAt(LocalDateTime.now());
-        return e;
-    }
-
-    private String toHex64(long v) {
-        return String.format(Locale.ROOT, "%016x", v);
-    }
-
-    private AttachmentType classify(ReportAttachmentEntity att) {
-        String name = Objects.toString(att.getFileName(), "");
-        String ct = Objects.toString(att.getContentType(), "");
-        return classify(name, ct);
-    }
-
-    private AttachmentType classify(String fileName, String contentType) {
-        String name = Objects.toString(fileName, "");
-        String ct = Objects.toString(contentType, "");
-        String ext = extLower(name);
-
-        if (!ext.isBlank() && SKIP_EXTS.contains(ext)) {
-            return AttachmentType.SKIP;
-        }
-        if (ct.toLowerCase(Locale.ROOT).contains("spreadsheet") || ext.equals("xlsx") || ext.equals("xls")) {
-            return AttachmentType.SKIP;
-        }
-        if (ct.toLowerCase(Locale.ROOT).startsWith("image/")) {
-            return AttachmentType.IMAGE;
-        }
-        if (ct.toLowerCase(Locale.ROOT).startsWith("text/")) {
-            return AttachmentType.TEXT;
-        }
-        if (!ext.isBlank() && TEXT_EXTS.contains(ext)) {
-            return AttachmentType.TEXT;
-        }
-        if (!ext.isBlank() && (ext.equals("png") || ext.equals("jpg") || ext.equals("jpeg"))) {
-            return AttachmentType.IMAGE;
-        }
-        return AttachmentType.SKIP;
-    }
-
-    private String extLower(String name) {
-        int idx = name.lastIndexOf('.');
-        if (idx < 0 || idx == name.length() - 1) return "";
-        return name.substring(idx + 1).toLowerCase(Locale.ROOT);
-    }
-
-    private Best findBest(SubmissionVO self, Iterable<SubmissionVO> all, Map<Long, List<Artifact>> artifactsBySubmission) {
-        Best best = new Best();
-        best.maxScore = 0.0;
-        for (SubmissionVO other : all) {
-            if (other.getId() == null || self.getId() == null) continue;
-            if (Objects.equals(other.getId(), self.getId())) continue;
-            if (self.getStudentId() != null && other.getStudentId() != null && Objects.equals(self.getStudentId(), other.getStudentId())) {
-                continue; // do not match against the same student's other versions
-            }
-            double max = 0.0;
-            List<PlagiarismSummaryVO.EvidenceItem> ev = new ArrayList<>();
-
-            ArtifactPair bestText = bestPair(artifactsBySubmission.get(self.getId()), artifactsBySubmission.get(other.getId()), ALGO_SIMHASH64);
-            if (bestText != null) {
-                max = Math.max(max, bestText.score);
-                if (bestText.a != null && bestText.a.type.equals(ART_ATTACHMENT_TEXT) && bestText.a.attachmentId != null) {
-                    ev.add(new PlagiarismSummaryVO.EvidenceItem(
-                            ART_ATTACHMENT_TEXT,
-                            BigDecimal.valueOf(bestText.score).setScale(4, RoundingMode.HALF_UP),
-                            Map.of("attachmentId", bestText.a.attachmentId, "fileName", Objects.toString(bestText.a.fileName, ""))
-                    ));
-                }
-            }
-
-            ArtifactPair bestImg = bestPair(artifactsBySubmission.get(self.getId()), artifactsBySubmission.get(other.getId()), ALGO_DHASH64);
-            if (bestImg != null) {
-                max = Math.max(max, bestImg.score);
-                if (bestImg.a != null && bestImg.b != null && bestImg.a.attachmentId != null && bestImg.b.attachmentId != null) {
-                    ev.add(new PlagiarismSummaryVO.EvidenceItem(
-                            ART_ATTACHMENT_IMAGE,
-                            BigDecimal.valueOf(bestImg.score).setScale(4, RoundingMode.HALF_UP),
-                            Map.of(
-                                    "attachmentIdA", bestImg.a.attachmentId,
-                                    "attachmentIdB", bestImg.b.attachmentId,
-                                    "fileNameA", Objects.toString(bestImg.a.fileName, ""),
-                                    "fileNameB", Objects.toString(bestImg.b.fileName, ""),
-                                    "similarity", BigDecimal.valueOf(bestImg.score).setScale(4, RoundingMode.HALF_UP)
-                            )
-                    ));
-                }
-            }
-
-            if (max > best.maxScore) {
-                best.maxScore = max;
-                best.bestOtherSubmissionId = other.getId();
-                best.bestOtherStudentId = other.getStudentId();
-                best.evidence = ev;
-            }
-        }
-        return best;
-    }
-
-    private ArtifactPair bestPair(List<Artifact> a, List<Artifact> b, String algo) {
-        if (a == null || b == null) return null;
-        double best = 0.0;
-        Artifact bestA = null;
-        Artifact bestB = null;
-        for (Artifact x : a) {
-            if (!algo.equals(x.algo)) continue;
-            for (Artifact y : b) {
-                if (!algo.equals(y.algo)) continue;
-                double score = algo.equals(ALGO_DHASH64)
-                        ? DHash64.similarity(x.fp, y.fp)
-                        : SimHash64.similarity(x.fp, y.fp);
-                if (score > best) {
-                    best = score;
-                    bestA = x;
-                    bestB = y;
-                }
-            }
-        }
-        if (bestA == null || bestB == null) return null;
-        return new ArtifactPair(bestA, bestB, best);
-    }
-
-    private long getSubmissionTextFp(List<Artifact> artifacts) {
-        if (artifacts == null) return 0L;
-        for (Artifact a : artifacts) {
-            if (ART_SUBMISSION_TEXT.equals(a.type) && ALGO_SIMHASH64.equals(a.algo)) {
-                return a.fp;
-            }
-        }
-        return 0L;
-    }
-
-    private String writeJsonSafe(Object o) {
-        if (o == null) return "[]";
-        try {
-            return objectMapper.writeValueAsString(o);
-        } catch (Exception e) {
-            return "[]";
-        }
-    }
-
     private List<PlagiarismSummaryVO.EvidenceItem> readEvidenceList(String json) {
         if (json == null || json.isBlank()) return List.of();
         try {
@@ -665,29 +615,24 @@ public class PlagiarismService {
         }
     }
 
-    private enum AttachmentType {TEXT, IMAGE, SKIP}
-
-    private record Artifact(String type, String algo, long fp, Long attachmentId, String fileName) {
-        static Artifact submissionText(long fp) {
-            return new Artifact(ART_SUBMISSION_TEXT, ALGO_SIMHASH64, fp, null, "submission.md");
-        }
-
-        static Artifact attachmentText(Long id, String name, long fp) {
-            return new Artifact(ART_ATTACHMENT_TEXT, ALGO_SIMHASH64, fp, id, name);
-        }
-
-        static Artifact attachmentImage(Long id, String name, long fp) {
-            return new Artifact(ART_ATTACHMENT_IMAGE, ALGO_DHASH64, fp, id, name);
-        }
-    }
-
-    private static final class Best {
-        Long bestOtherSubmissionId;
-        Long bestOtherStudentId;
-        double maxScore;
-        List<PlagiarismSummaryVO.EvidenceItem> evidence = List.of();
+    private PlagiarismRunVO toRunVO(PlagTaskRunEntity run) {
+        return new PlagiarismRunVO(
+                run.getId(),
+                run.getTaskId(),
+                run.getRunMode(),
+                run.getScope() == null ? PlagiarismCorpus.SCOPE_TASK : run.getScope(),
+                Boolean.TRUE.equals(run.getPinned()),
+                run.getStatus(),
+                run.getStage(),
+                run.getProgressDone() == null ? 0 : run.getProgressDone(),
+                run.getProgressTotal() == null ? 0 : run.getProgressTotal(),
+                run.getErrorMessage(),
+                run.getStartedAt(),
+                run.getFinishedAt(),
+                run.getCompactedAt()
+        );
     }
 
-    private record ArtifactPair(Artifact a, Artifact b, double score) {
+    private record RunSlot(PlagTaskRunEntity run, boolean created) {
     }
 }
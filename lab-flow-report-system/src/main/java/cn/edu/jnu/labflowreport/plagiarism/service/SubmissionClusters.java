@@ -0,0 +1,47 @@
+package cn.edu.jnu.labflowreport.plagiarism.service;
+
+/**
+ * Union-find over submission indexes (union by size, path halving); two submissions end up in the same
+ * cluster when a chain of pairs at or above the threshold connects them, e.g. A-B and B-C.
+ */
+final class SubmissionClusters {
+
+    private final int[] parent;
+    private final int[] size;
+
+    SubmissionClusters(int n) {
+        this.parent = new int[n];
+        this.size = new int[n];
+        for (int i = 0; i < n; i++) {
+            parent[i] = i;
+            size[i] = 1;
+        }
+    }
+
+    int find(int x) {
+        while (parent[x] != x) {
+            parent[x] = parent[parent[x]];
+            x = parent[x];
+        }
+        return x;
+    }
+
+    void union(int a, int b) {
+        int ra = find(a);
+        int rb = find(b);
+        if (ra == rb) {
+            return;
+        }
+        if (size[ra] < size[rb]) {
+            int t = ra;
+            ra = rb;
+            rb = t;
+        }
+        parent[rb] = ra;
+        size[ra] += size[rb];
+    }
+
+    int sizeOf(int x) {
+        return size[find(x)];
+    }
+}
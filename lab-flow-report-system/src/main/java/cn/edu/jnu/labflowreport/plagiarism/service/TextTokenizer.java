@@ -0,0 +1,85 @@
+package cn.edu.jnu.labflowreport.plagiarism.service;
+
+import java.util.Locale;
+import java.util.function.LongConsumer;
+
+/**
+ * Turns plain text into a stream of 64-bit token hashes for {@link SimHash64}.
+ *
+ * <p>Tokens are hashed straight from the characters (FNV-1a over their UTF-8 encoding, then a 64-bit
+ * finalizer), so no substring or map entry is created per token. Every occurrence is emitted, which makes
+ * a SimHash accumulated per occurrence equal to one weighted by term frequency.
+ */
+interface TextTokenizer {
+
+    String WORD = "word";
+    String CJK_SHINGLE = "cjk-shingle";
+
+    /**
+     * Short id recorded in {@code plag_task_run.algo_version}; fingerprints are only comparable when it matches.
+     */
+    String id();
+
+    void forEachToken(String text, LongConsumer sink);
+
+    static TextTokenizer of(String name, int shingleSize) {
+        String n = name == null ? "" : name.trim().toLowerCase(Locale.ROOT);
+        return switch (n) {
+            case WORD -> new WordTokenizer();
+            case CJK_SHINGLE -> new CjkShingleTokenizer(shingleSize);
+            default -> throw new IllegalArgumentException("unknown app.plag.tokenizer: " + name);
+        };
+    }
+
+    static boolean isWordChar(int cp) {
+        if (cp == '_') {
+            return true;
+        }
+        return switch (Character.getType(cp)) {
+            case Character.UPPERCASE_LETTER, Character.LOWERCASE_LETTER, Character.TITLECASE_LETTER,
+                    Character.MODIFIER_LETTER, Character.OTHER_LETTER,
+                    Character.DECIMAL_DIGIT_NUMBER, Character.LETTER_NUMBER, Character.OTHER_NUMBER -> true;
+            default -> false;
+        };
+    }
+
+    static long hashStart() {
+        return 0xcbf29ce484222325L;
+    }
+
+    /**
+     * Feeds one code point into an FNV-1a hash as its UTF-8 bytes, matching {@code getBytes(UTF_8)}.
+     */
+    static long hashCodePoint(long hash, int cp) {
+        if (cp < 0x80) {
+            return fnvByte(hash, cp);
+        }
+        if (cp < 0x800) {
+            hash = fnvByte(hash, 0xc0 | (cp >>> 6));
+            return fnvByte(hash, 0x80 | (cp & 0x3f));
+        }
+        if (cp < 0x10000) {
+            hash = fnvByte(hash, 0xe0 | (cp >>> 12));
+            hash = fnvByte(hash, 0x80 | ((cp >>> 6) & 0x3f));
+            return fnvByte(hash, 0x80 | (cp & 0x3f));
+        }
+        hash = fnvByte(hash, 0xf0 | (cp >>> 18));
+        hash = fnvByte(hash, 0x80 | ((cp >>> 12) & 0x3f));
+        hash = fnvByte(hash, 0x80 | ((cp >>> 6) & 0x3f));
+        return fnvByte(hash, 0x80 | (cp & 0x3f));
+    }
+
+    static long hashFinish(long z) {
+        z ^= (z >>> 33);
+        z *= 0xff51afd7ed558ccdL;
+        z ^= (z >>> 33);
+        z *= 0xc4ceb9fe1a85ec53L;
+        z ^= (z >>> 33);
+        return z;
+    }
+
+    private static long fnvByte(long hash, int b) {
+        hash ^= (b & 0xffL);
+        return hash * 0x100000001b3L;
+    }
+}
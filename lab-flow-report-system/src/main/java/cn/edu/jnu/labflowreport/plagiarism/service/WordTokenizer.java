@@ -0,0 +1,43 @@
+package cn.edu.jnu.labflowreport.plagiarism.service;
+
+import java.util.Locale;
+import java.util.function.LongConsumer;
+
+/**
+ * The original tokenizer: maximal runs of letters, digits and {@code _} of at least two code points
+ * (the former {@code [\p{L}\p{N}_]{2,}} regex). An unbroken run of Chinese becomes a single token.
+ */
+final class WordTokenizer implements TextTokenizer {
+
+    @Override
+    public String id() {
+        return WORD;
+    }
+
+    @Override
+    public void forEachToken(String text, LongConsumer sink) {
+        if (text == null || text.isEmpty()) {
+            return;
+        }
+        String s = text.toLowerCase(Locale.ROOT);
+        long hash = TextTokenizer.hashStart();
+        int len = 0;
+        for (int i = 0; i < s.length(); ) {
+            int cp = s.codePointAt(i);
+            i += Character.charCount(cp);
+            if (TextTokenizer.isWordChar(cp)) {
+                hash = TextTokenizer.hashCodePoint(hash, cp);
+                len++;
+                continue;
+            }
+            if (len >= 2) {
+                sink.accept(TextTokenizer.hashFinish(hash));
+            }
+            hash = TextTokenizer.hashStart();
+            len = 0;
+        }
+        if (len >= 2) {
+            sink.accept(TextTokenizer.hashFinish(hash));
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package cn.edu.jnu.labflowreport.plagiarism.vo;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+public record PlagiarismClusterVO(
+        Long runId,
+        Long taskId,
+        String status,
+        BigDecimal threshold,
+        List<Cluster> clusters,
+        List<Node> nodes,
+        List<Edge> edges
+) {
+
+    /** Submissions connected by pairs at or above the threshold, largest cluster first. */
+    public record Cluster(int clusterId, int size, BigDecimal maxScore, List<Long> submissionIds) {
+    }
+
+    public record Node(
+            Long submissionId,
+            Long studentId,
+            String username,
+            String displayName,
+            BigDecimal maxScore,
+            Integer clusterId
+    ) {
+    }
+
+    /** One non-zero cell of the sparse similarity matrix; each pair appears once, with A < B. */
+    public record Edge(Long submissionIdA, Long submissionIdB, BigDecimal score) {
+    }
+}
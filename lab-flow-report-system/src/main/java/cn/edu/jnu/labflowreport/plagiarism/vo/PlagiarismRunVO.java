@@ -4,9 +4,17 @@ import java.time.LocalDateTime;
 
 public record PlagiarismRunVO(
         Long runId,
+        Long taskId,
+        String mode,
+        String scope,
+        boolean pinned,
         String status,
+        String stage,
+        int artifactsProcessed,
+        int artifactsTotal,
+        String errorMessage,
         LocalDateTime startedAt,
-        LocalDateTime finishedAt
+        LocalDateTime finishedAt,
+        LocalDateTime compactedAt
 ) {
 }
-
@@ -0,0 +1,121 @@
+package cn.edu.jnu.labflowreport.statistics.service;
+
+import cn.edu.jnu.labflowreport.config.StatisticsProperties;
+import cn.edu.jnu.labflowreport.elective.service.ExperimentCourseChangedEvent;
+import cn.edu.jnu.labflowreport.plagiarism.service.PlagiarismRunFinishedEvent;
+import cn.edu.jnu.labflowreport.workflow.service.TaskChangedEvent;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Built dashboards by view and resolved filters, so repeated page views and the exports that rebuild the same
+ * dashboard are answered from memory.
+ * <p>
+ * A bounded LRU with a time limit per entry ({@code app.statistics.cache-entries}, {@code cache-ttl}). Writers
+ * drop the entries whose date range contains the day they changed, or all of them, once their transaction has
+ * committed; a dashboard built concurrently with such a write is not stored, since it may have read the data from
+ * before it. Changes the dashboards show but the rollups do not count (courses and enrollments, tasks, plagiarism
+ * results) arrive as events from the services that make them and drop every entry.
+ */
+@Component
+public class StatisticsDashboardCache {
+
+    private final Map<Key, Entry> entries;
+    private final long ttlNanos;
+    private final AtomicLong generation = new AtomicLong();
+
+    StatisticsDashboardCache(StatisticsProperties props) {
+        int capacity = Math.max(0, props.cacheEntries());
+        Duration ttl = props.cacheTtl() == null ? Duration.ZERO : props.cacheTtl();
+        this.ttlNanos = ttl.toNanos();
+        this.entries = new LinkedHashMap<>(Math.min(capacity, 256), 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /** The cached dashboard for {@code key}, building and storing it when missing or expired. */
+    @SuppressWarnings("unchecked")
+    <T> T get(Key key, Supplier<T> build) {
+        long now = System.nanoTime();
+        synchronized (entries) {
+            Entry hit = entries.get(key);
+            if (hit != null && now - hit.createdAt() < ttlNanos) {
+                return (T) hit.value();
+            }
+            if (hit != null) {
+                entries.remove(key);
+            }
+        }
+        long before = generation.get();
+        T value = build.get();
+        synchronized (entries) {
+            if (ttlNanos > 0 && generation.get() == before) {
+                entries.put(key, new Entry(value, System.nanoTime()));
+            }
+        }
+        return value;
+    }
+
+    /** Drops the dashboards covering {@code day} after the current transaction commits. */
+    public void invalidateDay(LocalDate day) {
+        afterCommit(() -> {
+            synchronized (entries) {
+                generation.incrementAndGet();
+                entries.keySet().removeIf(key -> !day.isBefore(key.from()) && !day.isAfter(key.to()));
+            }
+        });
+    }
+
+    /** Drops every dashboard after the current transaction commits, for changes not tied to a day. */
+    public void invalidateAll() {
+        afterCommit(this::clear);
+    }
+
+    @TransactionalEventListener(
+            classes = {ExperimentCourseChangedEvent.class, TaskChangedEvent.class, PlagiarismRunFinishedEvent.class},
+            phase = TransactionPhase.AFTER_COMMIT,
+            fallbackExecution = true
+    )
+    void onDashboardDataChanged() {
+        clear();
+    }
+
+    private void clear() {
+        synchronized (entries) {
+            generation.incrementAndGet();
+            entries.clear();
+        }
+    }
+
+    private void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+
+    /** One dashboard: the view it is built for and every filter after defaults are resolved. */
+    record Key(String view, Long semesterId, LocalDate from, LocalDate to, Long teacherId, Long classId, Long studentId) {
+    }
+
+    private record Entry(Object value, long createdAt) {
+    }
+}
@@ -0,0 +1,289 @@
+package cn.edu.jnu.labflowreport.statistics.service;
+
+import cn.edu.jnu.labflowreport.common.api.ApiCode;
+import cn.edu.jnu.labflowreport.common.exception.BusinessException;
+import cn.edu.jnu.labflowreport.config.StatisticsProperties;
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.TreeSet;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Keeps the daily rollups the statistics dashboards read ({@code stat_daily_task}, {@code stat_daily_attendance})
+ * in step with the raw tables, so a dashboard over a whole semester sums a few hundred pre-aggregated rows instead
+ * of scanning every submission, review, completion, device request and check-in.
+ * <p>
+ * Writers call one of the {@code mark*} methods inside their own transaction; that appends the affected day to
+ * {@code stat_rollup_dirty} and nothing else. A day is recomputed from the raw tables as a whole, either right
+ * before a dashboard reads a range containing a few of them ({@link #catchUp}) or by the background job, which refreshes
+ * today and yesterday on every run to pick up changes nothing marks (rosters, enrollments, students changing class).
+ * Older days changed that way are corrected with {@link #rebuild}.
+ * <p>
+ * Marking a day also drops the cached dashboards covering it once the writer commits ({@link StatisticsDashboardCache}).
+ */
+@Service
+public class StatisticsRollupService {
+
+    private static final Logger log = LoggerFactory.getLogger(StatisticsRollupService.class);
+    private static final int MAX_REBUILD_DAYS = 366;
+
+    private static final String REFRESH_TASKS = """
+            INSERT INTO stat_daily_task (stat_day, task_id, class_id, teacher_id, submission_count, review_count,
+                                         review_score_sum, completion_count, device_request_count, device_pending_count,
+                                         device_approved_count, device_borrowed_count, device_returned_count, refreshed_at)
+            SELECT :day, a.task_id, a.class_id, t.publisher_id,
+                   SUM(a.submission_count), SUM(a.review_count), SUM(a.review_score), SUM(a.completion_count),
+                   SUM(a.device_request_count), SUM(a.device_pending), SUM(a.device_approved),
+                   SUM(a.device_borrowed), SUM(a.device_returned), :now
+            FROM (
+                SELECT rs.task_id, COALESCE(su.class_id, 0) AS class_id,
+                       1 AS submission_count, 0 AS review_count, CAST(0 AS DECIMAL(14,2)) AS review_score,
+                       0 AS completion_count, 0 AS device_request_count, 0 AS device_pending, 0 AS device_approved,
+                       0 AS device_borrowed, 0 AS device_returned
+                FROM report_submission rs
+                JOIN sys_user su ON su.id = rs.student_id
+                WHERE rs.submitted_at >= :fromTime AND rs.submitted_at < :toTime
+                UNION ALL
+                SELECT rs.task_id, COALESCE(su.class_id, 0), 0, 1, rr.score, 0, 0, 0, 0, 0, 0
+                FROM report_review rr
+                JOIN report_submission rs ON rs.id = rr.submission_id
+                JOIN sys_user su ON su.id = rs.student_id
+                WHERE rr.reviewed_at >= :fromTime AND rr.reviewed_at < :toTime
+                UNION ALL
+                SELECT tc.task_id, COALESCE(su.class_id, 0), 0, 0, 0, 1, 0, 0, 0, 0, 0
+                FROM task_completion tc
+                JOIN sys_user su ON su.id = tc.student_id
+                WHERE tc.status = 'CONFIRMED'
+                  AND tc.confirmed_at >= :fromTime AND tc.confirmed_at < :toTime
+                UNION ALL
+                SELECT dr.task_id, COALESCE(su.class_id, 0), 0, 0, 0, 0, 1,
+                       CASE WHEN UPPER(dr.status) = 'PENDING' THEN 1 ELSE 0 END,
+                       CASE WHEN UPPER(dr.status) = 'APPROVED' THEN 1 ELSE 0 END,
+                       CASE WHEN UPPER(dr.status) = 'BORROWED' THEN 1 ELSE 0 END,
+                       CASE WHEN UPPER(dr.status) = 'RETURNED' THEN 1 ELSE 0 END
+                FROM task_device_request dr
+                JOIN sys_user su ON su.id = dr.student_id
+                WHERE dr.created_at >= :fromTime AND dr.created_at < :toTime
+            ) a
+            JOIN exp_task t ON t.id = a.task_id
+            GROUP BY a.task_id, a.class_id, t.publisher_id
+            """;
+
+    /** Students expected at the experiment course sessions of the day: the roster snapshot, else the enrollment. */
+    private static final String EXPERIMENT_ROSTER = """
+            SELECT s.id AS session_id, s.teacher_id, s.experiment_course_id, su.id AS student_id,
+                   COALESCE(su.class_id, 0) AS class_id
+            FROM attendance_session s
+            JOIN attendance_session_roster asr ON asr.session_id = s.id
+            JOIN sys_user su ON su.id = asr.student_id
+            WHERE s.source_type = 'EXPERIMENT_COURSE'
+              AND s.started_at >= :fromTime AND s.started_at < :toTime
+            UNION ALL
+            SELECT s.id, s.teacher_id, s.experiment_course_id, su.id, COALESCE(su.class_id, 0)
+            FROM attendance_session s
+            JOIN experiment_course_enrollment e ON e.slot_id = s.experiment_course_slot_id AND e.status = 'ENROLLED'
+            JOIN sys_user su ON su.id = e.student_id
+            WHERE s.source_type = 'EXPERIMENT_COURSE'
+              AND s.started_at >= :fromTime AND s.started_at < :toTime
+              AND NOT EXISTS (SELECT 1 FROM attendance_session_roster sr WHERE sr.session_id = s.id)
+            """;
+
+    private static final String REFRESH_ATTENDANCE = """
+            INSERT INTO stat_daily_attendance (stat_day, session_id, class_id, teacher_id, experiment_course_id,
+                                               checked_in_count, total_count, refreshed_at)
+            SELECT :day, a.session_id, a.class_id, a.teacher_id, a.experiment_course_id,
+                   a.checked_in_count, a.total_count, :now
+            FROM (
+                SELECT s.id AS session_id, COALESCE(s.class_id, 0) AS class_id, s.teacher_id, s.experiment_course_id,
+                       (SELECT COUNT(DISTINCT ar.student_id) FROM attendance_record ar WHERE ar.session_id = s.id)
+                           AS checked_in_count,
+                       (SELECT COUNT(*)
+                        FROM sys_user su
+                        JOIN sys_user_role ur ON ur.user_id = su.id
+                        JOIN sys_role sr ON sr.id = ur.role_id
+                        WHERE su.enabled = TRUE
+                          AND sr.code = 'ROLE_STUDENT'
+                          AND su.class_id = s.class_id) AS total_count
+                FROM attendance_session s
+                WHERE s.source_type <> 'EXPERIMENT_COURSE'
+                  AND s.started_at >= :fromTime AND s.started_at < :toTime
+                UNION ALL
+                SELECT roster.session_id, roster.class_id, roster.teacher_id, roster.experiment_course_id,
+                       COUNT(DISTINCT ar.student_id), COUNT(DISTINCT roster.student_id)
+                FROM (%s) roster
+                LEFT JOIN attendance_record ar ON ar.session_id = roster.session_id AND ar.student_id = roster.student_id
+                GROUP BY roster.session_id, roster.class_id, roster.teacher_id, roster.experiment_course_id
+                UNION ALL
+                SELECT s.id, 0, s.teacher_id, s.experiment_course_id,
+                       (SELECT COUNT(DISTINCT ar.student_id) FROM attendance_record ar WHERE ar.session_id = s.id), 0
+                FROM attendance_session s
+                WHERE s.source_type = 'EXPERIMENT_COURSE'
+                  AND s.started_at >= :fromTime AND s.started_at < :toTime
+                  AND NOT EXISTS (SELECT 1 FROM attendance_session_roster sr WHERE sr.session_id = s.id)
+                  AND NOT EXISTS (
+                      SELECT 1 FROM experiment_course_enrollment e
+                      JOIN sys_user su ON su.id = e.student_id
+                      WHERE e.slot_id = s.experiment_course_slot_id AND e.status = 'ENROLLED'
+                  )
+            ) a
+            """.formatted(EXPERIMENT_ROSTER);
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final TransactionTemplate tx;
+    private final StatisticsDashboardCache dashboardCache;
+    private final StatisticsProperties props;
+
+    public StatisticsRollupService(
+            NamedParameterJdbcTemplate jdbcTemplate,
+            PlatformTransactionManager transactionManager,
+            StatisticsDashboardCache dashboardCache,
+            StatisticsProperties props
+    ) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.tx = new TransactionTemplate(transactionManager);
+        this.dashboardCache = dashboardCache;
+        this.props = props;
+    }
+
+    /** Submissions, reviews and completions happen now; their day is today. */
+    public void markToday() {
+        markDay(LocalDate.now());
+    }
+
+    public void markDay(LocalDate day) {
+        if (day == null) {
+            return;
+        }
+        jdbcTemplate.update("INSERT INTO stat_rollup_dirty (stat_day, marked_at) VALUES (:day, :now)",
+                new MapSqlParameterSource("day", Date.valueOf(day)).addValue("now", Timestamp.valueOf(LocalDateTime.now())));
+
+        dashboardCache.invalidateDay(day);
+    }
+
+    /** Every day the task has rollup rows for; call before its rows are deleted. */
+    public void markTaskDays(Long taskId) {
+        jdbcTemplate.update("""
+                INSERT INTO stat_rollup_dirty (stat_day, marked_at)
+                SELECT DISTINCT stat_day, :now FROM stat_daily_task WHERE task_id = :taskId
+                """, new MapSqlParameterSource("taskId", taskId).addValue("now", Timestamp.valueOf(LocalDateTime.now())));
+        dashboardCache.invalidateAll();
+    }
+
+    /** Check-ins count towards the day their session started, however late they arrive. */
+    public void markAttendanceSession(Long sessionId) {
+        List<Timestamp> startedAt = jdbcTemplate.queryForList(
+                "SELECT started_at FROM attendance_session WHERE id = :sessionId",
+                new MapSqlParameterSource("sessionId", sessionId), Timestamp.class);
+        if (!startedAt.isEmpty() && startedAt.get(0) != null) {
+            markDay(startedAt.get(0).toLocalDateTime().toLocalDate());
+        }
+    }
+
+    /**
+     * Refreshes the marked days between {@code from} and {@code to}, so a dashboard over that range reflects every
+     * committed write. Costs one indexed lookup when nothing changed. When more than {@code catch-up-days} days are
+     * marked, none is refreshed on the caller's thread: the dashboard reads the rollups as they are and the
+     * background job works through the backlog, dropping the dashboards it corrects.
+     */
+    public void catchUp(LocalDate from, LocalDate to) {
+        int limit = Math.max(0, props.catchUpDays());
+        List<LocalDate> days = jdbcTemplate.queryForList(
+                "SELECT DISTINCT stat_day FROM stat_rollup_dirty WHERE stat_day BETWEEN :from AND :to ORDER BY stat_day LIMIT :limit",
+                new MapSqlParameterSource("from", Date.valueOf(from)).addValue("to", Date.valueOf(to))
+                        .addValue("limit", limit + 1),
+                Date.class).stream().map(Date::toLocalDate).toList();
+        if (days.size() > limit) {
+            log.debug("more than {} stale statistics days in {}..{}; left to the background refresh", limit, from, to);
+            return;
+        }
+        days.forEach(this::refreshDay);
+    }
+
+    @Scheduled(
+            initialDelayString = "${app.statistics.rollup-initial-delay:PT1M}",
+            fixedDelayString = "${app.statistics.rollup-interval:PT5M}"
+    )
+    void scheduledRefresh() {
+        try {
+            TreeSet<LocalDate> marked = new TreeSet<>(jdbcTemplate.queryForList(
+                    "SELECT DISTINCT stat_day FROM stat_rollup_dirty", new MapSqlParameterSource(), Date.class)
+                    .stream().map(Date::toLocalDate).toList());
+            TreeSet<LocalDate> days = new TreeSet<>(marked);
+            LocalDate today = LocalDate.now();
+            days.add(today.minusDays(1));
+            days.add(today);
+            for (LocalDate day : days) {
+                refreshDay(day);
+                // A dashboard built while the day was stale (catchUp skipped it) may be cached.
+                if (marked.contains(day)) {
+                    dashboardCache.invalidateDay(day);
+                }
+            }
+        } catch (RuntimeException e) {
+            log.warn("statistics rollup refresh failed", e);
+        }
+    }
+
+    /**
+     * Recomputes every day of the range from the raw tables; for changes that no writer marks, such as a student
+     * moved to another class or an enrollment list edited after the session.
+     */
+    public Rebuild rebuild(LocalDate from, LocalDate to) {
+        if (from == null || to == null) {
+            throw new BusinessException(ApiCode.BAD_REQUEST, HttpStatus.BAD_REQUEST, "请指定重建的起止日期");
+        }
+        if (from.isAfter(to)) {
+            throw new BusinessException(ApiCode.BAD_REQUEST, HttpStatus.BAD_REQUEST, "起始日期不能晚于结束日期");
+        }
+        if (ChronoUnit.DAYS.between(from, to) >= MAX_REBUILD_DAYS) {
+            throw new BusinessException(ApiCode.BAD_REQUEST, HttpStatus.BAD_REQUEST, "重建范围不能超过 " + MAX_REBUILD_DAYS + " 天");
+        }
+        int days = 0;
+        for (LocalDate day = from; !day.isAfter(to); day = day.plusDays(1)) {
+            refreshDay(day);
+            days++;
+        }
+        dashboardCache.invalidateAll();
+        return new Rebuild(from, to, days);
+    }
+
+    /**
+     * Replaces the rollup rows of one day in a single transaction; dashboards keep reading the previous rows until it
+     * commits. Markers a writer adds while this runs survive it and cause another refresh.
+     */
+    synchronized void refreshDay(LocalDate day) {
+        LocalDateTime start = day.atStartOfDay();
+        MapSqlParameterSource params = new MapSqlParameterSource("day", Date.valueOf(day))
+                .addValue("fromTime", Timestamp.valueOf(start))
+                .addValue("toTime", Timestamp.valueOf(start.plusDays(1)))
+                .addValue("now", Timestamp.valueOf(LocalDateTime.now()));
+        try {
+            tx.executeWithoutResult(status -> {
+                jdbcTemplate.update("DELETE FROM stat_rollup_dirty WHERE stat_day = :day", params);
+                jdbcTemplate.update("DELETE FROM stat_daily_task WHERE stat_day = :day", params);
+                jdbcTemplate.update("DELETE FROM stat_daily_attendance WHERE stat_day = :day", params);
+                jdbcTemplate.update(REFRESH_TASKS, params);
+                jdbcTemplate.update(REFRESH_ATTENDANCE, params);
+            });
+        } catch (DuplicateKeyException e) {
+            // Another instance refreshed the same day concurrently; its rows are as fresh as ours would have been.
+            log.debug("statistics rollup for {} refreshed concurrently", day);
+        }
+    }
+
+    public record Rebuild(LocalDate from, LocalDate to, int dayCount) {
+    }
+}
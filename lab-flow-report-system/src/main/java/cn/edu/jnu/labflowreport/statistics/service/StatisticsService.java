@@ -28,6 +28,7 @@ import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Comparator;
 import java.util.LinkedHashMap;
@@ -45,6 +46,9 @@ import org.springframework.stereotype.Service;
 @Service
 public class StatisticsService {
 
+    /** Rollup class id of students without a class, and of experiment course sessions without a roster. */
+    private static final long NO_CLASS = 0L;
+
     private final NamedParameterJdbcTemplate jdbcTemplate;
     private final SemesterMapper semesterMapper;
     private final ExportRecordMapper exportRecordMapper;
@@ -53,6 +57,8 @@ public class StatisticsService {
     private final SysUserMapper sysUserMapper;
     private final OrgClassMapper orgClassMapper;
     private final ExcelExportService excelExportService;
+    private final StatisticsRollupService statisticsRollupService;
+    private final StatisticsDashboardCache dashboardCache;
 
     public StatisticsService(
             NamedParameterJdbcTemplate jdbcTemplate,
@@ -62,7 +68,9 @@ public class StatisticsService {
             AdminAuditService adminAuditService,
             SysUserMapper sysUserMapper,
             OrgClassMapper orgClassMapper,
-            ExcelExportService excelExportService
+            ExcelExportService excelExportService,
+            StatisticsRollupService statisticsRollupService,
+            StatisticsDashboardCache dashboardCache
     ) {
         this.jdbcTemplate = jdbcTemplate;
         this.semesterMapper = semesterMapper;
@@ -72,6 +80,8 @@ public class StatisticsService {
         this.sysUserMapper = sysUserMapper;
         this.orgClassMapper = orgClassMapper;
         this.excelExportService = excelExportService;
+        this.statisticsRollupService = statisticsRollupService;
+        this.dashboardCache = dashboardCache;
     }
 
     public TeacherStatisticsDashboardVO getTeacherDashboard(
@@ -81,17 +91,22 @@ public class StatisticsService {
             LocalDate to
     ) {
         ResolvedFilters filters = resolveFilters(semesterId, from, to);
+        StatisticsDashboardCache.Key key = new StatisticsDashboardCache.Key(
+                "TEACHER", filters.semester().getId(), filters.from(), filters.to(), teacher.userId(), null, null);
+        return dashboardCache.get(key, () -> buildTeacherDashboard(teacher.userId(), filters));
+    }
+
+    private TeacherStatisticsDashboardVO buildTeacherDashboard(Long teacherId, ResolvedFilters filters) {
+        statisticsRollupService.catchUp(filters.from(), filters.to());
         List<TeacherStatisticsDashboardVO.SemesterOption> semesterOptions = loadSemesterOptions();
-        List<TaskMetaRow> tasks = loadTasks(teacher.userId(), null, filters, false);
-        List<SubmissionRow> submissions = loadSubmissions(teacher.userId(), null, filters);
-        List<ReviewRow> reviews = loadReviews(teacher.userId(), null, filters);
-        List<CompletionRow> completions = loadCompletions(teacher.userId(), null, filters);
-        List<DeviceRequestRow> deviceRequests = loadDeviceRequests(teacher.userId(), null, filters);
-        List<SessionAggregateRow> sessionRows = loadAttendanceSessionAggregates(teacher.userId(), null, filters);
-        List<CourseMetaRow> courses = loadCourses(teacher.userId(), null, filters);
-        Map<Long, Long> activeEnrollmentByCourse = loadActiveEnrollmentCounts(teacher.userId(), null, filters);
-
-        Map<Long, TeacherStatisticsDashboardVO.TaskRow> taskTable = buildTeacherTaskTable(tasks, submissions, reviews, completions);
+        List<TaskMetaRow> tasks = loadTasks(teacherId, null, filters, false);
+        List<TaskStatRow> taskStats = loadTaskStats(teacherId, null, filters);
+        List<DailyTaskStatRow> dailyTaskStats = loadDailyTaskStats(teacherId, null, filters);
+        List<SessionAggregateRow> sessionRows = toSessionAggregates(loadAttendanceStats(teacherId, null, filters));
+        List<CourseMetaRow> courses = loadCourses(teacherId, null, filters);
+        Map<Long, Long> activeEnrollmentByCourse = loadActiveEnrollmentCounts(teacherId, null, filters);
+
+        Map<Long, TeacherStatisticsDashboardVO.TaskRow> taskTable = buildTeacherTaskTable(tasks, taskStats);
         Map<Long, Long> courseAttendanceCount = sessionRows.stream()
                 .filter(row -> row.experimentCourseId() != null)
                 .collect(Collectors.groupingBy(
@@ -109,24 +124,24 @@ public class StatisticsService {
                         courseAttendanceCount.getOrDefault(course.id(), 0L)))
                 .sorted(Comparator.comparing(TeacherStatisticsDashboardVO.ExperimentCourseRow::courseTitle, Comparator.nullsLast(String::compareTo)))
                 .toList();
-        List<TeacherStatisticsDashboardVO.DeviceRequestRow> deviceTable = buildTeacherDeviceTable(tasks, deviceRequests);
+        List<TeacherStatisticsDashboardVO.DeviceRequestRow> deviceTable = buildTeacherDeviceTable(tasks, taskStats);
 
         TeacherStatisticsDashboardVO.Summary summary = new TeacherStatisticsDashboardVO.Summary(
                 tasks.size(),
                 tasks.stream().filter(task -> "OPEN".equalsIgnoreCase(task.status())).count(),
-                submissions.size(),
-                reviews.size(),
-                averageScore(reviews.stream().map(ReviewRow::score).toList()),
-                completions.size(),
+                taskStats.stream().mapToLong(TaskStatRow::submissionCount).sum(),
+                taskStats.stream().mapToLong(TaskStatRow::reviewCount).sum(),
+                averageScore(taskStats),
+                taskStats.stream().mapToLong(TaskStatRow::completionCount).sum(),
                 sessionRows.stream().map(SessionAggregateRow::sessionId).distinct().count(),
                 weightedRate(sessionRows.stream().mapToLong(SessionAggregateRow::checkedInCount).sum(), sessionRows.stream().mapToLong(SessionAggregateRow::totalCount).sum()),
                 courses.size(),
                 activeEnrollmentByCourse.values().stream().mapToLong(Long::longValue).sum(),
-                deviceRequests.stream().filter(row -> "PENDING".equalsIgnoreCase(row.status())).count()
+                taskStats.stream().mapToLong(TaskStatRow::devicePendingCount).sum()
         );
 
         TeacherStatisticsDashboardVO.Charts charts = new TeacherStatisticsDashboardVO.Charts(
-                buildTaskTrend(submissions, reviews, filters),
+                buildTaskTrend(dailyTaskStats, filters),
                 buildAttendanceTrend(sessionRows, filters)
         );
 
@@ -159,21 +174,26 @@ public class StatisticsService {
             Long classId
     ) {
         ResolvedFilters filters = resolveFilters(semesterId, from, to);
+        StatisticsDashboardCache.Key key = new StatisticsDashboardCache.Key(
+                "ADMIN", filters.semester().getId(), filters.from(), filters.to(), teacherId, classId, null);
+        return dashboardCache.get(key, () -> buildAdminDashboard(teacherId, classId, filters));
+    }
+
+    private AdminStatisticsDashboardVO buildAdminDashboard(Long teacherId, Long classId, ResolvedFilters filters) {
+        statisticsRollupService.catchUp(filters.from(), filters.to());
         List<TaskMetaRow> tasks = loadTasks(teacherId, classId, filters, true);
-        List<SubmissionRow> submissions = loadSubmissions(teacherId, classId, filters);
-        List<ReviewRow> reviews = loadReviews(teacherId, classId, filters);
-        List<CompletionRow> completions = loadCompletions(teacherId, classId, filters);
-        List<DeviceRequestRow> deviceRequests = loadDeviceRequests(teacherId, classId, filters);
-        List<SessionAggregateRow> sessionRows = loadAttendanceSessionAggregates(teacherId, classId, filters);
-        List<SessionClassAggregateRow> classAttendanceRows = loadAttendanceClassAggregates(teacherId, classId, filters);
+        List<TaskStatRow> taskStats = loadTaskStats(teacherId, classId, filters);
+        List<DailyTaskStatRow> dailyTaskStats = loadDailyTaskStats(teacherId, classId, filters);
+        List<AttendanceStatRow> attendanceRows = loadAttendanceStats(teacherId, classId, filters);
+        List<SessionAggregateRow> sessionRows = toSessionAggregates(attendanceRows);
         List<CourseMetaRow> courses = loadCourses(teacherId, classId, filters);
         Map<Long, Long> activeEnrollmentByCourse = loadActiveEnrollmentCounts(teacherId, classId, filters);
         Map<Long, Long> studentCountByClass = loadStudentCountsByClass(classId);
         Map<Long, String> teacherNames = loadTeacherNames();
         Map<Long, String> classNames = loadClassNames();
 
-        Map<Long, AdminStatisticsDashboardVO.TeacherRow> teacherTable = buildAdminTeacherTable(tasks, submissions, reviews, sessionRows, teacherNames);
-        List<AdminStatisticsDashboardVO.ClassRow> classTable = buildAdminClassTable(submissions, classAttendanceRows, studentCountByClass, classNames);
+        Map<Long, AdminStatisticsDashboardVO.TeacherRow> teacherTable = buildAdminTeacherTable(tasks, taskStats, sessionRows, teacherNames);
+        List<AdminStatisticsDashboardVO.ClassRow> classTable = buildAdminClassTable(taskStats, attendanceRows, studentCountByClass, classNames);
         Map<Long, Long> courseAttendanceCount = sessionRows.stream()
                 .filter(row -> row.experimentCourseId() != null)
                 .collect(Collectors.groupingBy(
@@ -195,7 +215,7 @@ public class StatisticsService {
                 .toList();
 
         long teacherCount = resolveTeacherCount(teacherId, classId, tasks, courses, sessionRows, teacherNames.keySet());
-        long classCount = resolveClassCount(teacherId, classId, submissions, classAttendanceRows, classNames.keySet());
+        long classCount = resolveClassCount(teacherId, classId, taskStats, attendanceRows, classNames.keySet());
         long studentCount = resolveStudentCount(teacherId, classId, filters, studentCountByClass);
 
         return new AdminStatisticsDashboardVO(
@@ -216,16 +236,16 @@ public class StatisticsService {
                         classCount,
                         tasks.size(),
                         courses.size(),
-                        submissions.size(),
-                        reviews.size(),
-                        averageScore(reviews.stream().map(ReviewRow::score).toList()),
+                        taskStats.stream().mapToLong(TaskStatRow::submissionCount).sum(),
+                        taskStats.stream().mapToLong(TaskStatRow::reviewCount).sum(),
+                        averageScore(taskStats),
                         sessionRows.stream().map(SessionAggregateRow::sessionId).distinct().count(),
                         weightedRate(sessionRows.stream().mapToLong(SessionAggregateRow::checkedInCount).sum(), sessionRows.stream().mapToLong(SessionAggregateRow::totalCount).sum()),
                         activeEnrollmentByCourse.values().stream().mapToLong(Long::longValue).sum(),
-                        deviceRequests.stream().filter(row -> "PENDING".equalsIgnoreCase(row.status())).count()
+                        taskStats.stream().mapToLong(TaskStatRow::devicePendingCount).sum()
                 ),
                 new AdminStatisticsDashboardVO.Charts(
-                        buildTaskTrend(submissions, reviews, filters),
+                        buildTaskTrend(dailyTaskStats, filters),
                         buildAttendanceTrend(sessionRows, filters)
                 ),
                 new AdminStatisticsDashboardVO.Tables(
@@ -368,7 +388,17 @@ public class StatisticsService {
         return csv.toString();
     }
 
-    public byte[] exportTeacherTaskStatsExcel(AuthenticatedUser teacher, Long semesterId, LocalDate from, LocalDate to) {
+    public ExcelExportService.ExcelFile exportTeacherTaskStatsExcel(AuthenticatedUser teacher, Long semesterId, LocalDate from, LocalDate to) {
+        ExcelExportService.ExcelFile file = buildTeacherTaskStatsExcel(teacher, semesterId, from, to);
+        recordTeacherExport(teacher, "TEACHER_TASK_STATS_EXCEL", teacherExportConditions(resolveFilters(semesterId, from, to)));
+        return file;
+    }
+
+    /**
+     * The same file as {@link #exportTeacherTaskStatsExcel} without logging the export, for export jobs: the job's own
+     * {@code export_record} row is the log. The other build*Excel methods are the same.
+     */
+    public ExcelExportService.ExcelFile buildTeacherTaskStatsExcel(AuthenticatedUser teacher, Long semesterId, LocalDate from, LocalDate to) {
         TeacherStatisticsDashboardVO dashboard = getTeacherDashboard(teacher, semesterId, from, to);
         ResolvedFilters filters = resolveFilters(semesterId, from, to);
         List<TaskMetaRow> tasks = loadTasks(teacher.userId(), null, filters, false);
@@ -376,12 +406,7 @@ public class StatisticsService {
         List<Map<String, Object>> reviewDetails = loadTaskReviewDetails(teacher.userId(), null, filters);
         List<Map<String, Object>> completionDetails = loadTaskCompletionDetails(teacher.userId(), null, filters);
         var unsubmittedRows = buildUnsubmittedRows(tasks, submissionDetails);
-        recordTeacherExport(teacher, "TEACHER_TASK_STATS_EXCEL", Map.of(
-                "semesterId", dashboard.filters().semesterId(),
-                "from", String.valueOf(dashboard.filters().from()),
-                "to", String.valueOf(dashboard.filters().to())
-        ));
-        return excelExportService.writeWorkbook(List.of(
+        return excelExportService.build(List.of(
                 new ExcelExportService.SheetSpec("筛选条件", List.of("字段", "值"), buildTeacherFilterRows(dashboard.filters(), teacher)),
                 new ExcelExportService.SheetSpec(
                         "汇总",
@@ -401,18 +426,19 @@ public class StatisticsService {
         ));
     }
 
-    public byte[] exportTeacherExperimentCourseStatsExcel(AuthenticatedUser teacher, Long semesterId, LocalDate from, LocalDate to) {
+    public ExcelExportService.ExcelFile exportTeacherExperimentCourseStatsExcel(AuthenticatedUser teacher, Long semesterId, LocalDate from, LocalDate to) {
+        ExcelExportService.ExcelFile file = buildTeacherExperimentCourseStatsExcel(teacher, semesterId, from, to);
+        recordTeacherExport(teacher, "TEACHER_EXPERIMENT_COURSE_STATS_EXCEL", teacherExportConditions(resolveFilters(semesterId, from, to)));
+        return file;
+    }
+
+    public ExcelExportService.ExcelFile buildTeacherExperimentCourseStatsExcel(AuthenticatedUser teacher, Long semesterId, LocalDate from, LocalDate to) {
         TeacherStatisticsDashboardVO dashboard = getTeacherDashboard(teacher, semesterId, from, to);
         ResolvedFilters filters = resolveFilters(semesterId, from, to);
         List<Map<String, Object>> enrollmentDetails = loadCourseEnrollmentDetails(teacher.userId(), null, filters);
         List<Map<String, Object>> instanceDetails = loadCourseInstanceDetails(teacher.userId(), null, filters);
         List<Map<String, Object>> attendanceDetails = loadCourseAttendanceDetails(teacher.userId(), null, filters);
-        recordTeacherExport(teacher, "TEACHER_EXPERIMENT_COURSE_STATS_EXCEL", Map.of(
-                "semesterId", dashboard.filters().semesterId(),
-                "from", String.valueOf(dashboard.filters().from()),
-                "to", String.valueOf(dashboard.filters().to())
-        ));
-        return excelExportService.writeWorkbook(List.of(
+        return excelExportService.build(List.of(
                 new ExcelExportService.SheetSpec("筛选条件", List.of("字段", "值"), buildTeacherFilterRows(dashboard.filters(), teacher)),
                 new ExcelExportService.SheetSpec(
                         "汇总",
@@ -433,16 +459,17 @@ public class StatisticsService {
         ));
     }
 
-    public byte[] exportTeacherDeviceRequestStatsExcel(AuthenticatedUser teacher, Long semesterId, LocalDate from, LocalDate to) {
+    public ExcelExportService.ExcelFile exportTeacherDeviceRequestStatsExcel(AuthenticatedUser teacher, Long semesterId, LocalDate from, LocalDate to) {
+        ExcelExportService.ExcelFile file = buildTeacherDeviceRequestStatsExcel(teacher, semesterId, from, to);
+        recordTeacherExport(teacher, "TEACHER_DEVICE_REQUEST_STATS_EXCEL", teacherExportConditions(resolveFilters(semesterId, from, to)));
+        return file;
+    }
+
+    public ExcelExportService.ExcelFile buildTeacherDeviceRequestStatsExcel(AuthenticatedUser teacher, Long semesterId, LocalDate from, LocalDate to) {
         TeacherStatisticsDashboardVO dashboard = getTeacherDashboard(teacher, semesterId, from, to);
         ResolvedFilters filters = resolveFilters(semesterId, from, to);
         List<Map<String, Object>> requestDetails = loadDeviceRequestDetails(teacher.userId(), null, filters);
-        recordTeacherExport(teacher, "TEACHER_DEVICE_REQUEST_STATS_EXCEL", Map.of(
-                "semesterId", dashboard.filters().semesterId(),
-                "from", String.valueOf(dashboard.filters().from()),
-                "to", String.valueOf(dashboard.filters().to())
-        ));
-        return excelExportService.writeWorkbook(List.of(
+        return excelExportService.build(List.of(
                 new ExcelExportService.SheetSpec("筛选条件", List.of("字段", "值"), buildTeacherFilterRows(dashboard.filters(), teacher)),
                 new ExcelExportService.SheetSpec(
                         "汇总",
@@ -460,15 +487,20 @@ public class StatisticsService {
         ));
     }
 
-    public byte[] exportAdminTeacherStatsExcel(AuthenticatedUser admin, Long semesterId, LocalDate from, LocalDate to, Long teacherId, Long classId) {
+    public ExcelExportService.ExcelFile exportAdminTeacherStatsExcel(AuthenticatedUser admin, Long semesterId, LocalDate from, LocalDate to, Long teacherId, Long classId) {
+        ExcelExportService.ExcelFile file = buildAdminTeacherStatsExcel(admin, semesterId, from, to, teacherId, classId);
+        recordAdminStatisticsExport(admin, "teachers_excel", resolveFilters(semesterId, from, to), teacherId, classId);
+        return file;
+    }
+
+    public ExcelExportService.ExcelFile buildAdminTeacherStatsExcel(AuthenticatedUser admin, Long semesterId, LocalDate from, LocalDate to, Long teacherId, Long classId) {
         AdminStatisticsDashboardVO dashboard = getAdminDashboard(admin, semesterId, from, to, teacherId, classId);
         ResolvedFilters filters = resolveFilters(semesterId, from, to);
         List<Map<String, Object>> taskDetails = loadAdminTaskDetails(teacherId, classId, filters);
         List<Map<String, Object>> submissionDetails = loadTaskSubmissionDetails(teacherId, classId, filters);
         List<Map<String, Object>> attendanceDetails = loadAdminAttendanceDetails(teacherId, classId, filters);
         List<Map<String, Object>> courseDetails = loadAdminCourseDetails(teacherId, classId, filters);
-        recordAdminStatisticsExport(admin, "teachers_excel", dashboard.filters());
-        return excelExportService.writeWorkbook(List.of(
+        return excelExportService.build(List.of(
                 new ExcelExportService.SheetSpec("筛选条件", List.of("字段", "值"), buildAdminFilterRows(dashboard.filters(), admin)),
                 new ExcelExportService.SheetSpec("汇总", List.of("教师ID", "教师姓名", "任务数", "提交数", "批阅数", "签到场次", "平均到课率"),
                         dashboard.tables().teacherTable().stream()
@@ -485,15 +517,20 @@ public class StatisticsService {
         ));
     }
 
-    public byte[] exportAdminClassStatsExcel(AuthenticatedUser admin, Long semesterId, LocalDate from, LocalDate to, Long teacherId, Long classId) {
+    public ExcelExportService.ExcelFile exportAdminClassStatsExcel(AuthenticatedUser admin, Long semesterId, LocalDate from, LocalDate to, Long teacherId, Long classId) {
+        ExcelExportService.ExcelFile file = buildAdminClassStatsExcel(admin, semesterId, from, to, teacherId, classId);
+        recordAdminStatisticsExport(admin, "classes_excel", resolveFilters(semesterId, from, to), teacherId, classId);
+        return file;
+    }
+
+    public ExcelExportService.ExcelFile buildAdminClassStatsExcel(AuthenticatedUser admin, Long semesterId, LocalDate from, LocalDate to, Long teacherId, Long classId) {
         AdminStatisticsDashboardVO dashboard = getAdminDashboard(admin, semesterId, from, to, teacherId, classId);
         ResolvedFilters filters = resolveFilters(semesterId, from, to);
         List<Map<String, Object>> studentDetails = loadAdminStudentDetails(teacherId, classId, filters);
         List<Map<String, Object>> submissionDetails = loadTaskSubmissionDetails(teacherId, classId, filters);
         List<Map<String, Object>> attendanceDetails = loadAdminAttendanceDetails(teacherId, classId, filters);
         List<Map<String, Object>> enrollmentDetails = loadCourseEnrollmentDetails(teacherId, classId, filters);
-        recordAdminStatisticsExport(admin, "classes_excel", dashboard.filters());
-        return excelExportService.writeWorkbook(List.of(
+        return excelExportService.build(List.of(
                 new ExcelExportService.SheetSpec("筛选条件", List.of("字段", "值"), buildAdminFilterRows(dashboard.filters(), admin)),
                 new ExcelExportService.SheetSpec("汇总", List.of("班级ID", "班级名称", "学生数", "提交数", "签到场次", "平均到课率"),
                         dashboard.tables().classTable().stream()
@@ -510,14 +547,19 @@ public class StatisticsService {
         ));
     }
 
-    public byte[] exportAdminExperimentCourseStatsExcel(AuthenticatedUser admin, Long semesterId, LocalDate from, LocalDate to, Long teacherId, Long classId) {
+    public ExcelExportService.ExcelFile exportAdminExperimentCourseStatsExcel(AuthenticatedUser admin, Long semesterId, LocalDate from, LocalDate to, Long teacherId, Long classId) {
+        ExcelExportService.ExcelFile file = buildAdminExperimentCourseStatsExcel(admin, semesterId, from, to, teacherId, classId);
+        recordAdminStatisticsExport(admin, "experiment_courses_excel", resolveFilters(semesterId, from, to), teacherId, classId);
+        return file;
+    }
+
+    public ExcelExportService.ExcelFile buildAdminExperimentCourseStatsExcel(AuthenticatedUser admin, Long semesterId, LocalDate from, LocalDate to, Long teacherId, Long classId) {
         AdminStatisticsDashboardVO dashboard = getAdminDashboard(admin, semesterId, from, to, teacherId, classId);
         ResolvedFilters filters = resolveFilters(semesterId, from, to);
         List<Map<String, Object>> instanceDetails = loadCourseInstanceDetails(teacherId, classId, filters);
         List<Map<String, Object>> enrollmentDetails = loadCourseEnrollmentDetails(teacherId, classId, filters);
         List<Map<String, Object>> attendanceDetails = loadCourseAttendanceDetails(teacherId, classId, filters);
-        recordAdminStatisticsExport(admin, "experiment_courses_excel", dashboard.filters());
-        return excelExportService.writeWorkbook(List.of(
+        return excelExportService.build(List.of(
                 new ExcelExportService.SheetSpec("筛选条件", List.of("字段", "值"), buildAdminFilterRows(dashboard.filters(), admin)),
                 new ExcelExportService.SheetSpec("汇总", List.of("课程ID", "课程名称", "教师ID", "教师姓名", "有效报名数", "场次数", "签到场次数"),
                         dashboard.tables().experimentCourseTable().stream()
@@ -631,9 +673,7 @@ public class StatisticsService {
         MapSqlParameterSource params = new MapSqlParameterSource()
                 .addValue("semesterId", filters.semester().getId())
                 .addValue("fromDate", Date.valueOf(filters.from()))
-                .addValue("toDate", Date.valueOf(filters.to()))
-                .addValue("fromTime", Timestamp.valueOf(filters.from().atStartOfDay()))
-                .addValue("toTime", Timestamp.valueOf(filters.to().atTime(LocalTime.MAX)));
+                .addValue("toDate", Date.valueOf(filters.to()));
         if (teacherId != null) {
             sql.append(" AND t.publisher_id = :teacherId");
             params.addValue("teacherId", teacherId);
@@ -649,26 +689,11 @@ public class StatisticsService {
                      AND (
                         (t.experiment_course_id IS NULL AND EXISTS (SELECT 1 FROM exp_task_target_class tc WHERE tc.task_id = t.id AND tc.class_id = :classId))
                         OR EXISTS (
-                            SELECT 1 FROM report_submission rs
-                            JOIN sys_user su ON su.id = rs.student_id
-                            WHERE rs.task_id = t.id
-                              AND su.class_id = :classId
-                              AND rs.submitted_at BETWEEN :fromTime AND :toTime
-                        )
-                        OR EXISTS (
-                            SELECT 1 FROM task_completion tc
-                            JOIN sys_user su ON su.id = tc.student_id
-                            WHERE tc.task_id = t.id
-                              AND tc.status = 'CONFIRMED'
-                              AND su.class_id = :classId
-                              AND tc.confirmed_at BETWEEN :fromTime AND :toTime
-                        )
-                        OR EXISTS (
-                            SELECT 1 FROM task_device_request dr
-                            JOIN sys_user su ON su.id = dr.student_id
-                            WHERE dr.task_id = t.id
-                              AND su.class_id = :classId
-                              AND dr.created_at BETWEEN :fromTime AND :toTime
+                            SELECT 1 FROM stat_daily_task sdt
+                            WHERE sdt.task_id = t.id
+                              AND sdt.class_id = :classId
+                              AND sdt.stat_day BETWEEN :fromDate AND :toDate
+                              AND (sdt.submission_count > 0 OR sdt.completion_count > 0 OR sdt.device_request_count > 0)
                         )
                         OR EXISTS (
                             SELECT 1
@@ -696,140 +721,58 @@ public class StatisticsService {
                 .toList();
     }
 
-    private List<SubmissionRow> loadSubmissions(Long teacherId, Long classId, ResolvedFilters filters) {
+    private List<TaskStatRow> loadTaskStats(Long teacherId, Long classId, ResolvedFilters filters) {
         StringBuilder sql = new StringBuilder("""
-                SELECT rs.task_id,
-                       t.publisher_id,
-                       rs.student_id,
-                       su.class_id,
-                       CAST(rs.submitted_at AS DATE) AS stat_day
-                FROM report_submission rs
-                JOIN exp_task t ON t.id = rs.task_id
-                JOIN sys_user su ON su.id = rs.student_id
-                WHERE rs.submitted_at BETWEEN :fromTime AND :toTime
+                SELECT s.task_id,
+                       s.teacher_id,
+                       s.class_id,
+                       SUM(s.submission_count) AS submission_count,
+                       SUM(s.review_count) AS review_count,
+                       SUM(s.review_score_sum) AS review_score_sum,
+                       SUM(s.completion_count) AS completion_count,
+                       SUM(s.device_pending_count) AS device_pending_count,
+                       SUM(s.device_approved_count) AS device_approved_count,
+                       SUM(s.device_borrowed_count) AS device_borrowed_count,
+                       SUM(s.device_returned_count) AS device_returned_count
+                FROM stat_daily_task s
+                WHERE s.stat_day BETWEEN :fromDate AND :toDate
                 """);
-        MapSqlParameterSource params = new MapSqlParameterSource()
-                .addValue("fromTime", Timestamp.valueOf(filters.from().atStartOfDay()))
-                .addValue("toTime", Timestamp.valueOf(filters.to().atTime(LocalTime.MAX)));
-        if (teacherId != null) {
-            sql.append(" AND t.publisher_id = :teacherId");
-            params.addValue("teacherId", teacherId);
-        }
-        if (classId != null) {
-            sql.append(" AND su.class_id = :classId");
-            params.addValue("classId", classId);
-        }
+        MapSqlParameterSource params = rollupParams(teacherId, classId, filters);
+        appendRollupFilters(sql, teacherId, classId);
+        sql.append(" GROUP BY s.task_id, s.teacher_id, s.class_id");
         return jdbcTemplate.queryForList(sql.toString(), params).stream()
-                .map(row -> new SubmissionRow(
+                .map(row -> new TaskStatRow(
                         longVal(row.get("task_id")),
-                        longVal(row.get("publisher_id")),
-                        longVal(row.get("student_id")),
-                        nullableLong(row.get("class_id")),
-                        date(row.get("stat_day"))
+                        longVal(row.get("teacher_id")),
+                        longVal(row.get("class_id")),
+                        longVal(row.get("submission_count")),
+                        longVal(row.get("review_count")),
+                        decimal(row.get("review_score_sum")),
+                        longVal(row.get("completion_count")),
+                        longVal(row.get("device_pending_count")),
+                        longVal(row.get("device_approved_count")),
+                        longVal(row.get("device_borrowed_count")),
+                        longVal(row.get("device_returned_count"))
                 ))
                 .toList();
     }
 
-    private List<ReviewRow> loadReviews(Long teacherId, Long classId, ResolvedFilters filters) {
+    private List<DailyTaskStatRow> loadDailyTaskStats(Long teacherId, Long classId, ResolvedFilters filters) {
         StringBuilder sql = new StringBuilder("""
-                SELECT rs.task_id,
-                       t.publisher_id,
-                       rs.student_id,
-                       su.class_id,
-                       CAST(rr.reviewed_at AS DATE) AS stat_day,
-                       rr.score
-                FROM report_review rr
-                JOIN report_submission rs ON rs.id = rr.submission_id
-                JOIN exp_task t ON t.id = rs.task_id
-                JOIN sys_user su ON su.id = rs.student_id
-                WHERE rr.reviewed_at BETWEEN :fromTime AND :toTime
+                SELECT s.stat_day,
+                       SUM(s.submission_count) AS submission_count,
+                       SUM(s.review_count) AS review_count
+                FROM stat_daily_task s
+                WHERE s.stat_day BETWEEN :fromDate AND :toDate
                 """);
-        MapSqlParameterSource params = new MapSqlParameterSource()
-                .addValue("fromTime", Timestamp.valueOf(filters.from().atStartOfDay()))
-                .addValue("toTime", Timestamp.valueOf(filters.to().atTime(LocalTime.MAX)));
-        if (teacherId != null) {
-            sql.append(" AND t.publisher_id = :teacherId");
-            params.addValue("teacherId", teacherId);
-        }
-        if (classId != null) {
-            sql.append(" AND su.class_id = :classId");
-            params.addValue("classId", classId);
-        }
+        MapSqlParameterSource params = rollupParams(teacherId, classId, filters);
+        appendRollupFilters(sql, teacherId, classId);
+        sql.append(" GROUP BY s.stat_day");
         return jdbcTemplate.queryForList(sql.toString(), params).stream()
-                .map(row -> new ReviewRow(
-                        longVal(row.get("task_id")),
-                        longVal(row.get("publisher_id")),
-                        longVal(row.get("student_id")),
-                        nullableLong(row.get("class_id")),
+                .map(row -> new DailyTaskStatRow(
                         date(row.get("stat_day")),
-                        decimal(row.get("score"))
-                ))
-                .toList();
-    }
-
-    private List<CompletionRow> loadCompletions(Long teacherId, Long classId, ResolvedFilters filters) {
-        StringBuilder sql = new StringBuilder("""
-                SELECT tc.task_id,
-                       t.publisher_id,
-                       tc.student_id,
-                       su.class_id
-                FROM task_completion tc
-                JOIN exp_task t ON t.id = tc.task_id
-                JOIN sys_user su ON su.id = tc.student_id
-                WHERE tc.status = 'CONFIRMED'
-                  AND tc.confirmed_at BETWEEN :fromTime AND :toTime
-                """);
-        MapSqlParameterSource params = new MapSqlParameterSource()
-                .addValue("fromTime", Timestamp.valueOf(filters.from().atStartOfDay()))
-                .addValue("toTime", Timestamp.valueOf(filters.to().atTime(LocalTime.MAX)));
-        if (teacherId != null) {
-            sql.append(" AND t.publisher_id = :teacherId");
-            params.addValue("teacherId", teacherId);
-        }
-        if (classId != null) {
-            sql.append(" AND su.class_id = :classId");
-            params.addValue("classId", classId);
-        }
-        return jdbcTemplate.queryForList(sql.toString(), params).stream()
-                .map(row -> new CompletionRow(
-                        longVal(row.get("task_id")),
-                        longVal(row.get("publisher_id")),
-                        longVal(row.get("student_id")),
-                        nullableLong(row.get("class_id"))
-                ))
-                .toList();
-    }
-
-    private List<DeviceRequestRow> loadDeviceRequests(Long teacherId, Long classId, ResolvedFilters filters) {
-        StringBuilder sql = new StringBuilder("""
-                SELECT dr.task_id,
-                       t.publisher_id,
-                       dr.student_id,
-                       su.class_id,
-                       dr.status
-                FROM task_device_request dr
-                JOIN exp_task t ON t.id = dr.task_id
-                JOIN sys_user su ON su.id = dr.student_id
-                WHERE dr.created_at BETWEEN :fromTime AND :toTime
-                """);
-        MapSqlParameterSource params = new MapSqlParameterSource()
-                .addValue("fromTime", Timestamp.valueOf(filters.from().atStartOfDay()))
-                .addValue("toTime", Timestamp.valueOf(filters.to().atTime(LocalTime.MAX)));
-        if (teacherId != null) {
-            sql.append(" AND t.publisher_id = :teacherId");
-            params.addValue("teacherId", teacherId);
-        }
-        if (classId != null) {
-            sql.append(" AND su.class_id = :classId");
-            params.addValue("classId", classId);
-        }
-        return jdbcTemplate.queryForList(sql.toString(), params).stream()
-                .map(row -> new DeviceRequestRow(
-                        longVal(row.get("task_id")),
-                        longVal(row.get("publisher_id")),
-                        longVal(row.get("student_id")),
-                        nullableLong(row.get("class_id")),
-                        str(row.get("status"))
+                        longVal(row.get("submission_count")),
+                        longVal(row.get("review_count"))
                 ))
                 .toList();
     }
@@ -919,89 +862,30 @@ public class StatisticsService {
                 .collect(Collectors.toMap(row -> longVal(row.get("class_id")), row -> longVal(row.get("total_count"))));
     }
 
-    private List<SessionAggregateRow> loadAttendanceSessionAggregates(Long teacherId, Long classId, ResolvedFilters filters) {
-        String checkedInSql = """
-                SELECT ar.session_id, COUNT(DISTINCT ar.student_id) AS checked_in_count
-                FROM attendance_record ar
-                %s
-                GROUP BY ar.session_id
-                """.formatted(classId == null ? "" : "JOIN sys_user su_rec ON su_rec.id = ar.student_id WHERE su_rec.class_id = :classId");
-        String experimentRosterSql = """
-                SELECT ats.id AS session_id, su.id AS student_id, su.class_id
-                FROM attendance_session ats
-                JOIN attendance_session_roster asr ON asr.session_id = ats.id
-                JOIN sys_user su ON su.id = asr.student_id
-                WHERE ats.source_type = 'EXPERIMENT_COURSE'
-                UNION ALL
-                SELECT ats.id AS session_id, su.id AS student_id, su.class_id
-                FROM attendance_session ats
-                JOIN experiment_course_enrollment e ON e.slot_id = ats.experiment_course_slot_id AND e.status = 'ENROLLED'
-                JOIN sys_user su ON su.id = e.student_id
-                WHERE ats.source_type = 'EXPERIMENT_COURSE'
-                  AND NOT EXISTS (SELECT 1 FROM attendance_session_roster sr WHERE sr.session_id = ats.id)
-                """;
-        String experimentRosterCountSql = """
-                SELECT roster.session_id, COUNT(DISTINCT roster.student_id) AS total_count
-                FROM (%s) roster
-                %s
-                GROUP BY roster.session_id
-                """.formatted(
-                experimentRosterSql,
-                classId == null ? "" : "WHERE roster.class_id = :classId");
-        String classRosterSql = """
-                SELECT su.class_id, COUNT(*) AS total_count
-                FROM sys_user su
-                JOIN sys_user_role ur ON ur.user_id = su.id
-                JOIN sys_role sr ON sr.id = ur.role_id
-                WHERE su.enabled = TRUE
-                  AND su.class_id IS NOT NULL
-                  AND sr.code = 'ROLE_STUDENT'
-                  %s
-                GROUP BY su.class_id
-                """.formatted(classId == null ? "" : "AND su.class_id = :classId");
-        StringBuilder sql = new StringBuilder(
-                "SELECT s.id AS session_id,\n" +
-                "       s.teacher_id,\n" +
-                "       s.experiment_course_id,\n" +
-                "       CAST(s.started_at AS DATE) AS stat_day,\n" +
-                "       COALESCE(rec.checked_in_count, 0) AS checked_in_count,\n" +
-                "       CASE\n" +
-                "         WHEN s.source_type = 'EXPERIMENT_COURSE' THEN COALESCE(exp.total_count, 0)\n" +
-                "         ELSE COALESCE(cls.total_count, 0)\n" +
-                "       END AS total_count\n" +
-                "FROM attendance_session s\n" +
-                "LEFT JOIN (" + checkedInSql + ") rec ON rec.session_id = s.id\n" +
-                "LEFT JOIN (" + experimentRosterCountSql + ") exp ON exp.session_id = s.id\n" +
-                "LEFT JOIN (" + classRosterSql + ") cls ON cls.class_id = s.class_id\n" +
-                "WHERE s.started_at BETWEEN :fromTime AND :toTime");
-        MapSqlParameterSource params = new MapSqlParameterSource()
-                .addValue("fromTime", Timestamp.valueOf(filters.from().atStartOfDay()))
-                .addValue("toTime", Timestamp.valueOf(filters.to().atTime(LocalTime.MAX)));
-        if (teacherId != null) {
-            sql.append(" AND s.teacher_id = :teacherId");
-            params.addValue("teacherId", teacherId);
-        }
-        if (classId != null) {
-            sql.append(
-                    " AND (\n" +
-                    "    (s.source_type = 'CLASS_SCHEDULE' AND s.class_id = :classId)\n" +
-                    "    OR (\n" +
-                    "       s.source_type = 'EXPERIMENT_COURSE'\n" +
-                    "       AND EXISTS (\n" +
-                    "           SELECT 1\n" +
-                    "           FROM (" + experimentRosterSql + ") roster2\n" +
-                    "           WHERE roster2.session_id = s.id\n" +
-                    "             AND roster2.class_id = :classId\n" +
-                    "       )\n" +
-                    "    )\n" +
-                    " )");
-            params.addValue("classId", classId);
-        }
+    /**
+     * One row per session and roster class; with a class filter only that class's share of each session is read,
+     * which is what the class-filtered dashboard has always reported.
+     */
+    private List<AttendanceStatRow> loadAttendanceStats(Long teacherId, Long classId, ResolvedFilters filters) {
+        StringBuilder sql = new StringBuilder("""
+                SELECT s.session_id,
+                       s.teacher_id,
+                       s.experiment_course_id,
+                       s.class_id,
+                       s.stat_day,
+                       s.checked_in_count,
+                       s.total_count
+                FROM stat_daily_attendance s
+                WHERE s.stat_day BETWEEN :fromDate AND :toDate
+                """);
+        MapSqlParameterSource params = rollupParams(teacherId, classId, filters);
+        appendRollupFilters(sql, teacherId, classId);
         return jdbcTemplate.queryForList(sql.toString(), params).stream()
-                .map(row -> new SessionAggregateRow(
+                .map(row -> new AttendanceStatRow(
                         longVal(row.get("session_id")),
                         longVal(row.get("teacher_id")),
                         nullableLong(row.get("experiment_course_id")),
+                        longVal(row.get("class_id")),
                         date(row.get("stat_day")),
                         longVal(row.get("checked_in_count")),
                         longVal(row.get("total_count"))
@@ -1009,129 +893,64 @@ public class StatisticsService {
                 .toList();
     }
 
-    private List<SessionClassAggregateRow> loadAttendanceClassAggregates(Long teacherId, Long classId, ResolvedFilters filters) {
-        String experimentRosterSql = """
-                SELECT ats.id AS session_id, su.id AS student_id, su.class_id
-                FROM attendance_session ats
-                JOIN attendance_session_roster asr ON asr.session_id = ats.id
-                JOIN sys_user su ON su.id = asr.student_id
-                WHERE ats.source_type = 'EXPERIMENT_COURSE'
-                UNION ALL
-                SELECT ats.id AS session_id, su.id AS student_id, su.class_id
-                FROM attendance_session ats
-                JOIN experiment_course_enrollment e ON e.slot_id = ats.experiment_course_slot_id AND e.status = 'ENROLLED'
-                JOIN sys_user su ON su.id = e.student_id
-                WHERE ats.source_type = 'EXPERIMENT_COURSE'
-                  AND NOT EXISTS (SELECT 1 FROM attendance_session_roster sr WHERE sr.session_id = ats.id)
-                """;
-        StringBuilder sql = new StringBuilder(
-                "SELECT base.session_id,\n" +
-                "       base.teacher_id,\n" +
-                "       base.class_id,\n" +
-                "       base.stat_day,\n" +
-                "       base.checked_in_count,\n" +
-                "       base.total_count\n" +
-                "FROM (\n" +
-                "    SELECT s.id AS session_id,\n" +
-                "           s.teacher_id,\n" +
-                "           s.class_id,\n" +
-                "           CAST(s.started_at AS DATE) AS stat_day,\n" +
-                "           COALESCE(rec.checked_in_count, 0) AS checked_in_count,\n" +
-                "           COALESCE(cls.total_count, 0) AS total_count\n" +
-                "    FROM attendance_session s\n" +
-                "    LEFT JOIN (\n" +
-                "        SELECT ar.session_id, COUNT(DISTINCT ar.student_id) AS checked_in_count\n" +
-                "        FROM attendance_record ar\n" +
-                "        GROUP BY ar.session_id\n" +
-                "    ) rec ON rec.session_id = s.id\n" +
-                "    LEFT JOIN (\n" +
-                "        SELECT su.class_id, COUNT(*) AS total_count\n" +
-                "        FROM sys_user su\n" +
-                "        JOIN sys_user_role ur ON ur.user_id = su.id\n" +
-                "        JOIN sys_role sr ON sr.id = ur.role_id\n" +
-                "        WHERE su.enabled = TRUE\n" +
-                "          AND su.class_id IS NOT NULL\n" +
-                "          AND sr.code = 'ROLE_STUDENT'\n" +
-                "        GROUP BY su.class_id\n" +
-                "    ) cls ON cls.class_id = s.class_id\n" +
-                "    WHERE s.source_type = 'CLASS_SCHEDULE'\n" +
-                "      AND s.started_at BETWEEN :fromTime AND :toTime\n" +
-                "    UNION ALL\n" +
-                "    SELECT s.id AS session_id,\n" +
-                "           s.teacher_id,\n" +
-                "           roster.class_id,\n" +
-                "           CAST(s.started_at AS DATE) AS stat_day,\n" +
-                "           COUNT(DISTINCT ar.student_id) AS checked_in_count,\n" +
-                "           COUNT(DISTINCT roster.student_id) AS total_count\n" +
-                "    FROM attendance_session s\n" +
-                "    JOIN (" + experimentRosterSql + ") roster ON roster.session_id = s.id\n" +
-                "    LEFT JOIN attendance_record ar\n" +
-                "      ON ar.session_id = s.id\n" +
-                "     AND ar.student_id = roster.student_id\n" +
-                "    WHERE s.source_type = 'EXPERIMENT_COURSE'\n" +
-                "      AND s.started_at BETWEEN :fromTime AND :toTime\n" +
-                "    GROUP BY s.id, s.teacher_id, roster.class_id, CAST(s.started_at AS DATE)\n" +
-                ") base\n" +
-                "WHERE 1 = 1");
-        MapSqlParameterSource params = new MapSqlParameterSource()
-                .addValue("fromTime", Timestamp.valueOf(filters.from().atStartOfDay()))
-                .addValue("toTime", Timestamp.valueOf(filters.to().atTime(LocalTime.MAX)));
+    private List<SessionAggregateRow> toSessionAggregates(List<AttendanceStatRow> rows) {
+        Map<Long, SessionAggregateRow> sessions = new LinkedHashMap<>();
+        for (AttendanceStatRow row : rows) {
+            sessions.merge(
+                    row.sessionId(),
+                    new SessionAggregateRow(row.sessionId(), row.teacherId(), row.experimentCourseId(), row.day(), row.checkedInCount(), row.totalCount()),
+                    (a, b) -> new SessionAggregateRow(a.sessionId(), a.teacherId(), a.experimentCourseId(), a.day(),
+                            a.checkedInCount() + b.checkedInCount(), a.totalCount() + b.totalCount()));
+        }
+        return new ArrayList<>(sessions.values());
+    }
+
+    private MapSqlParameterSource rollupParams(Long teacherId, Long classId, ResolvedFilters filters) {
+        return new MapSqlParameterSource()
+                .addValue("fromDate", Date.valueOf(filters.from()))
+                .addValue("toDate", Date.valueOf(filters.to()))
+                .addValue("teacherId", teacherId)
+                .addValue("classId", classId);
+    }
+
+    private void appendRollupFilters(StringBuilder sql, Long teacherId, Long classId) {
         if (teacherId != null) {
-            sql.append(" AND base.teacher_id = :teacherId");
-            params.addValue("teacherId", teacherId);
+            sql.append(" AND s.teacher_id = :teacherId");
         }
         if (classId != null) {
-            sql.append(" AND base.class_id = :classId");
-            params.addValue("classId", classId);
+            sql.append(" AND s.class_id = :classId");
         }
-        return jdbcTemplate.queryForList(sql.toString(), params).stream()
-                .map(row -> new SessionClassAggregateRow(
-                        longVal(row.get("session_id")),
-                        longVal(row.get("teacher_id")),
-                        longVal(row.get("class_id")),
-                        date(row.get("stat_day")),
-                        longVal(row.get("checked_in_count")),
-                        longVal(row.get("total_count"))
-                ))
-                .toList();
     }
 
-    private Map<Long, TeacherStatisticsDashboardVO.TaskRow> buildTeacherTaskTable(
-            List<TaskMetaRow> tasks,
-            List<SubmissionRow> submissions,
-            List<ReviewRow> reviews,
-            List<CompletionRow> completions
-    ) {
-        Map<Long, List<ReviewRow>> reviewsByTask = reviews.stream().collect(Collectors.groupingBy(ReviewRow::taskId));
-        Map<Long, Long> submissionCounts = submissions.stream().collect(Collectors.groupingBy(SubmissionRow::taskId, Collectors.counting()));
-        Map<Long, Long> completionCounts = completions.stream().collect(Collectors.groupingBy(CompletionRow::taskId, Collectors.counting()));
+    private Map<Long, TeacherStatisticsDashboardVO.TaskRow> buildTeacherTaskTable(List<TaskMetaRow> tasks, List<TaskStatRow> taskStats) {
+        Map<Long, List<TaskStatRow>> statsByTask = taskStats.stream().collect(Collectors.groupingBy(TaskStatRow::taskId));
         Map<Long, TeacherStatisticsDashboardVO.TaskRow> rows = new LinkedHashMap<>();
         for (TaskMetaRow task : tasks) {
-            List<ReviewRow> taskReviews = reviewsByTask.getOrDefault(task.id(), List.of());
+            List<TaskStatRow> stats = statsByTask.getOrDefault(task.id(), List.of());
             rows.put(task.id(), new TeacherStatisticsDashboardVO.TaskRow(
                     task.id(),
                     task.title(),
-                    submissionCounts.getOrDefault(task.id(), 0L),
-                    (long) taskReviews.size(),
-                    averageScore(taskReviews.stream().map(ReviewRow::score).toList()),
-                    completionCounts.getOrDefault(task.id(), 0L)
+                    stats.stream().mapToLong(TaskStatRow::submissionCount).sum(),
+                    stats.stream().mapToLong(TaskStatRow::reviewCount).sum(),
+                    averageScore(stats),
+                    stats.stream().mapToLong(TaskStatRow::completionCount).sum()
             ));
         }
         return rows;
     }
 
-    private List<TeacherStatisticsDashboardVO.DeviceRequestRow> buildTeacherDeviceTable(List<TaskMetaRow> tasks, List<DeviceRequestRow> requests) {
-        Map<Long, List<DeviceRequestRow>> rowsByTask = requests.stream().collect(Collectors.groupingBy(DeviceRequestRow::taskId));
+    private List<TeacherStatisticsDashboardVO.DeviceRequestRow> buildTeacherDeviceTable(List<TaskMetaRow> tasks, List<TaskStatRow> taskStats) {
+        Map<Long, List<TaskStatRow>> statsByTask = taskStats.stream().collect(Collectors.groupingBy(TaskStatRow::taskId));
         List<TeacherStatisticsDashboardVO.DeviceRequestRow> rows = new ArrayList<>();
         for (TaskMetaRow task : tasks) {
-            List<DeviceRequestRow> taskRows = rowsByTask.getOrDefault(task.id(), List.of());
+            List<TaskStatRow> stats = statsByTask.getOrDefault(task.id(), List.of());
             rows.add(new TeacherStatisticsDashboardVO.DeviceRequestRow(
                     task.id(),
                     task.title(),
-                    taskRows.stream().filter(row -> "PENDING".equalsIgnoreCase(row.status())).count(),
-                    taskRows.stream().filter(row -> "APPROVED".equalsIgnoreCase(row.status())).count(),
-                    taskRows.stream().filter(row -> "BORROWED".equalsIgnoreCase(row.status())).count(),
-                    taskRows.stream().filter(row -> "RETURNED".equalsIgnoreCase(row.status())).count()
+                    stats.stream().mapToLong(TaskStatRow::devicePendingCount).sum(),
+                    stats.stream().mapToLong(TaskStatRow::deviceApprovedCount).sum(),
+                    stats.stream().mapToLong(TaskStatRow::deviceBorrowedCount).sum(),
+                    stats.stream().mapToLong(TaskStatRow::deviceReturnedCount).sum()
             ));
         }
         return rows;
@@ -1139,14 +958,17 @@ public class StatisticsService {
 
     private Map<Long, AdminStatisticsDashboardVO.TeacherRow> buildAdminTeacherTable(
             List<TaskMetaRow> tasks,
-            List<SubmissionRow> submissions,
-            List<ReviewRow> reviews,
+            List<TaskStatRow> taskStats,
             List<SessionAggregateRow> sessionRows,
             Map<Long, String> teacherNames
     ) {
         Map<Long, Set<Long>> taskIdsByTeacher = tasks.stream().collect(Collectors.groupingBy(TaskMetaRow::publisherId, Collectors.mapping(TaskMetaRow::id, Collectors.toSet())));
-        Map<Long, Long> submissionCounts = submissions.stream().collect(Collectors.groupingBy(SubmissionRow::publisherId, Collectors.counting()));
-        Map<Long, Long> reviewCounts = reviews.stream().collect(Collectors.groupingBy(ReviewRow::publisherId, Collectors.counting()));
+        Map<Long, Long> submissionCounts = taskStats.stream()
+                .filter(row -> row.submissionCount() > 0)
+                .collect(Collectors.groupingBy(TaskStatRow::teacherId, Collectors.summingLong(TaskStatRow::submissionCount)));
+        Map<Long, Long> reviewCounts = taskStats.stream()
+                .filter(row -> row.reviewCount() > 0)
+                .collect(Collectors.groupingBy(TaskStatRow::teacherId, Collectors.summingLong(TaskStatRow::reviewCount)));
         Map<Long, List<SessionAggregateRow>> sessionsByTeacher = sessionRows.stream().collect(Collectors.groupingBy(SessionAggregateRow::teacherId));
         Set<Long> teacherIds = new TreeSet<>();
         teacherIds.addAll(taskIdsByTeacher.keySet());
@@ -1170,45 +992,47 @@ public class StatisticsService {
     }
 
     private List<AdminStatisticsDashboardVO.ClassRow> buildAdminClassTable(
-            List<SubmissionRow> submissions,
-            List<SessionClassAggregateRow> attendanceRows,
+            List<TaskStatRow> taskStats,
+            List<AttendanceStatRow> attendanceRows,
             Map<Long, Long> studentCountByClass,
             Map<Long, String> classNames
     ) {
-        Map<Long, Long> submissionCounts = submissions.stream()
-                .filter(row -> row.classId() != null)
-                .collect(Collectors.groupingBy(SubmissionRow::classId, Collectors.counting()));
-        Map<Long, List<SessionClassAggregateRow>> sessionsByClass = attendanceRows.stream().collect(Collectors.groupingBy(SessionClassAggregateRow::classId));
+        Map<Long, Long> submissionCounts = taskStats.stream()
+                .filter(row -> row.classId() != NO_CLASS && row.submissionCount() > 0)
+                .collect(Collectors.groupingBy(TaskStatRow::classId, Collectors.summingLong(TaskStatRow::submissionCount)));
+        Map<Long, List<AttendanceStatRow>> sessionsByClass = attendanceRows.stream()
+                .filter(row -> row.classId() != NO_CLASS)
+                .collect(Collectors.groupingBy(AttendanceStatRow::classId));
         Set<Long> classIds = new TreeSet<>();
         classIds.addAll(studentCountByClass.keySet());
         classIds.addAll(submissionCounts.keySet());
         classIds.addAll(sessionsByClass.keySet());
         List<AdminStatisticsDashboardVO.ClassRow> rows = new ArrayList<>();
         for (Long classId : classIds) {
-            List<SessionClassAggregateRow> classSessions = sessionsByClass.getOrDefault(classId, List.of());
+            List<AttendanceStatRow> classSessions = sessionsByClass.getOrDefault(classId, List.of());
             rows.add(new AdminStatisticsDashboardVO.ClassRow(
                     classId,
                     classNames.getOrDefault(classId, "班级#" + classId),
                     studentCountByClass.getOrDefault(classId, 0L),
                     submissionCounts.getOrDefault(classId, 0L),
-                    classSessions.stream().map(SessionClassAggregateRow::sessionId).distinct().count(),
-                    weightedRate(classSessions.stream().mapToLong(SessionClassAggregateRow::checkedInCount).sum(), classSessions.stream().mapToLong(SessionClassAggregateRow::totalCount).sum())
+                    classSessions.stream().map(AttendanceStatRow::sessionId).distinct().count(),
+                    weightedRate(classSessions.stream().mapToLong(AttendanceStatRow::checkedInCount).sum(), classSessions.stream().mapToLong(AttendanceStatRow::totalCount).sum())
             ));
         }
         rows.sort(Comparator.comparing(AdminStatisticsDashboardVO.ClassRow::className, Comparator.nullsLast(String::compareTo)));
         return rows;
     }
 
-    private StatisticsChartVO buildTaskTrend(List<SubmissionRow> submissions, List<ReviewRow> reviews, ResolvedFilters filters) {
-        Map<LocalDate, Long> submissionCounts = submissions.stream().collect(Collectors.groupingBy(SubmissionRow::day, Collectors.counting()));
-        Map<LocalDate, Long> reviewCounts = reviews.stream().collect(Collectors.groupingBy(ReviewRow::day, Collectors.counting()));
+    private StatisticsChartVO buildTaskTrend(List<DailyTaskStatRow> dailyStats, ResolvedFilters filters) {
+        Map<LocalDate, DailyTaskStatRow> statsByDay = dailyStats.stream().collect(Collectors.toMap(DailyTaskStatRow::day, row -> row));
         List<String> categories = new ArrayList<>();
         List<BigDecimal> submissionSeries = new ArrayList<>();
         List<BigDecimal> reviewSeries = new ArrayList<>();
         for (LocalDate cursor = filters.from(); !cursor.isAfter(filters.to()); cursor = cursor.plusDays(1)) {
+            DailyTaskStatRow day = statsByDay.get(cursor);
             categories.add(cursor.toString());
-            submissionSeries.add(BigDecimal.valueOf(submissionCounts.getOrDefault(cursor, 0L)));
-            reviewSeries.add(BigDecimal.valueOf(reviewCounts.getOrDefault(cursor, 0L)));
+            submissionSeries.add(BigDecimal.valueOf(day == null ? 0L : day.submissionCount()));
+            reviewSeries.add(BigDecimal.valueOf(day == null ? 0L : day.reviewCount()));
         }
         return new StatisticsChartVO(
                 categories,
@@ -1255,7 +1079,7 @@ public class StatisticsService {
         return ids.size();
     }
 
-    private long resolveClassCount(Long teacherId, Long classId, List<SubmissionRow> submissions, List<SessionClassAggregateRow> attendanceRows, Set<Long> knownClassIds) {
+    private long resolveClassCount(Long teacherId, Long classId, List<TaskStatRow> taskStats, List<AttendanceStatRow> attendanceRows, Set<Long> knownClassIds) {
         if (classId != null) {
             return knownClassIds.contains(classId) ? 1L : 0L;
         }
@@ -1263,8 +1087,8 @@ public class StatisticsService {
             return knownClassIds.size();
         }
         Set<Long> ids = new TreeSet<>();
-        submissions.stream().map(SubmissionRow::classId).filter(Objects::nonNull).forEach(ids::add);
-        attendanceRows.stream().map(SessionClassAggregateRow::classId).forEach(ids::add);
+        taskStats.stream().filter(row -> row.submissionCount() > 0).map(TaskStatRow::classId).filter(id -> id != NO_CLASS).forEach(ids::add);
+        attendanceRows.stream().map(AttendanceStatRow::classId).filter(id -> id != NO_CLASS).forEach(ids::add);
         return ids.size();
     }
 
@@ -1407,16 +1231,17 @@ public class StatisticsService {
         return row;
     }
 
-    private List<List<?>> toRows(List<Map<String, Object>> maps, String... keys) {
-        List<List<?>> rows = new ArrayList<>();
-        for (Map<String, Object> map : maps) {
-            List<Object> row = new ArrayList<>();
-            for (String key : keys) {
-                row.add(map.get(key));
+    /** Picks the columns out of each detail row as the sheet is written, without a second list of rows. */
+    private ExcelExportService.RowSource toRows(List<Map<String, Object>> maps, String... keys) {
+        return sink -> {
+            Object[] values = new Object[keys.length];
+            for (Map<String, Object> map : maps) {
+                for (int i = 0; i < keys.length; i++) {
+                    values[i] = map.get(keys[i]);
+                }
+                sink.accept(Arrays.asList(values));
             }
-            rows.add(row);
-        }
-        return rows;
+        };
     }
 
     private List<List<?>> instanceRowsWithWeekday(List<Map<String, Object>> maps) {
@@ -2123,17 +1948,12 @@ public class StatisticsService {
         sql.append(" ORDER BY class_display_name ASC, su.username ASC");
         return jdbcTemplate.queryForList(sql.toString(), params);
     }
-    private BigDecimal averageScore(Collection<BigDecimal> scores) {
-        BigDecimal sum = BigDecimal.ZERO;
-        int count = 0;
-        for (BigDecimal score : scores) {
-            if (score == null) continue;
-            sum = sum.add(score);
-            count++;
-        }
+    private BigDecimal averageScore(Collection<TaskStatRow> stats) {
+        long count = stats.stream().mapToLong(TaskStatRow::reviewCount).sum();
         if (count == 0) {
             return BigDecimal.ZERO.setScale(2, RoundingMode.HALF_UP);
         }
+        BigDecimal sum = stats.stream().map(TaskStatRow::reviewScoreSum).reduce(BigDecimal.ZERO, BigDecimal::add);
         return sum.divide(BigDecimal.valueOf(count), 2, RoundingMode.HALF_UP);
     }
 
@@ -2153,17 +1973,34 @@ public class StatisticsService {
         exportRecordMapper.insert(entity);
     }
 
+    private static Map<String, Object> teacherExportConditions(ResolvedFilters filters) {
+        return Map.of(
+                "semesterId", filters.semester().getId(),
+                "from", String.valueOf(filters.from()),
+                "to", String.valueOf(filters.to())
+        );
+    }
+
     private void recordAdminStatisticsExport(AuthenticatedUser actor, String section, AdminStatisticsDashboardVO.Filters filters) {
+        recordAdminStatisticsExport(actor, section, filters.semesterId(), filters.from(), filters.to(), filters.teacherId(), filters.classId());
+    }
+
+    private void recordAdminStatisticsExport(AuthenticatedUser actor, String section, ResolvedFilters filters, Long teacherId, Long classId) {
+        recordAdminStatisticsExport(actor, section, filters.semester().getId(), filters.from(), filters.to(), teacherId, classId);
+    }
+
+    private void recordAdminStatisticsExport(AuthenticatedUser actor, String section, Long semesterId, LocalDate from, LocalDate to,
+                                             Long teacherId, Long classId) {
         Map<String, Object> detail = new LinkedHashMap<>();
         detail.put("section", section);
-        detail.put("semesterId", filters.semesterId());
-        detail.put("from", String.valueOf(filters.from()));
-        detail.put("to", String.valueOf(filters.to()));
-        if (filters.teacherId() != null) {
-            detail.put("teacherId", filters.teacherId());
+        detail.put("semesterId", semesterId);
+        detail.put("from", String.valueOf(from));
+        detail.put("to", String.valueOf(to));
+        if (teacherId != null) {
+            detail.put("teacherId", teacherId);
         }
-        if (filters.classId() != null) {
-            detail.put("classId", filters.classId());
+        if (classId != null) {
+            detail.put("classId", classId);
         }
         adminAuditService.record(actor, AdminAuditActions.AUDIT_EXPORT, "statistics_report", null, detail);
     }
@@ -2236,39 +2073,25 @@ public class StatisticsService {
     ) {
     }
 
-    private record SubmissionRow(
+    private record TaskStatRow(
             Long taskId,
-            Long publisherId,
-            Long studentId,
+            Long teacherId,
             Long classId,
-            LocalDate day
+            long submissionCount,
+            long reviewCount,
+            BigDecimal reviewScoreSum,
+            long completionCount,
+            long devicePendingCount,
+            long deviceApprovedCount,
+            long deviceBorrowedCount,
+            long deviceReturnedCount
     ) {
     }
 
-    private record ReviewRow(
-            Long taskId,
-            Long publisherId,
-            Long studentId,
-            Long classId,
+    private record DailyTaskStatRow(
             LocalDate day,
-            BigDecimal score
-    ) {
-    }
-
-    private record CompletionRow(
-            Long taskId,
-            Long publisherId,
-            Long studentId,
-            Long classId
-    ) {
-    }
-
-    private record DeviceRequestRow(
-            Long taskId,
-            Long publisherId,
-            Long studentId,
-            Long classId,
-            String status
+            long submissionCount,
+            long reviewCount
     ) {
     }
 
@@ -2282,9 +2105,10 @@ public class StatisticsService {
     ) {
     }
 
-    private record SessionClassAggregateRow(
+    private record AttendanceStatRow(
             Long sessionId,
             Long teacherId,
+            Long experimentCourseId,
             Long classId,
             LocalDate day,
             long checkedInCount,
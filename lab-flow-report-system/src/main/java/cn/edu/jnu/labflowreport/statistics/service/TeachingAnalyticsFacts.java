@@ -0,0 +1,509 @@
+package cn.edu.jnu.labflowreport.statistics.service;
+
+import cn.edu.jnu.labflowreport.persistence.entity.SysUserEntity;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * The facts behind a teaching-analytics dashboard as primitive columns. Tasks and students get dense indices; every
+ * (task, visible student) pair is a cell, and the cells of a task are a contiguous range ordered by student index.
+ * Submissions, the latest review and confirmed completions are recorded into per-cell arrays as the rows stream in
+ * from the database, so no detail row, key object or per-pair map is kept.
+ * <p>
+ * {@link #aggregate()} then walks the cells once, tasks in chronological order, and fills the per-task counts and
+ * score sums (completion and score charts, weak tasks) together with the per-student counts, streaks and first/last
+ * scores (risk students). Scores are whole hundredths ({@code DECIMAL(5,2)}) and become {@link BigDecimal} only
+ * for the values the dashboard shows.
+ */
+final class TeachingAnalyticsFacts {
+
+    static final int NO_SCORE = Integer.MIN_VALUE;
+    private static final long NO_TIME = Long.MIN_VALUE;
+    private static final long NO_CLASS = Long.MIN_VALUE;
+    private static final BigDecimal ZERO_SCORE = BigDecimal.ZERO.setScale(2, RoundingMode.HALF_UP);
+
+    private final int taskCount;
+    private final LongIndex taskIndex;
+    /** Task indices by created_at (nulls last), then id: the order trends and streaks follow. */
+    private final int[] chronological;
+
+    private final int studentCount;
+    private final LongIndex studentIndex;
+    private final SysUserEntity[] students;
+    private final long[] studentClassIds;
+
+    private final int[] cellStart;
+    private final int[] cellStudent;
+    private final boolean[] submitted;
+    private final boolean[] confirmed;
+    private final boolean[] reviewed;
+    private final int[] scoreCents;
+    private final long[] reviewedAt;
+    private final int[] reviewVersion;
+
+    // Every review row in range, latest or not, for the report-quality tally.
+    private int reviewCount;
+    private long[] reviewIds = new long[64];
+    private long[] reviewStudentIds = new long[64];
+    private int[] reviewScores = new int[64];
+
+    // Filled by aggregate().
+    private int[] taskSubmitted;
+    private int[] taskReviewed;
+    private int[] taskScored;
+    private long[] taskScoreSum;
+    private int[] taskScoreMax;
+    private int[] taskScoreMin;
+    private int[] taskConfirmed;
+    private int[] studentTasks;
+    private int[] studentSubmitted;
+    private int[] studentScored;
+    private long[] studentScoreSum;
+    private int[] studentConfirmed;
+    private int[] studentMaxUnsubmittedRun;
+    private int[] studentMaxLowScoreRun;
+    private int[] studentFirstScore;
+    private int[] studentLastScores;
+
+    /**
+     * @param taskIds         the tasks, in the order rows are reported in
+     * @param taskCreatedAt   created_at per task, same order
+     * @param visibleStudents the students each task is visible to, same order
+     */
+    TeachingAnalyticsFacts(long[] taskIds, LocalDateTime[] taskCreatedAt, List<List<SysUserEntity>> visibleStudents) {
+        this.taskCount = taskIds.length;
+        this.taskIndex = new LongIndex(taskCount);
+        for (int t = 0; t < taskCount; t++) {
+            taskIndex.putIfAbsent(taskIds[t], t);
+        }
+        Integer[] order = new Integer[taskCount];
+        for (int t = 0; t < taskCount; t++) {
+            order[t] = t;
+        }
+        Arrays.sort(order, Comparator.<Integer, LocalDateTime>comparing(t -> taskCreatedAt[t], Comparator.nullsLast(Comparator.naturalOrder()))
+                .thenComparingLong(t -> taskIds[t]));
+        this.chronological = new int[taskCount];
+        for (int i = 0; i < taskCount; i++) {
+            chronological[i] = order[i];
+        }
+
+        // Students in order of first appearance; cells grouped by task, sorted and unique by student index.
+        int pairs = 0;
+        for (List<SysUserEntity> list : visibleStudents) {
+            pairs += list.size();
+        }
+        LongIndex studentIds = new LongIndex(Math.max(16, pairs / 4));
+        SysUserEntity[] seen = new SysUserEntity[16];
+        int[] cells = new int[pairs];
+        int[] starts = new int[taskCount + 1];
+        int cellCount = 0;
+        for (int t = 0; t < taskCount; t++) {
+            starts[t] = cellCount;
+            for (SysUserEntity student : visibleStudents.get(t)) {
+                if (student == null || student.getId() == null) {
+                    continue;
+                }
+                int next = studentIds.size();
+                int s = studentIds.putIfAbsent(student.getId(), next);
+                if (s == next) {
+                    if (s == seen.length) {
+                        seen = Arrays.copyOf(seen, seen.length * 2);
+                    }
+                    seen[s] = student;
+                }
+                cells[cellCount++] = s;
+            }
+            Arrays.sort(cells, starts[t], cellCount);
+            int unique = starts[t];
+            for (int c = starts[t]; c < cellCount; c++) {
+                if (c == starts[t] || cells[c] != cells[unique - 1]) {
+                    cells[unique++] = cells[c];
+                }
+            }
+            cellCount = unique;
+        }
+        starts[taskCount] = cellCount;
+        this.studentIndex = studentIds;
+        this.studentCount = studentIds.size();
+        this.students = Arrays.copyOf(seen, studentCount);
+        this.studentClassIds = new long[studentCount];
+        for (int s = 0; s < studentCount; s++) {
+            Long classId = students[s].getClassId();
+            studentClassIds[s] = classId == null ? NO_CLASS : classId;
+        }
+        this.cellStart = starts;
+        this.cellStudent = Arrays.copyOf(cells, cellCount);
+        this.submitted = new boolean[cellCount];
+        this.confirmed = new boolean[cellCount];
+        this.reviewed = new boolean[cellCount];
+        this.scoreCents = new int[cellCount];
+        Arrays.fill(scoreCents, NO_SCORE);
+        this.reviewedAt = new long[cellCount];
+        this.reviewVersion = new int[cellCount];
+    }
+
+    void addSubmission(long taskId, long studentId) {
+        int c = cell(taskId, studentId);
+        if (c >= 0) {
+            submitted[c] = true;
+        }
+    }
+
+    void addConfirmedCompletion(long taskId, long studentId) {
+        int c = cell(taskId, studentId);
+        if (c >= 0) {
+            confirmed[c] = true;
+        }
+    }
+
+    /**
+     * Records a review row. The cell keeps the latest one: the later review time (none counts as earliest), then
+     * the higher submission version; on a full tie the row recorded first stays.
+     *
+     * @param reviewedAtNanos review time from {@link #nanos}
+     * @param scoreCents      the score in hundredths, or {@link #NO_SCORE}
+     */
+    void addReview(long reviewId, long taskId, long studentId, long reviewedAtNanos, int versionNo, int scoreCents) {
+        if (reviewCount == reviewIds.length) {
+            int grown = reviewIds.length * 2;
+            reviewIds = Arrays.copyOf(reviewIds, grown);
+            reviewStudentIds = Arrays.copyOf(reviewStudentIds, grown);
+            reviewScores = Arrays.copyOf(reviewScores, grown);
+        }
+        reviewIds[reviewCount] = reviewId;
+        reviewStudentIds[reviewCount] = studentId;
+        reviewScores[reviewCount] = scoreCents;
+        reviewCount++;
+
+        int c = cell(taskId, studentId);
+        if (c < 0) {
+            return;
+        }
+        if (!reviewed[c] || reviewedAtNanos > reviewedAt[c]
+                || (reviewedAtNanos == reviewedAt[c] && versionNo > reviewVersion[c])) {
+            reviewed[c] = true;
+            reviewedAt[c] = reviewedAtNanos;
+            reviewVersion[c] = versionNo;
+            this.scoreCents[c] = scoreCents;
+        }
+    }
+
+    /** A review time as one comparable long; none sorts before every time. */
+    static long nanos(LocalDateTime time) {
+        if (time == null) {
+            return NO_TIME;
+        }
+        return time.toLocalDate().toEpochDay() * 86_400_000_000_000L + time.toLocalTime().toNanoOfDay();
+    }
+
+    /** Walks every cell once, tasks in chronological order; call after all facts are recorded. */
+    void aggregate() {
+        taskSubmitted = new int[taskCount];
+        taskReviewed = new int[taskCount];
+        taskScored = new int[taskCount];
+        taskScoreSum = new long[taskCount];
+        taskScoreMax = new int[taskCount];
+        taskScoreMin = new int[taskCount];
+        taskConfirmed = new int[taskCount];
+        studentTasks = new int[studentCount];
+        studentSubmitted = new int[studentCount];
+        studentScored = new int[studentCount];
+        studentScoreSum = new long[studentCount];
+        studentConfirmed = new int[studentCount];
+        studentMaxUnsubmittedRun = new int[studentCount];
+        studentMaxLowScoreRun = new int[studentCount];
+        studentFirstScore = new int[studentCount];
+        studentLastScores = new int[studentCount * 3];
+        int[] unsubmittedRun = new int[studentCount];
+        int[] lowScoreRun = new int[studentCount];
+
+        for (int i = 0; i < taskCount; i++) {
+            int t = chronological[i];
+            int max = Integer.MIN_VALUE;
+            int min = Integer.MAX_VALUE;
+            for (int c = cellStart[t]; c < cellStart[t + 1]; c++) {
+                int s = cellStudent[c];
+                studentTasks[s]++;
+                if (submitted[c]) {
+                    taskSubmitted[t]++;
+                    studentSubmitted[s]++;
+                    unsubmittedRun[s] = 0;
+                } else {
+                    unsubmittedRun[s]++;
+                    studentMaxUnsubmittedRun[s] = Math.max(studentMaxUnsubmittedRun[s], unsubmittedRun[s]);
+                }
+                if (reviewed[c]) {
+                    taskReviewed[t]++;
+                }
+                int score = scoreCents[c];
+                if (score != NO_SCORE) {
+                    taskScored[t]++;
+                    taskScoreSum[t] += score;
+                    max = Math.max(max, score);
+                    min = Math.min(min, score);
+                    if (studentScored[s] == 0) {
+                        studentFirstScore[s] = score;
+                    }
+                    studentLastScores[s * 3 + studentScored[s] % 3] = score;
+                    studentScored[s]++;
+                    studentScoreSum[s] += score;
+                    if (score < TeachingAnalyticsService.RISK_SCORE_CENTS) {
+                        lowScoreRun[s]++;
+                        studentMaxLowScoreRun[s] = Math.max(studentMaxLowScoreRun[s], lowScoreRun[s]);
+                    } else {
+                        lowScoreRun[s] = 0;
+                    }
+                } else {
+                    lowScoreRun[s] = 0;
+                }
+                if (confirmed[c]) {
+                    taskConfirmed[t]++;
+                    studentConfirmed[s]++;
+                }
+            }
+            taskScoreMax[t] = max;
+            taskScoreMin[t] = min;
+        }
+    }
+
+    int taskCount() {
+        return taskCount;
+    }
+
+    int taskVisibleCount(int t) {
+        return cellStart[t + 1] - cellStart[t];
+    }
+
+    int taskSubmittedCount(int t) {
+        return taskSubmitted[t];
+    }
+
+    int taskReviewedCount(int t) {
+        return taskReviewed[t];
+    }
+
+    int taskConfirmedCount(int t) {
+        return taskConfirmed[t];
+    }
+
+    BigDecimal taskAvgScore(int t) {
+        return average(taskScoreSum[t], taskScored[t]);
+    }
+
+    BigDecimal taskMaxScore(int t) {
+        return taskScored[t] == 0 ? ZERO_SCORE : score(taskScoreMax[t]);
+    }
+
+    BigDecimal taskMinScore(int t) {
+        return taskScored[t] == 0 ? ZERO_SCORE : score(taskScoreMin[t]);
+    }
+
+    int studentCount() {
+        return studentCount;
+    }
+
+    SysUserEntity student(int s) {
+        return students[s];
+    }
+
+    int studentTaskCount(int s) {
+        return studentTasks[s];
+    }
+
+    int studentSubmittedCount(int s) {
+        return studentSubmitted[s];
+    }
+
+    int studentScoredCount(int s) {
+        return studentScored[s];
+    }
+
+    int studentConfirmedCount(int s) {
+        return studentConfirmed[s];
+    }
+
+    int studentMaxUnsubmittedRun(int s) {
+        return studentMaxUnsubmittedRun[s];
+    }
+
+    int studentMaxLowScoreRun(int s) {
+        return studentMaxLowScoreRun[s];
+    }
+
+    BigDecimal studentAvgScore(int s) {
+        return average(studentScoreSum[s], studentScored[s]);
+    }
+
+    BigDecimal studentRecentThreeAvgScore(int s) {
+        int n = Math.min(3, studentScored[s]);
+        long sum = 0;
+        for (int k = 0; k < n; k++) {
+            sum += studentLastScores[s * 3 + k];
+        }
+        return average(sum, n);
+    }
+
+    /** Last minus first score in hundredths, or 0 with fewer than two scores. */
+    int studentScoreDelta(int s) {
+        int n = studentScored[s];
+        if (n < 2) {
+            return 0;
+        }
+        return studentLastScores[s * 3 + (n - 1) % 3] - studentFirstScore[s];
+    }
+
+    boolean hasStudent(long studentId) {
+        return studentIndex.get(studentId) >= 0;
+    }
+
+    /**
+     * The score trend of one student: for each task visible to them, in chronological order, their latest score and
+     * the average latest score of the task's visible students in their class (all of them when they have none).
+     */
+    void forEachTrendPoint(long studentId, TrendPoint sink) {
+        int s = studentIndex.get(studentId);
+        if (s < 0) {
+            return;
+        }
+        long classId = studentClassIds[s];
+        for (int i = 0; i < taskCount; i++) {
+            int t = chronological[i];
+            int c = Arrays.binarySearch(cellStudent, cellStart[t], cellStart[t + 1], s);
+            if (c < 0) {
+                continue;
+            }
+            long sum = 0;
+            int count = 0;
+            for (int other = cellStart[t]; other < cellStart[t + 1]; other++) {
+                int score = scoreCents[other];
+                if (score != NO_SCORE && (classId == NO_CLASS || studentClassIds[cellStudent[other]] == classId)) {
+                    sum += score;
+                    count++;
+                }
+            }
+            sink.accept(t, scoreCents[c] == NO_SCORE ? null : score(scoreCents[c]), count == 0 ? null : average(sum, count));
+        }
+    }
+
+    int reviewCount() {
+        return reviewCount;
+    }
+
+    long reviewId(int r) {
+        return reviewIds[r];
+    }
+
+    long reviewStudentId(int r) {
+        return reviewStudentIds[r];
+    }
+
+    int reviewScore(int r) {
+        return reviewScores[r];
+    }
+
+    static BigDecimal score(int cents) {
+        return BigDecimal.valueOf(cents, 2);
+    }
+
+    static BigDecimal average(long sumCents, int count) {
+        if (count == 0) {
+            return ZERO_SCORE;
+        }
+        return BigDecimal.valueOf(sumCents, 2).divide(BigDecimal.valueOf(count), 2, RoundingMode.HALF_UP);
+    }
+
+    private int cell(long taskId, long studentId) {
+        int t = taskIndex.get(taskId);
+        int s = t < 0 ? -1 : studentIndex.get(studentId);
+        if (s < 0) {
+            return -1;
+        }
+        int c = Arrays.binarySearch(cellStudent, cellStart[t], cellStart[t + 1], s);
+        return c < 0 ? -1 : c;
+    }
+
+    @FunctionalInterface
+    interface TrendPoint {
+
+        void accept(int taskIndex, BigDecimal studentScore, BigDecimal classAvgScore);
+    }
+
+    /** Open-addressing long to int map (values are never negative); also used as a set of ids. */
+    static final class LongIndex {
+
+        private long[] keys;
+        private int[] values;
+        private boolean[] used;
+        private int size;
+
+        LongIndex(int expected) {
+            int capacity = Integer.highestOneBit(Math.max(16, expected * 2) - 1) << 1;
+            keys = new long[capacity];
+            values = new int[capacity];
+            used = new boolean[capacity];
+        }
+
+        int size() {
+            return size;
+        }
+
+        /** The value of the key, or -1. */
+        int get(long key) {
+            int mask = keys.length - 1;
+            for (int i = mix(key) & mask; used[i]; i = (i + 1) & mask) {
+                if (keys[i] == key) {
+                    return values[i];
+                }
+            }
+            return -1;
+        }
+
+        /** Stores the value unless the key is present; returns the value now held for the key. */
+        int putIfAbsent(long key, int value) {
+            int mask = keys.length - 1;
+            int i = mix(key) & mask;
+            for (; used[i]; i = (i + 1) & mask) {
+                if (keys[i] == key) {
+                    return values[i];
+                }
+            }
+            used[i] = true;
+            keys[i] = key;
+            values[i] = value;
+            if (++size * 2 > keys.length) {
+                grow();
+            }
+            return value;
+        }
+
+        private void grow() {
+            long[] oldKeys = keys;
+            int[] oldValues = values;
+            boolean[] oldUsed = used;
+            keys = new long[oldKeys.length * 2];
+            values = new int[oldKeys.length * 2];
+            used = new boolean[oldKeys.length * 2];
+            int mask = keys.length - 1;
+            for (int j = 0; j < oldKeys.length; j++) {
+                if (oldUsed[j]) {
+                    int i = mix(oldKeys[j]) & mask;
+                    while (used[i]) {
+                        i = (i + 1) & mask;
+                    }
+                    used[i] = true;
+                    keys[i] = oldKeys[j];
+                    values[i] = oldValues[j];
+                }
+            }
+        }
+
+        private static int mix(long key) {
+            long h = key * 0x9E3779B97F4A7C15L;
+            return (int) (h ^ (h >>> 32));
+        }
+    }
+}
@@ -34,13 +34,12 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Comparator;
 import java.util.LinkedHashMap;
-import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
-import java.util.Set;
 import java.util.stream.Collectors;
 import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
 import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
 import org.springframework.stereotype.Service;
@@ -53,6 +52,7 @@ public class TeachingAnalyticsService {
     private static final BigDecimal ZERO_RATE = BigDecimal.ZERO.setScale(4, RoundingMode.HALF_UP);
     private static final BigDecimal ZERO_SCORE = BigDecimal.ZERO.setScale(2, RoundingMode.HALF_UP);
     private static final BigDecimal RISK_SCORE_THRESHOLD = BigDecimal.valueOf(60);
+    static final int RISK_SCORE_CENTS = 6000;
     private static final BigDecimal RISK_COMPLETION_THRESHOLD = BigDecimal.valueOf(0.60).setScale(4, RoundingMode.HALF_UP);
 
     private final NamedParameterJdbcTemplate jdbcTemplate;
@@ -65,6 +65,7 @@ public class TeachingAnalyticsService {
     private final AdminAuditService adminAuditService;
     private final ObjectMapper objectMapper;
     private final PlagiarismProperties plagiarismProperties;
+    private final StatisticsDashboardCache dashboardCache;
 
     public TeachingAnalyticsService(
             NamedParameterJdbcTemplate jdbcTemplate,
@@ -76,7 +77,8 @@ public class TeachingAnalyticsService {
             ExportRecordMapper exportRecordMapper,
             AdminAuditService adminAuditService,
             ObjectMapper objectMapper,
-            PlagiarismProperties plagiarismProperties
+            PlagiarismProperties plagiarismProperties,
+            StatisticsDashboardCache dashboardCache
     ) {
         this.jdbcTemplate = jdbcTemplate;
         this.semesterMapper = semesterMapper;
@@ -88,6 +90,7 @@ public class TeachingAnalyticsService {
         this.adminAuditService = adminAuditService;
         this.objectMapper = objectMapper;
         this.plagiarismProperties = plagiarismProperties;
+        this.dashboardCache = dashboardCache;
     }
 
     public TeachingAnalyticsDashboardVO getTeacherAnalytics(
@@ -99,7 +102,9 @@ public class TeachingAnalyticsService {
             Long studentId
     ) {
         ResolvedFilters filters = resolveFilters(semesterId, from, to);
-        return buildDashboard(filters, teacher.userId(), classId, studentId, false);
+        StatisticsDashboardCache.Key key = new StatisticsDashboardCache.Key(
+                "TEACHER_ANALYTICS", filters.semester().getId(), filters.from(), filters.to(), teacher.userId(), classId, studentId);
+        return dashboardCache.get(key, () -> buildDashboard(filters, teacher.userId(), classId, studentId, false));
     }
 
     public TeachingAnalyticsDashboardVO getAdminAnalytics(
@@ -112,7 +117,9 @@ public class TeachingAnalyticsService {
             Long studentId
     ) {
         ResolvedFilters filters = resolveFilters(semesterId, from, to);
-        return buildDashboard(filters, teacherId, classId, studentId, true);
+        StatisticsDashboardCache.Key key = new StatisticsDashboardCache.Key(
+                "ADMIN_ANALYTICS", filters.semester().getId(), filters.from(), filters.to(), teacherId, classId, studentId);
+        return dashboardCache.get(key, () -> buildDashboard(filters, teacherId, classId, studentId, true));
     }
 
     public byte[] exportTeacherExperimentAnalyticsExcel(
@@ -132,6 +139,25 @@ public class TeachingAnalyticsService {
             conditions.put("classId", dashboard.filters().classId());
         }
         recordTeacherExport(actor, "TEACHER_TEACHING_EXPERIMENT_ANALYTICS", conditions);
+        return teacherExperimentAnalyticsWorkbook(actor, dashboard);
+    }
+
+    /**
+     * The same file as {@link #exportTeacherExperimentAnalyticsExcel} without logging the export, for export jobs: the job's own
+     * {@code export_record} row is the log. The other build*Excel methods are the same.
+     */
+    public byte[] buildTeacherExperimentAnalyticsExcel(
+            AuthenticatedUser actor,
+            Long semesterId,
+            LocalDate from,
+            LocalDate to,
+            Long classId,
+            Long studentId
+    ) {
+        return teacherExperimentAnalyticsWorkbook(actor, getTeacherAnalytics(actor, semesterId, from, to, classId, studentId));
+    }
+
+    private byte[] teacherExperimentAnalyticsWorkbook(AuthenticatedUser actor, TeachingAnalyticsDashboardVO dashboard) {
         return excelExportService.writeWorkbook(List.of(
                 new ExcelExportService.SheetSpec("筛选条件", List.of("字段", "值"), buildFilterRows(actor, dashboard.filters())),
                 new ExcelExportService.SheetSpec("实验完成率明细", List.of("任务ID", "任务标题", "教师", "可见学生数", "已提交人数", "已批阅人数", "已确认完成人数", "完成率", "平均分", "最高分", "最低分"),
@@ -165,6 +191,21 @@ public class TeachingAnalyticsService {
             conditions.put("studentId", dashboard.filters().studentId());
         }
         recordTeacherExport(actor, "TEACHER_TEACHING_STUDENT_ANALYTICS", conditions);
+        return teacherStudentAnalyticsWorkbook(actor, dashboard);
+    }
+
+    public byte[] buildTeacherStudentAnalyticsExcel(
+            AuthenticatedUser actor,
+            Long semesterId,
+            LocalDate from,
+            LocalDate to,
+            Long classId,
+            Long studentId
+    ) {
+        return teacherStudentAnalyticsWorkbook(actor, getTeacherAnalytics(actor, semesterId, from, to, classId, studentId));
+    }
+
+    private byte[] teacherStudentAnalyticsWorkbook(AuthenticatedUser actor, TeachingAnalyticsDashboardVO dashboard) {
         return excelExportService.writeWorkbook(List.of(
                 new ExcelExportService.SheetSpec("筛选条件", List.of("字段", "值"), buildFilterRows(actor, dashboard.filters())),
                 new ExcelExportService.SheetSpec("学生趋势明细", List.of("任务ID", "任务标题", "教师", "学生ID", "学生姓名", "用户名", "班级", "学生分数", "班级平均分", "学期"),
@@ -197,6 +238,21 @@ public class TeachingAnalyticsService {
             conditions.put("classId", dashboard.filters().classId());
         }
         recordTeacherExport(actor, "TEACHER_TEACHING_REPORT_QUALITY_ANALYTICS", conditions);
+        return teacherReportQualityAnalyticsWorkbook(actor, dashboard);
+    }
+
+    public byte[] buildTeacherReportQualityAnalyticsExcel(
+            AuthenticatedUser actor,
+            Long semesterId,
+            LocalDate from,
+            LocalDate to,
+            Long classId,
+            Long studentId
+    ) {
+        return teacherReportQualityAnalyticsWorkbook(actor, getTeacherAnalytics(actor, semesterId, from, to, classId, studentId));
+    }
+
+    private byte[] teacherReportQualityAnalyticsWorkbook(AuthenticatedUser actor, TeachingAnalyticsDashboardVO dashboard) {
         return excelExportService.writeWorkbook(List.of(
                 new ExcelExportService.SheetSpec("筛选条件", List.of("字段", "值"), buildFilterRows(actor, dashboard.filters())),
                 new ExcelExportService.SheetSpec("错误标签统计明细", List.of("标签代码", "标签名称", "出现次数", "涉及学生数", "对应平均分"),
@@ -221,6 +277,22 @@ public class TeachingAnalyticsService {
     ) {
         TeachingAnalyticsDashboardVO dashboard = getAdminAnalytics(actor, semesterId, from, to, teacherId, classId, studentId);
         recordAdminExport(actor, "teaching_experiment_analytics", dashboard.filters());
+        return adminExperimentAnalyticsWorkbook(actor, dashboard);
+    }
+
+    public byte[] buildAdminExperimentAnalyticsExcel(
+            AuthenticatedUser actor,
+            Long semesterId,
+            LocalDate from,
+            LocalDate to,
+            Long teacherId,
+            Long classId,
+            Long studentId
+    ) {
+        return adminExperimentAnalyticsWorkbook(actor, getAdminAnalytics(actor, semesterId, from, to, teacherId, classId, studentId));
+    }
+
+    private byte[] adminExperimentAnalyticsWorkbook(AuthenticatedUser actor, TeachingAnalyticsDashboardVO dashboard) {
         return excelExportService.writeWorkbook(List.of(
                 new ExcelExportService.SheetSpec("筛选条件", List.of("字段", "值"), buildFilterRows(actor, dashboard.filters())),
                 new ExcelExportService.SheetSpec("实验完成率明细", List.of("任务ID", "任务标题", "教师", "可见学生数", "已提交人数", "已批阅人数", "已确认完成人数", "完成率", "平均分", "最高分", "最低分"),
@@ -245,6 +317,22 @@ public class TeachingAnalyticsService {
     ) {
         TeachingAnalyticsDashboardVO dashboard = getAdminAnalytics(actor, semesterId, from, to, teacherId, classId, studentId);
         recordAdminExport(actor, "teaching_student_analytics", dashboard.filters());
+        return adminStudentAnalyticsWorkbook(actor, dashboard);
+    }
+
+    public byte[] buildAdminStudentAnalyticsExcel(
+            AuthenticatedUser actor,
+            Long semesterId,
+            LocalDate from,
+            LocalDate to,
+            Long teacherId,
+            Long classId,
+            Long studentId
+    ) {
+        return adminStudentAnalyticsWorkbook(actor, getAdminAnalytics(actor, semesterId, from, to, teacherId, classId, studentId));
+    }
+
+    private byte[] adminStudentAnalyticsWorkbook(AuthenticatedUser actor, TeachingAnalyticsDashboardVO dashboard) {
         return excelExportService.writeWorkbook(List.of(
                 new ExcelExportService.SheetSpec("筛选条件", List.of("字段", "值"), buildFilterRows(actor, dashboard.filters())),
                 new ExcelExportService.SheetSpec("学生趋势明细", List.of("任务ID", "任务标题", "教师", "学生ID", "学生姓名", "用户名", "班级", "学生分数", "班级平均分", "学期"),
@@ -271,6 +359,22 @@ public class TeachingAnalyticsService {
     ) {
         TeachingAnalyticsDashboardVO dashboard = getAdminAnalytics(actor, semesterId, from, to, teacherId, classId, studentId);
         recordAdminExport(actor, "teaching_report_quality_analytics", dashboard.filters());
+        return adminReportQualityAnalyticsWorkbook(actor, dashboard);
+    }
+
+    public byte[] buildAdminReportQualityAnalyticsExcel(
+            AuthenticatedUser actor,
+            Long semesterId,
+            LocalDate from,
+            LocalDate to,
+            Long teacherId,
+            Long classId,
+            Long studentId
+    ) {
+        return adminReportQualityAnalyticsWorkbook(actor, getAdminAnalytics(actor, semesterId, from, to, teacherId, classId, studentId));
+    }
+
+    private byte[] adminReportQualityAnalyticsWorkbook(AuthenticatedUser actor, TeachingAnalyticsDashboardVO dashboard) {
         return excelExportService.writeWorkbook(List.of(
                 new ExcelExportService.SheetSpec("筛选条件", List.of("字段", "值"), buildFilterRows(actor, dashboard.filters())),
                 new ExcelExportService.SheetSpec("错误标签统计明细", List.of("标签代码", "标签名称", "出现次数", "涉及学生数", "对应平均分"),
@@ -290,14 +394,16 @@ public class TeachingAnalyticsService {
         Map<Long, String> classDisplayByStudentId = loadClassDisplayByStudentId(visibleStudentsByTask.values().stream().flatMap(Collection::stream).toList());
         List<StatisticsOptionVO> studentOptions = buildStudentOptions(visibleStudentsByTask, classDisplayByStudentId);
         Long resolvedStudentId = resolveStudentId(studentId, studentOptions);
-        List<SubmissionDetailRow> submissionDetails = loadSubmissionDetails(teacherId, classId, filters);
-        List<ReviewDetailRow> reviewDetails = loadReviewDetails(teacherId, classId, filters);
-        List<CompletionDetailRow> completionDetails = loadCompletionDetails(teacherId, classId, filters);
-        List<PlagiarismRiskRow> plagiarismRiskRows = loadPlagiarismRiskRows(teacherId, classId, filters);
+        TeachingAnalyticsFacts facts = newFacts(tasks, visibleStudentsByTask);
+        loadSubmissionFacts(facts, teacherId, classId, filters);
+        loadReviewFacts(facts, teacherId, classId, filters);
+        loadCompletionFacts(facts, teacherId, classId, filters);
+        facts.aggregate();
+        long[] plagiarismRiskCounts = countPlagiarismRisk(teacherId, classId, filters);
 
-        ExperimentComputation experimentComputation = buildExperimentAnalysis(tasks, visibleStudentsByTask, submissionDetails, reviewDetails, completionDetails);
-        StudentComputation studentComputation = buildStudentAnalysis(tasks, visibleStudentsByTask, classDisplayByStudentId, submissionDetails, reviewDetails, completionDetails, resolvedStudentId);
-        ReportQualityComputation qualityComputation = buildReportQualityAnalysis(reviewDetails, plagiarismRiskRows);
+        ExperimentComputation experimentComputation = buildExperimentAnalysis(tasks, facts);
+        StudentComputation studentComputation = buildStudentAnalysis(tasks, facts, classDisplayByStudentId, resolvedStudentId);
+        ReportQualityComputation qualityComputation = buildReportQualityAnalysis(facts, plagiarismRiskCounts);
 
         return new TeachingAnalyticsDashboardVO(
                 new TeachingAnalyticsDashboardVO.Filters(
@@ -319,42 +425,36 @@ public class TeachingAnalyticsService {
         );
     }
 
-    private ExperimentComputation buildExperimentAnalysis(
-            List<TaskMetaRow> tasks,
-            Map<Long, List<SysUserEntity>> visibleStudentsByTask,
-            List<SubmissionDetailRow> submissionDetails,
-            List<ReviewDetailRow> reviewDetails,
-            List<CompletionDetailRow> completionDetails
-    ) {
-        Map<TaskStudentKey, SubmissionDetailRow> latestSubmissionByKey = latestSubmissionsByKey(submissionDetails);
-        Map<TaskStudentKey, ReviewDetailRow> latestReviewByKey = latestReviewsByKey(reviewDetails);
-        Map<TaskStudentKey, CompletionDetailRow> confirmedCompletionByKey = confirmedCompletionsByKey(completionDetails);
-        List<TeachingAnalyticsDashboardVO.ExperimentTaskRow> rows = new ArrayList<>();
-        for (TaskMetaRow task : tasks) {
-            Set<Long> visibleIds = visibleStudentsByTask.getOrDefault(task.id(), List.of()).stream()
-                    .map(SysUserEntity::getId)
-                    .filter(Objects::nonNull)
-                    .collect(Collectors.toSet());
-            long submissionCount = visibleIds.stream().filter(studentId -> latestSubmissionByKey.containsKey(new TaskStudentKey(task.id(), studentId))).count();
-            List<ReviewDetailRow> latestReviews = visibleIds.stream()
-                    .map(studentId -> latestReviewByKey.get(new TaskStudentKey(task.id(), studentId)))
-                    .filter(Objects::nonNull)
-                    .toList();
-            long reviewedCount = latestReviews.size();
-            long confirmedCount = visibleIds.stream().filter(studentId -> confirmedCompletionByKey.containsKey(new TaskStudentKey(task.id(), studentId))).count();
-            List<BigDecimal> scores = latestReviews.stream().map(ReviewDetailRow::score).filter(Objects::nonNull).toList();
+    private TeachingAnalyticsFacts newFacts(List<TaskMetaRow> tasks, Map<Long, List<SysUserEntity>> visibleStudentsByTask) {
+        long[] taskIds = new long[tasks.size()];
+        LocalDateTime[] createdAt = new LocalDateTime[tasks.size()];
+        List<List<SysUserEntity>> visibleStudents = new ArrayList<>(tasks.size());
+        for (int t = 0; t < tasks.size(); t++) {
+            TaskMetaRow task = tasks.get(t);
+            taskIds[t] = task.id();
+            createdAt[t] = task.createdAt();
+            visibleStudents.add(visibleStudentsByTask.getOrDefault(task.id(), List.of()));
+        }
+        return new TeachingAnalyticsFacts(taskIds, createdAt, visibleStudents);
+    }
+
+    private ExperimentComputation buildExperimentAnalysis(List<TaskMetaRow> tasks, TeachingAnalyticsFacts facts) {
+        List<TeachingAnalyticsDashboardVO.ExperimentTaskRow> rows = new ArrayList<>(tasks.size());
+        for (int t = 0; t < tasks.size(); t++) {
+            TaskMetaRow task = tasks.get(t);
+            int visibleCount = facts.taskVisibleCount(t);
             rows.add(new TeachingAnalyticsDashboardVO.ExperimentTaskRow(
                     task.id(),
                     task.title(),
                     task.publisherName(),
-                    visibleIds.size(),
-                    submissionCount,
-                    reviewedCount,
-                    confirmedCount,
-                    rate(confirmedCount, visibleIds.size()),
-                    averageScore(scores),
-                    maxScore(scores),
-                    minScore(scores)
+                    visibleCount,
+                    facts.taskSubmittedCount(t),
+                    facts.taskReviewedCount(t),
+                    facts.taskConfirmedCount(t),
+                    rate(facts.taskConfirmedCount(t), visibleCount),
+                    facts.taskAvgScore(t),
+                    facts.taskMaxScore(t),
+                    facts.taskMinScore(t)
             ));
         }
         List<TeachingAnalyticsDashboardVO.ExperimentTaskRow> completionSorted = rows.stream()
@@ -378,94 +478,37 @@ public class TeachingAnalyticsService {
 
     private StudentComputation buildStudentAnalysis(
             List<TaskMetaRow> tasks,
-            Map<Long, List<SysUserEntity>> visibleStudentsByTask,
+            TeachingAnalyticsFacts facts,
             Map<Long, String> classDisplayByStudentId,
-            List<SubmissionDetailRow> submissionDetails,
-            List<ReviewDetailRow> reviewDetails,
-            List<CompletionDetailRow> completionDetails,
             Long selectedStudentId
     ) {
-        Map<TaskStudentKey, SubmissionDetailRow> latestSubmissionByKey = latestSubmissionsByKey(submissionDetails);
-        Map<TaskStudentKey, ReviewDetailRow> latestReviewByKey = latestReviewsByKey(reviewDetails);
-        Map<TaskStudentKey, CompletionDetailRow> confirmedCompletionByKey = confirmedCompletionsByKey(completionDetails);
-        Map<Long, TaskMetaRow> taskMap = tasks.stream().collect(Collectors.toMap(TaskMetaRow::id, item -> item));
-        Map<Long, Set<Long>> visibleTaskIdsByStudent = new LinkedHashMap<>();
-        Map<Long, SysUserEntity> studentMap = new LinkedHashMap<>();
-        for (Map.Entry<Long, List<SysUserEntity>> entry : visibleStudentsByTask.entrySet()) {
-            for (SysUserEntity student : entry.getValue()) {
-                if (student.getId() == null) continue;
-                visibleTaskIdsByStudent.computeIfAbsent(student.getId(), key -> new LinkedHashSet<>()).add(entry.getKey());
-                studentMap.putIfAbsent(student.getId(), student);
-            }
-        }
-
         List<TeachingAnalyticsDashboardVO.RiskStudentRow> riskRows = new ArrayList<>();
-        for (Map.Entry<Long, Set<Long>> entry : visibleTaskIdsByStudent.entrySet()) {
-            Long studentId = entry.getKey();
-            List<TaskMetaRow> visibleTasks = entry.getValue().stream()
-                    .map(taskMap::get)
-                    .filter(Objects::nonNull)
-                    .sorted(Comparator.comparing(TaskMetaRow::createdAt, Comparator.nullsLast(Comparator.naturalOrder())).thenComparing(TaskMetaRow::id))
-                    .toList();
-            if (visibleTasks.isEmpty()) {
+        for (int s = 0; s < facts.studentCount(); s++) {
+            int taskCount = facts.studentTaskCount(s);
+            if (taskCount == 0) {
                 continue;
             }
-            List<BigDecimal> reviewedScores = new ArrayList<>();
-            long submittedCount = 0;
-            long reviewedCount = 0;
-            long confirmedCount = 0;
-            int consecutiveUnsubmitted = 0;
-            int maxConsecutiveUnsubmitted = 0;
-            int consecutiveLowScore = 0;
-            int maxConsecutiveLowScore = 0;
-            for (TaskMetaRow task : visibleTasks) {
-                TaskStudentKey key = new TaskStudentKey(task.id(), studentId);
-                boolean submitted = latestSubmissionByKey.containsKey(key);
-                if (submitted) {
-                    submittedCount++;
-                    consecutiveUnsubmitted = 0;
-                } else {
-                    consecutiveUnsubmitted++;
-                    maxConsecutiveUnsubmitted = Math.max(maxConsecutiveUnsubmitted, consecutiveUnsubmitted);
-                }
-                ReviewDetailRow review = latestReviewByKey.get(key);
-                if (review != null && review.score() != null) {
-                    reviewedCount++;
-                    reviewedScores.add(review.score());
-                    if (review.score().compareTo(RISK_SCORE_THRESHOLD) < 0) {
-                        consecutiveLowScore++;
-                        maxConsecutiveLowScore = Math.max(maxConsecutiveLowScore, consecutiveLowScore);
-                    } else {
-                        consecutiveLowScore = 0;
-                    }
-                } else {
-                    consecutiveLowScore = 0;
-                }
-                if (confirmedCompletionByKey.containsKey(key)) {
-                    confirmedCount++;
-                }
-            }
-            BigDecimal avgScore = averageScore(reviewedScores);
-            BigDecimal completionRate = rate(confirmedCount, visibleTasks.size());
-            BigDecimal recentThreeAvg = averageScore(reviewedScores.stream().skip(Math.max(0, reviewedScores.size() - 3)).toList());
+            boolean scored = facts.studentScoredCount(s) > 0;
+            BigDecimal avgScore = facts.studentAvgScore(s);
+            BigDecimal completionRate = rate(facts.studentConfirmedCount(s), taskCount);
             List<String> reasons = new ArrayList<>();
             if (completionRate.compareTo(RISK_COMPLETION_THRESHOLD) < 0) reasons.add("完成率低于60%");
-            if (!reviewedScores.isEmpty() && avgScore.compareTo(RISK_SCORE_THRESHOLD) < 0) reasons.add("平均分低于60");
-            if (maxConsecutiveUnsubmitted >= 2) reasons.add("连续2次未提交");
-            if (maxConsecutiveLowScore >= 2) reasons.add("连续2次低分");
+            if (scored && avgScore.compareTo(RISK_SCORE_THRESHOLD) < 0) reasons.add("平均分低于60");
+            if (facts.studentMaxUnsubmittedRun(s) >= 2) reasons.add("连续2次未提交");
+            if (facts.studentMaxLowScoreRun(s) >= 2) reasons.add("连续2次低分");
             if (!reasons.isEmpty()) {
-                SysUserEntity student = studentMap.get(studentId);
+                SysUserEntity student = facts.student(s);
                 riskRows.add(new TeachingAnalyticsDashboardVO.RiskStudentRow(
-                        studentId,
-                        student == null ? null : student.getDisplayName(),
-                        student == null ? null : student.getUsername(),
-                        classDisplayByStudentId.get(studentId),
-                        submittedCount,
-                        reviewedCount,
+                        student.getId(),
+                        student.getDisplayName(),
+                        student.getUsername(),
+                        classDisplayByStudentId.get(student.getId()),
+                        facts.studentSubmittedCount(s),
+                        facts.studentScoredCount(s),
                         avgScore,
                         completionRate,
-                        recentThreeAvg,
-                        trendLabel(reviewedScores),
+                        facts.studentRecentThreeAvgScore(s),
+                        trendLabel(facts.studentScoreDelta(s)),
                         String.join("；", reasons)
                 ));
             }
@@ -475,39 +518,23 @@ public class TeachingAnalyticsService {
                         .thenComparing(TeachingAnalyticsDashboardVO.RiskStudentRow::avgScore)
                         .thenComparing(TeachingAnalyticsDashboardVO.RiskStudentRow::studentUsername, Comparator.nullsLast(String::compareTo)))
                 .toList();
-        List<TeachingAnalyticsDashboardVO.WeakTaskRow> weakRows = buildWeakTaskRows(tasks, visibleStudentsByTask, latestSubmissionByKey, latestReviewByKey, confirmedCompletionByKey);
-        StatisticsChartVO trendChart = buildStudentTrendChart(tasks, visibleStudentsByTask, latestReviewByKey, studentMap, selectedStudentId);
+        List<TeachingAnalyticsDashboardVO.WeakTaskRow> weakRows = buildWeakTaskRows(tasks, facts);
+        StatisticsChartVO trendChart = buildStudentTrendChart(tasks, facts, selectedStudentId);
         return new StudentComputation(new TeachingAnalyticsDashboardVO.StudentAnalysis(trendChart, sortedRiskRows, weakRows));
     }
 
-    private List<TeachingAnalyticsDashboardVO.WeakTaskRow> buildWeakTaskRows(
-            List<TaskMetaRow> tasks,
-            Map<Long, List<SysUserEntity>> visibleStudentsByTask,
-            Map<TaskStudentKey, SubmissionDetailRow> latestSubmissionByKey,
-            Map<TaskStudentKey, ReviewDetailRow> latestReviewByKey,
-            Map<TaskStudentKey, CompletionDetailRow> confirmedCompletionByKey
-    ) {
-        List<TeachingAnalyticsDashboardVO.WeakTaskRow> rows = new ArrayList<>();
-        for (TaskMetaRow task : tasks) {
-            Set<Long> visibleIds = visibleStudentsByTask.getOrDefault(task.id(), List.of()).stream()
-                    .map(SysUserEntity::getId)
-                    .filter(Objects::nonNull)
-                    .collect(Collectors.toSet());
-            long submittedCount = visibleIds.stream().filter(studentId -> latestSubmissionByKey.containsKey(new TaskStudentKey(task.id(), studentId))).count();
-            long confirmedCount = visibleIds.stream().filter(studentId -> confirmedCompletionByKey.containsKey(new TaskStudentKey(task.id(), studentId))).count();
-            List<BigDecimal> scores = visibleIds.stream()
-                    .map(studentId -> latestReviewByKey.get(new TaskStudentKey(task.id(), studentId)))
-                    .filter(Objects::nonNull)
-                    .map(ReviewDetailRow::score)
-                    .filter(Objects::nonNull)
-                    .toList();
+    private List<TeachingAnalyticsDashboardVO.WeakTaskRow> buildWeakTaskRows(List<TaskMetaRow> tasks, TeachingAnalyticsFacts facts) {
+        List<TeachingAnalyticsDashboardVO.WeakTaskRow> rows = new ArrayList<>(tasks.size());
+        for (int t = 0; t < tasks.size(); t++) {
+            TaskMetaRow task = tasks.get(t);
+            int visibleCount = facts.taskVisibleCount(t);
             rows.add(new TeachingAnalyticsDashboardVO.WeakTaskRow(
                     task.id(),
                     task.title(),
                     task.publisherName(),
-                    averageScore(scores),
-                    rate(confirmedCount, visibleIds.size()),
-                    visibleIds.isEmpty() ? ZERO_RATE : rate(visibleIds.size() - submittedCount, visibleIds.size())
+                    facts.taskAvgScore(t),
+                    rate(facts.taskConfirmedCount(t), visibleCount),
+                    rate(visibleCount - facts.taskSubmittedCount(t), visibleCount)
             ));
         }
         return rows.stream()
@@ -517,63 +544,59 @@ public class TeachingAnalyticsService {
                 .toList();
     }
 
-    private StatisticsChartVO buildStudentTrendChart(
-            List<TaskMetaRow> tasks,
-            Map<Long, List<SysUserEntity>> visibleStudentsByTask,
-            Map<TaskStudentKey, ReviewDetailRow> latestReviewByKey,
-            Map<Long, SysUserEntity> studentMap,
-            Long selectedStudentId
-    ) {
-        if (selectedStudentId == null || !studentMap.containsKey(selectedStudentId)) {
+    private StatisticsChartVO buildStudentTrendChart(List<TaskMetaRow> tasks, TeachingAnalyticsFacts facts, Long selectedStudentId) {
+        if (selectedStudentId == null || !facts.hasStudent(selectedStudentId)) {
             return new StatisticsChartVO(List.of(), List.of(
                     new StatisticsChartVO.Series("学生分数", "line", List.of()),
                     new StatisticsChartVO.Series("班级平均分", "line", List.of())
             ));
         }
-        SysUserEntity student = studentMap.get(selectedStudentId);
-        Long classId = student == null ? null : student.getClassId();
         List<String> categories = new ArrayList<>();
         List<BigDecimal> studentSeries = new ArrayList<>();
         List<BigDecimal> classSeries = new ArrayList<>();
-        for (TaskMetaRow task : tasks.stream().sorted(Comparator.comparing(TaskMetaRow::createdAt, Comparator.nullsLast(Comparator.naturalOrder())).thenComparing(TaskMetaRow::id)).toList()) {
-            Set<Long> visibleIds = visibleStudentsByTask.getOrDefault(task.id(), List.of()).stream()
-                    .map(SysUserEntity::getId)
-                    .filter(Objects::nonNull)
-                    .collect(Collectors.toSet());
-            if (!visibleIds.contains(selectedStudentId)) {
-                continue;
-            }
-            categories.add(task.title());
-            ReviewDetailRow review = latestReviewByKey.get(new TaskStudentKey(task.id(), selectedStudentId));
-            studentSeries.add(review == null ? null : review.score());
-            List<BigDecimal> classScores = visibleStudentsByTask.getOrDefault(task.id(), List.of()).stream()
-                    .filter(item -> classId == null || Objects.equals(item.getClassId(), classId))
-                    .map(item -> latestReviewByKey.get(new TaskStudentKey(task.id(), item.getId())))
-                    .filter(Objects::nonNull)
-                    .map(ReviewDetailRow::score)
-                    .filter(Objects::nonNull)
-                    .toList();
-            classSeries.add(classScores.isEmpty() ? null : averageScore(classScores));
-        }
+        facts.forEachTrendPoint(selectedStudentId, (taskIndex, studentScore, classAvgScore) -> {
+            categories.add(tasks.get(taskIndex).title());
+            studentSeries.add(studentScore);
+            classSeries.add(classAvgScore);
+        });
         return new StatisticsChartVO(categories, List.of(
                 new StatisticsChartVO.Series("学生分数", "line", studentSeries),
                 new StatisticsChartVO.Series("班级平均分", "line", classSeries)
         ));
     }
 
-    private ReportQualityComputation buildReportQualityAnalysis(List<ReviewDetailRow> reviewDetails, List<PlagiarismRiskRow> plagiarismRiskRows) {
+    /**
+     * Issue tags over every review in range (not only the latest per student); a review without tags counts as
+     * unmarked.
+     */
+    private ReportQualityComputation buildReportQualityAnalysis(TeachingAnalyticsFacts facts, long[] plagiarismRiskCounts) {
         Map<String, TagAccumulator> accumulators = new LinkedHashMap<>();
         for (ReviewIssueTags.TagOption item : ReviewIssueTags.options()) {
             accumulators.put(item.code(), new TagAccumulator(item.label()));
         }
-        accumulators.put(UNMARKED_TAG, new TagAccumulator(UNMARKED_LABEL));
-        for (ReviewDetailRow review : reviewDetails) {
-            List<String> tags = review.issueTags().isEmpty() ? List.of(UNMARKED_TAG) : review.issueTags();
-            for (String tagCode : tags) {
-                TagAccumulator accumulator = accumulators.computeIfAbsent(tagCode, key -> new TagAccumulator(ReviewIssueTags.labelOf(key)));
-                accumulator.occurrenceCount++;
-                if (review.studentId() != null) accumulator.studentIds.add(review.studentId());
-                if (review.score() != null) accumulator.scores.add(review.score());
+        TagAccumulator unmarked = new TagAccumulator(UNMARKED_LABEL);
+        accumulators.put(UNMARKED_TAG, unmarked);
+        int reviewCount = facts.reviewCount();
+        boolean[] tagged = new boolean[reviewCount];
+        if (reviewCount > 0) {
+            TeachingAnalyticsFacts.LongIndex reviewIndex = new TeachingAnalyticsFacts.LongIndex(reviewCount);
+            List<Long> reviewIds = new ArrayList<>(reviewCount);
+            for (int r = 0; r < reviewCount; r++) {
+                if (reviewIndex.putIfAbsent(facts.reviewId(r), r) == r) {
+                    reviewIds.add(facts.reviewId(r));
+                }
+            }
+            for (ReportReviewIssueTagMapper.IssueTagRow row : reportReviewIssueTagMapper.findRowsByReviewIds(reviewIds)) {
+                int r = reviewIndex.get(row.reviewId());
+                if (r < 0) continue;
+                tagged[r] = true;
+                accumulators.computeIfAbsent(row.tagCode(), key -> new TagAccumulator(ReviewIssueTags.labelOf(key)))
+                        .add(facts.reviewStudentId(r), facts.reviewScore(r));
+            }
+        }
+        for (int r = 0; r < reviewCount; r++) {
+            if (!tagged[r]) {
+                unmarked.add(facts.reviewStudentId(r), facts.reviewScore(r));
             }
         }
         List<TeachingAnalyticsDashboardVO.IssueTagRow> issueRows = accumulators.entrySet().stream()
@@ -583,7 +606,7 @@ public class TeachingAnalyticsService {
                         item.getValue().label,
                         item.getValue().occurrenceCount,
                         item.getValue().studentIds.size(),
-                        averageScore(item.getValue().scores)
+                        TeachingAnalyticsFacts.average(item.getValue().scoreSum, item.getValue().scoreCount)
                 ))
                 .sorted(Comparator.comparing(TeachingAnalyticsDashboardVO.IssueTagRow::occurrenceCount).reversed()
                         .thenComparing(TeachingAnalyticsDashboardVO.IssueTagRow::tagLabel))
@@ -593,20 +616,12 @@ public class TeachingAnalyticsService {
                 List.of(new StatisticsChartVO.Series("出现次数", "bar", issueRows.stream().map(item -> BigDecimal.valueOf(item.occurrenceCount())).toList()))
         );
 
-        Map<String, Long> riskCounts = new LinkedHashMap<>();
-        riskCounts.put("低风险", 0L);
-        riskCounts.put("中风险", 0L);
-        riskCounts.put("高风险", 0L);
-        for (PlagiarismRiskRow row : plagiarismRiskRows) {
-            String label = riskLabel(row.maxScore());
-            riskCounts.put(label, riskCounts.getOrDefault(label, 0L) + 1);
-        }
         StatisticsChartVO riskChart = new StatisticsChartVO(
                 List.of("低风险", "中风险", "高风险"),
                 List.of(new StatisticsChartVO.Series("报告数", "bar", List.of(
-                        BigDecimal.valueOf(riskCounts.get("低风险")),
-                        BigDecimal.valueOf(riskCounts.get("中风险")),
-                        BigDecimal.valueOf(riskCounts.get("高风险"))
+                        BigDecimal.valueOf(plagiarismRiskCounts[0]),
+                        BigDecimal.valueOf(plagiarismRiskCounts[1]),
+                        BigDecimal.valueOf(plagiarismRiskCounts[2])
                 )))
         );
         return new ReportQualityComputation(new TeachingAnalyticsDashboardVO.ReportQualityAnalysis(issueChart, riskChart, issueRows));
@@ -616,34 +631,20 @@ public class TeachingAnalyticsService {
         ResolvedFilters filters = resolveFilters(dashboard.filters().semesterId(), dashboard.filters().from(), dashboard.filters().to());
         List<TaskMetaRow> tasks = loadTasks(teacherId, classId, filters, adminView);
         Map<Long, List<SysUserEntity>> visibleStudentsByTask = loadVisibleStudentsByTask(tasks, classId);
-        Map<TaskStudentKey, ReviewDetailRow> latestReviewByKey = latestReviewsByKey(loadReviewDetails(teacherId, classId, filters));
-        Map<Long, SysUserEntity> studentMap = visibleStudentsByTask.values().stream()
-                .flatMap(Collection::stream)
-                .filter(item -> item.getId() != null)
-                .collect(Collectors.toMap(SysUserEntity::getId, item -> item, (a, b) -> a));
-        if (studentId == null || !studentMap.containsKey(studentId)) {
+        TeachingAnalyticsFacts facts = newFacts(tasks, visibleStudentsByTask);
+        if (studentId == null || !facts.hasStudent(studentId)) {
             return List.of();
         }
-        SysUserEntity selectedStudent = studentMap.get(studentId);
-        Long selectedClassId = selectedStudent.getClassId();
-        Map<Long, String> classDisplayByStudent = loadClassDisplayByStudentId(studentMap.values().stream().toList());
+        loadReviewFacts(facts, teacherId, classId, filters);
+        SysUserEntity selectedStudent = visibleStudentsByTask.values().stream()
+                .flatMap(Collection::stream)
+                .filter(item -> Objects.equals(item.getId(), studentId))
+                .findFirst()
+                .orElseThrow();
+        String classDisplayName = loadClassDisplayByStudentId(List.of(selectedStudent)).get(studentId);
         List<List<?>> rows = new ArrayList<>();
-        for (TaskMetaRow task : tasks.stream().sorted(Comparator.comparing(TaskMetaRow::createdAt, Comparator.nullsLast(Comparator.naturalOrder())).thenComparing(TaskMetaRow::id)).toList()) {
-            Set<Long> visibleIds = visibleStudentsByTask.getOrDefault(task.id(), List.of()).stream()
-                    .map(SysUserEntity::getId)
-                    .filter(Objects::nonNull)
-                    .collect(Collectors.toSet());
-            if (!visibleIds.contains(studentId)) {
-                continue;
-            }
-            ReviewDetailRow studentReview = latestReviewByKey.get(new TaskStudentKey(task.id(), studentId));
-            List<BigDecimal> classScores = visibleStudentsByTask.getOrDefault(task.id(), List.of()).stream()
-                    .filter(item -> selectedClassId == null || Objects.equals(item.getClassId(), selectedClassId))
-                    .map(item -> latestReviewByKey.get(new TaskStudentKey(task.id(), item.getId())))
-                    .filter(Objects::nonNull)
-                    .map(ReviewDetailRow::score)
-                    .filter(Objects::nonNull)
-                    .toList();
+        facts.forEachTrendPoint(studentId, (taskIndex, studentScore, classAvgScore) -> {
+            TaskMetaRow task = tasks.get(taskIndex);
             rows.add(row(
                     task.id(),
                     task.title(),
@@ -651,12 +652,12 @@ public class TeachingAnalyticsService {
                     studentId,
                     selectedStudent.getDisplayName(),
                     selectedStudent.getUsername(),
-                    classDisplayByStudent.get(studentId),
-                    studentReview == null ? null : studentReview.score(),
-                    classScores.isEmpty() ? null : averageScore(classScores),
+                    classDisplayName,
+                    studentScore,
+                    classAvgScore,
                     dashboard.filters().semesterName()
             ));
-        }
+        });
         return rows;
     }
 
@@ -726,73 +727,99 @@ public class TeachingAnalyticsService {
                 .toList();
     }
 
-    private List<SubmissionDetailRow> loadSubmissionDetails(Long teacherId, Long classId, ResolvedFilters filters) {
+    private void loadSubmissionFacts(TeachingAnalyticsFacts facts, Long teacherId, Long classId, ResolvedFilters filters) {
         StringBuilder sql = new StringBuilder("""
-                SELECT t.id AS task_id,
-                       t.title AS task_title,
-                       t.publisher_id AS teacher_id,
-                       COALESCE(NULLIF(TRIM(teacher.display_name), ''), teacher.username) AS teacher_name,
-                       su.id AS student_id,
-                       COALESCE(NULLIF(TRIM(su.display_name), ''), su.username) AS student_display_name,
-                       su.username AS student_username,
-                       su.class_id AS class_id,
-                       CASE
-                         WHEN d.name IS NOT NULL AND c.grade IS NOT NULL THEN CONCAT(d.name, ' / ', c.grade, '级', c.name)
-                         WHEN c.grade IS NOT NULL THEN CONCAT(c.grade, '级', c.name)
-                         ELSE c.name
-                       END AS class_display_name,
-                       rs.version_no,
-                       rs.submit_status,
-                       rs.submitted_at
+                SELECT rs.task_id, rs.student_id
                 FROM report_submission rs
                 JOIN exp_task t ON t.id = rs.task_id
-                JOIN sys_user teacher ON teacher.id = t.publisher_id
                 JOIN sys_user su ON su.id = rs.student_id
-                LEFT JOIN org_class c ON c.id = su.class_id
-                LEFT JOIN org_department d ON d.id = c.department_id
                 WHERE rs.submitted_at BETWEEN :fromTime AND :toTime
                 """);
-        MapSqlParameterSource params = new MapSqlParameterSource()
-                .addValue("fromTime", Timestamp.valueOf(filters.from().atStartOfDay()))
-                .addValue("toTime", Timestamp.valueOf(filters.to().atTime(LocalTime.MAX)));
-        if (teacherId != null) {
-            sql.append(" AND t.publisher_id = :teacherId");
-            params.addValue("teacherId", teacherId);
-        }
-        if (classId != null) {
-            sql.append(" AND su.class_id = :classId");
-            params.addValue("classId", classId);
-        }
-        sql.append(" ORDER BY rs.submitted_at DESC, rs.id DESC");
-        return jdbcTemplate.queryForList(sql.toString(), params).stream()
-                .map(row -> new SubmissionDetailRow(
-                        longVal(row.get("task_id")),
-                        str(row.get("task_title")),
-                        longVal(row.get("teacher_id")),
-                        str(row.get("teacher_name")),
-                        longVal(row.get("student_id")),
-                        str(row.get("student_display_name")),
-                        str(row.get("student_username")),
-                        nullableLong(row.get("class_id")),
-                        str(row.get("class_display_name")),
-                        nullableLong(row.get("version_no")) == null ? null : nullableLong(row.get("version_no")).intValue(),
-                        str(row.get("submit_status")),
-                        time(row.get("submitted_at"))
-                ))
-                .toList();
+        MapSqlParameterSource params = scopedParams(sql, teacherId, classId, filters);
+        jdbcTemplate.query(sql.toString(), params, (RowCallbackHandler) rs ->
+                facts.addSubmission(rs.getLong("task_id"), rs.getLong("student_id")));
     }
 
-    private List<CompletionDetailRow> loadCompletionDetails(Long teacherId, Long classId, ResolvedFilters filters) {
+    /**
+     * Reviews newest first, so that among equal review times the first one recorded wins as before.
+     */
+    private void loadReviewFacts(TeachingAnalyticsFacts facts, Long teacherId, Long classId, ResolvedFilters filters) {
         StringBuilder sql = new StringBuilder("""
-                SELECT t.id AS task_id,
-                       su.id AS student_id,
-                       tc.status,
-                       tc.confirmed_at
+                SELECT rr.id AS review_id,
+                       rs.task_id,
+                       rs.student_id,
+                       rs.version_no,
+                       rr.score,
+                       rr.reviewed_at
+                FROM report_review rr
+                JOIN report_submission rs ON rs.id = rr.submission_id
+                JOIN exp_task t ON t.id = rs.task_id
+                JOIN sys_user su ON su.id = rs.student_id
+                WHERE rr.reviewed_at BETWEEN :fromTime AND :toTime
+                """);
+        MapSqlParameterSource params = scopedParams(sql, teacherId, classId, filters);
+        sql.append(" ORDER BY rr.reviewed_at DESC, rr.id DESC");
+        jdbcTemplate.query(sql.toString(), params, (RowCallbackHandler) rs -> {
+            int versionNo = rs.getInt("version_no");
+            double score = rs.getDouble("score");
+            int scoreCents = rs.wasNull() ? TeachingAnalyticsFacts.NO_SCORE : (int) Math.round(score * 100);
+            Timestamp reviewedAt = rs.getTimestamp("reviewed_at");
+            facts.addReview(
+                    rs.getLong("review_id"),
+                    rs.getLong("task_id"),
+                    rs.getLong("student_id"),
+                    TeachingAnalyticsFacts.nanos(reviewedAt == null ? null : reviewedAt.toLocalDateTime()),
+                    versionNo,
+                    scoreCents
+            );
+        });
+    }
+
+    private void loadCompletionFacts(TeachingAnalyticsFacts facts, Long teacherId, Long classId, ResolvedFilters filters) {
+        StringBuilder sql = new StringBuilder("""
+                SELECT tc.task_id, tc.student_id
                 FROM task_completion tc
                 JOIN exp_task t ON t.id = tc.task_id
                 JOIN sys_user su ON su.id = tc.student_id
-                WHERE ((tc.requested_at BETWEEN :fromTime AND :toTime) OR (tc.confirmed_at BETWEEN :fromTime AND :toTime))
+                WHERE tc.status = 'CONFIRMED'
+                  AND ((tc.requested_at BETWEEN :fromTime AND :toTime) OR (tc.confirmed_at BETWEEN :fromTime AND :toTime))
+                """);
+        MapSqlParameterSource params = scopedParams(sql, teacherId, classId, filters);
+        jdbcTemplate.query(sql.toString(), params, (RowCallbackHandler) rs ->
+                facts.addConfirmedCompletion(rs.getLong("task_id"), rs.getLong("student_id")));
+    }
+
+    /**
+     * Low / medium / high counts over the same rows as {@link #loadPlagiarismRiskRows}, without the display columns.
+     */
+    private long[] countPlagiarismRisk(Long teacherId, Long classId, ResolvedFilters filters) {
+        StringBuilder sql = new StringBuilder("""
+                SELECT b.max_score
+                FROM plag_submission_best_match b
+                JOIN report_submission rs ON rs.id = b.submission_id
+                JOIN exp_task t ON t.id = rs.task_id
+                JOIN sys_user su ON su.id = rs.student_id
+                JOIN (
+                    SELECT task_id, MAX(id) AS latest_run_id
+                    FROM plag_task_run
+                    WHERE status = 'DONE'
+                    GROUP BY task_id
+                ) latest ON latest.task_id = b.task_id AND latest.latest_run_id = b.run_id
+                WHERE rs.submitted_at BETWEEN :fromTime AND :toTime
                 """);
+        MapSqlParameterSource params = scopedParams(sql, teacherId, classId, filters);
+        long[] counts = new long[3];
+        jdbcTemplate.query(sql.toString(), params, (RowCallbackHandler) rs -> {
+            switch (riskLabel(rs.getBigDecimal("max_score"))) {
+                case "高风险" -> counts[2]++;
+                case "中风险" -> counts[1]++;
+                default -> counts[0]++;
+            }
+        });
+        return counts;
+    }
+
+    private MapSqlParameterSource scopedParams(StringBuilder sql, Long teacherId, Long classId, ResolvedFilters filters) {
         MapSqlParameterSource params = new MapSqlParameterSource()
                 .addValue("fromTime", Timestamp.valueOf(filters.from().atStartOfDay()))
                 .addValue("toTime", Timestamp.valueOf(filters.to().atTime(LocalTime.MAX)));
@@ -804,14 +831,7 @@ public class TeachingAnalyticsService {
             sql.append(" AND su.class_id = :classId");
             params.addValue("classId", classId);
         }
-        return jdbcTemplate.queryForList(sql.toString(), params).stream()
-                .map(row -> new CompletionDetailRow(
-                        longVal(row.get("task_id")),
-                        longVal(row.get("student_id")),
-                        str(row.get("status")),
-                        time(row.get("confirmed_at"))
-                ))
-                .toList();
+        return params;
     }
 
     private List<PlagiarismRiskRow> loadPlagiarismRiskRows(Long teacherId, Long classId, ResolvedFilters filters) {
@@ -838,6 +858,7 @@ public class TeachingAnalyticsService {
                 JOIN (
                     SELECT task_id, MAX(id) AS latest_run_id
                     FROM plag_task_run
+                    WHERE status = 'DONE'
                     GROUP BY task_id
                 ) latest ON latest.task_id = b.task_id AND latest.latest_run_id = b.run_id
                 WHERE rs.submitted_at BETWEEN :fromTime AND :toTime
@@ -984,58 +1005,6 @@ public class TeachingAnalyticsService {
         return studentOptions.get(0).id();
     }
 
-    private Map<TaskStudentKey, SubmissionDetailRow> latestSubmissionsByKey(List<SubmissionDetailRow> rows) {
-        Map<TaskStudentKey, SubmissionDetailRow> result = new LinkedHashMap<>();
-        for (SubmissionDetailRow row : rows) {
-            TaskStudentKey key = new TaskStudentKey(row.taskId(), row.studentId());
-            SubmissionDetailRow current = result.get(key);
-            if (current == null
-                    || compareTime(row.submittedAt(), current.submittedAt()) > 0
-                    || (compareTime(row.submittedAt(), current.submittedAt()) == 0
-                    && Objects.requireNonNullElse(row.versionNo(), 0) > Objects.requireNonNullElse(current.versionNo(), 0))) {
-                result.put(key, row);
-            }
-        }
-        return result;
-    }
-
-    private Map<TaskStudentKey, ReviewDetailRow> latestReviewsByKey(List<ReviewDetailRow> rows) {
-        Map<TaskStudentKey, ReviewDetailRow> result = new LinkedHashMap<>();
-        for (ReviewDetailRow row : rows) {
-            TaskStudentKey key = new TaskStudentKey(row.taskId(), row.studentId());
-            ReviewDetailRow current = result.get(key);
-            if (current == null
-                    || compareTime(row.reviewedAt(), current.reviewedAt()) > 0
-                    || (compareTime(row.reviewedAt(), current.reviewedAt()) == 0
-                    && Objects.requireNonNullElse(row.versionNo(), 0) > Objects.requireNonNullElse(current.versionNo(), 0))) {
-                result.put(key, row);
-            }
-        }
-        return result;
-    }
-
-    private Map<TaskStudentKey, CompletionDetailRow> confirmedCompletionsByKey(List<CompletionDetailRow> rows) {
-        Map<TaskStudentKey, CompletionDetailRow> result = new LinkedHashMap<>();
-        for (CompletionDetailRow row : rows) {
-            if (!"CONFIRMED".equalsIgnoreCase(row.status())) {
-                continue;
-            }
-            TaskStudentKey key = new TaskStudentKey(row.taskId(), row.studentId());
-            CompletionDetailRow current = result.get(key);
-            if (current == null || compareTime(row.confirmedAt(), current.confirmedAt()) > 0) {
-                result.put(key, row);
-            }
-        }
-        return result;
-    }
-
-    private int compareTime(LocalDateTime left, LocalDateTime right) {
-        if (left == null && right == null) return 0;
-        if (left == null) return -1;
-        if (right == null) return 1;
-        return left.compareTo(right);
-    }
-
     private ResolvedFilters resolveFilters(Long semesterId, LocalDate from, LocalDate to) {
         List<SemesterEntity> semesters = semesterMapper.selectList(null).stream()
                 .sorted(Comparator.comparing(SemesterEntity::getStartDate, Comparator.nullsLast(Comparator.reverseOrder()))
@@ -1227,47 +1196,19 @@ public class TeachingAnalyticsService {
         return "低风险";
     }
 
-    private String trendLabel(List<BigDecimal> scores) {
-        if (scores == null || scores.size() < 2) {
-            return "持平";
-        }
-        BigDecimal first = scores.get(0);
-        BigDecimal last = scores.get(scores.size() - 1);
-        if (first == null || last == null) {
-            return "持平";
-        }
-        BigDecimal delta = last.subtract(first);
-        if (delta.compareTo(BigDecimal.valueOf(5)) >= 0) {
+    /**
+     * Compares the last score with the first one, in cents.
+     */
+    private String trendLabel(int deltaCents) {
+        if (deltaCents >= 500) {
             return "上升";
         }
-        if (delta.compareTo(BigDecimal.valueOf(-5)) <= 0) {
+        if (deltaCents <= -500) {
             return "下降";
         }
         return "持平";
     }
 
-    private BigDecimal averageScore(Collection<BigDecimal> scores) {
-        BigDecimal sum = BigDecimal.ZERO;
-        int count = 0;
-        for (BigDecimal score : scores) {
-            if (score == null) continue;
-            sum = sum.add(score);
-            count++;
-        }
-        if (count == 0) {
-            return ZERO_SCORE;
-        }
-        return sum.divide(BigDecimal.valueOf(count), 2, RoundingMode.HALF_UP);
-    }
-
-    private BigDecimal maxScore(Collection<BigDecimal> scores) {
-        return scores.stream().filter(Objects::nonNull).max(Comparator.naturalOrder()).orElse(ZERO_SCORE);
-    }
-
-    private BigDecimal minScore(Collection<BigDecimal> scores) {
-        return scores.stream().filter(Objects::nonNull).min(Comparator.naturalOrder()).orElse(ZERO_SCORE);
-    }
-
     private BigDecimal rate(long numerator, long denominator) {
         if (denominator <= 0) {
             return ZERO_RATE;
@@ -1338,22 +1279,6 @@ public class TeachingAnalyticsService {
     ) {
     }
 
-    private record SubmissionDetailRow(
-            Long taskId,
-            String taskTitle,
-            Long teacherId,
-            String teacherName,
-            Long studentId,
-            String studentDisplayName,
-            String studentUsername,
-            Long classId,
-            String classDisplayName,
-            Integer versionNo,
-            String submitStatus,
-            LocalDateTime submittedAt
-    ) {
-    }
-
     private record ReviewDetailRow(
             Long reviewId,
             Long taskId,
@@ -1376,14 +1301,6 @@ public class TeachingAnalyticsService {
         }
     }
 
-    private record CompletionDetailRow(
-            Long taskId,
-            Long studentId,
-            String status,
-            LocalDateTime confirmedAt
-    ) {
-    }
-
     private record PlagiarismRiskRow(
             Long taskId,
             String taskTitle,
@@ -1396,12 +1313,6 @@ public class TeachingAnalyticsService {
     ) {
     }
 
-    private record TaskStudentKey(
-            Long taskId,
-            Long studentId
-    ) {
-    }
-
     private record ExperimentComputation(
             TeachingAnalyticsDashboardVO.ExperimentAnalysis analysis
     ) {
@@ -1420,11 +1331,21 @@ public class TeachingAnalyticsService {
     private static final class TagAccumulator {
         private final String label;
         private long occurrenceCount;
-        private final Set<Long> studentIds = new LinkedHashSet<>();
-        private final List<BigDecimal> scores = new ArrayList<>();
+        private final TeachingAnalyticsFacts.LongIndex studentIds = new TeachingAnalyticsFacts.LongIndex(8);
+        private long scoreSum;
+        private int scoreCount;
 
         private TagAccumulator(String label) {
             this.label = label == null || label.isBlank() ? UNMARKED_LABEL : label;
         }
+
+        private void add(long studentId, int scoreCents) {
+            occurrenceCount++;
+            studentIds.putIfAbsent(studentId, studentIds.size());
+            if (scoreCents != TeachingAnalyticsFacts.NO_SCORE) {
+                scoreSum += scoreCents;
+                scoreCount++;
+            }
+        }
     }
 }
@@ -0,0 +1,153 @@
+package cn.edu.jnu.labflowreport.storage;
+
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * AWS Signature Version 4 for S3 requests, as a signed {@code Authorization} header or as a presigned URL.
+ * <p>
+ * Query parameters are passed decoded and encoded here, so the query that is signed is the one that is sent.
+ */
+final class AwsSigV4 {
+
+    static final String UNSIGNED_PAYLOAD = "UNSIGNED-PAYLOAD";
+    static final String EMPTY_SHA256 = "e3b0c44298fc1c149afbf4c8996fb92427ae41e4649b934ca495991b7852b855";
+
+    private static final DateTimeFormatter AMZ_DATE = DateTimeFormatter.ofPattern("yyyyMMdd'T'HHmmss'Z'").withZone(ZoneOffset.UTC);
+    private static final String ALGORITHM = "AWS4-HMAC-SHA256";
+
+    private final String accessKey;
+    private final String secretKey;
+    private final String region;
+
+    AwsSigV4(String accessKey, String secretKey, String region) {
+        this.accessKey = accessKey;
+        this.secretKey = secretKey;
+        this.region = region;
+    }
+
+    /**
+     * Headers to send with the request: the given ones plus {@code x-amz-date}, {@code x-amz-content-sha256}
+     * and {@code Authorization}. {@code Host} is signed but left to the HTTP client to send.
+     */
+    Map<String, String> sign(String method, URI uri, String canonicalPath, SortedMap<String, String> query,
+                             Map<String, String> headers, String payloadSha256, Instant now) {
+        String amzDate = AMZ_DATE.format(now);
+        SortedMap<String, String> signed = new TreeMap<>();
+        headers.forEach((k, v) -> signed.put(k.toLowerCase(Locale.ROOT), v.trim()));
+        signed.put("host", hostHeader(uri));
+        signed.put("x-amz-content-sha256", payloadSha256);
+        signed.put("x-amz-date", amzDate);
+        String signedHeaders = String.join(";", signed.keySet());
+        String canonicalHeaders = signed.entrySet().stream()
+                .map(e -> e.getKey() + ":" + e.getValue() + "\n")
+                .collect(Collectors.joining());
+        String canonicalRequest = method + "\n" + canonicalPath + "\n" + canonicalQuery(query) + "\n"
+                + canonicalHeaders + "\n" + signedHeaders + "\n" + payloadSha256;
+        String scope = amzDate.substring(0, 8) + "/" + region + "/s3/aws4_request";
+
+        Map<String, String> out = new LinkedHashMap<>(headers);
+        out.put("x-amz-content-sha256", payloadSha256);
+        out.put("x-amz-date", amzDate);
+        out.put("Authorization", ALGORITHM + " Credential=" + accessKey + "/" + scope
+                + ",SignedHeaders=" + signedHeaders + ",Signature=" + signature(amzDate, scope, canonicalRequest));
+        return out;
+    }
+
+    /**
+     * Query string (without {@code ?}) that authorizes a request by itself until {@code expires} has passed.
+     */
+    String presign(String method, URI uri, String canonicalPath, SortedMap<String, String> query,
+                   Duration expires, Instant now) {
+        String amzDate = AMZ_DATE.format(now);
+        String scope = amzDate.substring(0, 8) + "/" + region + "/s3/aws4_request";
+        SortedMap<String, String> q = new TreeMap<>(query);
+        q.put("X-Amz-Algorithm", ALGORITHM);
+        q.put("X-Amz-Credential", accessKey + "/" + scope);
+        q.put("X-Amz-Date", amzDate);
+        q.put("X-Amz-Expires", String.valueOf(expires.toSeconds()));
+        q.put("X-Amz-SignedHeaders", "host");
+        String canonicalRequest = method + "\n" + canonicalPath + "\n" + canonicalQuery(q) + "\n"
+                + "host:" + hostHeader(uri) + "\n\nhost\n" + UNSIGNED_PAYLOAD;
+        return canonicalQuery(q) + "&X-Amz-Signature=" + signature(amzDate, scope, canonicalRequest);
+    }
+
+    static String canonicalQuery(SortedMap<String, String> query) {
+        // Encoded names sort the same as decoded ones for the parameters S3 uses.
+        return query.entrySet().stream()
+                .map(e -> encode(e.getKey(), true) + "=" + encode(e.getValue(), true))
+                .collect(Collectors.joining("&"));
+    }
+
+    /**
+     * RFC 3986 percent-encoding as SigV4 wants it; {@code /} is kept when encoding an object key path.
+     */
+    static String encode(String value, boolean encodeSlash) {
+        StringBuilder sb = new StringBuilder(value.length() + 16);
+        for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+            int c = b & 0xFF;
+            if ((c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z') || (c >= '0' && c <= '9')
+                    || c == '-' || c == '_' || c == '.' || c == '~' || (c == '/' && !encodeSlash)) {
+                sb.append((char) c);
+            } else {
+                sb.append('%').append(Character.toUpperCase(Character.forDigit(c >> 4, 16)))
+                        .append(Character.toUpperCase(Character.forDigit(c & 0xF, 16)));
+            }
+        }
+        return sb.toString();
+    }
+
+    static String sha256Hex(byte[] bytes, int off, int len) {
+        try {
+            MessageDigest md = MessageDigest.getInstance("SHA-256");
+            md.update(bytes, off, len);
+            return HexFormat.of().formatHex(md.digest());
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("SHA-256 unavailable", e);
+        }
+    }
+
+    private static String hostHeader(URI uri) {
+        int port = uri.getPort();
+        boolean defaultPort = port == -1
+                || ("http".equalsIgnoreCase(uri.getScheme()) && port == 80)
+                || ("https".equalsIgnoreCase(uri.getScheme()) && port == 443);
+        return defaultPort ? uri.getHost() : uri.getHost() + ":" + port;
+    }
+
+    private String signature(String amzDate, String scope, String canonicalRequest) {
+        byte[] canonicalBytes = canonicalRequest.getBytes(StandardCharsets.UTF_8);
+        String stringToSign = ALGORITHM + "\n" + amzDate + "\n" + scope + "\n"
+                + sha256Hex(canonicalBytes, 0, canonicalBytes.length);
+        byte[] key = hmac(("AWS4" + secretKey).getBytes(StandardCharsets.UTF_8), amzDate.substring(0, 8));
+        key = hmac(key, region);
+        key = hmac(key, "s3");
+        key = hmac(key, "aws4_request");
+        return HexFormat.of().formatHex(hmac(key, stringToSign));
+    }
+
+    private static byte[] hmac(byte[] key, String data) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(key, "HmacSHA256"));
+            return mac.doFinal(data.getBytes(StandardCharsets.UTF_8));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HmacSHA256 unavailable", e);
+        }
+    }
+}
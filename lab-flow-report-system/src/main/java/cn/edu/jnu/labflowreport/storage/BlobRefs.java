@@ -0,0 +1,110 @@
+package cn.edu.jnu.labflowreport.storage;
+
+import cn.edu.jnu.labflowreport.persistence.entity.StorageBlobEntity;
+import cn.edu.jnu.labflowreport.persistence.mapper.StorageBlobMapper;
+import java.time.LocalDateTime;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Reference counts of content-addressed blobs in {@code storage_blob}. Counts change in the caller's
+ * transaction, next to the attachment row they count, so a rolled-back upload or delete leaves them as they were.
+ * <p>
+ * A blob file is only removed while its row is locked with a count of zero. An upload of the same content waits
+ * on that lock, finds the row gone, inserts a new one and writes the file again.
+ */
+@Component
+class BlobRefs {
+
+    private final StorageBlobMapper mapper;
+    private final TransactionTemplate tx;
+
+    BlobRefs(StorageBlobMapper mapper, PlatformTransactionManager transactionManager) {
+        this.mapper = mapper;
+        this.tx = new TransactionTemplate(transactionManager);
+        this.tx.setPropagationBehavior(TransactionTemplate.PROPAGATION_REQUIRES_NEW);
+    }
+
+    void retain(String sha256, long size) {
+        if (mapper.retain(sha256) > 0) {
+            return;
+        }
+        StorageBlobEntity blob = new StorageBlobEntity();
+        blob.setSha256(sha256);
+        blob.setFileSize(size);
+        blob.setRefCount(1);
+        blob.setCreatedAt(LocalDateTime.now());
+        try {
+            mapper.insert(blob);
+        } catch (DuplicateKeyException e) {
+            // Another upload of the same content inserted it first.
+            mapper.retain(sha256);
+        }
+    }
+
+    /**
+     * Drops one reference; when none are left the file is removed once the caller's transaction commits.
+     */
+    void release(String sha256, Runnable deleteFile) {
+        mapper.release(sha256, LocalDateTime.now());
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            purgeIfUnreferenced(sha256, deleteFile);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                purgeIfUnreferenced(sha256, deleteFile);
+            }
+        });
+    }
+
+    void purgeIfUnreferenced(String sha256, Runnable deleteFile) {
+        tx.executeWithoutResult(status -> {
+            StorageBlobEntity blob = mapper.lockBySha256(sha256);
+            if (blob == null || blob.getRefCount() == null || blob.getRefCount() > 0) {
+                return;
+            }
+            deleteFile.run();
+            mapper.deleteById(sha256);
+        });
+    }
+
+    /**
+     * Removes a blob file that no attachment row points at, unless its count says otherwise. A file without a
+     * row (left by a crash between writing the file and committing) gets a zero-count row first, so an upload
+     * of the same content racing with the removal waits on it exactly as it would on a released blob.
+     *
+     * @return whether the file was removed
+     */
+    boolean collectIfUnreferenced(String sha256, long size, Runnable deleteFile) {
+        Boolean removed = tx.execute(status -> {
+            StorageBlobEntity blob = mapper.lockBySha256(sha256);
+            if (blob == null) {
+                StorageBlobEntity orphan = new StorageBlobEntity();
+                orphan.setSha256(sha256);
+                orphan.setFileSize(size);
+                orphan.setRefCount(0);
+                orphan.setCreatedAt(LocalDateTime.now());
+                orphan.setReleasedAt(LocalDateTime.now());
+                try {
+                    mapper.insert(orphan);
+                } catch (DuplicateKeyException e) {
+                    // An upload of the same content got there first.
+                }
+                blob = mapper.lockBySha256(sha256);
+            }
+            if (blob == null || blob.getRefCount() == null || blob.getRefCount() > 0) {
+                return false;
+            }
+            deleteFile.run();
+            mapper.deleteById(sha256);
+            return true;
+        });
+        return Boolean.TRUE.equals(removed);
+    }
+}
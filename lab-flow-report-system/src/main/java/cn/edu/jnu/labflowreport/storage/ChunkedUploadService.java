@@ -0,0 +1,352 @@
+package cn.edu.jnu.labflowreport.storage;
+
+import cn.edu.jnu.labflowreport.auth.model.AuthenticatedUser;
+import cn.edu.jnu.labflowreport.common.api.ApiCode;
+import cn.edu.jnu.labflowreport.common.exception.BusinessException;
+import cn.edu.jnu.labflowreport.common.util.HashUtils;
+import cn.edu.jnu.labflowreport.config.StorageProperties;
+import cn.edu.jnu.labflowreport.persistence.entity.UploadSessionEntity;
+import cn.edu.jnu.labflowreport.persistence.mapper.UploadSessionMapper;
+import cn.edu.jnu.labflowreport.storage.dto.UploadInitRequest;
+import cn.edu.jnu.labflowreport.storage.vo.UploadSessionVO;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Chunked, resumable uploads: init, then PUT chunks at the last committed offset, then complete.
+ * <p>
+ * Chunks are streamed from the request straight into one staging file next to the blob store, each hashed on
+ * the way in and synced before its offset is committed, so after a dropped connection the client asks for the
+ * session and continues from {@code receivedBytes}. On completion the staging file is renamed into the blob
+ * store; the whole-file sha256 is carried along chunk by chunk and the file is only re-read when the session
+ * was resumed on a node that did not see the earlier chunks.
+ * <p>
+ * A completed session holds one reference on its blob until {@link #consume} hands it to the attachment row
+ * that uses it, or it expires.
+ */
+@Service
+public class ChunkedUploadService {
+
+    static final String UPLOADING = "UPLOADING";
+    static final String COMPLETED = "COMPLETED";
+    static final String CONSUMED = "CONSUMED";
+    static final String FAILED = "FAILED";
+    static final String EXPIRED = "EXPIRED";
+
+    private final UploadSessionMapper mapper;
+    private final FileStorageService storageService;
+    private final StorageProperties props;
+    private final TransactionTemplate tx;
+
+    /** Whole-file digest of the chunks this node has seen, and the offset it covers. */
+    private final Map<String, RunningDigest> digests = new ConcurrentHashMap<>();
+
+    public ChunkedUploadService(
+            UploadSessionMapper mapper,
+            FileStorageService storageService,
+            StorageProperties props,
+            PlatformTransactionManager transactionManager
+    ) {
+        this.mapper = mapper;
+        this.storageService = storageService;
+        this.props = props;
+        this.tx = new TransactionTemplate(transactionManager);
+    }
+
+    public UploadSessionVO init(AuthenticatedUser actor, UploadInitRequest request) {
+        if (request.fileSize() > props.uploadMaxBytes()) {
+            throw new BusinessException(ApiCode.BAD_REQUEST, HttpStatus.BAD_REQUEST, "文件超过大小上限");
+        }
+        LocalDateTime now = LocalDateTime.now();
+        UploadSessionEntity session = new UploadSessionEntity();
+        session.setId(UUID.randomUUID().toString().replace("-", ""));
+        session.setOwnerId(actor.userId());
+        session.setFileName(request.fileName().trim());
+        session.setContentType(request.contentType());
+        session.setFileSize(request.fileSize());
+        session.setExpectedSha256(request.sha256() == null ? null : request.sha256().toLowerCase(Locale.ROOT));
+        session.setChunkSize(props.uploadChunkBytes());
+        session.setReceivedBytes(0L);
+        session.setStatus(UPLOADING);
+        session.setCreatedAt(now);
+        session.setUpdatedAt(now);
+        session.setExpiresAt(now.plus(props.uploadSessionTtl()));
+        mapper.insert(session);
+        return toVo(session);
+    }
+
+    public UploadSessionVO getSession(String uploadId, AuthenticatedUser actor) {
+        return toVo(requireSession(uploadId, actor));
+    }
+
+    /**
+     * Appends one chunk at {@code offset}, which must be the session's committed offset. Anything a broken
+     * earlier attempt wrote past that offset is discarded first.
+     */
+    public UploadSessionVO writeChunk(String uploadId, AuthenticatedUser actor, long offset, InputStream body, String chunkSha256) {
+        UploadSessionEntity session = requireSession(uploadId, actor);
+        requireUploading(session);
+        if (offset != session.getReceivedBytes()) {
+            throw offsetConflict(session.getReceivedBytes());
+        }
+        long limit = Math.min(session.getChunkSize(), session.getFileSize() - offset);
+        RunningDigest running = digests.get(uploadId);
+        MessageDigest whole = running != null && running.offset() == offset ? running.copy() : offset == 0 ? sha256() : null;
+        MessageDigest chunk = sha256();
+
+        Path staging = storageService.uploadStagingFile(uploadId);
+        long end;
+        try {
+            Files.createDirectories(staging.getParent());
+            try (FileChannel channel = FileChannel.open(staging, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+                FileLock lock = tryLock(channel);
+                if (lock == null) {
+                    throw new BusinessException(ApiCode.BAD_REQUEST, HttpStatus.CONFLICT, "该文件正在写入其他分片，请稍后重试");
+                }
+                channel.truncate(offset);
+                channel.position(offset);
+                long written = copy(body, channel, limit, chunk, whole);
+                if (written < 0) {
+                    channel.truncate(offset);
+                    throw new BusinessException(ApiCode.BAD_REQUEST, HttpStatus.BAD_REQUEST, "分片超过大小上限");
+                }
+                if (written == 0) {
+                    throw new BusinessException(ApiCode.BAD_REQUEST, HttpStatus.BAD_REQUEST, "分片内容为空");
+                }
+                String actual = HexFormat.of().formatHex(chunk.digest());
+                if (chunkSha256 != null && !chunkSha256.isBlank() && !actual.equalsIgnoreCase(chunkSha256.trim())) {
+                    channel.truncate(offset);
+                    throw new BusinessException(ApiCode.BAD_REQUEST, HttpStatus.BAD_REQUEST, "分片校验失败，请重新上传该分片");
+                }
+                channel.force(false);
+                // Committed while the file lock is still held, so no other request rewrites these bytes first.
+                LocalDateTime now = LocalDateTime.now();
+                end = offset + written;
+                if (mapper.commitChunk(uploadId, offset, end, now, now.plus(props.uploadSessionTtl())) == 0) {
+                    throw offsetConflict(mapper.selectById(uploadId).getReceivedBytes());
+                }
+            }
+        } catch (IOException e) {
+            throw new BusinessException(ApiCode.INTERNAL_ERROR, HttpStatus.INTERNAL_SERVER_ERROR, "分片写入失败");
+        }
+        if (whole != null) {
+            digests.put(uploadId, new RunningDigest(end, whole));
+        } else {
+            digests.remove(uploadId);
+        }
+        return toVo(mapper.selectById(uploadId));
+    }
+
+    /**
+     * Checks the received file against the declared size and hash and renames it into the blob store. Repeating
+     * the call on a completed session returns it unchanged.
+     */
+    public UploadSessionVO complete(String uploadId, AuthenticatedUser actor) {
+        UploadSessionEntity session = requireSession(uploadId, actor);
+        if (COMPLETED.equals(session.getStatus())) {
+            return toVo(session);
+        }
+        requireUploading(session);
+        if (!Objects.equals(session.getReceivedBytes(), session.getFileSize())) {
+            throw new BusinessException(ApiCode.BAD_REQUEST, HttpStatus.BAD_REQUEST,
+                    "文件尚未上传完整，已接收 " + session.getReceivedBytes() + " / " + session.getFileSize() + " 字节");
+        }
+        Path staging = storageService.uploadStagingFile(uploadId);
+        RunningDigest running = digests.remove(uploadId);
+        String sha256 = running != null && running.offset() == session.getFileSize()
+                ? HexFormat.of().formatHex(running.digest().digest())
+                : rehash(staging);
+        if (session.getExpectedSha256() != null && !session.getExpectedSha256().equals(sha256)) {
+            if (mapper.transition(uploadId, UPLOADING, FAILED, LocalDateTime.now()) > 0) {
+                deleteQuietly(staging);
+            }
+            throw new BusinessException(ApiCode.BAD_REQUEST, HttpStatus.BAD_REQUEST, "文件校验失败，请重新上传");
+        }
+        tx.executeWithoutResult(status -> {
+            // The row lock taken here makes a concurrent complete wait, then find the session already done.
+            if (mapper.markCompleted(uploadId, sha256, FileStorageService.blobPath(sha256), LocalDateTime.now()) > 0) {
+                storageService.adoptStagedFile(staging, sha256, session.getFileSize());
+            }
+        });
+        return toVo(mapper.selectById(uploadId));
+    }
+
+    /**
+     * Marks completed uploads as used by the caller, which takes over their blob reference: it stores
+     * {@link CompletedUpload#relativePath()} on an attachment row, or releases it with
+     * {@link FileStorageService#delete}. Call inside the caller's transaction.
+     */
+    public List<CompletedUpload> consume(List<String> uploadIds, AuthenticatedUser actor) {
+        if (uploadIds == null || uploadIds.isEmpty()) {
+            return List.of();
+        }
+        List<CompletedUpload> out = new ArrayList<>();
+        for (String uploadId : new LinkedHashSet<>(uploadIds)) {
+            if (uploadId == null || uploadId.isBlank()) {
+                continue;
+            }
+            UploadSessionEntity session = requireSession(uploadId.trim(), actor);
+            if (CONSUMED.equals(session.getStatus())) {
+                throw new BusinessException(ApiCode.BAD_REQUEST, HttpStatus.CONFLICT, "文件 " + session.getFileName() + " 已被使用");
+            }
+            if (!COMPLETED.equals(session.getStatus())) {
+                throw new BusinessException(ApiCode.BAD_REQUEST, HttpStatus.BAD_REQUEST, "文件 " + session.getFileName() + " 尚未上传完成");
+            }
+            if (mapper.transition(session.getId(), COMPLETED, CONSUMED, LocalDateTime.now()) == 0) {
+                throw new BusinessException(ApiCode.BAD_REQUEST, HttpStatus.CONFLICT, "文件 " + session.getFileName() + " 已被使用");
+            }
+            out.add(new CompletedUpload(session.getId(), session.getFileName(), session.getContentType(),
+                    session.getFileSize(), session.getRelativePath(), session.getSha256()));
+        }
+        return out;
+    }
+
+    @Scheduled(
+            initialDelayString = "${app.storage.upload-expire-initial-delay:PT10M}",
+            fixedDelayString = "${app.storage.upload-expire-interval:PT30M}"
+    )
+    void expireSessions() {
+        List<UploadSessionEntity> expired;
+        do {
+            expired = mapper.findExpired(LocalDateTime.now(), 200);
+            for (UploadSessionEntity session : expired) {
+                digests.remove(session.getId());
+                if (UPLOADING.equals(session.getStatus())) {
+                    if (mapper.transition(session.getId(), UPLOADING, EXPIRED, LocalDateTime.now()) > 0) {
+                        deleteQuietly(storageService.uploadStagingFile(session.getId()));
+                    }
+                } else {
+                    tx.executeWithoutResult(status -> {
+                        if (mapper.transition(session.getId(), COMPLETED, EXPIRED, LocalDateTime.now()) > 0) {
+                            storageService.delete(session.getRelativePath());
+                        }
+                    });
+                }
+            }
+        } while (expired.size() == 200);
+    }
+
+    private UploadSessionEntity requireSession(String uploadId, AuthenticatedUser actor) {
+        UploadSessionEntity session = uploadId == null ? null : mapper.selectById(uploadId);
+        if (session == null || !Objects.equals(session.getOwnerId(), actor.userId())) {
+            throw new BusinessException(ApiCode.BAD_REQUEST, HttpStatus.NOT_FOUND, "上传会话不存在");
+        }
+        return session;
+    }
+
+    private void requireUploading(UploadSessionEntity session) {
+        if (!UPLOADING.equals(session.getStatus())) {
+            throw new BusinessException(ApiCode.BAD_REQUEST, HttpStatus.CONFLICT, "上传会话已结束（" + session.getStatus() + "）");
+        }
+    }
+
+    private BusinessException offsetConflict(long receivedBytes) {
+        return new BusinessException(ApiCode.BAD_REQUEST, HttpStatus.CONFLICT, "分片偏移不匹配，请从 " + receivedBytes + " 字节处继续上传");
+    }
+
+    private static FileLock tryLock(FileChannel channel) throws IOException {
+        try {
+            return channel.tryLock();
+        } catch (OverlappingFileLockException e) {
+            return null;
+        }
+    }
+
+    /** Bytes copied, or -1 once the body runs past {@code limit}. */
+    private static long copy(InputStream in, FileChannel channel, long limit, MessageDigest chunk, MessageDigest whole)
+            throws IOException {
+        byte[] buf = new byte[64 * 1024];
+        long total = 0;
+        int n;
+        while ((n = in.read(buf)) > 0) {
+            total += n;
+            if (total > limit) {
+                return -1;
+            }
+            chunk.update(buf, 0, n);
+            if (whole != null) {
+                whole.update(buf, 0, n);
+            }
+            ByteBuffer bb = ByteBuffer.wrap(buf, 0, n);
+            while (bb.hasRemaining()) {
+                channel.write(bb);
+            }
+        }
+        return total;
+    }
+
+    private static String rehash(Path staging) {
+        try (InputStream in = Files.newInputStream(staging)) {
+            return HashUtils.sha256Hex(in);
+        } catch (IOException e) {
+            throw new BusinessException(ApiCode.INTERNAL_ERROR, HttpStatus.INTERNAL_SERVER_ERROR, "上传文件读取失败");
+        }
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException ignore) {
+            // Left behind; staging names are never reused.
+        }
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new BusinessException(ApiCode.INTERNAL_ERROR, HttpStatus.INTERNAL_SERVER_ERROR, "SHA-256 不可用");
+        }
+    }
+
+    private static UploadSessionVO toVo(UploadSessionEntity s) {
+        return new UploadSessionVO(s.getId(), s.getFileName(), s.getFileSize(), s.getChunkSize(), s.getReceivedBytes(),
+                s.getStatus(), s.getSha256(), s.getExpiresAt());
+    }
+
+    private record RunningDigest(long offset, MessageDigest digest) {
+
+        MessageDigest copy() {
+            try {
+                return (MessageDigest) digest.clone();
+            } catch (CloneNotSupportedException e) {
+                return null;
+            }
+        }
+    }
+
+    /** A finished upload handed to the request that attaches it. */
+    public record CompletedUpload(
+            String uploadId,
+            String fileName,
+            String contentType,
+            long fileSize,
+            String relativePath,
+            String sha256
+    ) {
+    }
+}
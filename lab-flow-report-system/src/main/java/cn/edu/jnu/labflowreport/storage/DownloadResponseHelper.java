@@ -0,0 +1,71 @@
+package cn.edu.jnu.labflowreport.storage;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.Optional;
+import org.springframework.core.io.Resource;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+
+/**
+ * Attachment download responses. The body is the stored file as a {@link Resource}, so Spring MVC streams it
+ * in chunks, answers {@code Range} requests with 206 partial content and {@code If-None-Match} with 304. When the
+ * storage backend hands out presigned URLs the response is a redirect to one instead, and the bytes never pass
+ * through the application.
+ */
+public final class DownloadResponseHelper {
+
+    private DownloadResponseHelper() {
+    }
+
+    /**
+     * @param sha256 content hash used as a strong ETag; when unknown a weak ETag is derived from size and
+     *               modification time
+     */
+    public static ResponseEntity<Resource> attachment(String filename, String contentType, String sha256, Resource resource) {
+        if (resource instanceof StoredObjectResource stored) {
+            Optional<URI> presigned = stored.presignedDownloadUrl(filename, contentType);
+            if (presigned.isPresent()) {
+                // The URL expires, so neither the browser nor a proxy may keep the redirect.
+                return ResponseEntity.status(HttpStatus.FOUND)
+                        .location(presigned.get())
+                        .cacheControl(CacheControl.noStore())
+                        .build();
+            }
+        }
+        MediaType mediaType = contentType == null || contentType.isBlank()
+                ? MediaType.APPLICATION_OCTET_STREAM
+                : MediaType.parseMediaType(contentType);
+        long lastModified = lastModified(resource);
+        String eTag = sha256 != null && !sha256.isBlank()
+                ? "\"" + sha256 + "\""
+                : "W/\"" + Long.toHexString(contentLength(resource)) + "-" + Long.toHexString(lastModified) + "\"";
+        return ResponseEntity.ok()
+                .contentType(mediaType)
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + filename + "\"")
+                .header(HttpHeaders.ACCEPT_RANGES, "bytes")
+                .cacheControl(CacheControl.noCache().cachePrivate())
+                .eTag(eTag)
+                .lastModified(lastModified)
+                .body(resource);
+    }
+
+    private static long lastModified(Resource resource) {
+        try {
+            return resource.lastModified();
+        } catch (IOException e) {
+            return 0L;
+        }
+    }
+
+    private static long contentLength(Resource resource) {
+        try {
+            return resource.contentLength();
+        } catch (IOException e) {
+            return 0L;
+        }
+    }
+}
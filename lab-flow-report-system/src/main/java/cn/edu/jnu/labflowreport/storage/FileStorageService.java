@@ -2,30 +2,64 @@ package cn.edu.jnu.labflowreport.storage;
 
 import cn.edu.jnu.labflowreport.common.api.ApiCode;
 import cn.edu.jnu.labflowreport.common.exception.BusinessException;
+import cn.edu.jnu.labflowreport.common.util.HashUtils;
 import cn.edu.jnu.labflowreport.config.StorageProperties;
+import java.io.BufferedOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.util.List;
 import java.util.Objects;
 import java.util.UUID;
+import org.springframework.core.io.Resource;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import org.springframework.web.multipart.MultipartFile;
 
+/**
+ * Stored attachment files: decides where each upload is kept (its key, the relative path saved on the attachment
+ * row) and counts references to shared blobs; the bytes themselves go through the configured
+ * {@link StorageBackend}. Uploads are staged under the local {@code app.storage.dir} whichever backend is used.
+ */
 @Service
 public class FileStorageService {
 
+    static final String BLOB_DIR = "blobs";
+    /** Key prefix of the local staging directory; nothing under it is ever referenced by a row. */
+    static final String STAGING_PREFIX = BLOB_DIR + "/tmp/";
+    static final String EXPORT_DIR = "exports";
+    /**
+     * Top-level key prefixes this service writes under. A bucket or directory shared with something else may
+     * hold other keys; nothing outside these is ever treated as the application's.
+     */
+    static final List<String> KEY_PREFIXES = List.of(BLOB_DIR + "/", "report-attachments/", "task-attachments/",
+            "task-progress-attachments/", "task-prestudy-attachments/", EXPORT_DIR + "/");
+
     private final Path baseDir;
+    private final boolean contentAddressed;
+    private final BlobRefs blobRefs;
+    private final StorageBackend backend;
+
+    public FileStorageService(StorageProperties props, BlobRefs blobRefs, StorageBackend backend) {
+        this.baseDir = localDir(props);
+        this.contentAddressed = props == null || props.contentAddressed();
+        this.blobRefs = blobRefs;
+        this.backend = backend;
+    }
 
-    public FileStorageService(StorageProperties props) {
+    static Path localDir(StorageProperties props) {
         String configured = props == null ? null : props.dir();
         if (configured == null || configured.isBlank()) {
             configured = "uploads";
         }
-        this.baseDir = Path.of(configured).toAbsolutePath().normalize();
+        return Path.of(configured).toAbsolutePath().normalize();
     }
 
     public String saveReportAttachment(Long submissionId, MultipartFile file) {
@@ -40,38 +74,60 @@ public class FileStorageService {
             throw new BusinessException(ApiCode.BAD_REQUEST, "请选择要上传的文件");
         }
 
-        String originalName = Objects.toString(file.getOriginalFilename(), "attachment");
-        String safeName = sanitizeFilename(originalName);
-        String ext = extractExt(safeName);
-
-        String storedName = UUID.randomUUID().toString().replace("-", "") + ext;
-        String relative = Path.of("report-attachments", String.valueOf(submissionId), storedName).toString();
-        Path target = resolveUnderBase(relative);
+        return saveWithSha256(file, reportAttachmentPath(submissionId, file.getOriginalFilename()));
+    }
 
-        MessageDigest md;
+    /**
+     * Streams the upload once into a local staging file, hashing it on the way, so the caller can compare the
+     * hash with what is already stored before keeping the file ({@link #promoteReportAttachment}) or dropping
+     * it ({@link #discard}).
+     */
+    public StagedUpload stage(MultipartFile file) {
+        if (file == null || file.isEmpty()) {
+            throw new BusinessException(ApiCode.BAD_REQUEST, "请选择要上传的文件");
+        }
+        String id = UUID.randomUUID().toString().replace("-", "");
+        Path staging = stagingFile(id);
         try {
-            md = MessageDigest.getInstance("SHA-256");
-        } catch (NoSuchAlgorithmException e) {
-            throw new BusinessException(ApiCode.INTERNAL_ERROR, HttpStatus.INTERNAL_SERVER_ERROR, "SHA-256 不可用");
+            String sha256 = copyWithSha256(file, staging);
+            return new StagedUpload(id, sha256, Files.size(staging));
+        } catch (IOException e) {
+            deleteQuietly(staging);
+            throw new BusinessException(ApiCode.INTERNAL_ERROR, HttpStatus.INTERNAL_SERVER_ERROR, "文件保存失败");
+        } catch (RuntimeException e) {
+            deleteQuietly(staging);
+            throw e;
         }
+    }
 
+    /**
+     * Keeps a staged upload as an attachment of the submission, without reading it again: a rename into the
+     * blob store (or a plain upload on a remote backend), or nothing at all when the content is already stored.
+     */
+    public SaveResult promoteReportAttachment(Long submissionId, StagedUpload staged, String originalName) {
+        if (submissionId == null) {
+            throw new BusinessException(ApiCode.BAD_REQUEST, "submissionId 不能为空");
+        }
+        Path staging = stagingFile(staged.id());
         try {
-            Files.createDirectories(target.getParent());
-            try (InputStream in = file.getInputStream()) {
-                // Copy while computing sha256 to avoid reading twice.
-                try (var out = Files.newOutputStream(target)) {
-                    byte[] buf = new byte[8192];
-                    int n;
-                    while ((n = in.read(buf)) > 0) {
-                        md.update(buf, 0, n);
-                        out.write(buf, 0, n);
-                    }
-                }
+            if (contentAddressed) {
+                return new SaveResult(placeBlob(staging, staged.sha256(), staged.size()), staged.sha256());
             }
+            String key = key(reportAttachmentPath(submissionId, originalName));
+            backend.importFile(staging, key);
+            return new SaveResult(key, staged.sha256());
         } catch (IOException e) {
             throw new BusinessException(ApiCode.INTERNAL_ERROR, HttpStatus.INTERNAL_SERVER_ERROR, "文件保存失败");
+        } finally {
+            deleteQuietly(staging);
+        }
+    }
+
+    /** Drops a staged upload that is not kept; safe to call on one that was already promoted. */
+    public void discard(StagedUpload staged) {
+        if (staged != null) {
+            deleteQuietly(stagingFile(staged.id()));
         }
-        return new SaveResult(relative.replace('\\', '/'), toHex(md.digest()));
     }
 
     public SaveResult saveTaskProgressAttachmentWithSha256(Long progressLogId, MultipartFile file) {
@@ -122,10 +178,61 @@ public class FileStorageService {
         return saveWithSha256(file, relative);
     }
 
+    /**
+     * Stores a file the application generates itself (an export job's result) under {@code exports/<jobId>/}:
+     * the writer fills a local staging file, which is then moved to the backend in one piece. Generated files
+     * are never shared, so they bypass the blob store and its reference counts.
+     */
+    public StoredFile saveExportFile(Long jobId, String fileName, ContentWriter writer) {
+        if (jobId == null) {
+            throw new BusinessException(ApiCode.BAD_REQUEST, "jobId 不能为空");
+        }
+        Path staging = stagingFile("export-" + jobId);
+        try {
+            Files.createDirectories(staging.getParent());
+            try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(staging))) {
+                writer.writeTo(out);
+            }
+            long size = Files.size(staging);
+            String storedName = UUID.randomUUID().toString().replace("-", "")
+                    + extractExt(sanitizeFilename(Objects.toString(fileName, "export")));
+            String key = key(Path.of(EXPORT_DIR, String.valueOf(jobId), storedName).toString());
+            backend.importFile(staging, key);
+            return new StoredFile(key, size);
+        } catch (IOException e) {
+            throw new BusinessException(ApiCode.INTERNAL_ERROR, HttpStatus.INTERNAL_SERVER_ERROR, "文件保存失败");
+        } finally {
+            deleteQuietly(staging);
+        }
+    }
+
     public byte[] readBytes(String relativePath) {
-        Path target = resolveUnderBase(relativePath);
+        try (InputStream in = backend.open(key(relativePath))) {
+            return in.readAllBytes();
+        } catch (IOException e) {
+            throw new BusinessException(ApiCode.BAD_REQUEST, HttpStatus.NOT_FOUND, "附件文件不存在或无法读取");
+        }
+    }
+
+    /**
+     * Opens the stored file for reading; the caller closes the stream.
+     */
+    public InputStream openStream(String relativePath) {
+        try {
+            return backend.open(key(relativePath));
+        } catch (IOException e) {
+            throw new BusinessException(ApiCode.BAD_REQUEST, HttpStatus.NOT_FOUND, "附件文件不存在或无法读取");
+        }
+    }
+
+    /**
+     * The stored file as a {@link Resource} so downloads are streamed (and range-served) from the backend
+     * instead of being buffered in memory; {@link DownloadResponseHelper} redirects to the backend instead when
+     * it hands out presigned URLs.
+     */
+    public Resource loadAsResource(String relativePath) {
         try {
-            return Files.readAllBytes(target);
+            return backend.resource(key(relativePath));
         } catch (IOException e) {
             throw new BusinessException(ApiCode.BAD_REQUEST, HttpStatus.NOT_FOUND, "附件文件不存在或无法读取");
         }
@@ -135,19 +242,92 @@ public class FileStorageService {
         if (relativePath == null || relativePath.isBlank()) {
             return;
         }
-        Path target = resolveUnderBase(relativePath);
+        String key = key(relativePath);
+        if (isBlobPath(key)) {
+            blobRefs.release(key.substring(key.lastIndexOf('/') + 1), () -> deleteObject(key));
+            return;
+        }
+        deleteObject(key);
+    }
+
+    /**
+     * Moves a file stored under the per-upload layout into the blob store and counts one reference to it; the
+     * caller points its row at the returned path and deletes the old file once that is committed.
+     */
+    public SaveResult adoptIntoBlobStore(String relativePath) {
+        String source = key(relativePath);
+        String sha256;
+        long size;
+        try (InputStream in = backend.open(source)) {
+            sha256 = HashUtils.sha256Hex(in);
+            size = backend.stat(source).size();
+        } catch (IOException e) {
+            throw new BusinessException(ApiCode.BAD_REQUEST, HttpStatus.NOT_FOUND, "附件文件不存在或无法读取");
+        }
+        String relative = blobPath(sha256);
+        blobRefs.retain(sha256, size);
         try {
-            Files.deleteIfExists(target);
+            if (!backend.exists(relative)) {
+                backend.copy(source, relative);
+            }
+        } catch (IOException e) {
+            throw new BusinessException(ApiCode.INTERNAL_ERROR, HttpStatus.INTERNAL_SERVER_ERROR, "文件保存失败");
+        }
+        return new SaveResult(relative, sha256);
+    }
+
+    /**
+     * The content hash a blob path is named after, or null for a file stored under the per-upload layout.
+     */
+    public static String blobSha256(String relativePath) {
+        if (!isBlobPath(relativePath)) {
+            return null;
+        }
+        String path = relativePath.replace('\\', '/');
+        return path.substring(path.lastIndexOf('/') + 1);
+    }
+
+    static boolean isBlobPath(String relativePath) {
+        return relativePath != null && relativePath.replace('\\', '/').startsWith(BLOB_DIR + "/");
+    }
+
+    static boolean isAppKey(String key) {
+        for (String prefix : KEY_PREFIXES) {
+            if (key.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    static String blobPath(String sha256) {
+        return BLOB_DIR + "/" + sha256.substring(0, 2) + "/" + sha256.substring(2, 4) + "/" + sha256;
+    }
+
+    private void deleteObject(String key) {
+        try {
+            backend.delete(key);
         } catch (IOException e) {
             throw new BusinessException(ApiCode.INTERNAL_ERROR, HttpStatus.INTERNAL_SERVER_ERROR, "删除附件文件失败");
         }
     }
 
-    private Path resolveUnderBase(String relativePath) {
+    /**
+     * The stored path as a backend key: {@code /}-separated, and never leading outside the storage root.
+     */
+    private String key(String relativePath) {
         if (relativePath == null || relativePath.isBlank()) {
             throw new BusinessException(ApiCode.BAD_REQUEST, "filePath 不能为空");
         }
-        Path p = baseDir.resolve(relativePath).normalize();
+        Path p = Path.of(relativePath.replace('\\', '/')).normalize();
+        if (p.isAbsolute() || p.startsWith("..")) {
+            throw new BusinessException(ApiCode.BAD_REQUEST, "非法文件路径");
+        }
+        return p.toString().replace('\\', '/');
+    }
+
+    private Path resolveUnderBase(String relativePath) {
+        Path p = baseDir.resolve(key(relativePath)).normalize();
         if (!p.startsWith(baseDir)) {
             throw new BusinessException(ApiCode.BAD_REQUEST, "非法文件路径");
         }
@@ -171,9 +351,81 @@ public class FileStorageService {
         return ext;
     }
 
+    /**
+     * Stores the upload at {@code relative}, or, in content-addressed mode, once per distinct content under
+     * {@code blobs/ab/cd/<sha256>} with one more reference counted on it.
+     */
     private SaveResult saveWithSha256(MultipartFile file, String relative) {
-        Path target = resolveUnderBase(relative);
+        if (!contentAddressed) {
+            String key = key(relative);
+            try (InputStream in = file.getInputStream()) {
+                return new SaveResult(key, backend.save(key, in).sha256());
+            } catch (IOException e) {
+                throw new BusinessException(ApiCode.INTERNAL_ERROR, HttpStatus.INTERNAL_SERVER_ERROR, "文件保存失败");
+            }
+        }
+        StagedUpload staged = stage(file);
+        Path staging = stagingFile(staged.id());
+        try {
+            return new SaveResult(placeBlob(staging, staged.sha256(), staged.size()), staged.sha256());
+        } catch (IOException e) {
+            throw new BusinessException(ApiCode.INTERNAL_ERROR, HttpStatus.INTERNAL_SERVER_ERROR, "文件保存失败");
+        } finally {
+            deleteQuietly(staging);
+        }
+    }
 
+    /** Staging file of a chunked upload, next to the blobs it is moved into on completion. */
+    Path uploadStagingFile(String uploadId) {
+        return resolveUnderBase(Path.of(BLOB_DIR, "tmp", "upload-" + uploadId).toString());
+    }
+
+    /**
+     * Moves a fully written, already hashed staging file into the blob store (by rename on the local backend),
+     * counting one reference to it; returns the blob's relative path. A failed import keeps the staging file so
+     * that the caller's rolled-back session can complete again; a leftover copy is deleted once the caller's
+     * transaction commits.
+     */
+    String adoptStagedFile(Path staging, String sha256, long size) {
+        String blob;
+        try {
+            blob = placeBlob(staging, sha256, size);
+        } catch (IOException e) {
+            throw new BusinessException(ApiCode.INTERNAL_ERROR, HttpStatus.INTERNAL_SERVER_ERROR, "文件保存失败");
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    deleteQuietly(staging);
+                }
+            });
+        } else {
+            deleteQuietly(staging);
+        }
+        return blob;
+    }
+
+    /**
+     * Content already in the store is not written again, which on a remote backend also saves the upload. The
+     * staging file is left to the caller.
+     */
+    private String placeBlob(Path staging, String sha256, long size) throws IOException {
+        String blob = blobPath(sha256);
+        blobRefs.retain(sha256, size);
+        if (!backend.exists(blob)) {
+            backend.importFile(staging, blob);
+        }
+        return blob;
+    }
+
+    private String reportAttachmentPath(Long submissionId, String originalFilename) {
+        String safeName = sanitizeFilename(Objects.toString(originalFilename, "attachment"));
+        String storedName = UUID.randomUUID().toString().replace("-", "") + extractExt(safeName);
+        return Path.of("report-attachments", String.valueOf(submissionId), storedName).toString();
+    }
+
+    private String copyWithSha256(MultipartFile file, Path target) {
         MessageDigest md;
         try {
             md = MessageDigest.getInstance("SHA-256");
@@ -184,6 +436,7 @@ public class FileStorageService {
         try {
             Files.createDirectories(target.getParent());
             try (InputStream in = file.getInputStream()) {
+                // Copy while computing sha256 to avoid reading twice.
                 try (var out = Files.newOutputStream(target)) {
                     byte[] buf = new byte[8192];
                     int n;
@@ -196,7 +449,24 @@ public class FileStorageService {
         } catch (IOException e) {
             throw new BusinessException(ApiCode.INTERNAL_ERROR, HttpStatus.INTERNAL_SERVER_ERROR, "文件保存失败");
         }
-        return new SaveResult(relative.replace('\\', '/'), toHex(md.digest()));
+        return toHex(md.digest());
+    }
+
+    /** Local directory holding staging files of uploads in progress, whichever backend is used. */
+    Path stagingDir() {
+        return stagingFile("");
+    }
+
+    private Path stagingFile(String id) {
+        return resolveUnderBase(Path.of(BLOB_DIR, "tmp", id).toString());
+    }
+
+    private void deleteQuietly(Path staging) {
+        try {
+            Files.deleteIfExists(staging);
+        } catch (IOException ignore) {
+            // Left for the next cleanup of the staging directory.
+        }
     }
 
     private String toHex(byte[] bytes) {
@@ -210,4 +480,18 @@ public class FileStorageService {
 
     public record SaveResult(String relativePath, String sha256Hex) {
     }
+
+    public record StoredFile(String relativePath, long size) {
+    }
+
+    /** Produces the content of a generated file. */
+    @FunctionalInterface
+    public interface ContentWriter {
+
+        void writeTo(OutputStream out) throws IOException;
+    }
+
+    /** An upload written to local staging but not yet stored; {@code id} names the staging file. */
+    public record StagedUpload(String id, String sha256, long size) {
+    }
 }
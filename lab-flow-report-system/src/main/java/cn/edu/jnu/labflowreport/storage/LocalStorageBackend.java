@@ -0,0 +1,232 @@
+package cn.edu.jnu.labflowreport.storage;
+
+import cn.edu.jnu.labflowreport.common.api.ApiCode;
+import cn.edu.jnu.labflowreport.common.exception.BusinessException;
+import cn.edu.jnu.labflowreport.config.StorageProperties;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Component;
+
+/**
+ * Files under {@code app.storage.dir} on this node's disk. The default backend.
+ */
+@Component
+@ConditionalOnProperty(prefix = "app.storage", name = "backend", havingValue = "local", matchIfMissing = true)
+class LocalStorageBackend implements StorageBackend {
+
+    private final Path baseDir;
+
+    LocalStorageBackend(StorageProperties props) {
+        this.baseDir = FileStorageService.localDir(props);
+    }
+
+    @Override
+    public Written save(String key, InputStream in) throws IOException {
+        Path target = resolve(key);
+        Files.createDirectories(target.getParent());
+        MessageDigest md = sha256();
+        long size = 0;
+        // Copy while computing sha256 to avoid reading twice.
+        try (OutputStream out = Files.newOutputStream(target)) {
+            byte[] buf = new byte[8192];
+            int n;
+            while ((n = in.read(buf)) > 0) {
+                md.update(buf, 0, n);
+                out.write(buf, 0, n);
+                size += n;
+            }
+        }
+        return new Written(HexFormat.of().formatHex(md.digest()), size);
+    }
+
+    @Override
+    public void importFile(Path source, String key) throws IOException {
+        Path target = resolve(key);
+        Files.createDirectories(target.getParent());
+        moveIntoPlace(source, target);
+    }
+
+    /** A hard link where the file system allows one, so the copy costs no space. */
+    @Override
+    public void copy(String sourceKey, String targetKey) throws IOException {
+        Path source = resolve(sourceKey);
+        Path target = resolve(targetKey);
+        Files.createDirectories(target.getParent());
+        try {
+            Files.createLink(target, source);
+        } catch (FileAlreadyExistsException e) {
+            // Placed by a concurrent upload of the same content.
+        } catch (IOException | UnsupportedOperationException e) {
+            Path staging = target.resolveSibling(target.getFileName() + "." + UUID.randomUUID().toString().replace("-", ""));
+            Files.copy(source, staging);
+            moveIntoPlace(staging, target);
+        }
+    }
+
+    @Override
+    public InputStream open(String key) throws IOException {
+        return Files.newInputStream(resolve(key));
+    }
+
+    @Override
+    public InputStream openRange(String key, long offset, long length) throws IOException {
+        InputStream in = Files.newInputStream(resolve(key));
+        try {
+            // Seeks on a file stream rather than reading the skipped bytes.
+            in.skipNBytes(offset);
+        } catch (IOException e) {
+            in.close();
+            throw e;
+        }
+        return new FilterInputStream(in) {
+            private long remaining = length;
+
+            @Override
+            public int read() throws IOException {
+                if (remaining <= 0) {
+                    return -1;
+                }
+                int b = super.read();
+                if (b >= 0) {
+                    remaining--;
+                }
+                return b;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                if (remaining <= 0) {
+                    return -1;
+                }
+                int n = super.read(b, off, (int) Math.min(len, remaining));
+                if (n > 0) {
+                    remaining -= n;
+                }
+                return n;
+            }
+        };
+    }
+
+    @Override
+    public boolean exists(String key) {
+        return Files.exists(resolve(key));
+    }
+
+    @Override
+    public ObjectInfo stat(String key) throws IOException {
+        Path target = resolve(key);
+        return new ObjectInfo(Files.size(target), Files.getLastModifiedTime(target).toMillis());
+    }
+
+    @Override
+    public void delete(String key) throws IOException {
+        Files.deleteIfExists(resolve(key));
+    }
+
+    /**
+     * A depth-first walk in key order that skips whole directories sorting before {@code startAfter}, so each
+     * page touches only the directories on the way to it rather than the whole tree.
+     */
+    @Override
+    public List<ObjectEntry> list(String startAfter, int limit) throws IOException {
+        List<ObjectEntry> entries = new ArrayList<>();
+        if (Files.isDirectory(baseDir)) {
+            walk(baseDir, "", startAfter == null ? "" : startAfter, limit, entries);
+        }
+        return entries;
+    }
+
+    private void walk(Path dir, String prefix, String startAfter, int limit, List<ObjectEntry> entries) throws IOException {
+        // Directories sort as "name/" so the order matches the full keys below them.
+        TreeMap<String, Path> children = new TreeMap<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+            for (Path child : stream) {
+                String name = prefix + child.getFileName();
+                children.put(Files.isDirectory(child, LinkOption.NOFOLLOW_LINKS) ? name + "/" : name, child);
+            }
+        } catch (NoSuchFileException e) {
+            return;
+        }
+        for (Map.Entry<String, Path> child : children.entrySet()) {
+            if (entries.size() >= limit) {
+                return;
+            }
+            String name = child.getKey();
+            if (name.endsWith("/")) {
+                if (startAfter.startsWith(name) || name.compareTo(startAfter) > 0) {
+                    walk(child.getValue(), name, startAfter, limit, entries);
+                }
+            } else if (name.compareTo(startAfter) > 0) {
+                try {
+                    BasicFileAttributes attrs = Files.readAttributes(child.getValue(), BasicFileAttributes.class,
+                            LinkOption.NOFOLLOW_LINKS);
+                    if (attrs.isRegularFile()) {
+                        entries.add(new ObjectEntry(name, attrs.size(), attrs.lastModifiedTime().toMillis()));
+                    }
+                } catch (NoSuchFileException e) {
+                    // Removed since the directory was read.
+                }
+            }
+        }
+    }
+
+    /** Served straight from disk; Spring MVC seeks in the file for range requests. */
+    @Override
+    public Resource resource(String key) throws IOException {
+        Path target = resolve(key);
+        if (!Files.isRegularFile(target) || !Files.isReadable(target)) {
+            throw new NoSuchFileException(key);
+        }
+        return new FileSystemResource(target);
+    }
+
+    private Path resolve(String key) {
+        Path p = baseDir.resolve(key).normalize();
+        if (!p.startsWith(baseDir)) {
+            throw new BusinessException(ApiCode.BAD_REQUEST, "非法文件路径");
+        }
+        return p;
+    }
+
+    /** Same-directory-tree rename, so readers never see a partly written file. */
+    private static void moveIntoPlace(Path staging, Path target) throws IOException {
+        try {
+            Files.move(staging, target, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(staging, target, StandardCopyOption.REPLACE_EXISTING);
+        } catch (FileAlreadyExistsException e) {
+            // Placed by a concurrent upload of the same content.
+            Files.deleteIfExists(staging);
+        }
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 unavailable", e);
+        }
+    }
+}
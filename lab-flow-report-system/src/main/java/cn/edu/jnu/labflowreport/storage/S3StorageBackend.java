@@ -0,0 +1,360 @@
+package cn.edu.jnu.labflowreport.storage;
+
+import cn.edu.jnu.labflowreport.config.StorageProperties;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * Objects in an S3-compatible bucket (AWS S3, MinIO, ...), spoken to over the plain S3 REST API with SigV4
+ * signing, so every app instance sees the same files.
+ * <p>
+ * Uploads are read one part at a time: anything up to {@code app.storage.s3.part-size} is a single PUT, larger
+ * files become a multipart upload, so memory use stays at one part whatever the file size. Downloads are handed
+ * to the client as presigned URLs when {@code presign-downloads} is on.
+ * <p>
+ * Keys are stored under {@code app.storage.s3.prefix}; callers never see it, and listing stays inside it.
+ */
+@Component
+@ConditionalOnProperty(prefix = "app.storage", name = "backend", havingValue = "s3")
+class S3StorageBackend implements StorageBackend {
+
+    private static final Logger log = LoggerFactory.getLogger(S3StorageBackend.class);
+
+    private final StorageProperties.S3 props;
+    private final URI endpoint;
+    private final String prefix;
+    private final AwsSigV4 signer;
+    private final HttpClient http;
+
+    S3StorageBackend(StorageProperties storageProps) {
+        this.props = storageProps.s3();
+        if (props == null || isBlank(props.endpoint()) || isBlank(props.bucket())
+                || isBlank(props.accessKey()) || isBlank(props.secretKey())) {
+            throw new IllegalStateException(
+                    "app.storage.backend=s3 requires app.storage.s3.endpoint, bucket, access-key and secret-key");
+        }
+        String e = props.endpoint().trim();
+        this.endpoint = URI.create(e.endsWith("/") ? e.substring(0, e.length() - 1) : e);
+        String p = props.prefix() == null ? "" : props.prefix().trim().replaceAll("^/+", "");
+        this.prefix = p.isEmpty() || p.endsWith("/") ? p : p + "/";
+        this.signer = new AwsSigV4(props.accessKey(), props.secretKey(), props.region());
+        this.http = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofSeconds(10))
+                .followRedirects(HttpClient.Redirect.NEVER)
+                .build();
+    }
+
+    @Override
+    public Written save(String key, InputStream in) throws IOException {
+        return save(key, in, Math.max(props.partSize(), 1));
+    }
+
+    /**
+     * A stream that ends before {@code bufferSize} bytes goes up in one PUT, a longer one in parts of that size.
+     */
+    private Written save(String key, InputStream in, int bufferSize) throws IOException {
+        MessageDigest whole = sha256();
+        byte[] buf = new byte[bufferSize];
+        int n = in.readNBytes(buf, 0, buf.length);
+        whole.update(buf, 0, n);
+        if (n < buf.length) {
+            expectOk(send("PUT", key, new TreeMap<>(), Map.of(), buf, n), "PUT", key).body().close();
+            return new Written(HexFormat.of().formatHex(whole.digest()), n);
+        }
+
+        String uploadId = createMultipartUpload(key);
+        try {
+            List<String> etags = new ArrayList<>();
+            long size = 0;
+            while (n > 0) {
+                etags.add(uploadPart(key, uploadId, etags.size() + 1, buf, n));
+                size += n;
+                n = in.readNBytes(buf, 0, buf.length);
+                whole.update(buf, 0, n);
+            }
+            completeMultipartUpload(key, uploadId, etags);
+            return new Written(HexFormat.of().formatHex(whole.digest()), size);
+        } catch (IOException | RuntimeException e) {
+            abortMultipartUpload(key, uploadId);
+            throw e;
+        }
+    }
+
+    @Override
+    public void importFile(Path source, String key) throws IOException {
+        // A file below the part size is read into a buffer just past its length, so a small attachment does not
+        // cost a whole part buffer.
+        int partSize = Math.max(props.partSize(), 1);
+        int bufferSize = (int) Math.min(partSize, Files.size(source) + 1);
+        try (InputStream in = Files.newInputStream(source)) {
+            save(key, in, bufferSize);
+        }
+        Files.deleteIfExists(source);
+    }
+
+    /** Server-side copy; the bytes do not pass through the application. */
+    @Override
+    public void copy(String sourceKey, String targetKey) throws IOException {
+        HttpResponse<InputStream> res = send("PUT", targetKey, new TreeMap<>(),
+                Map.of("x-amz-copy-source", "/" + props.bucket() + "/" + AwsSigV4.encode(prefix + sourceKey, false)), null, 0);
+        if (res.statusCode() == 404) {
+            res.body().close();
+            throw new NoSuchFileException(sourceKey);
+        }
+        failOnErrorBody(expectOk(res, "COPY", targetKey), "COPY", targetKey);
+    }
+
+    @Override
+    public InputStream open(String key) throws IOException {
+        return expectOk(send("GET", key, new TreeMap<>(), Map.of(), null, 0), "GET", key).body();
+    }
+
+    @Override
+    public InputStream openRange(String key, long offset, long length) throws IOException {
+        String range = "bytes=" + offset + "-" + (offset + length - 1);
+        HttpResponse<InputStream> res = expectOk(send("GET", key, new TreeMap<>(), Map.of("Range", range), null, 0), "GET", key);
+        if (res.statusCode() != 206) {
+            res.body().close();
+            throw new IOException("S3 GET " + key + " ignored Range " + range);
+        }
+        return res.body();
+    }
+
+    @Override
+    public boolean exists(String key) throws IOException {
+        HttpResponse<InputStream> res = send("HEAD", key, new TreeMap<>(), Map.of(), null, 0);
+        if (res.statusCode() == 404) {
+            res.body().close();
+            return false;
+        }
+        expectOk(res, "HEAD", key).body().close();
+        return true;
+    }
+
+    @Override
+    public ObjectInfo stat(String key) throws IOException {
+        HttpResponse<InputStream> res = expectOk(send("HEAD", key, new TreeMap<>(), Map.of(), null, 0), "HEAD", key);
+        res.body().close();
+        long size = res.headers().firstValueAsLong("Content-Length").orElse(0L);
+        long lastModified = res.headers().firstValue("Last-Modified")
+                .map(v -> ZonedDateTime.parse(v, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli())
+                .orElse(0L);
+        return new ObjectInfo(size, lastModified);
+    }
+
+    @Override
+    public void delete(String key) throws IOException {
+        HttpResponse<InputStream> res = send("DELETE", key, new TreeMap<>(), Map.of(), null, 0);
+        if (res.statusCode() == 404) {
+            res.body().close();
+            return;
+        }
+        expectOk(res, "DELETE", key).body().close();
+    }
+
+    /** ListObjectsV2, which returns keys in UTF-8 binary order and pages by {@code start-after}. */
+    @Override
+    public List<ObjectEntry> list(String startAfter, int limit) throws IOException {
+        SortedMap<String, String> query = new TreeMap<>();
+        query.put("list-type", "2");
+        query.put("max-keys", String.valueOf(Math.min(Math.max(limit, 1), 1000)));
+        if (!prefix.isEmpty()) {
+            query.put("prefix", prefix);
+        }
+        if (startAfter != null && !startAfter.isEmpty()) {
+            query.put("start-after", prefix + startAfter);
+        }
+        String xml = readBody(expectOk(send("GET", "", query, Map.of(), null, 0), "LIST", ""), Integer.MAX_VALUE);
+        List<ObjectEntry> entries = new ArrayList<>();
+        int from = 0;
+        while (entries.size() < limit) {
+            int start = xml.indexOf("<Contents>", from);
+            int end = xml.indexOf("</Contents>", start + 1);
+            if (start < 0 || end < 0) {
+                break;
+            }
+            String item = xml.substring(start, end);
+            String key = xmlValue(item, "Key");
+            String size = xmlValue(item, "Size");
+            String lastModified = xmlValue(item, "LastModified");
+            if (key != null && unescapeXml(key).startsWith(prefix)) {
+                entries.add(new ObjectEntry(unescapeXml(key).substring(prefix.length()), size == null ? 0 : Long.parseLong(size.trim()),
+                        lastModified == null ? 0 : Instant.parse(lastModified.trim()).toEpochMilli()));
+            }
+            from = end;
+        }
+        return entries;
+    }
+
+    @Override
+    public Optional<URI> presignedDownloadUrl(String key, String filename, String contentType) {
+        if (!props.presignDownloads()) {
+            return Optional.empty();
+        }
+        SortedMap<String, String> query = new TreeMap<>();
+        query.put("response-content-disposition", "attachment; filename*=UTF-8''" + AwsSigV4.encode(filename, true));
+        if (!isBlank(contentType)) {
+            query.put("response-content-type", contentType);
+        }
+        URI uri = objectUri(key);
+        String signed = signer.presign("GET", uri, uri.getRawPath(), query, props.presignTtl(), Instant.now());
+        return Optional.of(URI.create(uri + "?" + signed));
+    }
+
+    private String createMultipartUpload(String key) throws IOException {
+        SortedMap<String, String> query = new TreeMap<>(Map.of("uploads", ""));
+        HttpResponse<InputStream> res = expectOk(send("POST", key, query, Map.of(), new byte[0], 0), "POST", key);
+        String uploadId = xmlValue(readBody(res), "UploadId");
+        if (uploadId == null) {
+            throw new IOException("S3 CreateMultipartUpload for " + key + " returned no UploadId");
+        }
+        return uploadId;
+    }
+
+    private String uploadPart(String key, String uploadId, int partNumber, byte[] buf, int len) throws IOException {
+        SortedMap<String, String> query = new TreeMap<>(Map.of("partNumber", String.valueOf(partNumber), "uploadId", uploadId));
+        HttpResponse<InputStream> res = expectOk(send("PUT", key, query, Map.of(), buf, len), "PUT part", key);
+        res.body().close();
+        return res.headers().firstValue("ETag")
+                .orElseThrow(() -> new IOException("S3 UploadPart for " + key + " returned no ETag"));
+    }
+
+    private void completeMultipartUpload(String key, String uploadId, List<String> etags) throws IOException {
+        StringBuilder xml = new StringBuilder("<CompleteMultipartUpload>");
+        for (int i = 0; i < etags.size(); i++) {
+            xml.append("<Part><PartNumber>").append(i + 1).append("</PartNumber><ETag>")
+                    .append(etags.get(i).replace("&", "&amp;").replace("<", "&lt;"))
+                    .append("</ETag></Part>");
+        }
+        byte[] body = xml.append("</CompleteMultipartUpload>").toString().getBytes(StandardCharsets.UTF_8);
+        SortedMap<String, String> query = new TreeMap<>(Map.of("uploadId", uploadId));
+        failOnErrorBody(expectOk(send("POST", key, query, Map.of("Content-Type", "application/xml"), body, body.length),
+                "POST complete", key), "POST complete", key);
+    }
+
+    private void abortMultipartUpload(String key, String uploadId) {
+        try {
+            send("DELETE", key, new TreeMap<>(Map.of("uploadId", uploadId)), Map.of(), null, 0).body().close();
+        } catch (IOException | RuntimeException e) {
+            // The bucket's lifecycle rule for incomplete multipart uploads cleans up what is left.
+            log.warn("failed to abort multipart upload {} of {}: {}", uploadId, key, e.getMessage());
+        }
+    }
+
+    private HttpResponse<InputStream> send(String method, String key, SortedMap<String, String> query,
+                                           Map<String, String> headers, byte[] body, int len) throws IOException {
+        URI base = objectUri(key);
+        URI uri = query.isEmpty() ? base : URI.create(base + "?" + AwsSigV4.canonicalQuery(query));
+        String payloadSha256 = body == null ? AwsSigV4.EMPTY_SHA256 : AwsSigV4.sha256Hex(body, 0, len);
+        Map<String, String> signed = signer.sign(method, base, base.getRawPath(), query, headers, payloadSha256, Instant.now());
+
+        HttpRequest.Builder request = HttpRequest.newBuilder(uri)
+                .timeout(Duration.ofMinutes(5))
+                .method(method, body == null
+                        ? HttpRequest.BodyPublishers.noBody()
+                        : HttpRequest.BodyPublishers.ofByteArray(body, 0, len));
+        signed.forEach(request::header);
+        try {
+            return http.send(request.build(), HttpResponse.BodyHandlers.ofInputStream());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("S3 " + method + " " + key + " interrupted");
+        }
+    }
+
+    /** The object's URI; the empty key is the bucket itself. */
+    private URI objectUri(String key) {
+        String path = key.isEmpty() ? "" : AwsSigV4.encode(prefix + key, false);
+        String basePath = endpoint.getRawPath() == null ? "" : endpoint.getRawPath();
+        String authority = endpoint.getRawAuthority();
+        if (props.pathStyle()) {
+            return URI.create(endpoint.getScheme() + "://" + authority + basePath + "/"
+                    + AwsSigV4.encode(props.bucket(), true) + "/" + path);
+        }
+        return URI.create(endpoint.getScheme() + "://" + props.bucket() + "." + authority + basePath + "/" + path);
+    }
+
+    private HttpResponse<InputStream> expectOk(HttpResponse<InputStream> res, String op, String key) throws IOException {
+        int status = res.statusCode();
+        if (status >= 200 && status < 300) {
+            return res;
+        }
+        String body = "HEAD".equals(op) ? "" : readBody(res);
+        res.body().close();
+        if (status == 404) {
+            throw new NoSuchFileException(key);
+        }
+        String code = xmlValue(body, "Code");
+        throw new IOException("S3 " + op + " " + key + " failed: HTTP " + status + (code == null ? "" : " " + code));
+    }
+
+    /** CopyObject and CompleteMultipartUpload can fail after the 200 status line has been sent. */
+    private void failOnErrorBody(HttpResponse<InputStream> res, String op, String key) throws IOException {
+        String body = readBody(res);
+        if (body.contains("<Error>")) {
+            throw new IOException("S3 " + op + " " + key + " failed: " + xmlValue(body, "Code"));
+        }
+    }
+
+    private static String readBody(HttpResponse<InputStream> res) throws IOException {
+        return readBody(res, 64 * 1024);
+    }
+
+    private static String readBody(HttpResponse<InputStream> res, int max) throws IOException {
+        try (InputStream in = res.body()) {
+            return new String(in.readNBytes(max), StandardCharsets.UTF_8);
+        }
+    }
+
+    private static String unescapeXml(String s) {
+        return s.replace("&lt;", "<").replace("&gt;", ">").replace("&quot;", "\"").replace("&apos;", "'")
+                .replace("&amp;", "&");
+    }
+
+    private static String xmlValue(String xml, String tag) {
+        int start = xml.indexOf("<" + tag + ">");
+        int end = xml.indexOf("</" + tag + ">");
+        if (start < 0 || end < start) {
+            return null;
+        }
+        return xml.substring(start + tag.length() + 2, end);
+    }
+
+    private static boolean isBlank(String s) {
+        return s == null || s.isBlank();
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 unavailable", e);
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package cn.edu.jnu.labflowreport.storage;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Optional;
+import org.springframework.core.io.Resource;
+
+/**
+ * Where stored files live. {@link FileStorageService} decides the keys (the relative paths kept in the
+ * attachment tables, e.g. {@code blobs/ab/cd/<sha256>}) and the reference counting; a backend only moves bytes,
+ * so switching backends does not change any row.
+ * <p>
+ * Reads of a missing key throw {@link NoSuchFileException}.
+ */
+public interface StorageBackend {
+
+    /**
+     * Writes the stream under {@code key}, hashing it on the way so the content is read once.
+     */
+    Written save(String key, InputStream in) throws IOException;
+
+    /**
+     * Moves a fully written local file under {@code key}: a rename on the same disk, an upload for a remote
+     * store. The source file is gone afterwards.
+     */
+    void importFile(Path source, String key) throws IOException;
+
+    void copy(String sourceKey, String targetKey) throws IOException;
+
+    InputStream open(String key) throws IOException;
+
+    /**
+     * Reads {@code length} bytes starting at {@code offset} without transferring what comes before them.
+     */
+    InputStream openRange(String key, long offset, long length) throws IOException;
+
+    boolean exists(String key) throws IOException;
+
+    ObjectInfo stat(String key) throws IOException;
+
+    /** Removes the key; a missing key is not an error. */
+    void delete(String key) throws IOException;
+
+    /**
+     * Up to {@code limit} stored objects with keys after {@code startAfter} (empty for the first page), in key
+     * order, so the whole store can be walked in bounded steps and the walk resumed from the last key seen.
+     */
+    List<ObjectEntry> list(String startAfter, int limit) throws IOException;
+
+    /**
+     * A URL the client can fetch the object from directly, bypassing the application, or empty when the backend
+     * cannot hand those out and downloads are streamed through the application instead.
+     */
+    default Optional<URI> presignedDownloadUrl(String key, String filename, String contentType) {
+        return Optional.empty();
+    }
+
+    /**
+     * The object as a {@link Resource} that Spring MVC can stream and serve byte ranges from.
+     */
+    default Resource resource(String key) throws IOException {
+        return new StoredObjectResource(this, key, stat(key));
+    }
+
+    record Written(String sha256, long size) {
+    }
+
+    record ObjectInfo(long size, long lastModified) {
+    }
+
+    record ObjectEntry(String key, long size, long lastModified) {
+    }
+}
@@ -0,0 +1,116 @@
+package cn.edu.jnu.labflowreport.storage;
+
+import cn.edu.jnu.labflowreport.common.exception.BusinessException;
+import java.util.List;
+import java.util.Map;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * One-off migration of an existing uploads directory to the content-addressed layout: every attachment row
+ * still pointing at a per-upload file is re-pointed at its blob, and the old file is deleted once that is
+ * committed, so identical files end up stored once. Rows are handled one at a time and already migrated rows
+ * are skipped, so the migration can be stopped and started again.
+ * <p>
+ * Enabled with {@code app.storage.migrate-to-blobs=true}; it runs at startup, before the app takes requests.
+ */
+@Component
+@ConditionalOnProperty(prefix = "app.storage", name = "migrate-to-blobs", havingValue = "true")
+public class StorageBlobMigrator implements ApplicationRunner {
+
+    private static final Logger log = LoggerFactory.getLogger(StorageBlobMigrator.class);
+    private static final int PAGE_SIZE = 200;
+
+    /** Attachment tables and the column holding the stored file's relative path. */
+    static final List<Map.Entry<String, String>> TABLES = List.of(
+            Map.entry("report_attachment", "file_path"),
+            Map.entry("task_attachment", "file_path"),
+            Map.entry("task_prestudy_attachment", "file_path"),
+            Map.entry("task_progress_attachment", "relative_path")
+    );
+
+    private final JdbcTemplate jdbcTemplate;
+    private final FileStorageService storageService;
+    private final TransactionTemplate tx;
+
+    public StorageBlobMigrator(
+            JdbcTemplate jdbcTemplate,
+            FileStorageService storageService,
+            PlatformTransactionManager transactionManager
+    ) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.storageService = storageService;
+        this.tx = new TransactionTemplate(transactionManager);
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        Result result = migrate();
+        log.info("storage blob migration done: {} rows moved, {} duplicates removed ({} bytes), {} missing files",
+                result.migrated(), result.deduplicated(), result.bytesReclaimed(), result.missing());
+    }
+
+    public Result migrate() {
+        Result total = new Result(0, 0, 0, 0);
+        for (Map.Entry<String, String> table : TABLES) {
+            total = total.plus(migrateTable(table.getKey(), table.getValue()));
+        }
+        return total;
+    }
+
+    private Result migrateTable(String table, String pathColumn) {
+        Result result = new Result(0, 0, 0, 0);
+        long lastId = 0;
+        while (true) {
+            List<Map<String, Object>> rows = jdbcTemplate.queryForList(
+                    "SELECT id, " + pathColumn + " AS path, file_size FROM " + table
+                            + " WHERE id > ? AND " + pathColumn + " NOT LIKE '" + FileStorageService.BLOB_DIR + "/%'"
+                            + " ORDER BY id LIMIT " + PAGE_SIZE,
+                    lastId);
+            if (rows.isEmpty()) {
+                return result;
+            }
+            for (Map<String, Object> row : rows) {
+                long id = ((Number) row.get("id")).longValue();
+                lastId = id;
+                String path = (String) row.get("path");
+                Object size = row.get("file_size");
+                result = result.plus(migrateRow(table, pathColumn, id, path, size == null ? 0L : ((Number) size).longValue()));
+            }
+        }
+    }
+
+    private Result migrateRow(String table, String pathColumn, long id, String path, long size) {
+        boolean duplicate;
+        try {
+            duplicate = Boolean.TRUE.equals(tx.execute(status -> {
+                FileStorageService.SaveResult saved = storageService.adoptIntoBlobStore(path);
+                jdbcTemplate.update("UPDATE " + table + " SET " + pathColumn + " = ?, file_sha256 = ? WHERE id = ?",
+                        saved.relativePath(), saved.sha256Hex(), id);
+                Integer refs = jdbcTemplate.queryForObject(
+                        "SELECT ref_count FROM storage_blob WHERE sha256 = ?", Integer.class, saved.sha256Hex());
+                return refs != null && refs > 1;
+            }));
+        } catch (BusinessException e) {
+            log.warn("storage blob migration skipped {}#{}: {}", table, id, e.getMessage());
+            return new Result(0, 0, 0, 1);
+        }
+        storageService.delete(path);
+        return new Result(1, duplicate ? 1 : 0, duplicate ? size : 0, 0);
+    }
+
+    public record Result(int migrated, int deduplicated, long bytesReclaimed, int missing) {
+
+        Result plus(Result other) {
+            return new Result(migrated + other.migrated, deduplicated + other.deduplicated,
+                    bytesReclaimed + other.bytesReclaimed, missing + other.missing);
+        }
+    }
+}
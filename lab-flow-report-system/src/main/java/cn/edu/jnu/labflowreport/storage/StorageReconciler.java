@@ -0,0 +1,296 @@
+package cn.edu.jnu.labflowreport.storage;
+
+import cn.edu.jnu.labflowreport.common.api.ApiCode;
+import cn.edu.jnu.labflowreport.common.exception.BusinessException;
+import cn.edu.jnu.labflowreport.config.StorageProperties;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.regex.Pattern;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Finds stored files that no row refers to and removes them: per-upload files whose attachment was deleted
+ * without its file, blobs whose reference count never reached zero through a release, and staging files of
+ * requests that died half way.
+ * <p>
+ * The store is walked in key order, {@code app.storage.gc-batch-size} keys per listing and at most
+ * {@code gc-max-batches} listings per pass with {@code gc-batch-pause} between them, so a pass puts a bounded
+ * load on the disk or bucket and the database; the next pass continues where the last one stopped. Only files
+ * older than {@code gc-grace-period} are candidates, which leaves uploads that are being written or whose rows
+ * are not committed yet alone, and only keys under the prefixes the application writes to are considered, so
+ * other files in a shared directory or bucket are never touched. Each pass ends by recomputing the usage counters.
+ */
+@Component
+public class StorageReconciler {
+
+    private static final Logger log = LoggerFactory.getLogger(StorageReconciler.class);
+    private static final Pattern SHA256 = Pattern.compile("[0-9a-f]{64}");
+
+    private final StorageBackend backend;
+    private final FileStorageService storageService;
+    private final BlobRefs blobRefs;
+    private final StorageUsageService usageService;
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final Duration gracePeriod;
+    private final int batchSize;
+    private final int maxBatches;
+    private final Duration batchPause;
+    private final AtomicBoolean running = new AtomicBoolean();
+    private volatile String cursor = "";
+
+    StorageReconciler(
+            StorageBackend backend,
+            FileStorageService storageService,
+            BlobRefs blobRefs,
+            StorageUsageService usageService,
+            NamedParameterJdbcTemplate jdbcTemplate,
+            StorageProperties props
+    ) {
+        this.backend = backend;
+        this.storageService = storageService;
+        this.blobRefs = blobRefs;
+        this.usageService = usageService;
+        this.jdbcTemplate = jdbcTemplate;
+        this.gracePeriod = props.gcGracePeriod() == null ? Duration.ofHours(24) : props.gcGracePeriod();
+        this.batchSize = Math.max(props.gcBatchSize(), 1);
+        this.maxBatches = Math.max(props.gcMaxBatches(), 1);
+        this.batchPause = props.gcBatchPause() == null ? Duration.ZERO : props.gcBatchPause();
+    }
+
+    @Scheduled(
+            initialDelayString = "${app.storage.gc-initial-delay:PT20M}",
+            fixedDelayString = "${app.storage.gc-interval:PT1H}"
+    )
+    void scheduledPass() {
+        if (running.get()) {
+            return;
+        }
+        try {
+            Pass pass = runPass();
+            log.info("storage reconcile pass: {} files scanned, {} orphans removed ({} bytes), {} staging files removed, "
+                            + "{} blobs counted but unreferenced, walk {}",
+                    pass.scanned(), pass.deleted(), pass.bytesFreed(), pass.stagingDeleted(), pass.drifted(),
+                    pass.completedWalk() ? "completed" : "continues at " + cursor);
+        } catch (BusinessException e) {
+            // Started by an admin in the meantime.
+        } catch (RuntimeException e) {
+            log.warn("storage reconcile pass failed", e);
+        }
+    }
+
+    /**
+     * One bounded pass over the next part of the store.
+     */
+    public Pass runPass() {
+        if (!running.compareAndSet(false, true)) {
+            throw new BusinessException(ApiCode.BAD_REQUEST, HttpStatus.CONFLICT, "存储清理正在进行中，请稍后再试");
+        }
+        try {
+            return pass();
+        } finally {
+            running.set(false);
+        }
+    }
+
+    private Pass pass() {
+        long cutoff = Instant.now().minus(gracePeriod).toEpochMilli();
+        Pass total = new Pass(0, 0, 0, 0, 0, false);
+        String after = cursor;
+        boolean completed = false;
+        for (int batch = 0; batch < maxBatches; batch++) {
+            if (batch > 0 && !pause()) {
+                break;
+            }
+            List<StorageBackend.ObjectEntry> page;
+            try {
+                page = backend.list(after, batchSize);
+            } catch (IOException e) {
+                log.warn("storage listing after {} failed: {}", after, e.getMessage());
+                break;
+            }
+            if (!page.isEmpty()) {
+                after = page.get(page.size() - 1).key();
+                total = total.plus(reconcile(page, cutoff));
+            }
+            if (page.size() < batchSize) {
+                completed = true;
+                break;
+            }
+        }
+        cursor = completed ? "" : after;
+        total = total.plus(sweepStaging(cutoff)).completed(completed);
+        usageService.refresh();
+        return total;
+    }
+
+    private Pass reconcile(List<StorageBackend.ObjectEntry> page, long cutoff) {
+        List<StorageBackend.ObjectEntry> candidates = new ArrayList<>();
+        for (StorageBackend.ObjectEntry entry : page) {
+            String key = entry.key();
+            if (FileStorageService.isAppKey(key) && !key.startsWith(FileStorageService.STAGING_PREFIX)
+                    && entry.lastModified() < cutoff) {
+                candidates.add(entry);
+            }
+        }
+        Set<String> referenced = referencedKeys(candidates);
+        int deleted = 0;
+        long bytesFreed = 0;
+        int drifted = 0;
+        for (StorageBackend.ObjectEntry entry : candidates) {
+            if (referenced.contains(entry.key())) {
+                continue;
+            }
+            String key = entry.key();
+            String name = key.substring(key.lastIndexOf('/') + 1);
+            try {
+                if (SHA256.matcher(name).matches() && key.equals(FileStorageService.blobPath(name))) {
+                    if (!blobRefs.collectIfUnreferenced(name, entry.size(), () -> deleteObject(key))) {
+                        // Counted by storage_blob but on no row; keeping it is the safe side of that disagreement.
+                        drifted++;
+                        log.warn("blob {} has references counted but no attachment row", name);
+                        continue;
+                    }
+                } else {
+                    backend.delete(key);
+                }
+                deleted++;
+                bytesFreed += entry.size();
+            } catch (IOException | RuntimeException e) {
+                log.warn("failed to remove orphaned file {}: {}", key, e.getMessage());
+            }
+        }
+        return new Pass(page.size(), deleted, bytesFreed, 0, drifted, false);
+    }
+
+    /**
+     * Keys among the candidates that an attachment row, a completed, not yet attached upload or a finished export
+     * job points at.
+     */
+    private Set<String> referencedKeys(List<StorageBackend.ObjectEntry> candidates) {
+        Set<String> referenced = new HashSet<>();
+        if (candidates.isEmpty()) {
+            return referenced;
+        }
+        Set<String> paths = new HashSet<>();
+        for (StorageBackend.ObjectEntry entry : candidates) {
+            paths.add(entry.key());
+            // Rows written on Windows hold backslash-separated paths.
+            paths.add(entry.key().replace('/', '\\'));
+        }
+        MapSqlParameterSource params = new MapSqlParameterSource("paths", paths)
+                .addValue("completed", ChunkedUploadService.COMPLETED);
+        List<String> queries = new ArrayList<>();
+        for (Map.Entry<String, String> table : StorageBlobMigrator.TABLES) {
+            queries.add("SELECT " + table.getValue() + " FROM " + table.getKey() + " WHERE " + table.getValue() + " IN (:paths)");
+        }
+        queries.add("SELECT relative_path FROM upload_session WHERE relative_path IN (:paths) AND status = :completed");
+        queries.add("SELECT file_path FROM export_record WHERE file_path IN (:paths)");
+        for (String sql : queries) {
+            for (String path : jdbcTemplate.queryForList(sql, params, String.class)) {
+                referenced.add(path.replace('\\', '/'));
+            }
+        }
+        return referenced;
+    }
+
+    /**
+     * Staging files live on this node's disk whichever backend holds the stored files, so they are swept here
+     * rather than through the walk. A chunked upload still receiving chunks keeps its file.
+     */
+    private Pass sweepStaging(long cutoff) {
+        Path dir = storageService.stagingDir();
+        int deleted = 0;
+        long bytesFreed = 0;
+        if (!Files.isDirectory(dir)) {
+            return new Pass(0, 0, 0, 0, 0, false);
+        }
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+            for (Path file : stream) {
+                try {
+                    BasicFileAttributes attrs = Files.readAttributes(file, BasicFileAttributes.class);
+                    if (!attrs.isRegularFile() || attrs.lastModifiedTime().toMillis() >= cutoff
+                            || isUploading(file.getFileName().toString())) {
+                        continue;
+                    }
+                    if (Files.deleteIfExists(file)) {
+                        deleted++;
+                        bytesFreed += attrs.size();
+                    }
+                } catch (NoSuchFileException e) {
+                    // Promoted or discarded since the directory was read.
+                }
+            }
+        } catch (IOException e) {
+            log.warn("failed to sweep staging directory {}: {}", dir, e.getMessage());
+        }
+        return new Pass(0, 0, bytesFreed, deleted, 0, false);
+    }
+
+    private boolean isUploading(String stagingName) {
+        if (!stagingName.startsWith("upload-")) {
+            return false;
+        }
+        Integer n = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM upload_session WHERE id = :id AND status = :uploading",
+                new MapSqlParameterSource("id", stagingName.substring("upload-".length()))
+                        .addValue("uploading", ChunkedUploadService.UPLOADING),
+                Integer.class);
+        return n != null && n > 0;
+    }
+
+    private void deleteObject(String key) {
+        try {
+            backend.delete(key);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private boolean pause() {
+        if (batchPause.isZero() || batchPause.isNegative()) {
+            return true;
+        }
+        try {
+            Thread.sleep(batchPause.toMillis());
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * What a pass did. {@code drifted} counts blobs on no row whose reference count is still above zero; they
+     * are kept. {@code completedWalk} is false when the pass stopped at its batch limit and the next one resumes.
+     */
+    public record Pass(int scanned, int deleted, long bytesFreed, int stagingDeleted, int drifted, boolean completedWalk) {
+
+        Pass plus(Pass other) {
+            return new Pass(scanned + other.scanned, deleted + other.deleted, bytesFreed + other.bytesFreed,
+                    stagingDeleted + other.stagingDeleted, drifted + other.drifted, completedWalk);
+        }
+
+        Pass completed(boolean completed) {
+            return new Pass(scanned, deleted, bytesFreed, stagingDeleted, drifted, completed);
+        }
+    }
+}
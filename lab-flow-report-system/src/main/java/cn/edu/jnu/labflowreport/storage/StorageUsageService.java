@@ -0,0 +1,128 @@
+package cn.edu.jnu.labflowreport.storage;
+
+import cn.edu.jnu.labflowreport.common.api.ApiCode;
+import cn.edu.jnu.labflowreport.common.exception.BusinessException;
+import cn.edu.jnu.labflowreport.storage.vo.StorageUsageSummaryVO;
+import cn.edu.jnu.labflowreport.storage.vo.StorageUsageVO;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Locale;
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * A periodic snapshot of attachment counts and bytes per task and per experiment course, kept in
+ * {@code storage_usage} so reading them costs one indexed query instead of a walk over the files or an aggregate
+ * over every attachment table. The upload and delete paths do not touch it: at the end of each
+ * {@link StorageReconciler} pass the whole table is replaced by a fresh aggregate over all attachment rows, so the
+ * figures are as of {@code refreshed_at} and trail uploads and deletes by up to one {@code gc-interval}. That
+ * rebuild scans every attachment table once per pass, which is the price of keeping the write paths free of
+ * counter updates.
+ */
+@Service
+public class StorageUsageService {
+
+    static final String TASK = "TASK";
+    static final String COURSE = "COURSE";
+
+    /** Every stored attachment with the task it belongs to. */
+    private static final String ATTACHMENTS = """
+            SELECT s.task_id AS task_id, a.file_size AS file_size
+            FROM report_attachment a JOIN report_submission s ON s.id = a.submission_id
+            UNION ALL
+            SELECT a.task_id, a.file_size FROM task_attachment a
+            UNION ALL
+            SELECT p.task_id, a.file_size
+            FROM task_prestudy_attachment a JOIN task_prestudy p ON p.id = a.prestudy_id
+            UNION ALL
+            SELECT l.task_id, a.file_size
+            FROM task_progress_attachment a JOIN task_progress_log l ON l.id = a.progress_log_id
+            """;
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final TransactionTemplate tx;
+
+    public StorageUsageService(NamedParameterJdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.tx = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * Replaces the snapshot with one taken now; readers keep seeing the previous one until it commits.
+     */
+    public void refresh() {
+        MapSqlParameterSource params = new MapSqlParameterSource("now", Timestamp.valueOf(LocalDateTime.now()))
+                .addValue("task", TASK)
+                .addValue("course", COURSE);
+        tx.executeWithoutResult(status -> {
+            jdbcTemplate.update("DELETE FROM storage_usage", params);
+            jdbcTemplate.update("""
+                    INSERT INTO storage_usage (scope_type, scope_id, file_count, total_bytes, refreshed_at)
+                    SELECT :task, f.task_id, COUNT(*), COALESCE(SUM(f.file_size), 0), :now
+                    FROM (%s) f
+                    GROUP BY f.task_id
+                    """.formatted(ATTACHMENTS), params);
+            jdbcTemplate.update("""
+                    INSERT INTO storage_usage (scope_type, scope_id, file_count, total_bytes, refreshed_at)
+                    SELECT :course, t.experiment_course_id, SUM(u.file_count), SUM(u.total_bytes), :now
+                    FROM storage_usage u JOIN exp_task t ON t.id = u.scope_id
+                    WHERE u.scope_type = :task AND t.experiment_course_id IS NOT NULL
+                    GROUP BY t.experiment_course_id
+                    """, params);
+        });
+    }
+
+    /** The largest {@code limit} tasks or courses by bytes stored. */
+    public List<StorageUsageVO> listUsage(String scope, int limit) {
+        String scopeType = scope == null ? TASK : scope.trim().toUpperCase(Locale.ROOT);
+        String nameSql;
+        if (TASK.equals(scopeType)) {
+            nameSql = "(SELECT t.title FROM exp_task t WHERE t.id = u.scope_id)";
+        } else if (COURSE.equals(scopeType)) {
+            nameSql = "(SELECT c.title FROM experiment_course c WHERE c.id = u.scope_id)";
+        } else {
+            throw new BusinessException(ApiCode.BAD_REQUEST, HttpStatus.BAD_REQUEST, "scope 只能是 TASK 或 COURSE");
+        }
+        MapSqlParameterSource params = new MapSqlParameterSource("scopeType", scopeType)
+                .addValue("limit", Math.min(Math.max(limit, 1), 500));
+        return jdbcTemplate.query("""
+                SELECT u.scope_type, u.scope_id, %s AS name, u.file_count, u.total_bytes, u.refreshed_at
+                FROM storage_usage u
+                WHERE u.scope_type = :scopeType
+                ORDER BY u.total_bytes DESC, u.scope_id
+                LIMIT :limit
+                """.formatted(nameSql), params, (rs, i) -> new StorageUsageVO(
+                rs.getString("scope_type"),
+                rs.getLong("scope_id"),
+                rs.getString("name"),
+                rs.getLong("file_count"),
+                rs.getLong("total_bytes"),
+                toLocalDateTime(rs.getTimestamp("refreshed_at"))));
+    }
+
+    public StorageUsageSummaryVO summary() {
+        MapSqlParameterSource params = new MapSqlParameterSource("task", TASK);
+        return jdbcTemplate.queryForObject("""
+                SELECT
+                    (SELECT COALESCE(SUM(file_count), 0) FROM storage_usage WHERE scope_type = :task) AS attachment_count,
+                    (SELECT COALESCE(SUM(total_bytes), 0) FROM storage_usage WHERE scope_type = :task) AS attachment_bytes,
+                    (SELECT COUNT(*) FROM storage_blob WHERE ref_count > 0) AS blob_count,
+                    (SELECT COALESCE(SUM(file_size), 0) FROM storage_blob WHERE ref_count > 0) AS blob_bytes,
+                    (SELECT MAX(refreshed_at) FROM storage_usage) AS refreshed_at
+                """, params, (rs, i) -> new StorageUsageSummaryVO(
+                rs.getLong("attachment_count"),
+                rs.getLong("attachment_bytes"),
+                rs.getLong("blob_count"),
+                rs.getLong("blob_bytes"),
+                toLocalDateTime(rs.getTimestamp("refreshed_at"))));
+    }
+
+    private static LocalDateTime toLocalDateTime(Timestamp ts) {
+        return ts == null ? null : ts.toLocalDateTime();
+    }
+}
@@ -0,0 +1,108 @@
+package cn.edu.jnu.labflowreport.storage;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.util.Optional;
+import org.springframework.core.io.AbstractResource;
+
+/**
+ * An object of a non-local {@link StorageBackend} as a Spring {@link org.springframework.core.io.Resource}.
+ * <p>
+ * Spring MVC serves a {@code Range} request by skipping to the range start on the stream it gets here; a skip
+ * before the first read only moves the start offset, so the backend is asked for that range alone instead of
+ * the whole object being fetched and thrown away up to it.
+ */
+final class StoredObjectResource extends AbstractResource {
+
+    private final StorageBackend backend;
+    private final String key;
+    private final StorageBackend.ObjectInfo info;
+
+    StoredObjectResource(StorageBackend backend, String key, StorageBackend.ObjectInfo info) {
+        this.backend = backend;
+        this.key = key;
+        this.info = info;
+    }
+
+    /** Where the client can fetch this object itself, when the backend supports that. */
+    Optional<URI> presignedDownloadUrl(String filename, String contentType) {
+        return backend.presignedDownloadUrl(key, filename, contentType);
+    }
+
+    @Override
+    public boolean exists() {
+        return true;
+    }
+
+    @Override
+    public long contentLength() {
+        return info.size();
+    }
+
+    @Override
+    public long lastModified() {
+        return info.lastModified();
+    }
+
+    @Override
+    public String getFilename() {
+        return key.substring(key.lastIndexOf('/') + 1);
+    }
+
+    @Override
+    public String getDescription() {
+        return "stored object [" + key + "]";
+    }
+
+    @Override
+    public InputStream getInputStream() {
+        return new SeekingStream();
+    }
+
+    private final class SeekingStream extends InputStream {
+
+        private long offset;
+        private InputStream in;
+
+        @Override
+        public long skip(long n) throws IOException {
+            if (in != null) {
+                return in.skip(n);
+            }
+            long skipped = Math.max(0, Math.min(n, info.size() - offset));
+            offset += skipped;
+            return skipped;
+        }
+
+        @Override
+        public int read() throws IOException {
+            return stream().read();
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            return stream().read(b, off, len);
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (in != null) {
+                in.close();
+            }
+        }
+
+        private InputStream stream() throws IOException {
+            if (in == null) {
+                if (offset == 0) {
+                    in = backend.open(key);
+                } else if (offset >= info.size()) {
+                    in = InputStream.nullInputStream();
+                } else {
+                    in = backend.openRange(key, offset, info.size() - offset);
+                }
+            }
+            return in;
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package cn.edu.jnu.labflowreport.storage.dto;
+
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Pattern;
+import jakarta.validation.constraints.Positive;
+import jakarta.validation.constraints.Size;
+
+public record UploadInitRequest(
+        @NotBlank(message = "fileName 不能为空")
+        @Size(max = 255, message = "fileName 长度不能超过 255")
+        String fileName,
+        @Size(max = 255, message = "contentType 长度不能超过 255")
+        String contentType,
+        @NotNull(message = "fileSize 不能为空")
+        @Positive(message = "fileSize 必须大于 0")
+        Long fileSize,
+        // Optional whole-file sha256, checked on completion.
+        @Pattern(regexp = "^[0-9a-fA-F]{64}$", message = "sha256 格式不正确")
+        String sha256
+) {
+}
@@ -0,0 +1,16 @@
+package cn.edu.jnu.labflowreport.storage.vo;
+
+import java.time.LocalDateTime;
+
+/**
+ * Store-wide totals: {@code attachment*} is what the attachment rows add up to as of {@code refreshedAt},
+ * {@code blob*} what the distinct content in the blob store actually takes, read live.
+ */
+public record StorageUsageSummaryVO(
+        Long attachmentCount,
+        Long attachmentBytes,
+        Long blobCount,
+        Long blobBytes,
+        LocalDateTime refreshedAt
+) {
+}
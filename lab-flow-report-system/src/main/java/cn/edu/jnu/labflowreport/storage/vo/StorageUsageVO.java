@@ -0,0 +1,17 @@
+package cn.edu.jnu.labflowreport.storage.vo;
+
+import java.time.LocalDateTime;
+
+/**
+ * Attachments of one task or experiment course as of the last reconciler pass; {@code name} is the task or
+ * course title, null when it has since been deleted.
+ */
+public record StorageUsageVO(
+        String scopeType,
+        Long scopeId,
+        String name,
+        Long fileCount,
+        Long totalBytes,
+        LocalDateTime refreshedAt
+) {
+}
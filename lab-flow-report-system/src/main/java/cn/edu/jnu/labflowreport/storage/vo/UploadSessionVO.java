@@ -0,0 +1,18 @@
+package cn.edu.jnu.labflowreport.storage.vo;
+
+import java.time.LocalDateTime;
+
+/**
+ * A chunked upload; the next chunk goes at {@code receivedBytes}, at most {@code chunkSize} bytes long.
+ */
+public record UploadSessionVO(
+        String uploadId,
+        String fileName,
+        Long fileSize,
+        Integer chunkSize,
+        Long receivedBytes,
+        String status,
+        String sha256,
+        LocalDateTime expiresAt
+) {
+}
@@ -16,6 +16,7 @@ import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Objects;
 import java.util.Set;
+import org.springframework.core.io.Resource;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -111,8 +112,8 @@ public class ReportAttachmentService {
             throw new BusinessException(ApiCode.BAD_REQUEST, HttpStatus.NOT_FOUND, "附件不存在");
         }
         ensureCanAccessSubmission(entity.getSubmissionId(), user);
-        byte[] bytes = storageService.readBytes(entity.getFilePath());
-        return new DownloadData(entity.getFileName(), entity.getContentType(), bytes);
+        return new DownloadData(entity.getFileName(), entity.getContentType(), entity.getFileSha256(),
+                storageService.loadAsResource(entity.getFilePath()));
     }
 
     public SubmissionVO getSubmissionForDownload(Long submissionId, AuthenticatedUser user) {
@@ -160,6 +161,6 @@ public class ReportAttachmentService {
         return vo;
     }
 
-    public record DownloadData(String filename, String contentType, byte[] bytes) {
+    public record DownloadData(String filename, String contentType, String sha256, Resource resource) {
     }
 }
@@ -31,6 +31,7 @@ import cn.edu.jnu.labflowreport.persistence.mapper.ExpTaskTargetClassMapper;
 import cn.edu.jnu.labflowreport.persistence.mapper.ExportRecordMapper;
 import cn.edu.jnu.labflowreport.persistence.mapper.OrgClassMapper;
 import cn.edu.jnu.labflowreport.persistence.mapper.PlagArtifactFpMapper;
+import cn.edu.jnu.labflowreport.persistence.mapper.PlagCorpusFpMapper;
 import cn.edu.jnu.labflowreport.persistence.mapper.PlagSubmissionBestMatchMapper;
 import cn.edu.jnu.labflowreport.persistence.mapper.PlagTaskRunMapper;
 import cn.edu.jnu.labflowreport.persistence.mapper.ReportAttachmentMapper;
@@ -47,6 +48,8 @@ import cn.edu.jnu.labflowreport.persistence.mapper.TaskPrestudyMapper;
 import cn.edu.jnu.labflowreport.persistence.mapper.TaskPrestudyReadStateMapper;
 import cn.edu.jnu.labflowreport.persistence.mapper.TaskProgressAttachmentMapper;
 import cn.edu.jnu.labflowreport.persistence.mapper.TaskProgressLogMapper;
+import cn.edu.jnu.labflowreport.statistics.service.StatisticsRollupService;
+import cn.edu.jnu.labflowreport.storage.ChunkedUploadService;
 import cn.edu.jnu.labflowreport.storage.FileStorageService;
 import cn.edu.jnu.labflowreport.workflow.ReviewIssueTags;
 import cn.edu.jnu.labflowreport.workflow.dto.ReviewCreateRequest;
@@ -62,6 +65,7 @@ import cn.edu.jnu.labflowreport.workflow.vo.TaskAttachmentVO;
 import cn.edu.jnu.labflowreport.workflow.vo.TaskPrestudyAttachmentVO;
 import cn.edu.jnu.labflowreport.workflow.vo.TaskPrestudyNotificationVO;
 import cn.edu.jnu.labflowreport.workflow.vo.TaskVO;
+import java.io.InputStream;
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
@@ -71,6 +75,8 @@ import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
 import java.util.stream.Collectors;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.core.io.Resource;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -83,6 +89,7 @@ public class ReportWorkflowService {
     private final ReportSubmissionMapper submissionMapper;
     private final ReportAttachmentMapper attachmentMapper;
     private final FileStorageService storageService;
+    private final ChunkedUploadService chunkedUploadService;
     private final ReportReviewMapper reviewMapper;
     private final ReportReviewIssueTagMapper reviewIssueTagMapper;
     private final ExportRecordMapper exportRecordMapper;
@@ -100,15 +107,19 @@ public class ReportWorkflowService {
     private final PlagTaskRunMapper plagTaskRunMapper;
     private final PlagArtifactFpMapper plagArtifactFpMapper;
     private final PlagSubmissionBestMatchMapper plagSubmissionBestMatchMapper;
+    private final PlagCorpusFpMapper plagCorpusFpMapper;
     private final ExperimentCourseService experimentCourseService;
     private final OrgClassMapper orgClassMapper;
     private final ExcelExportService excelExportService;
+    private final StatisticsRollupService statisticsRollupService;
+    private final ApplicationEventPublisher eventPublisher;
 
     public ReportWorkflowService(
             ExpTaskMapper expTaskMapper,
             ReportSubmissionMapper submissionMapper,
             ReportAttachmentMapper attachmentMapper,
             FileStorageService storageService,
+            ChunkedUploadService chunkedUploadService,
             ReportReviewMapper reviewMapper,
             ReportReviewIssueTagMapper reviewIssueTagMapper,
             ExportRecordMapper exportRecordMapper,
@@ -126,14 +137,18 @@ public class ReportWorkflowService {
             PlagTaskRunMapper plagTaskRunMapper,
             PlagArtifactFpMapper plagArtifactFpMapper,
             PlagSubmissionBestMatchMapper plagSubmissionBestMatchMapper,
+            PlagCorpusFpMapper plagCorpusFpMapper,
             ExperimentCourseService experimentCourseService,
             OrgClassMapper orgClassMapper,
-            ExcelExportService excelExportService
+            ExcelExportService excelExportService,
+            StatisticsRollupService statisticsRollupService,
+            ApplicationEventPublisher eventPublisher
     ) {
         this.expTaskMapper = expTaskMapper;
         this.submissionMapper = submissionMapper;
         this.attachmentMapper = attachmentMapper;
         this.storageService = storageService;
+        this.chunkedUploadService = chunkedUploadService;
         this.reviewMapper = reviewMapper;
         this.reviewIssueTagMapper = reviewIssueTagMapper;
         this.exportRecordMapper = exportRecordMapper;
@@ -151,9 +166,12 @@ public class ReportWorkflowService {
         this.plagTaskRunMapper = plagTaskRunMapper;
         this.plagArtifactFpMapper = plagArtifactFpMapper;
         this.plagSubmissionBestMatchMapper = plagSubmissionBestMatchMapper;
+        this.plagCorpusFpMapper = plagCorpusFpMapper;
         this.experimentCourseService = experimentCourseService;
         this.orgClassMapper = orgClassMapper;
         this.excelExportService = excelExportService;
+        this.statisticsRollupService = statisticsRollupService;
+        this.eventPublisher = eventPublisher;
     }
 
     @Transactional
@@ -190,6 +208,7 @@ public class ReportWorkflowService {
         if (prestudyTitle != null) {
             createOrUpdatePrestudyEntity(entity.getId(), prestudyTitle, request.prestudyDescription(), true);
         }
+        eventPublisher.publishEvent(new TaskChangedEvent(entity.getId()));
         return getTask(entity.getId());
     }
 
@@ -223,7 +242,12 @@ public class ReportWorkflowService {
     }
 
     @Transactional
-    public List<TaskAttachmentVO> uploadTaskAttachments(Long taskId, AuthenticatedUser actor, MultipartFile[] files) {
+    public List<TaskAttachmentVO> uploadTaskAttachments(
+            Long taskId,
+            AuthenticatedUser actor,
+            MultipartFile[] files,
+            List<String> uploadIds
+    ) {
         ensureTeacherOrAdminCanManageTask(taskId, actor);
         List<MultipartFile> incoming = new ArrayList<>();
         if (files != null) {
@@ -233,7 +257,8 @@ public class ReportWorkflowService {
                 }
             }
         }
-        if (incoming.isEmpty()) {
+        List<ChunkedUploadService.CompletedUpload> uploaded = chunkedUploadService.consume(uploadIds, actor);
+        if (incoming.isEmpty() && uploaded.isEmpty()) {
             throw new BusinessException(ApiCode.BAD_REQUEST, HttpStatus.BAD_REQUEST, "请选择要上传的附件");
         }
 
@@ -245,6 +270,20 @@ public class ReportWorkflowService {
             entity.setFilePath(saved.relativePath());
             entity.setFileSize(file.getSize());
             entity.setContentType(file.getContentType());
+            entity.setFileSha256(saved.sha256Hex());
+            entity.setUploadedBy(actor.userId());
+            entity.setUploadedAt(LocalDateTime.now());
+            entity.setCreatedAt(LocalDateTime.now());
+            taskAttachmentMapper.insert(entity);
+        }
+        for (ChunkedUploadService.CompletedUpload upload : uploaded) {
+            TaskAttachmentEntity entity = new TaskAttachmentEntity();
+            entity.setTaskId(taskId);
+            entity.setFileName(upload.fileName());
+            entity.setFilePath(upload.relativePath());
+            entity.setFileSize(upload.fileSize());
+            entity.setContentType(upload.contentType());
+            entity.setFileSha256(upload.sha256());
             entity.setUploadedBy(actor.userId());
             entity.setUploadedAt(LocalDateTime.now());
             entity.setCreatedAt(LocalDateTime.now());
@@ -270,8 +309,8 @@ public class ReportWorkflowService {
             throw new BusinessException(ApiCode.BAD_REQUEST, HttpStatus.NOT_FOUND, "任务附件不存在");
         }
         getTaskForUser(entity.getTaskId(), user);
-        byte[] bytes = storageService.readBytes(entity.getFilePath());
-        return new DownloadData(entity.getFileName(), entity.getContentType(), bytes);
+        return new DownloadData(entity.getFileName(), entity.getContentType(), entity.getFileSha256(),
+                storageService.loadAsResource(entity.getFilePath()));
     }
 
     @Transactional
@@ -306,6 +345,7 @@ public class ReportWorkflowService {
                     .in(TaskProgressAttachmentEntity::getProgressLogId, progressLogIds));
         }
 
+        statisticsRollupService.markTaskDays(taskId);
         if (!submissionIds.isEmpty()) {
             reviewMapper.delete(new LambdaQueryWrapper<ReportReviewEntity>()
                     .in(ReportReviewEntity::getSubmissionId, submissionIds));
@@ -322,6 +362,8 @@ public class ReportWorkflowService {
                 .eq(cn.edu.jnu.labflowreport.persistence.entity.PlagSubmissionBestMatchEntity::getTaskId, taskId));
         plagArtifactFpMapper.delete(new LambdaQueryWrapper<cn.edu.jnu.labflowreport.persistence.entity.PlagArtifactFpEntity>()
                 .eq(cn.edu.jnu.labflowreport.persistence.entity.PlagArtifactFpEntity::getTaskId, taskId));
+        plagCorpusFpMapper.delete(new LambdaQueryWrapper<cn.edu.jnu.labflowreport.persistence.entity.PlagCorpusFpEntity>()
+                .eq(cn.edu.jnu.labflowreport.persistence.entity.PlagCorpusFpEntity::getTaskId, taskId));
         plagTaskRunMapper.delete(new LambdaQueryWrapper<PlagTaskRunEntity>()
                 .eq(PlagTaskRunEntity::getTaskId, taskId));
         taskCompletionMapper.delete(new LambdaQueryWrapper<TaskCompletionEntity>()
@@ -363,6 +405,7 @@ public class ReportWorkflowService {
         entity.setTitle(request.title().trim());
         entity.setUpdatedAt(LocalDateTime.now());
         expTaskMapper.updateById(entity);
+        eventPublisher.publishEvent(new TaskChangedEvent(taskId));
         return getTask(taskId);
     }
 
@@ -387,6 +430,7 @@ public class ReportWorkflowService {
         entity.setUpdatedAt(LocalDateTime.now());
         expTaskMapper.updateById(entity);
         replaceTaskTargetClasses(taskId, request.classIds());
+        eventPublisher.publishEvent(new TaskChangedEvent(taskId));
         return getTask(taskId);
     }
 
@@ -420,6 +464,7 @@ public class ReportWorkflowService {
             entity.setFilePath(saved.relativePath());
             entity.setFileSize(file.getSize());
             entity.setContentType(file.getContentType());
+            entity.setFileSha256(saved.sha256Hex());
             entity.setUploadedBy(actor.userId());
             entity.setUploadedAt(LocalDateTime.now());
             entity.setCreatedAt(LocalDateTime.now());
@@ -450,7 +495,8 @@ public class ReportWorkflowService {
         if (attachment == null || !Objects.equals(attachment.getPrestudyId(), prestudy.getId())) {
             throw new BusinessException(ApiCode.BAD_REQUEST, HttpStatus.NOT_FOUND, "预习附件不存在");
         }
-        return new DownloadData(attachment.getFileName(), attachment.getContentType(), storageService.readBytes(attachment.getFilePath()));
+        return new DownloadData(attachment.getFileName(), attachment.getContentType(), attachment.getFileSha256(),
+                storageService.loadAsResource(attachment.getFilePath()));
     }
 
     public List<TaskPrestudyNotificationVO> listUnreadPrestudies(AuthenticatedUser student) {
@@ -537,6 +583,7 @@ public class ReportWorkflowService {
         entity.setSubmittedAt(LocalDateTime.now());
         entity.setCreatedAt(LocalDateTime.now());
         submissionMapper.insert(entity);
+        statisticsRollupService.markToday();
         return submissionMapper.findMySubmissionsByTask(taskId, student.userId()).stream()
                 .filter(item -> item.getId().equals(entity.getId()))
                 .findFirst()
@@ -549,7 +596,8 @@ public class ReportWorkflowService {
             AuthenticatedUser student,
             String contentMd,
             boolean confirmEmptyContent,
-            MultipartFile[] files
+            MultipartFile[] files,
+            List<String> uploadIds
     ) {
         ensureStudentCanSubmitTask(taskId, student);
 
@@ -564,14 +612,15 @@ public class ReportWorkflowService {
             }
         }
 
-        if (!hasText && incoming.isEmpty()) {
+        List<ChunkedUploadService.CompletedUpload> uploaded = chunkedUploadService.consume(uploadIds, student);
+        if (!hasText && incoming.isEmpty() && uploaded.isEmpty()) {
             throw new BusinessException(ApiCode.BAD_REQUEST, HttpStatus.BAD_REQUEST, "正文为空且未上传附件");
         }
 
         ReportSubmissionEntity prev = findLatestSubmissionEntity(taskId, student.userId());
         String prevNormalized = "";
         String prevSha = "";
-        Set<String> prevAttSha = Set.of();
+        List<ReportAttachmentEntity> prevAttachments = List.of();
         if (prev != null) {
             prevNormalized = normalizeForHash(prev.getContentMd());
             prevSha = prev.getContentSha256();
@@ -581,29 +630,64 @@ public class ReportWorkflowService {
             if (!prevNormalized.isBlank() && !hasText && !confirmEmptyContent) {
                 throw new BusinessException(ApiCode.BAD_REQUEST, HttpStatus.BAD_REQUEST, "本次提交没有正文内容，请确认后再提交");
             }
-            prevAttSha = attachmentMapper.findBySubmissionId(prev.getId()).stream()
-                    .map(this::ensureAttachmentSha256)
-                    .filter(s -> s != null && !s.isBlank())
-                    .collect(Collectors.toSet());
+            prevAttachments = attachmentMapper.findBySubmissionId(prev.getId());
         }
 
         String sha = HashUtils.sha256Hex(normalized.getBytes(java.nio.charset.StandardCharsets.UTF_8));
         boolean contentChanged = (prev == null) || !sha.equalsIgnoreCase(prevSha);
 
-        List<FileWithSha> newFiles = new ArrayList<>();
+        // Each file is read once, into staging, and compared by hash; only new content is kept.
+        List<StagedFile> staged = new ArrayList<>();
+        try {
+            for (MultipartFile f : incoming) {
+                staged.add(new StagedFile(f, storageService.stage(f)));
+            }
+            return submitStaged(taskId, student, content, sha, contentChanged, prevAttachments, staged, uploaded);
+        } finally {
+            staged.forEach(f -> storageService.discard(f.staged()));
+        }
+    }
+
+    private SubmissionVO submitStaged(
+            Long taskId,
+            AuthenticatedUser student,
+            String content,
+            String sha,
+            boolean contentChanged,
+            List<ReportAttachmentEntity> prevAttachments,
+            List<StagedFile> staged,
+            List<ChunkedUploadService.CompletedUpload> uploaded
+    ) {
+        Set<Long> incomingSizes = new java.util.HashSet<>();
+        staged.forEach(f -> incomingSizes.add(f.staged().size()));
+        uploaded.forEach(u -> incomingSizes.add(u.fileSize()));
+        Set<String> prevAttSha = prevAttachments.stream()
+                .map(att -> knownAttachmentSha256(att, incomingSizes))
+                .filter(s -> s != null && !s.isBlank())
+                .collect(Collectors.toSet());
+
+        List<StagedFile> newFiles = new ArrayList<>();
         Set<String> seen = new java.util.HashSet<>();
-        for (MultipartFile f : incoming) {
-            String fileSha = hashMultipartFileSha256(f);
-            if (fileSha.isBlank()) continue;
+        for (StagedFile f : staged) {
+            String fileSha = f.staged().sha256();
             if (seen.contains(fileSha)) continue;
             seen.add(fileSha);
             if (prevAttSha.contains(fileSha)) {
                 continue; // duplicate of previous version
             }
-            newFiles.add(new FileWithSha(f, fileSha));
+            newFiles.add(f);
+        }
+        List<ChunkedUploadService.CompletedUpload> newUploads = new ArrayList<>();
+        for (ChunkedUploadService.CompletedUpload upload : uploaded) {
+            if (!seen.add(upload.sha256()) || prevAttSha.contains(upload.sha256())) {
+                // Not attached, so its blob reference is given back.
+                storageService.delete(upload.relativePath());
+                continue;
+            }
+            newUploads.add(upload);
         }
 
-        boolean hasNewAttachment = !newFiles.isEmpty();
+        boolean hasNewAttachment = !newFiles.isEmpty() || !newUploads.isEmpty();
         if (!contentChanged && !hasNewAttachment) {
             throw new BusinessException(ApiCode.BAD_REQUEST, HttpStatus.BAD_REQUEST, "没有新增内容，禁止提交");
         }
@@ -621,20 +705,33 @@ public class ReportWorkflowService {
         entity.setSubmittedAt(LocalDateTime.now());
         entity.setCreatedAt(LocalDateTime.now());
         submissionMapper.insert(entity);
+        statisticsRollupService.markToday();
 
-        for (FileWithSha f : newFiles) {
-            FileStorageService.SaveResult saved = storageService.saveReportAttachmentWithSha256(entity.getId(), f.file());
+        for (StagedFile f : newFiles) {
+            FileStorageService.SaveResult saved = storageService.promoteReportAttachment(
+                    entity.getId(), f.staged(), f.file().getOriginalFilename());
 
             ReportAttachmentEntity att = new ReportAttachmentEntity();
             att.setSubmissionId(entity.getId());
             att.setFileName(Objects.toString(f.file().getOriginalFilename(), "attachment"));
             att.setFilePath(saved.relativePath());
-            att.setFileSize(f.file().getSize());
+            att.setFileSize(f.staged().size());
             att.setContentType(f.file().getContentType());
             att.setFileSha256(saved.sha256Hex());
             att.setUploadedAt(LocalDateTime.now());
             attachmentMapper.insert(att);
         }
+        for (ChunkedUploadService.CompletedUpload upload : newUploads) {
+            ReportAttachmentEntity att = new ReportAttachmentEntity();
+            att.setSubmissionId(entity.getId());
+            att.setFileName(upload.fileName());
+            att.setFilePath(upload.relativePath());
+            att.setFileSize(upload.fileSize());
+            att.setContentType(upload.contentType());
+            att.setFileSha256(upload.sha256());
+            att.setUploadedAt(LocalDateTime.now());
+            attachmentMapper.insert(att);
+        }
 
         return submissionMapper.findMySubmissionsByTask(taskId, student.userId()).stream()
                 .filter(item -> item.getId().equals(entity.getId()))
@@ -668,6 +765,7 @@ public class ReportWorkflowService {
         task.setStatus(status.toUpperCase(java.util.Locale.ROOT));
         task.setUpdatedAt(LocalDateTime.now());
         expTaskMapper.updateById(task);
+        eventPublisher.publishEvent(new TaskChangedEvent(taskId));
         return getTask(taskId);
     }
 
@@ -690,6 +788,9 @@ public class ReportWorkflowService {
             review.setUpdatedAt(LocalDateTime.now());
             reviewMapper.insert(review);
         } else {
+            if (review.getReviewedAt() != null) {
+                statisticsRollupService.markDay(review.getReviewedAt().toLocalDate());
+            }
             review.setTeacherId(teacher.userId());
             review.setScore(normalizeScore(request.score()));
             review.setComment(request.comment());
@@ -697,6 +798,7 @@ public class ReportWorkflowService {
             review.setUpdatedAt(LocalDateTime.now());
             reviewMapper.updateById(review);
         }
+        statisticsRollupService.markToday();
         replaceReviewIssueTags(review.getId(), issueTags);
         return getReview(submissionId, teacher);
     }
@@ -731,12 +833,7 @@ public class ReportWorkflowService {
         ensureTeacherOrAdminCanManageTask(taskId, operator);
         List<ScoreExportRowVO> rows = submissionMapper.findScoreRowsByTask(taskId);
 
-        ExportRecordEntity record = new ExportRecordEntity();
-        record.setOperatorId(operator.userId());
-        record.setExportType("TASK_SCORE_CSV");
-        record.setConditionJson("{\"taskId\":" + taskId + "}");
-        record.setCreatedAt(LocalDateTime.now());
-        exportRecordMapper.insert(record);
+        recordScoreExport(operator, "TASK_SCORE_CSV", taskId);
 
         StringBuilder csv = new StringBuilder();
         csv.append("studentUsername,studentDisplayName,versionNo,score,comment,submittedAt,reviewedAt\n");
@@ -754,6 +851,13 @@ public class ReportWorkflowService {
 
     @Transactional
     public byte[] exportScoresExcel(Long taskId, AuthenticatedUser operator) {
+        byte[] bytes = buildScoresExcel(taskId, operator);
+        recordScoreExport(operator, "TASK_SCORE_EXCEL", taskId);
+        return bytes;
+    }
+
+    /** The same file as {@link #exportScoresExcel} without logging the export, for export jobs: the job row is the log. */
+    public byte[] buildScoresExcel(Long taskId, AuthenticatedUser operator) {
         ensureTeacherOrAdminCanManageTask(taskId, operator);
         TaskVO task = getTask(taskId);
         List<SubmissionVO> submissions = submissionMapper.findSubmissionsByTask(taskId);
@@ -825,13 +929,6 @@ public class ReportWorkflowService {
                 })
                 .toList();
 
-        ExportRecordEntity record = new ExportRecordEntity();
-        record.setOperatorId(operator.userId());
-        record.setExportType("TASK_SCORE_EXCEL");
-        record.setConditionJson("{\"taskId\":" + taskId + "}");
-        record.setCreatedAt(LocalDateTime.now());
-        exportRecordMapper.insert(record);
-
         return excelExportService.writeWorkbook(List.of(
                 new ExcelExportService.SheetSpec(
                         "筛选条件",
@@ -871,6 +968,15 @@ public class ReportWorkflowService {
         ));
     }
 
+    private void recordScoreExport(AuthenticatedUser operator, String exportType, Long taskId) {
+        ExportRecordEntity record = new ExportRecordEntity();
+        record.setOperatorId(operator.userId());
+        record.setExportType(exportType);
+        record.setConditionJson("{\"taskId\":" + taskId + "}");
+        record.setCreatedAt(LocalDateTime.now());
+        exportRecordMapper.insert(record);
+    }
+
     private void ensureTaskExists(Long taskId) {
         ExpTaskEntity task = expTaskMapper.selectById(taskId);
         if (task == null) {
@@ -988,23 +1094,27 @@ public class ReportWorkflowService {
         return s.trim();
     }
 
-    private String hashMultipartFileSha256(MultipartFile file) {
-        try (var in = file.getInputStream()) {
-            return HashUtils.sha256Hex(in);
-        } catch (Exception e) {
-            throw new BusinessException(ApiCode.BAD_REQUEST, HttpStatus.BAD_REQUEST, "附件读取失败");
-        }
-    }
-
-    private String ensureAttachmentSha256(ReportAttachmentEntity att) {
+    /**
+     * The attachment's hash from its row or its blob path. Only a legacy file with neither, and with the size of
+     * one of the incoming files (anything else cannot be a duplicate), is read back to hash it, once: the hash
+     * is saved on the row.
+     */
+    private String knownAttachmentSha256(ReportAttachmentEntity att, Set<Long> incomingSizes) {
         if (att == null) return "";
         String sha = att.getFileSha256();
         if (sha != null && !sha.isBlank()) {
             return sha;
         }
+        sha = FileStorageService.blobSha256(att.getFilePath());
+        if (sha == null && att.getFileSize() != null && !incomingSizes.contains(att.getFileSize())) {
+            return "";
+        }
         try {
-            byte[] bytes = storageService.readBytes(att.getFilePath());
-            sha = HashUtils.sha256Hex(bytes);
+            if (sha == null) {
+                try (InputStream in = storageService.openStream(att.getFilePath())) {
+                    sha = HashUtils.sha256Hex(in);
+                }
+            }
             attachmentMapper.updateFileSha256(att.getId(), sha);
             return sha;
         } catch (Exception e) {
@@ -1012,7 +1122,7 @@ public class ReportWorkflowService {
         }
     }
 
-    private record FileWithSha(MultipartFile file, String sha256) {
+    private record StagedFile(MultipartFile file, FileStorageService.StagedUpload staged) {
     }
 
     private BigDecimal normalizeScore(BigDecimal score) {
@@ -1255,6 +1365,6 @@ public class ReportWorkflowService {
         }
     }
 
-    public record DownloadData(String filename, String contentType, byte[] bytes) {
+    public record DownloadData(String filename, String contentType, String sha256, Resource resource) {
     }
 }
@@ -0,0 +1,8 @@
+package cn.edu.jnu.labflowreport.workflow.service;
+
+/**
+ * A task was created, or its title, settings, target classes or status changed. Published inside the
+ * transaction that made the change.
+ */
+public record TaskChangedEvent(Long taskId) {
+}
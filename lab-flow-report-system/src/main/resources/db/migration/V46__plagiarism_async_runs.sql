@@ -0,0 +1,22 @@
+ALTER TABLE plag_task_run
+    ADD COLUMN stage VARCHAR(20) NULL;
+
+ALTER TABLE plag_task_run
+    ADD COLUMN progress_done INT NOT NULL DEFAULT 0;
+
+ALTER TABLE plag_task_run
+    ADD COLUMN progress_total INT NOT NULL DEFAULT 0;
+
+ALTER TABLE plag_task_run
+    ADD COLUMN worker_id VARCHAR(64) NULL;
+
+ALTER TABLE plag_task_run
+    ADD COLUMN heartbeat_at TIMESTAMP NULL;
+
+ALTER TABLE plag_task_run
+    ADD COLUMN error_message VARCHAR(500) NULL;
+
+ALTER TABLE plag_task_run
+    ADD COLUMN created_by BIGINT NULL;
+
+CREATE INDEX idx_plag_run_status_heartbeat ON plag_task_run (status, heartbeat_at);
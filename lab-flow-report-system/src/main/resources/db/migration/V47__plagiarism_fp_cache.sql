@@ -0,0 +1,10 @@
+CREATE TABLE IF NOT EXISTS plag_fp_cache (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    sha256 CHAR(64) NOT NULL,
+    algo VARCHAR(20) NOT NULL,
+    algo_version VARCHAR(32) NOT NULL,
+    fp64_hex VARCHAR(16) NOT NULL,
+    created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
+
+CREATE UNIQUE INDEX uk_plag_fp_cache_key ON plag_fp_cache (sha256, algo, algo_version);
@@ -0,0 +1,5 @@
+ALTER TABLE plag_task_run
+    ADD COLUMN run_mode VARCHAR(20) NOT NULL DEFAULT 'FULL';
+
+ALTER TABLE plag_task_run
+    ADD COLUMN base_run_id BIGINT NULL;
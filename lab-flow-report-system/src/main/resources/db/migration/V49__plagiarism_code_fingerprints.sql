@@ -0,0 +1,7 @@
+ALTER TABLE plag_artifact_fp
+    ADD COLUMN fp_set LONGTEXT NULL;
+
+ALTER TABLE plag_fp_cache
+    ADD COLUMN fp_set LONGTEXT NULL;
+
+ALTER TABLE plag_task_run MODIFY COLUMN algo_version VARCHAR(64) NOT NULL;
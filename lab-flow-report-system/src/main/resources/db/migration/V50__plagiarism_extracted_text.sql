@@ -0,0 +1,11 @@
+CREATE TABLE IF NOT EXISTS plag_extracted_text (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    sha256 CHAR(64) NOT NULL,
+    extractor_version VARCHAR(32) NOT NULL,
+    text_content LONGTEXT NOT NULL,
+    char_len INT NOT NULL DEFAULT 0,
+    truncated BOOLEAN NOT NULL DEFAULT FALSE,
+    created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
+
+CREATE UNIQUE INDEX uk_plag_extracted_text_key ON plag_extracted_text (sha256, extractor_version);
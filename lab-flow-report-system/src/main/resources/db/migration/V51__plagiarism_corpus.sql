@@ -0,0 +1,26 @@
+ALTER TABLE plag_task_run
+    ADD COLUMN scope VARCHAR(20) NOT NULL DEFAULT 'TASK';
+
+CREATE TABLE IF NOT EXISTS plag_corpus_fp (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    algo_key VARCHAR(96) NOT NULL,
+    fp64 BIGINT NOT NULL,
+    band0 INT NOT NULL,
+    band1 INT NOT NULL,
+    band2 INT NOT NULL,
+    band3 INT NOT NULL,
+    task_id BIGINT NOT NULL,
+    submission_id BIGINT NOT NULL,
+    student_id BIGINT NOT NULL,
+    attachment_id BIGINT NULL,
+    artifact_type VARCHAR(30) NOT NULL,
+    file_name VARCHAR(255),
+    created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
+
+CREATE INDEX idx_plag_corpus_band0 ON plag_corpus_fp (algo_key, band0);
+CREATE INDEX idx_plag_corpus_band1 ON plag_corpus_fp (algo_key, band1);
+CREATE INDEX idx_plag_corpus_band2 ON plag_corpus_fp (algo_key, band2);
+CREATE INDEX idx_plag_corpus_band3 ON plag_corpus_fp (algo_key, band3);
+CREATE INDEX idx_plag_corpus_submission ON plag_corpus_fp (submission_id);
+CREATE INDEX idx_plag_corpus_task ON plag_corpus_fp (task_id);
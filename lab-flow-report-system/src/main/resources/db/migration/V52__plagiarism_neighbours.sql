@@ -0,0 +1,2 @@
+ALTER TABLE plag_submission_best_match
+    ADD COLUMN neighbours LONGTEXT NULL;
@@ -0,0 +1,14 @@
+ALTER TABLE plag_task_run
+    ADD COLUMN pinned BOOLEAN NOT NULL DEFAULT FALSE;
+
+ALTER TABLE plag_task_run
+    ADD COLUMN compacted_at TIMESTAMP NULL;
+
+CREATE INDEX idx_plag_run_compacted_task ON plag_task_run (compacted_at, task_id);
+
+-- New rows store the fingerprint as a signed BIGINT; rows written before this migration keep their hex value
+-- until the compaction job converts them.
+ALTER TABLE plag_artifact_fp
+    ADD COLUMN fp64 BIGINT NULL;
+
+ALTER TABLE plag_artifact_fp MODIFY COLUMN fp64_hex VARCHAR(16) NULL;
@@ -0,0 +1,7 @@
+-- Task and prestudy attachments were hashed on upload but the digest was dropped; keep it as the download ETag
+-- like report and progress attachments. Older rows stay NULL and fall back to a weak ETag.
+ALTER TABLE task_attachment
+    ADD COLUMN file_sha256 VARCHAR(64) NULL;
+
+ALTER TABLE task_prestudy_attachment
+    ADD COLUMN file_sha256 VARCHAR(64) NULL;
@@ -0,0 +1,10 @@
+-- Content-addressed attachment storage: one file per distinct sha256 under blobs/ab/cd/<sha256>, shared by
+-- every attachment row that points at it. ref_count is the number of such rows; released_at is set when it
+-- drops to zero.
+CREATE TABLE IF NOT EXISTS storage_blob (
+    sha256 VARCHAR(64) PRIMARY KEY,
+    file_size BIGINT NOT NULL,
+    ref_count INT NOT NULL DEFAULT 0,
+    created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    released_at TIMESTAMP NULL
+);
@@ -0,0 +1,22 @@
+-- Chunked, resumable uploads: the client appends chunks at received_bytes (the last committed offset) to a
+-- staging file, then completes the session, which moves the file into the blob store. A completed session is
+-- consumed once by the request that attaches it to a report, task or progress step.
+CREATE TABLE IF NOT EXISTS upload_session (
+    id VARCHAR(32) PRIMARY KEY,
+    owner_id BIGINT NOT NULL,
+    file_name VARCHAR(255) NOT NULL,
+    content_type VARCHAR(255),
+    file_size BIGINT NOT NULL,
+    expected_sha256 VARCHAR(64),
+    chunk_size INT NOT NULL,
+    received_bytes BIGINT NOT NULL DEFAULT 0,
+    status VARCHAR(16) NOT NULL,
+    sha256 VARCHAR(64),
+    relative_path VARCHAR(500),
+    created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    updated_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    expires_at TIMESTAMP NOT NULL,
+    CONSTRAINT fk_upload_session_owner FOREIGN KEY (owner_id) REFERENCES sys_user (id)
+);
+
+CREATE INDEX idx_upload_session_status_expires ON upload_session (status, expires_at);
@@ -0,0 +1,21 @@
+-- The storage reconciler looks stored files up by path in every table that references one, a page of paths at
+-- a time; without these indexes each page would scan the attachment tables.
+CREATE INDEX idx_report_attachment_file_path ON report_attachment (file_path);
+CREATE INDEX idx_task_attachment_file_path ON task_attachment (file_path);
+CREATE INDEX idx_task_prestudy_attachment_file_path ON task_prestudy_attachment (file_path);
+CREATE INDEX idx_task_progress_attachment_path ON task_progress_attachment (relative_path);
+CREATE INDEX idx_upload_session_relative_path ON upload_session (relative_path);
+
+-- Attachment counts and bytes per task (scope_type TASK) and per experiment course (COURSE), recomputed from
+-- the attachment rows after each reconciler pass so admins can read usage without a walk over the files.
+-- Bytes are what the attachments add up to; identical files shared as one blob are counted in each scope.
+CREATE TABLE IF NOT EXISTS storage_usage (
+    scope_type VARCHAR(16) NOT NULL,
+    scope_id BIGINT NOT NULL,
+    file_count BIGINT NOT NULL DEFAULT 0,
+    total_bytes BIGINT NOT NULL DEFAULT 0,
+    refreshed_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    PRIMARY KEY (scope_type, scope_id)
+);
+
+CREATE INDEX idx_storage_usage_bytes ON storage_usage (scope_type, total_bytes);
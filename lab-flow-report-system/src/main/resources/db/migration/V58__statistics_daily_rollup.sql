@@ -0,0 +1,75 @@
+-- The rollup refresh recomputes one day at a time from the raw tables; these make "everything on day X" a range
+-- scan instead of a full scan.
+CREATE INDEX idx_report_submission_submitted_at ON report_submission (submitted_at);
+CREATE INDEX idx_report_review_reviewed_at ON report_review (reviewed_at);
+CREATE INDEX idx_task_completion_confirmed_at ON task_completion (confirmed_at);
+CREATE INDEX idx_task_device_request_created_at ON task_device_request (created_at);
+
+-- Daily task activity per (day, task, student class), as the statistics dashboards count it: submissions by
+-- submitted_at, reviews by reviewed_at, confirmed completions by confirmed_at and device requests by created_at
+-- (split by their current status). class_id 0 stands for students without a class.
+CREATE TABLE IF NOT EXISTS stat_daily_task (
+    stat_day DATE NOT NULL,
+    task_id BIGINT NOT NULL,
+    class_id BIGINT NOT NULL,
+    teacher_id BIGINT NOT NULL,
+    submission_count BIGINT NOT NULL DEFAULT 0,
+    review_count BIGINT NOT NULL DEFAULT 0,
+    review_score_sum DECIMAL(14,2) NOT NULL DEFAULT 0,
+    completion_count BIGINT NOT NULL DEFAULT 0,
+    device_request_count BIGINT NOT NULL DEFAULT 0,
+    device_pending_count BIGINT NOT NULL DEFAULT 0,
+    device_approved_count BIGINT NOT NULL DEFAULT 0,
+    device_borrowed_count BIGINT NOT NULL DEFAULT 0,
+    device_returned_count BIGINT NOT NULL DEFAULT 0,
+    refreshed_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    PRIMARY KEY (stat_day, task_id, class_id)
+);
+
+CREATE INDEX idx_stat_daily_task_teacher ON stat_daily_task (teacher_id, stat_day);
+CREATE INDEX idx_stat_daily_task_class ON stat_daily_task (class_id, stat_day);
+CREATE INDEX idx_stat_daily_task_task ON stat_daily_task (task_id);
+
+-- Attendance per (day the session started, session, roster class): checked-in and expected students. A class
+-- schedule session has one row for its class; an experiment course session one row per class on its roster, or a
+-- class 0 row when it has no roster.
+CREATE TABLE IF NOT EXISTS stat_daily_attendance (
+    stat_day DATE NOT NULL,
+    session_id BIGINT NOT NULL,
+    class_id BIGINT NOT NULL,
+    teacher_id BIGINT NOT NULL,
+    experiment_course_id BIGINT NULL,
+    checked_in_count BIGINT NOT NULL DEFAULT 0,
+    total_count BIGINT NOT NULL DEFAULT 0,
+    refreshed_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    PRIMARY KEY (stat_day, session_id, class_id)
+);
+
+CREATE INDEX idx_stat_daily_attendance_teacher ON stat_daily_attendance (teacher_id, stat_day);
+CREATE INDEX idx_stat_daily_attendance_class ON stat_daily_attendance (class_id, stat_day);
+
+-- Days whose rollup rows are stale. Writers append a marker in their own transaction; a refresh of the day
+-- removes the markers and recomputes its rows. Append-only so that concurrent writers never contend on a row.
+CREATE TABLE IF NOT EXISTS stat_rollup_dirty (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    stat_day DATE NOT NULL,
+    marked_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
+
+CREATE INDEX idx_stat_rollup_dirty_day ON stat_rollup_dirty (stat_day);
+
+-- Existing history: every day with activity starts out dirty and is filled in by the first refresh.
+INSERT INTO stat_rollup_dirty (stat_day)
+SELECT days.stat_day
+FROM (
+    SELECT CAST(submitted_at AS DATE) AS stat_day FROM report_submission
+    UNION
+    SELECT CAST(reviewed_at AS DATE) FROM report_review
+    UNION
+    SELECT CAST(confirmed_at AS DATE) FROM task_completion WHERE confirmed_at IS NOT NULL
+    UNION
+    SELECT CAST(created_at AS DATE) FROM task_device_request
+    UNION
+    SELECT CAST(started_at AS DATE) FROM attendance_session
+) days
+WHERE days.stat_day IS NOT NULL;
@@ -0,0 +1,41 @@
+-- export_record doubles as the export job table. Rows written by the synchronous endpoints only log an export
+-- and keep the defaults (DONE, no file); a job row carries its request key from submission on, and a file once
+-- it is DONE.
+ALTER TABLE export_record
+    ADD COLUMN status VARCHAR(16) NOT NULL DEFAULT 'DONE';
+
+ALTER TABLE export_record
+    ADD COLUMN request_key VARCHAR(64) NULL;
+
+ALTER TABLE export_record
+    ADD COLUMN file_name VARCHAR(255) NULL;
+
+ALTER TABLE export_record
+    ADD COLUMN file_path VARCHAR(512) NULL;
+
+ALTER TABLE export_record
+    ADD COLUMN content_type VARCHAR(128) NULL;
+
+ALTER TABLE export_record
+    ADD COLUMN size_bytes BIGINT NULL;
+
+ALTER TABLE export_record
+    ADD COLUMN duration_ms BIGINT NULL;
+
+ALTER TABLE export_record
+    ADD COLUMN error_message VARCHAR(512) NULL;
+
+ALTER TABLE export_record
+    ADD COLUMN started_at TIMESTAMP NULL;
+
+ALTER TABLE export_record
+    ADD COLUMN finished_at TIMESTAMP NULL;
+
+ALTER TABLE export_record
+    ADD COLUMN expires_at TIMESTAMP NULL;
+
+-- Coalescing looks for a queued or running job with the same key; cleanup scans by status and age.
+CREATE INDEX idx_export_record_request_key ON export_record (request_key, status);
+CREATE INDEX idx_export_record_status ON export_record (status, created_at);
+CREATE INDEX idx_export_record_operator ON export_record (operator_id, created_at);
+CREATE INDEX idx_export_record_file_path ON export_record (file_path);
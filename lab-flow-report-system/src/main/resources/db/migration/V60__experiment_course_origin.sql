@@ -0,0 +1,21 @@
+-- Offerings of one course in different semesters point at the first offering; it has no origin itself. The
+-- plagiarism COURSE scope matches tasks across the offerings that share an origin.
+ALTER TABLE experiment_course
+    ADD COLUMN origin_course_id BIGINT NULL;
+
+CREATE INDEX idx_experiment_course_origin ON experiment_course (origin_course_id);
+
+-- Existing offerings are linked as the scope used to see them: the same teacher's courses with an identical title.
+UPDATE experiment_course
+SET origin_course_id = (
+    SELECT MIN(o.id)
+    FROM (SELECT id, title, teacher_id FROM experiment_course) o
+    WHERE o.title = experiment_course.title
+      AND o.teacher_id = experiment_course.teacher_id
+)
+WHERE id > (
+    SELECT MIN(o.id)
+    FROM (SELECT id, title, teacher_id FROM experiment_course) o
+    WHERE o.title = experiment_course.title
+      AND o.teacher_id = experiment_course.teacher_id
+);
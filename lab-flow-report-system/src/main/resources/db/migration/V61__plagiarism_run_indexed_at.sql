@@ -0,0 +1,16 @@
+-- A DONE run whose fingerprints are all in plag_corpus_fp. Runs index their chunks as they go and are marked when
+-- they finish; the corpus backfill picks up DONE runs that are not marked.
+ALTER TABLE plag_task_run
+    ADD COLUMN indexed_at TIMESTAMP NULL;
+
+CREATE INDEX idx_plag_run_indexed_status ON plag_task_run (indexed_at, status);
+
+-- Only each task's latest DONE run is worth indexing after the fact; older runs are superseded by it.
+UPDATE plag_task_run
+SET indexed_at = CURRENT_TIMESTAMP
+WHERE status <> 'DONE'
+   OR id <> (
+       SELECT MAX(d.id)
+       FROM (SELECT id, task_id, status FROM plag_task_run) d
+       WHERE d.task_id = plag_task_run.task_id AND d.status = 'DONE'
+   );
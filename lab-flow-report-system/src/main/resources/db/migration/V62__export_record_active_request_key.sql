@@ -0,0 +1,18 @@
+-- At most one queued or running job per request key, whichever node submits it: the generated column holds the
+-- key while the job is active and NULL otherwise, and NULLs do not collide in a unique index.
+UPDATE export_record
+SET status = 'FAILED', error_message = '重复的导出任务'
+WHERE status IN ('QUEUED', 'RUNNING')
+  AND request_key IS NOT NULL
+  AND id < (
+    SELECT MAX(o.id)
+    FROM (SELECT id, request_key, status FROM export_record) o
+    WHERE o.request_key = export_record.request_key
+      AND o.status IN ('QUEUED', 'RUNNING')
+);
+
+ALTER TABLE export_record
+    ADD COLUMN active_request_key VARCHAR(64)
+        GENERATED ALWAYS AS (CASE WHEN status IN ('QUEUED', 'RUNNING') THEN request_key END);
+
+CREATE UNIQUE INDEX uk_export_record_active_request_key ON export_record (active_request_key);
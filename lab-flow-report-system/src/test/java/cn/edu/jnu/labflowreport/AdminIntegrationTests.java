@@ -2,6 +2,7 @@ package cn.edu.jnu.labflowreport;
 
 import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.Matchers.greaterThan;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
@@ -11,14 +12,24 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
+import cn.edu.jnu.labflowreport.persistence.mapper.AuditLogMapper;
 import com.jayway.jsonpath.JsonPath;
+import java.io.ByteArrayInputStream;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.ResultSetType;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.MvcResult;
 
@@ -29,6 +40,12 @@ class AdminIntegrationTests {
     @Autowired
     private MockMvc mockMvc;
 
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private SqlSessionFactory sqlSessionFactory;
+
     @Test
     void teacherShouldBeForbiddenFromAdminApis() throws Exception {
         String teacherToken = login("teacher", "teacher123");
@@ -147,6 +164,73 @@ class AdminIntegrationTests {
                 .andExpect(content().string(containsString(username)));
     }
 
+    @Test
+    void auditLogExcelExportShouldStreamTheFilteredLog() throws Exception {
+        String adminToken = login("admin", "admin123");
+        for (int i = 0; i < 2; i++) {
+            mockMvc.perform(get("/api/admin/semesters/export/excel")
+                            .header(HttpHeaders.AUTHORIZATION, "Bearer " + adminToken))
+                    .andExpect(status().isOk());
+        }
+        MvcResult listed = mockMvc.perform(get("/api/admin/audit-logs")
+                        .header(HttpHeaders.AUTHORIZATION, "Bearer " + adminToken)
+                        .param("action", "SEMESTER_EXPORT")
+                        .param("size", "1"))
+                .andExpect(status().isOk())
+                .andReturn();
+        int total = ((Number) JsonPath.read(listed.getResponse().getContentAsString(), "$.data.total")).intValue();
+
+        MvcResult exported = mockMvc.perform(get("/api/admin/audit-logs/export/excel")
+                        .header(HttpHeaders.AUTHORIZATION, "Bearer " + adminToken)
+                        .param("action", "SEMESTER_EXPORT"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("application/vnd.openxmlformats-officedocument.spreadsheetml.sheet"))
+                .andExpect(result -> assertTrue(result.getResponse().getHeader(HttpHeaders.CONTENT_DISPOSITION).contains("audit-logs.xlsx")))
+                .andReturn();
+        try (XSSFWorkbook workbook = new XSSFWorkbook(new ByteArrayInputStream(exported.getResponse().getContentAsByteArray()))) {
+            Sheet sheet = workbook.getSheet("审计日志");
+            assertEquals("操作者用户名", sheet.getRow(0).getCell(2).getStringCellValue());
+            assertTrue(total >= 2);
+            assertEquals(total, sheet.getLastRowNum());
+            assertEquals("SEMESTER_EXPORT", sheet.getRow(1).getCell(3).getStringCellValue());
+        }
+
+        mockMvc.perform(get("/api/admin/audit-logs/export/excel")
+                        .header(HttpHeaders.AUTHORIZATION, "Bearer " + login("teacher", "teacher123")))
+                .andExpect(status().isForbidden())
+                .andExpect(jsonPath("$.code").exists());
+    }
+
+    @Test
+    void auditLogExportShouldReadThroughAForwardOnlyCursor() throws Exception {
+        MappedStatement statement = sqlSessionFactory.getConfiguration()
+                .getMappedStatement(AuditLogMapper.class.getName() + ".streamForExport");
+        assertEquals(ResultSetType.FORWARD_ONLY, statement.getResultSetType());
+        assertEquals(AuditLogMapper.EXPORT_FETCH_SIZE, statement.getFetchSize());
+
+        // More rows than two fetches, and exactly those rows in the file.
+        int rows = 2 * AuditLogMapper.EXPORT_FETCH_SIZE + 1;
+        List<Object[]> batch = new ArrayList<>();
+        for (int i = 0; i < rows; i++) {
+            batch.add(new Object[] {(long) i});
+        }
+        jdbcTemplate.batchUpdate("""
+                INSERT INTO audit_log (actor_id, actor_username, action, target_type, target_id, detail_json, created_at)
+                SELECT id, username, 'CURSOR_EXPORT_TEST', 'audit_log', ?, NULL, CURRENT_TIMESTAMP
+                FROM sys_user WHERE username = 'admin'
+                """, batch);
+        MvcResult exported = mockMvc.perform(get("/api/admin/audit-logs/export/excel")
+                        .header(HttpHeaders.AUTHORIZATION, "Bearer " + login("admin", "admin123"))
+                        .param("action", "CURSOR_EXPORT_TEST"))
+                .andExpect(status().isOk())
+                .andReturn();
+        try (XSSFWorkbook workbook = new XSSFWorkbook(new ByteArrayInputStream(exported.getResponse().getContentAsByteArray()))) {
+            Sheet sheet = workbook.getSheet("审计日志");
+            assertEquals(rows, sheet.getLastRowNum());
+            assertEquals(String.valueOf(rows - 1), sheet.getRow(1).getCell(5).getStringCellValue());
+        }
+    }
+
     @Test
     void usersExportShouldHaveBom() throws Exception {
         String adminToken = login("admin", "admin123");
@@ -10,9 +10,11 @@ import static org.springframework.test.web.servlet.request.MockMvcRequestBuilder
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
+import cn.edu.jnu.labflowreport.common.util.HashUtils;
 import com.jayway.jsonpath.JsonPath;
 import java.nio.file.Files;
 import java.nio.file.Path;
@@ -188,10 +190,27 @@ class AuthAndWorkflowIntegrationTests {
                 .andExpect(jsonPath("$.code").value(0))
                 .andExpect(jsonPath("$.data[0].fileName").value("test.txt"));
 
-        mockMvc.perform(get("/api/attachments/" + attachmentId + "/download")
+        MvcResult downloadResult = mockMvc.perform(get("/api/attachments/" + attachmentId + "/download")
                         .header(HttpHeaders.AUTHORIZATION, "Bearer " + teacherToken))
                 .andExpect(status().isOk())
-                .andExpect(result -> assertTrue(result.getResponse().getContentAsByteArray().length > 0));
+                .andExpect(header().string(HttpHeaders.ACCEPT_RANGES, "bytes"))
+                .andExpect(content().string("hello attachment"))
+                .andReturn();
+        String eTag = downloadResult.getResponse().getHeader(HttpHeaders.ETAG);
+        assertTrue(eTag != null && eTag.matches("\"[0-9a-f]{64}\""), "ETag is the sha256: " + eTag);
+
+        mockMvc.perform(get("/api/attachments/" + attachmentId + "/download")
+                        .header(HttpHeaders.AUTHORIZATION, "Bearer " + teacherToken)
+                        .header(HttpHeaders.RANGE, "bytes=6-"))
+                .andExpect(status().isPartialContent())
+                .andExpect(header().string(HttpHeaders.CONTENT_RANGE, "bytes 6-15/16"))
+                .andExpect(content().string("attachment"));
+
+        mockMvc.perform(get("/api/attachments/" + attachmentId + "/download")
+                        .header(HttpHeaders.AUTHORIZATION, "Bearer " + teacherToken)
+                        .header(HttpHeaders.IF_NONE_MATCH, eTag))
+                .andExpect(status().isNotModified())
+                .andExpect(result -> assertTrue(result.getResponse().getContentAsByteArray().length == 0));
 
         mockMvc.perform(get("/api/submissions/" + submissionId + "/content/download")
                         .header(HttpHeaders.AUTHORIZATION, "Bearer " + teacherToken))
@@ -445,7 +464,8 @@ class AuthAndWorkflowIntegrationTests {
                 .andReturn();
         long taskId = ((Number) JsonPath.read(taskRes.getResponse().getContentAsString(), "$.data.id")).longValue();
 
-        MockMultipartFile taskFile = new MockMultipartFile("files", "qc-guide.txt", "text/plain", "guide".getBytes());
+        byte[] taskBytes = ("guide " + taskTitle).getBytes();
+        MockMultipartFile taskFile = new MockMultipartFile("files", "qc-guide.txt", "text/plain", taskBytes);
         mockMvc.perform(multipart("/api/tasks/" + taskId + "/attachments")
                         .file(taskFile)
                         .header(HttpHeaders.AUTHORIZATION, "Bearer " + teacherToken))
@@ -470,7 +490,8 @@ class AuthAndWorkflowIntegrationTests {
                                 """))
                 .andExpect(status().isOk());
 
-        MockMultipartFile reportFile = new MockMultipartFile("file", "answer.txt", "text/plain", "answer".getBytes());
+        byte[] reportBytes = ("answer " + taskTitle).getBytes();
+        MockMultipartFile reportFile = new MockMultipartFile("file", "answer.txt", "text/plain", reportBytes);
         mockMvc.perform(multipart("/api/submissions/" + submissionAId + "/attachments")
                         .file(reportFile)
                         .header(HttpHeaders.AUTHORIZATION, "Bearer " + studentAToken))
@@ -485,14 +506,13 @@ class AuthAndWorkflowIntegrationTests {
                                 """))
                 .andExpect(status().isOk());
 
-        MockMultipartFile progressImage = new MockMultipartFile("files", "step.png", "image/png", "step".getBytes());
-        MvcResult progressRes = mockMvc.perform(multipart("/api/tasks/" + taskId + "/progress")
+        byte[] progressBytes = ("step " + taskTitle).getBytes();
+        MockMultipartFile progressImage = new MockMultipartFile("files", "step.png", "image/png", progressBytes);
+        mockMvc.perform(multipart("/api/tasks/" + taskId + "/progress")
                         .file(progressImage)
                         .param("content", "步骤1")
                         .header(HttpHeaders.AUTHORIZATION, "Bearer " + studentAToken))
-                .andExpect(status().isOk())
-                .andReturn();
-        long progressLogId = ((Number) JsonPath.read(progressRes.getResponse().getContentAsString(), "$.data.id")).longValue();
+                .andExpect(status().isOk());
 
         mockMvc.perform(post("/api/tasks/" + taskId + "/completion")
                         .header(HttpHeaders.AUTHORIZATION, "Bearer " + studentAToken))
@@ -530,15 +550,13 @@ class AuthAndWorkflowIntegrationTests {
                         .header(HttpHeaders.AUTHORIZATION, "Bearer " + teacherToken))
                 .andExpect(status().isOk());
 
-        Path taskAttachmentDir = Path.of("target", "test-uploads", "task-attachments", String.valueOf(taskId));
-        Path reportAttachmentDir = Path.of("target", "test-uploads", "report-attachments", String.valueOf(submissionAId));
-        Path progressAttachmentDir = Path.of("target", "test-uploads", "task-progress-attachments", String.valueOf(progressLogId));
-        long taskAttachmentFilesBeforeDelete = countRegularFiles(taskAttachmentDir);
-        long reportAttachmentFilesBeforeDelete = countRegularFiles(reportAttachmentDir);
-        long progressAttachmentFilesBeforeDelete = countRegularFiles(progressAttachmentDir);
-        assertTrue(taskAttachmentFilesBeforeDelete > 0);
-        assertTrue(reportAttachmentFilesBeforeDelete > 0);
-        assertTrue(progressAttachmentFilesBeforeDelete > 0);
+        // Uploads are stored once per content under blobs/ab/cd/<sha256>.
+        Path taskAttachmentBlob = blobFile(taskBytes);
+        Path reportAttachmentBlob = blobFile(reportBytes);
+        Path progressAttachmentBlob = blobFile(progressBytes);
+        assertTrue(Files.isRegularFile(taskAttachmentBlob));
+        assertTrue(Files.isRegularFile(reportAttachmentBlob));
+        assertTrue(Files.isRegularFile(progressAttachmentBlob));
 
         mockMvc.perform(delete("/api/tasks/" + taskId)
                         .header(HttpHeaders.AUTHORIZATION, "Bearer " + otherTeacherToken))
@@ -559,9 +577,9 @@ class AuthAndWorkflowIntegrationTests {
                 .andExpect(status().isOk())
                 .andExpect(content().string(not(containsString(taskTitle))));
 
-        assertTrue(countRegularFiles(taskAttachmentDir) < taskAttachmentFilesBeforeDelete);
-        assertTrue(countRegularFiles(reportAttachmentDir) < reportAttachmentFilesBeforeDelete);
-        assertTrue(countRegularFiles(progressAttachmentDir) < progressAttachmentFilesBeforeDelete);
+        assertFalse(Files.exists(taskAttachmentBlob));
+        assertFalse(Files.exists(reportAttachmentBlob));
+        assertFalse(Files.exists(progressAttachmentBlob));
 
         String adminDeleteTitle = "E2E演示任务_管理员删除_" + System.currentTimeMillis();
         MvcResult adminDeleteTask = mockMvc.perform(post("/api/tasks")
@@ -631,12 +649,8 @@ class AuthAndWorkflowIntegrationTests {
         }
     }
 
-    private long countRegularFiles(Path dir) throws Exception {
-        if (!Files.exists(dir)) {
-            return 0;
-        }
-        try (Stream<Path> stream = Files.walk(dir)) {
-            return stream.filter(Files::isRegularFile).count();
-        }
+    private Path blobFile(byte[] content) {
+        String sha256 = HashUtils.sha256Hex(content);
+        return Path.of("target", "test-uploads", "blobs", sha256.substring(0, 2), sha256.substring(2, 4), sha256);
     }
 }
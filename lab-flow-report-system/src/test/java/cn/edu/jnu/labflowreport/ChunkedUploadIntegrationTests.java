@@ -0,0 +1,160 @@
+package cn.edu.jnu.labflowreport;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.multipart;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import cn.edu.jnu.labflowreport.common.util.HashUtils;
+import com.jayway.jsonpath.JsonPath;
+import java.util.Arrays;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.ResultActions;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+class ChunkedUploadIntegrationTests {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Test
+    void chunkedUploadShouldResumeAndAttachToASubmission() throws Exception {
+        String teacherToken = login("teacher", "teacher123");
+        String studentToken = login("student", "student123");
+        MvcResult taskRes = mockMvc.perform(post("/api/tasks")
+                        .header(HttpHeaders.AUTHORIZATION, "Bearer " + teacherToken)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("""
+                                {"title":"分片上传测试","description":"chunked upload","classIds":[1]}
+                                """))
+                .andExpect(status().isOk())
+                .andReturn();
+        Number taskIdNum = JsonPath.read(taskRes.getResponse().getContentAsString(), "$.data.id");
+        long taskId = taskIdNum.longValue();
+
+        byte[] data = new byte[10_000];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) (i * 31 + System.nanoTime() % 7);
+        }
+        // Names longer than the upload_session column are rejected up front.
+        mockMvc.perform(post("/api/uploads")
+                        .header(HttpHeaders.AUTHORIZATION, "Bearer " + studentToken)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("""
+                                {"fileName":"%s.bin","fileSize":%d}
+                                """.formatted("a".repeat(252), data.length)))
+                .andExpect(status().isBadRequest());
+        MvcResult init = mockMvc.perform(post("/api/uploads")
+                        .header(HttpHeaders.AUTHORIZATION, "Bearer " + studentToken)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("""
+                                {"fileName":"测量数据.bin","contentType":"application/octet-stream","fileSize":%d,"sha256":"%s"}
+                                """.formatted(data.length, HashUtils.sha256Hex(data))))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.data.status").value("UPLOADING"))
+                .andExpect(jsonPath("$.data.receivedBytes").value(0))
+                .andReturn();
+        String uploadId = JsonPath.read(init.getResponse().getContentAsString(), "$.data.uploadId");
+
+        putChunk(studentToken, uploadId, 0, Arrays.copyOfRange(data, 0, 4000), null)
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.data.receivedBytes").value(4000));
+
+        // A chunk that arrives corrupted is rejected and the committed offset stays where it was.
+        byte[] second = Arrays.copyOfRange(data, 4000, 8000);
+        putChunk(studentToken, uploadId, 4000, second, "0".repeat(64))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/api/uploads/" + uploadId)
+                        .header(HttpHeaders.AUTHORIZATION, "Bearer " + studentToken))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.data.receivedBytes").value(4000));
+        putChunk(studentToken, uploadId, 0, Arrays.copyOfRange(data, 0, 4000), null)
+                .andExpect(status().isConflict());
+
+        putChunk(studentToken, uploadId, 4000, second, HashUtils.sha256Hex(second))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.data.receivedBytes").value(8000));
+        complete(studentToken, uploadId).andExpect(status().isBadRequest());
+
+        putChunk(studentToken, uploadId, 8000, Arrays.copyOfRange(data, 8000, data.length), null)
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.data.receivedBytes").value(data.length));
+        complete(studentToken, uploadId)
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.data.status").value("COMPLETED"))
+                .andExpect(jsonPath("$.data.sha256").value(HashUtils.sha256Hex(data)));
+
+        // Sessions are private to their owner.
+        mockMvc.perform(get("/api/uploads/" + uploadId)
+                        .header(HttpHeaders.AUTHORIZATION, "Bearer " + teacherToken))
+                .andExpect(status().isNotFound());
+
+        MvcResult submitted = mockMvc.perform(multipart("/api/tasks/" + taskId + "/submissions/multipart")
+                        .param("contentMd", "# 分片上传\n附件见数据文件")
+                        .param("uploadIds", uploadId)
+                        .header(HttpHeaders.AUTHORIZATION, "Bearer " + studentToken))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.code").value(0))
+                .andReturn();
+        Number submissionId = JsonPath.read(submitted.getResponse().getContentAsString(), "$.data.id");
+
+        MvcResult attachments = mockMvc.perform(get("/api/submissions/" + submissionId.longValue() + "/attachments")
+                        .header(HttpHeaders.AUTHORIZATION, "Bearer " + teacherToken))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.data.length()").value(1))
+                .andExpect(jsonPath("$.data[0].fileName").value("测量数据.bin"))
+                .andReturn();
+        Number attachmentId = JsonPath.read(attachments.getResponse().getContentAsString(), "$.data[0].id");
+        MvcResult download = mockMvc.perform(get("/api/attachments/" + attachmentId.longValue() + "/download")
+                        .header(HttpHeaders.AUTHORIZATION, "Bearer " + teacherToken))
+                .andExpect(status().isOk())
+                .andExpect(content().bytes(data))
+                .andReturn();
+        assertEquals("\"" + HashUtils.sha256Hex(data) + "\"", download.getResponse().getHeader(HttpHeaders.ETAG));
+
+        // A completed upload is attached once.
+        mockMvc.perform(multipart("/api/tasks/" + taskId + "/submissions/multipart")
+                        .param("contentMd", "# 分片上传\n第二版")
+                        .param("uploadIds", uploadId)
+                        .header(HttpHeaders.AUTHORIZATION, "Bearer " + studentToken))
+                .andExpect(status().isConflict());
+    }
+
+    private ResultActions putChunk(String token, String uploadId, long offset, byte[] chunk, String sha256) throws Exception {
+        var request = put("/api/uploads/" + uploadId + "/chunks")
+                .param("offset", String.valueOf(offset))
+                .header(HttpHeaders.AUTHORIZATION, "Bearer " + token)
+                .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                .content(chunk);
+        if (sha256 != null) {
+            request.header("X-Chunk-Sha256", sha256);
+        }
+        return mockMvc.perform(request);
+    }
+
+    private ResultActions complete(String token, String uploadId) throws Exception {
+        return mockMvc.perform(post("/api/uploads/" + uploadId + "/complete")
+                .header(HttpHeaders.AUTHORIZATION, "Bearer " + token));
+    }
+
+    private String login(String username, String password) throws Exception {
+        MvcResult res = mockMvc.perform(post("/api/auth/login")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"username\":\"" + username + "\",\"password\":\"" + password + "\"}"))
+                .andExpect(status().isOk())
+                .andReturn();
+        return JsonPath.read(res.getResponse().getContentAsString(), "$.data.token");
+    }
+}
@@ -0,0 +1,183 @@
+package cn.edu.jnu.labflowreport;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import cn.edu.jnu.labflowreport.export.service.ExportJobService;
+import com.jayway.jsonpath.JsonPath;
+import java.io.ByteArrayInputStream;
+import java.util.Map;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+class ExportJobIntegrationTests {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ExportJobService exportJobService;
+
+    @Test
+    void exportJobShouldProduceADownloadableFileAndRecordIt() throws Exception {
+        String teacherToken = login("teacher", "teacher123");
+        String legacyRows = "SELECT COUNT(*) FROM export_record WHERE export_type = 'TEACHER_TASK_STATS_EXCEL'";
+        long legacyBefore = jdbcTemplate.queryForObject(legacyRows, Long.class);
+        long jobId = submit(teacherToken, "{\"type\":\"TEACHER_TASK_STATS\",\"params\":{\"from\":\"2020-01-01\"}}");
+        awaitStatus(teacherToken, jobId, "DONE");
+        // The job row is the only record of the export.
+        assertEquals(legacyBefore, jdbcTemplate.queryForObject(legacyRows, Long.class));
+
+        mockMvc.perform(get("/api/exports/" + jobId)
+                        .header(HttpHeaders.AUTHORIZATION, "Bearer " + teacherToken))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.data.type").value("TEACHER_TASK_STATS"))
+                .andExpect(jsonPath("$.data.fileName").value("teacher-task-stats.xlsx"))
+                .andExpect(jsonPath("$.data.durationMs").isNumber())
+                .andExpect(jsonPath("$.data.expiresAt").isNotEmpty());
+
+        MvcResult downloaded = mockMvc.perform(get("/api/exports/" + jobId + "/download")
+                        .header(HttpHeaders.AUTHORIZATION, "Bearer " + teacherToken))
+                .andExpect(status().isOk())
+                .andExpect(result -> assertTrue(result.getResponse().getHeader(HttpHeaders.CONTENT_DISPOSITION).contains("teacher-task-stats.xlsx")))
+                .andReturn();
+        byte[] bytes = downloaded.getResponse().getContentAsByteArray();
+        try (XSSFWorkbook workbook = new XSSFWorkbook(new ByteArrayInputStream(bytes))) {
+            assertTrue(workbook.getNumberOfSheets() >= 1);
+        }
+
+        Map<String, Object> row = jdbcTemplate.queryForMap(
+                "SELECT status, file_path, size_bytes, condition_json FROM export_record WHERE id = ?", jobId);
+        assertEquals("DONE", row.get("STATUS"));
+        assertNotNull(row.get("FILE_PATH"));
+        assertEquals((long) bytes.length, ((Number) row.get("SIZE_BYTES")).longValue());
+        assertEquals("{\"from\":\"2020-01-01\"}", row.get("CONDITION_JSON"));
+
+        mockMvc.perform(get("/api/exports")
+                        .header(HttpHeaders.AUTHORIZATION, "Bearer " + teacherToken))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.data[0].jobId").value(jobId));
+
+        // Only the operator sees the job and its file.
+        String adminToken = login("admin", "admin123");
+        mockMvc.perform(get("/api/exports/" + jobId + "/download")
+                        .header(HttpHeaders.AUTHORIZATION, "Bearer " + adminToken))
+                .andExpect(status().isForbidden());
+
+        // Past its ttl the file is deleted and the job answers 410.
+        jdbcTemplate.update("UPDATE export_record SET expires_at = DATEADD('MINUTE', -1, CURRENT_TIMESTAMP) WHERE id = ?", jobId);
+        exportJobService.cleanup();
+        assertEquals("EXPIRED", jdbcTemplate.queryForObject("SELECT status FROM export_record WHERE id = ?", String.class, jobId));
+        mockMvc.perform(get("/api/exports/" + jobId + "/download")
+                        .header(HttpHeaders.AUTHORIZATION, "Bearer " + teacherToken))
+                .andExpect(status().isGone());
+    }
+
+    @Test
+    void identicalSubmitShouldJoinTheActiveJob() throws Exception {
+        String adminToken = login("admin", "admin123");
+        String body = "{\"type\":\"ADMIN_SEMESTERS\",\"params\":{\"ignored\":\"x\"}}";
+        long first = submit(adminToken, body);
+        awaitStatus(adminToken, first, "DONE");
+
+        // Pretend the job is still running: the same request joins it, a different one starts its own.
+        jdbcTemplate.update("UPDATE export_record SET status = 'RUNNING' WHERE id = ?", first);
+        try {
+            assertEquals(first, submit(adminToken, "{\"type\":\"ADMIN_SEMESTERS\"}"));
+            // A second active row for the key, as a submit on another node would insert, is refused by the database.
+            assertThrows(DataIntegrityViolationException.class, () -> jdbcTemplate.update("""
+                    INSERT INTO export_record (operator_id, export_type, condition_json, created_at, status, request_key)
+                    SELECT operator_id, export_type, condition_json, CURRENT_TIMESTAMP, 'QUEUED', request_key
+                    FROM export_record WHERE id = ?
+                    """, first));
+            long other = submit(adminToken, "{\"type\":\"ADMIN_LAB_ROOMS\"}");
+            assertTrue(other != first);
+            awaitStatus(adminToken, other, "DONE");
+        } finally {
+            jdbcTemplate.update("UPDATE export_record SET status = 'DONE' WHERE id = ?", first);
+        }
+    }
+
+    @Test
+    void submitShouldCheckTypeRoleAndParams() throws Exception {
+        String teacherToken = login("teacher", "teacher123");
+        mockMvc.perform(post("/api/exports")
+                        .header(HttpHeaders.AUTHORIZATION, "Bearer " + teacherToken)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"type\":\"ADMIN_USERS\"}"))
+                .andExpect(status().isForbidden());
+        mockMvc.perform(post("/api/exports")
+                        .header(HttpHeaders.AUTHORIZATION, "Bearer " + teacherToken)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"type\":\"NO_SUCH_EXPORT\"}"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(post("/api/exports")
+                        .header(HttpHeaders.AUTHORIZATION, "Bearer " + teacherToken)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"type\":\"TASK_DEVICE_REQUESTS\"}"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.message").value("taskId 不能为空"));
+        mockMvc.perform(post("/api/exports")
+                        .header(HttpHeaders.AUTHORIZATION, "Bearer " + login("student", "student123"))
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"type\":\"TEACHER_TASK_STATS\"}"))
+                .andExpect(status().isForbidden());
+    }
+
+    private long submit(String token, String body) throws Exception {
+        MvcResult result = mockMvc.perform(post("/api/exports")
+                        .header(HttpHeaders.AUTHORIZATION, "Bearer " + token)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(body))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.code").value(0))
+                .andReturn();
+        return ((Number) JsonPath.read(result.getResponse().getContentAsString(), "$.data.jobId")).longValue();
+    }
+
+    private void awaitStatus(String token, long jobId, String expected) throws Exception {
+        String status = null;
+        for (int i = 0; i < 100; i++) {
+            MvcResult result = mockMvc.perform(get("/api/exports/" + jobId)
+                            .header(HttpHeaders.AUTHORIZATION, "Bearer " + token))
+                    .andExpect(status().isOk())
+                    .andReturn();
+            status = JsonPath.read(result.getResponse().getContentAsString(), "$.data.status");
+            if (expected.equals(status) || "FAILED".equals(status)) {
+                break;
+            }
+            Thread.sleep(100);
+        }
+        assertEquals(expected, status);
+    }
+
+    private String login(String username, String password) throws Exception {
+        MvcResult result = mockMvc.perform(post("/api/auth/login")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"username\":\"" + username + "\",\"password\":\"" + password + "\"}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.code").value(0))
+                .andReturn();
+        return JsonPath.read(result.getResponse().getContentAsString(), "$.data.token");
+    }
+}
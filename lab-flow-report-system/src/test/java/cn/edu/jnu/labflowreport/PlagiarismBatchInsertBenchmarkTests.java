@@ -0,0 +1,105 @@
+package cn.edu.jnu.labflowreport;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import cn.edu.jnu.labflowreport.persistence.entity.PlagArtifactFpEntity;
+import cn.edu.jnu.labflowreport.persistence.mapper.PlagArtifactFpMapper;
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.SplittableRandom;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Single-row vs multi-row inserts of 10k plag_artifact_fp rows.
+ *
+ * <p>Opt-in: {@code mvn test -Dtest=PlagiarismBatchInsertBenchmarkTests -Dplag.bench=true}. Runs against the
+ * configured datasource (H2 by default); add {@code -Dspring.datasource.url=jdbc:mysql://...
+ * -Dspring.datasource.username=... -Dspring.datasource.password=... -Dspring.datasource.driver-class-name=com.mysql.cj.jdbc.Driver}
+ * to measure MySQL.
+ */
+@SpringBootTest
+@EnabledIfSystemProperty(named = "plag.bench", matches = "true")
+class PlagiarismBatchInsertBenchmarkTests {
+
+    private static final int ROWS = 10_000;
+    private static final int ROUNDS = 3;
+
+    @Autowired
+    private PlagArtifactFpMapper fpMapper;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Test
+    void compareSingleRowAndBatchInsert() {
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        List<PlagArtifactFpEntity> rows = sampleRows();
+
+        // Warm-up round for both paths so JIT and statement caches do not skew the first measurement.
+        measure(tx, -1L, rows, 0);
+        measure(tx, -1L, rows, 500);
+
+        for (int round = 1; round <= ROUNDS; round++) {
+            long single = measure(tx, -1L, rows, 0);
+            long batch100 = measure(tx, -1L, rows, 100);
+            long batch500 = measure(tx, -1L, rows, 500);
+            long batch1000 = measure(tx, -1L, rows, 1000);
+            System.out.printf(Locale.ROOT,
+                    "round %d: %d rows single=%dms batch100=%dms batch500=%dms batch1000=%dms%n",
+                    round, ROWS, single, batch100, batch500, batch1000);
+        }
+    }
+
+    private long measure(TransactionTemplate tx, Long runId, List<PlagArtifactFpEntity> rows, int batchSize) {
+        rows.forEach(r -> r.setRunId(runId));
+        long start = System.nanoTime();
+        tx.executeWithoutResult(status -> {
+            if (batchSize <= 0) {
+                for (PlagArtifactFpEntity r : rows) {
+                    r.setId(null);
+                    fpMapper.insert(r);
+                }
+            } else {
+                for (int from = 0; from < rows.size(); from += batchSize) {
+                    fpMapper.insertBatch(rows.subList(from, Math.min(rows.size(), from + batchSize)));
+                }
+            }
+        });
+        long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+        LambdaQueryWrapper<PlagArtifactFpEntity> byRun = new LambdaQueryWrapper<PlagArtifactFpEntity>()
+                .eq(PlagArtifactFpEntity::getRunId, runId);
+        assertEquals(ROWS, fpMapper.selectCount(byRun));
+        fpMapper.delete(byRun);
+        return elapsedMs;
+    }
+
+    private static List<PlagArtifactFpEntity> sampleRows() {
+        SplittableRandom rnd = new SplittableRandom(42);
+        LocalDateTime now = LocalDateTime.now();
+        List<PlagArtifactFpEntity> rows = new ArrayList<>(ROWS);
+        for (int i = 0; i < ROWS; i++) {
+            PlagArtifactFpEntity e = new PlagArtifactFpEntity();
+            e.setTaskId(-1L);
+            e.setSubmissionId((long) (i / 5));
+            e.setStudentId((long) (i / 5));
+            e.setAttachmentId(i % 5 == 0 ? null : (long) i);
+            e.setArtifactType(i % 5 == 0 ? "SUBMISSION_TEXT" : "ATTACHMENT_IMAGE");
+            e.setAlgo(i % 5 == 0 ? "SIMHASH64" : "DHASH64");
+            e.setFp64Hex(String.format(Locale.ROOT, "%016x", rnd.nextLong()));
+            e.setByteLen(1024L + i);
+            e.setContentType(i % 5 == 0 ? "text/plain" : "image/png");
+            e.setFileName(i % 5 == 0 ? "submission.md" : "shot-" + i + ".png");
+            e.setCreatedAt(now);
+            rows.add(e);
+        }
+        return rows;
+    }
+}
@@ -0,0 +1,199 @@
+package cn.edu.jnu.labflowreport;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import cn.edu.jnu.labflowreport.persistence.mapper.PlagTaskRunMapper;
+import cn.edu.jnu.labflowreport.plagiarism.service.PlagiarismRunner;
+import com.jayway.jsonpath.JsonPath;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.web.servlet.MvcResult;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+class PlagiarismClusterIntegrationTests extends PlagiarismIntegrationTestSupport {
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlagiarismRunner runner;
+
+    @Autowired
+    private PlagTaskRunMapper runMapper;
+
+    @Test
+    void clusterViewShouldGroupCopyingRings() throws Exception {
+        String adminToken = login("admin", "admin123");
+        String teacherToken = login("teacher", "teacher123");
+
+        long classId = firstClassId(adminToken);
+        List<String> tokens = new ArrayList<>();
+        for (String username : List.of("cluster_s1", "cluster_s2", "cluster_s3", "cluster_s4", "cluster_s5")) {
+            createStudent(adminToken, username, classId);
+            tokens.add(login(username, "student123"));
+        }
+        long taskId = createTask(teacherToken, classId, "相似度矩阵任务");
+
+        String original = """
+                # 排序算法实验
+                目的：比较快速排序、归并排序与堆排序在不同规模输入下的运行时间。
+                过程：输入规模从一万增加到一百万，每组重复五次取平均值，并记录比较次数。
+                结论：随机输入时快速排序最快，归并排序最稳定，堆排序的缓存命中率最低。
+                """;
+        // s1 -> s2 -> s3 is a chain of copies; s4 wrote something else.
+        long a = submit(taskId, tokens.get(0), original);
+        long b = submit(taskId, tokens.get(1), original.replace("重复五次", "重复五遍"));
+        long c = submit(taskId, tokens.get(2), original.replace("重复五次", "重复五遍").replace("比较次数", "交换次数"));
+        long d = submit(taskId, tokens.get(3), "# 排序算法实验\n本组实现了基数排序，并讨论了桶的数量对内存占用的影响。");
+
+        MvcResult full = runTask(teacherToken, taskId);
+        awaitPlagiarismRun(teacherToken, full);
+        String view = clusters(teacherToken, full, null);
+        assertEquals(0.85, ((Number) JsonPath.read(view, "$.data.threshold")).doubleValue(), 1e-9);
+        assertEquals(1, (int) JsonPath.read(view, "$.data.clusters.length()"), view);
+        assertEquals(3, (int) JsonPath.read(view, "$.data.clusters[0].size"));
+        List<Number> members = JsonPath.read(view, "$.data.clusters[0].submissionIds");
+        assertEquals(List.of(a, b, c), members.stream().map(Number::longValue).sorted().toList());
+        List<Number> inCluster = JsonPath.read(view, "$.data.nodes[?(@.clusterId == 1)].submissionId");
+        assertEquals(3, inCluster.size());
+        List<String> names = JsonPath.read(view, "$.data.nodes[?(@.submissionId == " + a + ")].username");
+        assertEquals(List.of("cluster_s1"), names);
+        List<Number> pairAb = JsonPath.read(view,
+                "$.data.edges[?(@.submissionIdA == " + Math.min(a, b) + " && @.submissionIdB == " + Math.max(a, b) + ")].score");
+        assertEquals(1, pairAb.size(), "each pair appears once in the sparse matrix");
+        assertTrue(pairAb.get(0).doubleValue() >= 0.85);
+        List<Number> dCluster = JsonPath.read(view, "$.data.nodes[?(@.submissionId == " + d + ")].clusterId");
+        assertTrue(dCluster.isEmpty() || dCluster.get(0) == null, "unrelated submission stays out of clusters");
+
+        // The runner-up student of the ring gets passage evidence too.
+        String summary = mockMvc.perform(get("/api/teacher/submissions/" + a + "/plagiarism-summary")
+                        .header(HttpHeaders.AUTHORIZATION, "Bearer " + teacherToken))
+                .andExpect(status().isOk())
+                .andReturn()
+                .getResponse()
+                .getContentAsString();
+        List<Number> bestOther = JsonPath.read(summary, "$.data.evidence[?(@.type=='SUBMISSION_TEXT')].detail.otherSubmissionId");
+        List<Number> runnerUps = JsonPath.read(summary, "$.data.evidence[?(@.type=='SUBMISSION_TEXT_MATCH')].detail.otherSubmissionId");
+        assertEquals(List.of(bestOther.get(0).longValue() == b ? c : b), runnerUps.stream().map(Number::longValue).toList(), summary);
+
+        // A stricter threshold splits the ring.
+        String strict = clusters(teacherToken, full, "1");
+        List<Number> strictSizes = JsonPath.read(strict, "$.data.clusters[*].size");
+        assertTrue(strictSizes.stream().allMatch(n -> n.intValue() < 3), strict);
+
+        // An incremental run adds the new copy to the carried-forward neighbour lists.
+        long e = submit(taskId, tokens.get(4), original.replace("比较次数", "交换次数"));
+        MvcResult incremental = runTask(teacherToken, taskId, "mode", "INCREMENTAL");
+        assertEquals("INCREMENTAL", JsonPath.read(incremental.getResponse().getContentAsString(), "$.data.mode"));
+        awaitPlagiarismRun(teacherToken, incremental);
+        String grown = clusters(teacherToken, incremental, null);
+        List<Number> grownMembers = JsonPath.read(grown, "$.data.clusters[0].submissionIds");
+        assertEquals(List.of(a, b, c, e), grownMembers.stream().map(Number::longValue).sorted().toList());
+
+        mockMvc.perform(get("/api/teacher/plagiarism/runs/" + runId(full) + "/clusters")
+                        .param("threshold", "1.5")
+                        .header(HttpHeaders.AUTHORIZATION, "Bearer " + teacherToken))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void concurrentRunRequestsShouldShareOneRun() throws Exception {
+        String adminToken = login("admin", "admin123");
+        String teacherToken = login("teacher", "teacher123");
+        long classId = firstClassId(adminToken);
+        long taskId = createTask(teacherToken, classId, "并发查重任务");
+        for (String username : List.of("race_s1", "race_s2")) {
+            createStudent(adminToken, username, classId);
+            submit(taskId, login(username, "student123"), "# 并发查重\n" + username + " 的实验记录与数据分析。");
+        }
+
+        int clicks = 4;
+        CyclicBarrier barrier = new CyclicBarrier(clicks);
+        ExecutorService pool = Executors.newFixedThreadPool(clicks);
+        try {
+            List<Future<Long>> results = new ArrayList<>();
+            for (int i = 0; i < clicks; i++) {
+                results.add(pool.submit(() -> {
+                    barrier.await(10, TimeUnit.SECONDS);
+                    return runId(runTask(teacherToken, taskId));
+                }));
+            }
+            Set<Long> runIds = new HashSet<>();
+            for (Future<Long> result : results) {
+                runIds.add(result.get(30, TimeUnit.SECONDS));
+            }
+            assertEquals(1, runIds.size(), "concurrent clicks should join one run: " + runIds);
+            assertEquals(1, jdbcTemplate.queryForObject(
+                    "SELECT COUNT(*) FROM plag_task_run WHERE task_id = ?", Integer.class, taskId));
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    void staleRunOfAnotherWorkerShouldBeResumedAndKeptFromItsOldWorker() throws Exception {
+        String adminToken = login("admin", "admin123");
+        String teacherToken = login("teacher", "teacher123");
+        long classId = firstClassId(adminToken);
+        long taskId = createTask(teacherToken, classId, "接管查重任务");
+        for (String username : List.of("resume_s1", "resume_s2")) {
+            createStudent(adminToken, username, classId);
+            submit(taskId, login(username, "student123"), "# 接管查重\n" + username + " 测量了页面置换算法的缺页率。");
+        }
+
+        // A node that stopped an hour ago while fingerprinting.
+        Long teacherId = jdbcTemplate.queryForObject("SELECT id FROM sys_user WHERE username = 'teacher'", Long.class);
+        LocalDateTime stale = LocalDateTime.now().minusHours(1);
+        jdbcTemplate.update("""
+                INSERT INTO plag_task_run (task_id, status, stage, run_mode, scope, algo_version, text_threshold, image_threshold,
+                                           worker_id, heartbeat_at, created_by, started_at)
+                VALUES (?, 'RUNNING', 'FINGERPRINT', 'FULL', 'TASK', 'stale', 0.8500, 0.9000, 'stopped-node', ?, ?, ?)
+                """, taskId, stale, teacherId, stale);
+        Long runId = jdbcTemplate.queryForObject("SELECT id FROM plag_task_run WHERE task_id = ?", Long.class, taskId);
+
+        runner.resumeStaleRuns();
+        awaitPlagiarismRun(teacherToken, runId);
+        assertEquals(2, jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM plag_submission_best_match WHERE run_id = ?", Integer.class, runId));
+        assertNotEquals("stopped-node", jdbcTemplate.queryForObject(
+                "SELECT worker_id FROM plag_task_run WHERE id = ?", String.class, runId));
+
+        // The old worker waking up can no longer overwrite the run it lost.
+        assertEquals(0, runMapper.finish(runId, "stopped-node", "FAILED", null, "late failure", LocalDateTime.now()));
+        assertEquals("DONE", jdbcTemplate.queryForObject("SELECT status FROM plag_task_run WHERE id = ?", String.class, runId));
+    }
+
+    private String clusters(String teacherToken, MvcResult runResult, String threshold) throws Exception {
+        var request = get("/api/teacher/plagiarism/runs/" + runId(runResult) + "/clusters")
+                .header(HttpHeaders.AUTHORIZATION, "Bearer " + teacherToken);
+        if (threshold != null) {
+            request.param("threshold", threshold);
+        }
+        return mockMvc.perform(request)
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.code").value(0))
+                .andReturn()
+                .getResponse()
+                .getContentAsString();
+    }
+}
@@ -0,0 +1,182 @@
+package cn.edu.jnu.labflowreport;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import com.jayway.jsonpath.JsonPath;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationContext;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MvcResult;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+class PlagiarismCorpusIntegrationTests extends PlagiarismIntegrationTestSupport {
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ApplicationContext applicationContext;
+
+    @Test
+    void courseScopeShouldFindCopiesFromLastSemester() throws Exception {
+        String adminToken = login("admin", "admin123");
+        String teacherToken = login("teacher", "teacher123");
+
+        long classId = firstClassId(adminToken);
+        for (String username : List.of("corpus_s1", "corpus_s2", "corpus_s3")) {
+            createStudent(adminToken, username, classId);
+        }
+        String s1 = login("corpus_s1", "student123");
+        String s2 = login("corpus_s2", "student123");
+        String s3 = login("corpus_s3", "student123");
+
+        // One task per semester; they are linked to two offerings of the same course below.
+        long lastTerm = createTask(teacherToken, classId, "语料-上学期任务");
+        long thisTerm = createTask(teacherToken, classId, "语料-本学期任务");
+
+        String original = """
+                # 哈希表实验
+                目的：比较开放寻址与拉链法在不同装载因子下的查找性能。
+                过程：装载因子从零点一增加到零点九，每组插入十万个随机键并统计平均探测次数。
+                结论：装载因子超过零点七后开放寻址的探测次数急剧上升，拉链法更加平稳。
+                """;
+        String copied = original.replace("十万个随机键", "十万个随机整数键");
+
+        submit(lastTerm, s1, original);
+        submit(lastTerm, s2, "# 哈希表实验\n本组实现了布谷鸟哈希，并测量了插入失败时的重建开销。");
+        awaitPlagiarismRun(teacherToken, runTask(teacherToken, lastTerm));
+        long indexed = countCorpusRows(lastTerm);
+        assertTrue(indexed >= 2, "finished runs should be indexed");
+
+        assertEquals(0L, jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM plag_task_run WHERE task_id = ? AND indexed_at IS NULL", Long.class, lastTerm));
+
+        // Runs finished before the corpus existed carry no indexed_at and are picked up by the backfill.
+        jdbcTemplate.update("DELETE FROM plag_corpus_fp WHERE task_id = ?", lastTerm);
+        ReflectionTestUtils.invokeMethod(applicationContext.getBean("plagiarismCorpus"), "backfill");
+        assertEquals(0L, countCorpusRows(lastTerm), "marked runs are not indexed again");
+        jdbcTemplate.update("UPDATE plag_task_run SET indexed_at = NULL WHERE task_id = ?", lastTerm);
+        ReflectionTestUtils.invokeMethod(applicationContext.getBean("plagiarismCorpus"), "backfill");
+        assertEquals(indexed, countCorpusRows(lastTerm));
+        assertEquals(0L, jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM plag_task_run WHERE task_id = ? AND indexed_at IS NULL", Long.class, lastTerm));
+
+        long copy = submit(thisTerm, s3, copied);
+        submit(thisTerm, s1, "# 哈希表实验\n这学期改做了一致性哈希在节点增减时的键迁移比例测量。");
+
+        // Task scope: nothing in this task resembles the copy.
+        awaitPlagiarismRun(teacherToken, runTask(teacherToken, thisTerm));
+        String inTask = summary(teacherToken, copy);
+        Number inTaskMax = JsonPath.read(inTask, "$.data.maxScore");
+        assertTrue(inTaskMax.doubleValue() < 0.85, "no copy inside the task");
+
+        // Course scope: last semester's submission is found once both tasks belong to offerings of the course.
+        Long teacherId = jdbcTemplate.queryForObject("SELECT id FROM sys_user WHERE username = 'teacher'", Long.class);
+        for (String semester : List.of("语料测试学期一", "语料测试学期二")) {
+            jdbcTemplate.update("INSERT INTO semester (name) VALUES (?)", semester);
+            Long semesterId = jdbcTemplate.queryForObject("SELECT id FROM semester WHERE name = ?", Long.class, semester);
+            jdbcTemplate.update("INSERT INTO experiment_course (title, teacher_id, semester_id) VALUES ('语料测试课程', ?, ?)",
+                    teacherId, semesterId);
+        }
+        List<Long> courseIds = jdbcTemplate.queryForList(
+                "SELECT id FROM experiment_course WHERE title = '语料测试课程' ORDER BY id", Long.class);
+        jdbcTemplate.update("UPDATE exp_task SET experiment_course_id = ? WHERE id = ?", courseIds.get(0), lastTerm);
+        jdbcTemplate.update("UPDATE exp_task SET experiment_course_id = ? WHERE id = ?", courseIds.get(1), thisTerm);
+
+        // An identical title alone does not make two courses offerings of one course.
+        awaitPlagiarismRun(teacherToken, runTask(teacherToken, thisTerm, "scope", "COURSE"));
+        List<?> byTitle = JsonPath.read(summary(teacherToken, copy), "$.data.evidence[?(@.type=='CORPUS_MATCH')]");
+        assertTrue(byTitle.isEmpty(), "unrelated course with the same title");
+        jdbcTemplate.update("UPDATE experiment_course SET origin_course_id = ? WHERE id = ?", courseIds.get(0), courseIds.get(1));
+
+        MvcResult courseRun = runTask(teacherToken, thisTerm, "scope", "COURSE");
+        assertEquals("COURSE", JsonPath.read(courseRun.getResponse().getContentAsString(), "$.data.scope"));
+        awaitPlagiarismRun(teacherToken, courseRun);
+        String cross = summary(teacherToken, copy);
+        Number crossMax = JsonPath.read(cross, "$.data.maxScore");
+        assertTrue(crossMax.doubleValue() >= 0.85, "copy from last semester: " + crossMax);
+        assertEquals("corpus_s1", JsonPath.read(cross, "$.data.topMatchStudent.username"));
+        List<Number> otherTasks = JsonPath.read(cross, "$.data.evidence[?(@.type=='CORPUS_MATCH')].detail.otherTaskId");
+        assertEquals(List.of(lastTerm), otherTasks.stream().map(Number::longValue).toList());
+        List<?> passages = JsonPath.read(cross, "$.data.evidence[?(@.type=='SUBMISSION_TEXT')].detail.passages");
+        assertTrue(!passages.isEmpty(), "shared passages with the other task's submission");
+
+        // corpus_s1's own work this semester is not matched against their submission from last semester.
+        String own = summary(teacherToken, jdbcTemplate.queryForObject(
+                "SELECT s.id FROM report_submission s JOIN sys_user u ON u.id = s.student_id "
+                        + "WHERE s.task_id = ? AND u.username = 'corpus_s1'", Long.class, thisTerm));
+        List<?> ownCorpus = JsonPath.read(own, "$.data.evidence[?(@.type=='CORPUS_MATCH')]");
+        assertTrue(ownCorpus.isEmpty(), "same student across semesters is not copying");
+
+        // Another teacher's ALL-scope run finds the copy too, but sees only the score and the task title.
+        mockMvc.perform(post("/api/admin/users")
+                        .header(HttpHeaders.AUTHORIZATION, "Bearer " + adminToken)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("""
+                                {"username":"corpus_t2","displayName":"corpus_t2","password":"teacher123","enabled":true,
+                                 "roleCodes":["ROLE_TEACHER"],"classIds":[%d]}
+                                """.formatted(classId)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.code").value(0));
+        createStudent(adminToken, "corpus_s4", classId);
+        String otherTeacher = login("corpus_t2", "teacher123");
+        long otherTask = createTask(otherTeacher, classId, "语料-其他教师任务");
+        long otherCopy = submit(otherTask, login("corpus_s4", "student123"), copied);
+        submit(otherTask, s2, "# 哈希表实验\n本组比较了线性探测与二次探测的聚集现象。");
+        awaitPlagiarismRun(otherTeacher, runTask(otherTeacher, otherTask, "scope", "ALL"));
+        String redacted = summary(otherTeacher, otherCopy);
+        Number redactedMax = JsonPath.read(redacted, "$.data.maxScore");
+        assertTrue(redactedMax.doubleValue() >= 0.85, "copy of another teacher's task: " + redactedMax);
+        java.util.Map<String, Object> redactedData = JsonPath.read(redacted, "$.data");
+        assertTrue(redactedData.get("topMatchStudent") == null, "the other teacher's student is not named");
+        List<java.util.Map<String, Object>> foreign = JsonPath.read(redacted, "$.data.evidence[*].detail");
+        assertTrue(!foreign.isEmpty());
+        for (java.util.Map<String, Object> detail : foreign) {
+            assertEquals(true, detail.get("redacted"), detail.toString());
+            assertTrue(List.of("语料-上学期任务", "语料-本学期任务").contains(detail.get("otherTaskTitle")), detail.toString());
+            assertTrue(!detail.containsKey("otherStudentId") && !detail.containsKey("passages"), detail.toString());
+        }
+        String asAdmin = summary(adminToken, otherCopy);
+        List<?> fullDetail = JsonPath.read(asAdmin, "$.data.evidence[?(@.type=='CORPUS_MATCH')].detail.otherStudentId");
+        assertTrue(!fullDetail.isEmpty(), "admins see the full evidence");
+
+        // A task outside any course cannot use the course scope; unknown scopes are rejected.
+        long loose = createTask(teacherToken, classId, "语料-无课程任务");
+        mockMvc.perform(post("/api/teacher/tasks/" + loose + "/plagiarism/run")
+                        .param("scope", "COURSE")
+                        .header(HttpHeaders.AUTHORIZATION, "Bearer " + teacherToken))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(post("/api/teacher/tasks/" + thisTerm + "/plagiarism/run")
+                        .param("scope", "GALAXY")
+                        .header(HttpHeaders.AUTHORIZATION, "Bearer " + teacherToken))
+                .andExpect(status().isBadRequest());
+    }
+
+    private long countCorpusRows(long taskId) {
+        Long n = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM plag_corpus_fp WHERE task_id = ?", Long.class, taskId);
+        return n == null ? 0 : n;
+    }
+
+    private String summary(String teacherToken, long submissionId) throws Exception {
+        return mockMvc.perform(get("/api/teacher/submissions/" + submissionId + "/plagiarism-summary")
+                        .header(HttpHeaders.AUTHORIZATION, "Bearer " + teacherToken))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.code").value(0))
+                .andReturn()
+                .getResponse()
+                .getContentAsString();
+    }
+}
@@ -0,0 +1,134 @@
+package cn.edu.jnu.labflowreport;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import com.jayway.jsonpath.JsonPath;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+/**
+ * Login, task, submission and run helpers shared by the plagiarism integration tests.
+ */
+abstract class PlagiarismIntegrationTestSupport {
+
+    @Autowired
+    protected MockMvc mockMvc;
+
+    protected String login(String username, String password) throws Exception {
+        MvcResult res = mockMvc.perform(post("/api/auth/login")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"username\":\"" + username + "\",\"password\":\"" + password + "\"}"))
+                .andExpect(status().isOk())
+                .andReturn();
+        return JsonPath.read(res.getResponse().getContentAsString(), "$.data.token");
+    }
+
+    protected long firstClassId(String adminToken) throws Exception {
+        MvcResult classes = mockMvc.perform(get("/api/admin/classes")
+                        .header(HttpHeaders.AUTHORIZATION, "Bearer " + adminToken))
+                .andExpect(status().isOk())
+                .andReturn();
+        Number classId = JsonPath.read(classes.getResponse().getContentAsString(), "$.data[0].id");
+        return classId.longValue();
+    }
+
+    protected void createStudent(String adminToken, String username, long classId) throws Exception {
+        mockMvc.perform(post("/api/admin/users")
+                        .header(HttpHeaders.AUTHORIZATION, "Bearer " + adminToken)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("""
+                                {
+                                  "username":"%s",
+                                  "displayName":"%s",
+                                  "password":"student123",
+                                  "enabled":true,
+                                  "classId":%d,
+                                  "roleCodes":["ROLE_STUDENT"]
+                                }
+                                """.formatted(username, username, classId)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.code").value(0));
+    }
+
+    protected long createTask(String teacherToken, long classId, String title) throws Exception {
+        MvcResult res = mockMvc.perform(post("/api/tasks")
+                        .header(HttpHeaders.AUTHORIZATION, "Bearer " + teacherToken)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("""
+                                {"title":"%s","description":"查重测试","classIds":[%d]}
+                                """.formatted(title, classId)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.code").value(0))
+                .andReturn();
+        Number id = JsonPath.read(res.getResponse().getContentAsString(), "$.data.id");
+        return id.longValue();
+    }
+
+    protected long submit(long taskId, String token, String content) throws Exception {
+        MvcResult res = mockMvc.perform(post("/api/tasks/" + taskId + "/submissions")
+                        .header(HttpHeaders.AUTHORIZATION, "Bearer " + token)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"contentMd\":" + toJsonString(content) + "}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.code").value(0))
+                .andReturn();
+        Number id = JsonPath.read(res.getResponse().getContentAsString(), "$.data.id");
+        return id.longValue();
+    }
+
+    protected MvcResult runTask(String teacherToken, long taskId) throws Exception {
+        return runTask(teacherToken, taskId, null, null);
+    }
+
+    /** Starts a run with one optional request parameter, e.g. {@code mode} or {@code scope}. */
+    protected MvcResult runTask(String teacherToken, long taskId, String param, String value) throws Exception {
+        var request = post("/api/teacher/tasks/" + taskId + "/plagiarism/run")
+                .header(HttpHeaders.AUTHORIZATION, "Bearer " + teacherToken);
+        if (param != null && value != null) {
+            request.param(param, value);
+        }
+        return mockMvc.perform(request)
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.code").value(0))
+                .andReturn();
+    }
+
+    protected static long runId(MvcResult runResult) throws Exception {
+        Number runId = JsonPath.read(runResult.getResponse().getContentAsString(), "$.data.runId");
+        return runId.longValue();
+    }
+
+    protected void awaitPlagiarismRun(String teacherToken, MvcResult runResult) throws Exception {
+        awaitPlagiarismRun(teacherToken, runId(runResult));
+    }
+
+    protected void awaitPlagiarismRun(String teacherToken, long runId) throws Exception {
+        long deadline = System.currentTimeMillis() + 30_000;
+        while (true) {
+            MvcResult progress = mockMvc.perform(get("/api/teacher/plagiarism/runs/" + runId)
+                            .header(HttpHeaders.AUTHORIZATION, "Bearer " + teacherToken))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.code").value(0))
+                    .andReturn();
+            String runStatus = JsonPath.read(progress.getResponse().getContentAsString(), "$.data.status");
+            if ("DONE".equals(runStatus)) {
+                return;
+            }
+            assertTrue(!"FAILED".equals(runStatus), "plagiarism run failed: " + progress.getResponse().getContentAsString());
+            assertTrue(System.currentTimeMillis() < deadline, "plagiarism run did not finish in time");
+            Thread.sleep(100);
+        }
+    }
+
+    protected static String toJsonString(String s) {
+        if (s == null) return "null";
+        return "\"" + s.replace("\\", "\\\\").replace("\"", "\\\"").replace("\r", "\\r").replace("\n", "\\n") + "\"";
+    }
+}
@@ -0,0 +1,115 @@
+package cn.edu.jnu.labflowreport;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import com.jayway.jsonpath.JsonPath;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationContext;
+import org.springframework.http.HttpHeaders;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MvcResult;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+class PlagiarismRetentionIntegrationTests extends PlagiarismIntegrationTestSupport {
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ApplicationContext applicationContext;
+
+    @Test
+    void compactionShouldKeepLatestAndPinnedRuns() throws Exception {
+        String adminToken = login("admin", "admin123");
+        String teacherToken = login("teacher", "teacher123");
+
+        long classId = firstClassId(adminToken);
+        List<String> tokens = new ArrayList<>();
+        for (String username : List.of("retention_s1", "retention_s2")) {
+            createStudent(adminToken, username, classId);
+            tokens.add(login(username, "student123"));
+        }
+        long taskId = createTask(teacherToken, classId, "查重保留策略任务");
+        submit(taskId, tokens.get(0), "# 缓存实验\n测量了 LRU 与 LFU 在热点数据集上的命中率差异。");
+        submit(taskId, tokens.get(1), "# 缓存实验\n比较了写回与写穿两种策略下的平均写延迟。");
+
+        List<Long> runIds = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            MvcResult run = runTask(teacherToken, taskId);
+            awaitPlagiarismRun(teacherToken, run);
+            runIds.add(runId(run));
+        }
+        for (long runId : runIds) {
+            assertTrue(countRows("plag_artifact_fp", runId) > 0);
+        }
+
+        // The oldest run is pinned; with the default window of 3 only the second one is superseded.
+        mockMvc.perform(put("/api/teacher/plagiarism/runs/" + runIds.get(0) + "/pinned")
+                        .param("pinned", "true")
+                        .header(HttpHeaders.AUTHORIZATION, "Bearer " + teacherToken))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.data.pinned").value(true));
+
+        // A fingerprint written before fp64 existed, still stored as hex.
+        Long legacyId = jdbcTemplate.queryForObject(
+                "SELECT MIN(id) FROM plag_artifact_fp WHERE run_id = ?", Long.class, runIds.get(4));
+        Long fp64 = jdbcTemplate.queryForObject("SELECT fp64 FROM plag_artifact_fp WHERE id = ?", Long.class, legacyId);
+        assertNotNull(fp64);
+        jdbcTemplate.update("UPDATE plag_artifact_fp SET fp64 = NULL, fp64_hex = ? WHERE id = ?",
+                String.format(Locale.ROOT, "%016x", fp64), legacyId);
+
+        ReflectionTestUtils.invokeMethod(applicationContext.getBean("plagiarismRunCompactor"), "compact");
+
+        assertEquals(0, countRows("plag_artifact_fp", runIds.get(1)));
+        assertEquals(0, countRows("plag_submission_best_match", runIds.get(1)));
+        for (long kept : List.of(runIds.get(0), runIds.get(2), runIds.get(3), runIds.get(4))) {
+            assertTrue(countRows("plag_artifact_fp", kept) > 0, "run " + kept + " is retained");
+            assertTrue(countRows("plag_submission_best_match", kept) > 0, "run " + kept + " is retained");
+        }
+        assertEquals(fp64, jdbcTemplate.queryForObject("SELECT fp64 FROM plag_artifact_fp WHERE id = ?", Long.class, legacyId));
+        assertNull(jdbcTemplate.queryForObject("SELECT fp64_hex FROM plag_artifact_fp WHERE id = ?", String.class, legacyId));
+
+        // The compacted run keeps its row but can no longer be pinned.
+        String compacted = mockMvc.perform(get("/api/teacher/plagiarism/runs/" + runIds.get(1))
+                        .header(HttpHeaders.AUTHORIZATION, "Bearer " + teacherToken))
+                .andExpect(status().isOk())
+                .andReturn()
+                .getResponse()
+                .getContentAsString();
+        assertEquals("DONE", JsonPath.read(compacted, "$.data.status"));
+        assertNotNull(JsonPath.read(compacted, "$.data.compactedAt"));
+        mockMvc.perform(put("/api/teacher/plagiarism/runs/" + runIds.get(1) + "/pinned")
+                        .param("pinned", "true")
+                        .header(HttpHeaders.AUTHORIZATION, "Bearer " + teacherToken))
+                .andExpect(status().isBadRequest());
+
+        // Results still come from the latest run.
+        String latest = mockMvc.perform(get("/api/teacher/plagiarism/runs/" + runIds.get(4) + "/clusters")
+                        .header(HttpHeaders.AUTHORIZATION, "Bearer " + teacherToken))
+                .andExpect(status().isOk())
+                .andReturn()
+                .getResponse()
+                .getContentAsString();
+        assertEquals(runIds.get(4).intValue(), (int) JsonPath.read(latest, "$.data.runId"));
+    }
+
+    private long countRows(String table, long runId) {
+        Long n = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM " + table + " WHERE run_id = ?", Long.class, runId);
+        return n == null ? 0 : n;
+    }
+}
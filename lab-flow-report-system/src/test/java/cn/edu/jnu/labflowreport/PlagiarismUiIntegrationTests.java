@@ -1,31 +1,44 @@
 package cn.edu.jnu.labflowreport;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.clearInvocations;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
+import cn.edu.jnu.labflowreport.storage.FileStorageService;
 import com.jayway.jsonpath.JsonPath;
+import java.io.ByteArrayOutputStream;
 import java.nio.charset.StandardCharsets;
+import org.apache.poi.xwpf.usermodel.XWPFDocument;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.mock.web.MockMultipartFile;
-import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.context.bean.override.mockito.MockitoSpyBean;
 import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
 
 @SpringBootTest
 @AutoConfigureMockMvc
-class PlagiarismUiIntegrationTests {
+class PlagiarismUiIntegrationTests extends PlagiarismIntegrationTestSupport {
 
     @Autowired
-    private MockMvc mockMvc;
+    private JdbcTemplate jdbcTemplate;
+
+    @MockitoSpyBean
+    private FileStorageService storageService;
 
     @Test
     void teacherShouldSeePlagiarismSummaryInDialogs() throws Exception {
@@ -136,7 +149,25 @@ class PlagiarismUiIntegrationTests {
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$.code").value(0));
 
-        // Upload an xlsx which should be skipped.
+        // Upload the same docx report for both: its text is extracted and fingerprinted.
+        MockMultipartFile docx = new MockMultipartFile(
+                "file",
+                "report.docx",
+                "application/vnd.openxmlformats-officedocument.wordprocessingml.document",
+                docxBytes("实验结论：连接池最大连接数设为二十时吞吐量最高，继续增大反而因锁竞争导致延迟上升。")
+        );
+        mockMvc.perform(MockMvcRequestBuilders.multipart("/api/submissions/" + sub1Id + "/attachments")
+                        .file(docx)
+                        .header(HttpHeaders.AUTHORIZATION, "Bearer " + studentToken))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.code").value(0));
+        mockMvc.perform(MockMvcRequestBuilders.multipart("/api/submissions/" + sub2Id + "/attachments")
+                        .file(docx)
+                        .header(HttpHeaders.AUTHORIZATION, "Bearer " + student2Token))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.code").value(0));
+
+        // Upload a broken xlsx which should be skipped.
         MockMultipartFile xlsx = new MockMultipartFile(
                 "file",
                 "data.xlsx",
@@ -150,11 +181,13 @@ class PlagiarismUiIntegrationTests {
                 .andExpect(jsonPath("$.code").value(0));
 
         // Run plagiarism for the task.
-        mockMvc.perform(post("/api/teacher/tasks/" + taskId + "/plagiarism/run")
+        MvcResult run = mockMvc.perform(post("/api/teacher/tasks/" + taskId + "/plagiarism/run")
                         .header(HttpHeaders.AUTHORIZATION, "Bearer " + teacherToken))
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$.code").value(0))
-                .andExpect(jsonPath("$.data.runId").isNumber());
+                .andExpect(jsonPath("$.data.runId").isNumber())
+                .andReturn();
+        awaitPlagiarismRun(teacherToken, run);
 
         // Teacher loads summary for submission 1.
         MvcResult summary = mockMvc.perform(get("/api/teacher/submissions/" + sub1Id + "/plagiarism-summary")
@@ -180,29 +213,89 @@ class PlagiarismUiIntegrationTests {
         // xlsx should be skipped.
         java.util.List<String> skippedNames = JsonPath.read(body, "$.data.skippedAttachments[*].fileName");
         assertTrue(skippedNames.stream().anyMatch(n -> n.toLowerCase().contains("data.xlsx")));
+        assertTrue(skippedNames.stream().noneMatch(n -> n.contains("report.docx")), "docx should be processed");
+        assertEquals(1L, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM plag_extracted_text", Long.class));
 
         // image artifacts should be processed (tiny png for both submissions).
         Number imagesProcessed = JsonPath.read(body, "$.data.imagesProcessed");
         assertTrue(imagesProcessed.intValue() >= 1, "should have processed image attachments");
-    }
 
-    private String login(String username, String password) throws Exception {
-        MvcResult res = mockMvc.perform(post("/api/auth/login")
+        // The shared Demo.java is compared by its code fingerprints only, never as prose.
+        java.util.List<String> codeFiles = JsonPath.read(body, "$.data.evidence[?(@.type=='ATTACHMENT_CODE')].detail.fileNameB");
+        assertEquals(java.util.List.of("Demo.java"), codeFiles);
+        assertEquals(0L, jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM plag_artifact_fp WHERE file_name = 'Demo.java' AND artifact_type <> 'ATTACHMENT_CODE'",
+                Long.class));
+
+        // Re-running reuses the cached fingerprints: no file reads, no new cache rows, identical fingerprints.
+        Number firstRunId = JsonPath.read(run.getResponse().getContentAsString(), "$.data.runId");
+        Long cacheBefore = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM plag_fp_cache", Long.class);
+        assertTrue(cacheBefore != null && cacheBefore >= 4, "fingerprints should be cached");
+        clearInvocations(storageService);
+        MvcResult rerun = mockMvc.perform(post("/api/teacher/tasks/" + taskId + "/plagiarism/run")
+                        .header(HttpHeaders.AUTHORIZATION, "Bearer " + teacherToken))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.code").value(0))
+                .andReturn();
+        awaitPlagiarismRun(teacherToken, rerun);
+        Number secondRunId = JsonPath.read(rerun.getResponse().getContentAsString(), "$.data.runId");
+        // Only the broken xlsx, which has no fingerprint to cache, is opened again.
+        String brokenPath = jdbcTemplate.queryForObject(
+                "SELECT file_path FROM report_attachment WHERE submission_id = ? AND file_name = 'data.xlsx'", String.class, sub1Id);
+        verify(storageService, never()).readBytes(anyString());
+        verify(storageService, never()).openStream(argThat(path -> !brokenPath.equals(path)));
+        assertEquals(cacheBefore, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM plag_fp_cache", Long.class));
+        String fpSql = "SELECT submission_id || ':' || COALESCE(attachment_id, 0) || ':' || algo || ':' || fp64 FROM plag_artifact_fp "
+                + "WHERE run_id = ? ORDER BY submission_id, attachment_id";
+        assertEquals(
+                jdbcTemplate.queryForList(fpSql, String.class, firstRunId.longValue()),
+                jdbcTemplate.queryForList(fpSql, String.class, secondRunId.longValue())
+        );
+
+        // A late resubmission copying student 1 verbatim: the incremental run only fingerprints the new version.
+        String content3 = content1;
+        MvcResult sub3 = mockMvc.perform(post("/api/tasks/" + taskId + "/submissions")
+                        .header(HttpHeaders.AUTHORIZATION, "Bearer " + student2Token)
                         .contentType(MediaType.APPLICATION_JSON)
-                        .content("{\"username\":\"" + username + "\",\"password\":\"" + password + "\"}"))
+                        .content("{\"contentMd\":" + toJsonString(content3) + "}"))
                 .andExpect(status().isOk())
+                .andExpect(jsonPath("$.code").value(0))
                 .andReturn();
-        return JsonPath.read(res.getResponse().getContentAsString(), "$.data.token");
+        Number sub3IdNum = JsonPath.read(sub3.getResponse().getContentAsString(), "$.data.id");
+        MvcResult incremental = mockMvc.perform(post("/api/teacher/tasks/" + taskId + "/plagiarism/run")
+                        .param("mode", "INCREMENTAL")
+                        .header(HttpHeaders.AUTHORIZATION, "Bearer " + teacherToken))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.code").value(0))
+                .andExpect(jsonPath("$.data.mode").value("INCREMENTAL"))
+                .andReturn();
+        awaitPlagiarismRun(teacherToken, incremental);
+        Number thirdRunId = JsonPath.read(incremental.getResponse().getContentAsString(), "$.data.runId");
+        String runSummary = jdbcTemplate.queryForObject(
+                "SELECT summary_json FROM plag_task_run WHERE id = ?", String.class, thirdRunId.longValue());
+        Number newSubmissions = JsonPath.read(runSummary, "$.newSubmissions");
+        assertEquals(1, newSubmissions.intValue());
+
+        MvcResult newSummary = mockMvc.perform(get("/api/teacher/submissions/" + sub3IdNum.longValue() + "/plagiarism-summary")
+                        .header(HttpHeaders.AUTHORIZATION, "Bearer " + teacherToken))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.data.runId").value(thirdRunId.longValue()))
+                .andReturn();
+        Number newMax = JsonPath.read(newSummary.getResponse().getContentAsString(), "$.data.maxScore");
+        assertTrue(newMax.doubleValue() > 0.85, "new version should match student 1");
+        mockMvc.perform(get("/api/teacher/submissions/" + sub1Id + "/plagiarism-summary")
+                        .header(HttpHeaders.AUTHORIZATION, "Bearer " + teacherToken))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.data.runId").value(thirdRunId.longValue()))
+                .andExpect(jsonPath("$.data.topMatchStudent.username").value("student2"));
     }
 
-    private static String toJsonString(String s) {
-        if (s == null) return "null";
-        String escaped = s
-                .replace("\\", "\\\\")
-                .replace("\"", "\\\"")
-                .replace("\r", "\\r")
-                .replace("\n", "\\n");
-        return "\"" + escaped + "\"";
+    private static byte[] docxBytes(String paragraph) throws Exception {
+        try (XWPFDocument doc = new XWPFDocument(); ByteArrayOutputStream out = new ByteArrayOutputStream()) {
+            doc.createParagraph().createRun().setText(paragraph);
+            doc.write(out);
+            return out.toByteArray();
+        }
     }
 
     static final class TestPng {
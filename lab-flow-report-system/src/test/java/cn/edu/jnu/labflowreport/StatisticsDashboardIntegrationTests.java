@@ -4,13 +4,18 @@ import static org.hamcrest.Matchers.containsString;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
+import cn.edu.jnu.labflowreport.statistics.service.StatisticsRollupService;
 import com.jayway.jsonpath.JsonPath;
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.List;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
@@ -31,6 +36,9 @@ class StatisticsDashboardIntegrationTests {
     @Autowired
     private JdbcTemplate jdbcTemplate;
 
+    @Autowired
+    private StatisticsRollupService statisticsRollupService;
+
     @Test
     void teacherDashboardAndCsvExportsShouldWork() throws Exception {
         String teacherToken = login("teacher", "teacher123");
@@ -160,6 +168,112 @@ class StatisticsDashboardIntegrationTests {
         assertTrue(auditCountAfter >= auditCountBefore + 3);
     }
 
+    @Test
+    void dashboardsShouldReflectWritesThroughTheDailyRollup() throws Exception {
+        String teacherToken = login("teacher", "teacher123");
+        String studentToken = login("student", "student123");
+        String adminToken = login("admin", "admin123");
+        String today = LocalDate.now().toString();
+        long submissionsBefore = teacherSummary(teacherToken, today, "submissionCount");
+        long reviewsBefore = teacherSummary(teacherToken, today, "reviewedSubmissionCount");
+        long tasksBefore = teacherSummary(teacherToken, today, "taskCount");
+
+        MvcResult createTaskResult = mockMvc.perform(post("/api/tasks")
+                        .header(HttpHeaders.AUTHORIZATION, "Bearer " + teacherToken)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("""
+                                {"title":"统计汇总任务","description":"rollup","classIds":[1]}
+                                """))
+                .andExpect(status().isOk())
+                .andReturn();
+        long taskId = ((Number) JsonPath.read(createTaskResult.getResponse().getContentAsString(), "$.data.id")).longValue();
+        // Tasks are not in the rollups; the cached dashboard is dropped by the task's change event.
+        assertEquals(tasksBefore + 1, teacherSummary(teacherToken, today, "taskCount"));
+        MvcResult submitResult = mockMvc.perform(post("/api/tasks/" + taskId + "/submissions")
+                        .header(HttpHeaders.AUTHORIZATION, "Bearer " + studentToken)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("""
+                                {"contentMd":"# 统计\\n内容"}
+                                """))
+                .andExpect(status().isOk())
+                .andReturn();
+        long submissionId = ((Number) JsonPath.read(submitResult.getResponse().getContentAsString(), "$.data.id")).longValue();
+        mockMvc.perform(post("/api/submissions/" + submissionId + "/review")
+                        .header(HttpHeaders.AUTHORIZATION, "Bearer " + teacherToken)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("""
+                                {"score":88,"comment":"ok"}
+                                """))
+                .andExpect(status().isOk());
+
+        // The writes only marked today as stale; the dashboard refreshes it before reading.
+        String json = teacherDashboard(teacherToken, today);
+        assertEquals(submissionsBefore + 1, ((Number) JsonPath.read(json, "$.data.summary.submissionCount")).longValue());
+        assertEquals(reviewsBefore + 1, ((Number) JsonPath.read(json, "$.data.summary.reviewedSubmissionCount")).longValue());
+        List<Number> taskSubmissions = JsonPath.read(json, "$.data.tables.taskTable[?(@.taskId == " + taskId + ")].submissionCount");
+        List<Number> taskScores = JsonPath.read(json, "$.data.tables.taskTable[?(@.taskId == " + taskId + ")].avgScore");
+        assertEquals(1L, taskSubmissions.get(0).longValue());
+        assertEquals(88.0, taskScores.get(0).doubleValue());
+        assertEquals(0L, countBySql("SELECT COUNT(*) FROM stat_rollup_dirty WHERE stat_day = CURRENT_DATE"));
+        assertEquals(1L, countBySql("SELECT COALESCE(SUM(submission_count), 0) FROM stat_daily_task WHERE task_id = " + taskId));
+
+        mockMvc.perform(post("/api/admin/statistics/rollup/rebuild")
+                        .header(HttpHeaders.AUTHORIZATION, "Bearer " + adminToken)
+                        .param("from", today)
+                        .param("to", today))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.data.dayCount").value(1));
+        mockMvc.perform(post("/api/admin/statistics/rollup/rebuild")
+                        .header(HttpHeaders.AUTHORIZATION, "Bearer " + teacherToken)
+                        .param("from", today)
+                        .param("to", today))
+                .andExpect(status().isForbidden());
+        assertEquals(submissionsBefore + 1, teacherSummary(teacherToken, today, "submissionCount"));
+
+        mockMvc.perform(delete("/api/tasks/" + taskId)
+                        .header(HttpHeaders.AUTHORIZATION, "Bearer " + teacherToken))
+                .andExpect(status().isOk());
+        assertEquals(submissionsBefore, teacherSummary(teacherToken, today, "submissionCount"));
+        assertEquals(reviewsBefore, teacherSummary(teacherToken, today, "reviewedSubmissionCount"));
+        assertEquals(0L, countBySql("SELECT COUNT(*) FROM stat_daily_task WHERE task_id = " + taskId));
+    }
+
+    @Test
+    void dashboardCatchUpShouldLeaveLargeBacklogsToTheBackgroundRefresh() {
+        LocalDate first = LocalDate.of(2001, 1, 1);
+        for (int i = 0; i < 10; i++) {
+            jdbcTemplate.update("INSERT INTO stat_rollup_dirty (stat_day, marked_at) VALUES (?, CURRENT_TIMESTAMP)",
+                    Date.valueOf(first.plusDays(i)));
+        }
+        String dirtyInRange = "SELECT COUNT(*) FROM stat_rollup_dirty WHERE stat_day BETWEEN DATE '2001-01-01' AND DATE '2001-01-31'";
+        try {
+            statisticsRollupService.catchUp(first, first.plusDays(30));
+            assertEquals(10L, countBySql(dirtyInRange));
+
+            // A few stale days are refreshed on the request.
+            jdbcTemplate.update("DELETE FROM stat_rollup_dirty WHERE stat_day > DATE '2001-01-02' AND stat_day <= DATE '2001-01-31'");
+            statisticsRollupService.catchUp(first, first.plusDays(30));
+            assertEquals(0L, countBySql(dirtyInRange));
+        } finally {
+            jdbcTemplate.update("DELETE FROM stat_rollup_dirty WHERE stat_day BETWEEN DATE '2001-01-01' AND DATE '2001-01-31'");
+        }
+    }
+
+    private String teacherDashboard(String token, String day) throws Exception {
+        return mockMvc.perform(get("/api/teacher/statistics/dashboard")
+                        .header(HttpHeaders.AUTHORIZATION, "Bearer " + token)
+                        .param("from", day)
+                        .param("to", day))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.code").value(0))
+                .andReturn().getResponse().getContentAsString();
+    }
+
+    private long teacherSummary(String token, String day, String field) throws Exception {
+        Number value = JsonPath.read(teacherDashboard(token, day), "$.data.summary." + field);
+        return value.longValue();
+    }
+
     private long countBySql(String sql) {
         Long value = jdbcTemplate.queryForObject(sql, Long.class);
         return value == null ? 0L : value;
@@ -0,0 +1,185 @@
+package cn.edu.jnu.labflowreport;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.multipart;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import cn.edu.jnu.labflowreport.storage.FileStorageService;
+import cn.edu.jnu.labflowreport.storage.StorageBlobMigrator;
+import com.jayway.jsonpath.JsonPath;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.transaction.PlatformTransactionManager;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+class StorageBlobIntegrationTests {
+
+    private static final Path STORAGE_DIR = Path.of("target", "test-uploads");
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private FileStorageService storageService;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Test
+    void identicalUploadsShouldShareOneBlobUntilTheLastReferenceIsDeleted() throws Exception {
+        String adminToken = login("admin", "admin123");
+        String teacherToken = login("teacher", "teacher123");
+        long classId = firstClassId(adminToken);
+        long taskA = createTask(teacherToken, classId, "附件去重任务A_" + System.nanoTime());
+        long taskB = createTask(teacherToken, classId, "附件去重任务B_" + System.nanoTime());
+
+        byte[] handout = ("实验讲义 " + System.nanoTime()).getBytes(StandardCharsets.UTF_8);
+        long attachmentA = uploadTaskAttachment(teacherToken, taskA, "handout.txt", handout);
+        long attachmentB = uploadTaskAttachment(teacherToken, taskB, "讲义副本.txt", handout);
+
+        String pathA = taskAttachmentPath(attachmentA);
+        assertTrue(pathA.startsWith("blobs/"), pathA);
+        assertEquals(pathA, taskAttachmentPath(attachmentB));
+        String sha256 = pathA.substring(pathA.lastIndexOf('/') + 1);
+        assertEquals(2, refCount(sha256));
+        assertTrue(Files.isRegularFile(STORAGE_DIR.resolve(pathA)));
+
+        mockMvc.perform(get("/api/task-attachments/" + attachmentB + "/download")
+                        .header(HttpHeaders.AUTHORIZATION, "Bearer " + teacherToken))
+                .andExpect(status().isOk())
+                .andExpect(content().bytes(handout));
+
+        mockMvc.perform(delete("/api/tasks/" + taskA + "/attachments/" + attachmentA)
+                        .header(HttpHeaders.AUTHORIZATION, "Bearer " + teacherToken))
+                .andExpect(status().isOk());
+        assertEquals(1, refCount(sha256));
+        assertTrue(Files.isRegularFile(STORAGE_DIR.resolve(pathA)), "still referenced by task B");
+
+        mockMvc.perform(delete("/api/tasks/" + taskB + "/attachments/" + attachmentB)
+                        .header(HttpHeaders.AUTHORIZATION, "Bearer " + teacherToken))
+                .andExpect(status().isOk());
+        assertEquals(0L, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM storage_blob WHERE sha256 = ?", Long.class, sha256));
+        assertFalse(Files.exists(STORAGE_DIR.resolve(pathA)));
+    }
+
+    @Test
+    void migratorShouldMoveLegacyFilesIntoSharedBlobs() throws Exception {
+        String adminToken = login("admin", "admin123");
+        String teacherToken = login("teacher", "teacher123");
+        long taskId = createTask(teacherToken, firstClassId(adminToken), "附件迁移任务_" + System.nanoTime());
+        Long teacherId = jdbcTemplate.queryForObject("SELECT id FROM sys_user WHERE username = 'teacher'", Long.class);
+
+        // Two copies of the same handout written under the old one-file-per-upload layout.
+        byte[] template = ("报告模板 " + System.nanoTime()).getBytes(StandardCharsets.UTF_8);
+        List<Long> ids = new ArrayList<>();
+        List<Path> legacyFiles = new ArrayList<>();
+        for (String name : List.of("template-1.docx", "template-2.docx")) {
+            String relative = "task-attachments/" + taskId + "/" + name;
+            Path file = STORAGE_DIR.resolve(relative);
+            Files.createDirectories(file.getParent());
+            Files.write(file, template);
+            legacyFiles.add(file);
+            jdbcTemplate.update("""
+                    INSERT INTO task_attachment (task_id, file_name, file_path, file_size, content_type, uploaded_by, uploaded_at, created_at)
+                    VALUES (?, ?, ?, ?, ?, ?, ?, ?)
+                    """, taskId, name, relative, template.length, "application/octet-stream", teacherId,
+                    LocalDateTime.now(), LocalDateTime.now());
+            ids.add(jdbcTemplate.queryForObject("SELECT MAX(id) FROM task_attachment", Long.class));
+        }
+
+        StorageBlobMigrator.Result result = new StorageBlobMigrator(jdbcTemplate, storageService, transactionManager).migrate();
+        assertTrue(result.migrated() >= 2, result.toString());
+        assertTrue(result.deduplicated() >= 1, result.toString());
+
+        String path = taskAttachmentPath(ids.get(0));
+        assertTrue(path.startsWith("blobs/"), path);
+        assertEquals(path, taskAttachmentPath(ids.get(1)));
+        assertEquals(2, refCount(path.substring(path.lastIndexOf('/') + 1)));
+        legacyFiles.forEach(f -> assertFalse(Files.exists(f), f + " removed"));
+
+        mockMvc.perform(get("/api/task-attachments/" + ids.get(1) + "/download")
+                        .header(HttpHeaders.AUTHORIZATION, "Bearer " + teacherToken))
+                .andExpect(status().isOk())
+                .andExpect(content().bytes(template));
+
+        // Nothing left to do on a second pass.
+        assertEquals(0, new StorageBlobMigrator(jdbcTemplate, storageService, transactionManager).migrate().migrated());
+    }
+
+    private String taskAttachmentPath(long attachmentId) {
+        return jdbcTemplate.queryForObject("SELECT file_path FROM task_attachment WHERE id = ?", String.class, attachmentId);
+    }
+
+    private int refCount(String sha256) {
+        Integer n = jdbcTemplate.queryForObject("SELECT ref_count FROM storage_blob WHERE sha256 = ?", Integer.class, sha256);
+        return n == null ? 0 : n;
+    }
+
+    private long uploadTaskAttachment(String teacherToken, long taskId, String name, byte[] bytes) throws Exception {
+        MvcResult res = mockMvc.perform(multipart("/api/tasks/" + taskId + "/attachments")
+                        .file(new MockMultipartFile("files", name, "text/plain", bytes))
+                        .header(HttpHeaders.AUTHORIZATION, "Bearer " + teacherToken))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.data.length()").value(1))
+                .andReturn();
+        Number id = JsonPath.read(res.getResponse().getContentAsString(), "$.data[0].id");
+        return id.longValue();
+    }
+
+    private long firstClassId(String adminToken) throws Exception {
+        MvcResult classes = mockMvc.perform(get("/api/admin/classes")
+                        .header(HttpHeaders.AUTHORIZATION, "Bearer " + adminToken))
+                .andExpect(status().isOk())
+                .andReturn();
+        Number classId = JsonPath.read(classes.getResponse().getContentAsString(), "$.data[0].id");
+        return classId.longValue();
+    }
+
+    private long createTask(String teacherToken, long classId, String title) throws Exception {
+        MvcResult res = mockMvc.perform(post("/api/tasks")
+                        .header(HttpHeaders.AUTHORIZATION, "Bearer " + teacherToken)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("""
+                                {"title":"%s","description":"附件存储","classIds":[%d]}
+                                """.formatted(title, classId)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.code").value(0))
+                .andReturn();
+        Number id = JsonPath.read(res.getResponse().getContentAsString(), "$.data.id");
+        return id.longValue();
+    }
+
+    private String login(String username, String password) throws Exception {
+        MvcResult res = mockMvc.perform(post("/api/auth/login")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"username\":\"" + username + "\",\"password\":\"" + password + "\"}"))
+                .andExpect(status().isOk())
+                .andReturn();
+        return JsonPath.read(res.getResponse().getContentAsString(), "$.data.token");
+    }
+}
@@ -0,0 +1,150 @@
+package cn.edu.jnu.labflowreport;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.multipart;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import cn.edu.jnu.labflowreport.common.util.HashUtils;
+import com.jayway.jsonpath.JsonPath;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.UUID;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+class StorageReconcilerIntegrationTests {
+
+    private static final Path STORAGE_DIR = Path.of("target", "test-uploads");
+    private static final FileTime TWO_DAYS_AGO = FileTime.from(Instant.now().minus(Duration.ofDays(2)));
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void reconcilerShouldRemoveOldOrphansOnlyAndRefreshUsage() throws Exception {
+        String adminToken = login("admin", "admin123");
+        String teacherToken = login("teacher", "teacher123");
+        long taskId = createTask(teacherToken, "存储清理测试");
+
+        byte[] kept = ("referenced " + UUID.randomUUID()).getBytes(StandardCharsets.UTF_8);
+        MvcResult uploaded = mockMvc.perform(multipart("/api/tasks/" + taskId + "/attachments")
+                        .file(new MockMultipartFile("files", "kept.txt", "text/plain", kept))
+                        .header(HttpHeaders.AUTHORIZATION, "Bearer " + teacherToken))
+                .andExpect(status().isOk())
+                .andReturn();
+        Number attachmentId = JsonPath.read(uploaded.getResponse().getContentAsString(), "$.data[0].id");
+        Path referenced = STORAGE_DIR.resolve(jdbcTemplate.queryForObject(
+                "SELECT file_path FROM task_attachment WHERE id = ?", String.class, attachmentId.longValue()));
+        Files.setLastModifiedTime(referenced, TWO_DAYS_AGO);
+
+        // A per-upload file whose row is gone, a blob nobody counted, a staging file of a dead request, and a
+        // fresh orphan still inside the grace period.
+        Path legacyOrphan = writeFile("task-attachments/" + taskId + "/deleted-row.txt", "legacy", true);
+        String orphanSha = HashUtils.sha256Hex(("orphan " + UUID.randomUUID()).getBytes(StandardCharsets.UTF_8));
+        Path blobOrphan = writeFile("blobs/" + orphanSha.substring(0, 2) + "/" + orphanSha.substring(2, 4) + "/" + orphanSha,
+                "orphan blob", true);
+        Path stagingOrphan = writeFile("blobs/tmp/" + UUID.randomUUID().toString().replace("-", ""), "staging", true);
+        Path recentOrphan = writeFile("task-attachments/" + taskId + "/just-written.txt", "recent", false);
+        // Something else sharing the directory, outside the application's prefixes.
+        Path foreign = writeFile("backups/" + UUID.randomUUID() + ".tar", "not ours", true);
+
+        int passes = 0;
+        boolean completed = false;
+        while (!completed && passes++ < 50) {
+            MvcResult res = mockMvc.perform(post("/api/admin/storage/reconcile")
+                            .header(HttpHeaders.AUTHORIZATION, "Bearer " + adminToken))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.data.drifted").value(0))
+                    .andReturn();
+            completed = JsonPath.read(res.getResponse().getContentAsString(), "$.data.completedWalk");
+        }
+        assertTrue(completed);
+
+        assertFalse(Files.exists(legacyOrphan));
+        assertFalse(Files.exists(blobOrphan));
+        assertFalse(Files.exists(stagingOrphan));
+        assertEquals(0, jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM storage_blob WHERE sha256 = ?", Integer.class, orphanSha));
+        assertTrue(Files.exists(recentOrphan));
+        assertTrue(Files.exists(foreign));
+        assertTrue(Files.exists(referenced));
+        mockMvc.perform(get("/api/task-attachments/" + attachmentId + "/download")
+                        .header(HttpHeaders.AUTHORIZATION, "Bearer " + teacherToken))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(get("/api/admin/storage/usage")
+                        .param("scope", "TASK")
+                        .param("limit", "500")
+                        .header(HttpHeaders.AUTHORIZATION, "Bearer " + adminToken))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.data[?(@.scopeId == %d)].name".formatted(taskId)).value("存储清理测试"))
+                .andExpect(jsonPath("$.data[?(@.scopeId == %d)].fileCount".formatted(taskId)).value(1))
+                .andExpect(jsonPath("$.data[?(@.scopeId == %d)].totalBytes".formatted(taskId)).value(kept.length));
+        mockMvc.perform(get("/api/admin/storage/usage/summary")
+                        .header(HttpHeaders.AUTHORIZATION, "Bearer " + adminToken))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.data.attachmentCount").isNumber())
+                .andExpect(jsonPath("$.data.refreshedAt").isNotEmpty());
+        mockMvc.perform(get("/api/admin/storage/usage")
+                        .param("scope", "SEMESTER")
+                        .header(HttpHeaders.AUTHORIZATION, "Bearer " + adminToken))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/api/admin/storage/usage")
+                        .header(HttpHeaders.AUTHORIZATION, "Bearer " + teacherToken))
+                .andExpect(status().isForbidden());
+    }
+
+    private Path writeFile(String relative, String content, boolean old) throws Exception {
+        Path file = STORAGE_DIR.resolve(relative);
+        Files.createDirectories(file.getParent());
+        Files.writeString(file, content);
+        if (old) {
+            Files.setLastModifiedTime(file, TWO_DAYS_AGO);
+        }
+        return file;
+    }
+
+    private long createTask(String teacherToken, String title) throws Exception {
+        MvcResult res = mockMvc.perform(post("/api/tasks")
+                        .header(HttpHeaders.AUTHORIZATION, "Bearer " + teacherToken)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("""
+                                {"title":"%s","description":"orphan gc","classIds":[1]}
+                                """.formatted(title)))
+                .andExpect(status().isOk())
+                .andReturn();
+        Number id = JsonPath.read(res.getResponse().getContentAsString(), "$.data.id");
+        return id.longValue();
+    }
+
+    private String login(String username, String password) throws Exception {
+        MvcResult res = mockMvc.perform(post("/api/auth/login")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"username\":\"" + username + "\",\"password\":\"" + password + "\"}"))
+                .andExpect(status().isOk())
+                .andReturn();
+        return JsonPath.read(res.getResponse().getContentAsString(), "$.data.token");
+    }
+}
@@ -1,11 +1,19 @@
 package cn.edu.jnu.labflowreport;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 import com.jayway.jsonpath.JsonPath;
+import java.io.IOException;
+import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
@@ -126,11 +134,53 @@ class SubmissionMultipartIntegrationTests {
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$.code").value(0));
 
+        long stagedBefore = stagingFiles();
         mockMvc.perform(MockMvcRequestBuilders.multipart("/api/tasks/" + taskId2 + "/submissions/multipart")
                         .file(code)
                         .header(HttpHeaders.AUTHORIZATION, "Bearer " + studentToken)
                         .param("contentMd", "Same body"))
                 .andExpect(status().isBadRequest());
+        assertEquals(stagedBefore, stagingFiles(), "a rejected duplicate leaves no staged copy behind");
+
+        // Each upload is read exactly once: staged while hashed, then kept without another read.
+        AtomicInteger reads = new AtomicInteger();
+        MockMultipartFile data = new MockMultipartFile(
+                "files",
+                "data.csv",
+                "text/csv",
+                ("t,v\n0," + System.nanoTime()).getBytes(StandardCharsets.UTF_8)
+        ) {
+            @Override
+            public InputStream getInputStream() throws IOException {
+                reads.incrementAndGet();
+                return super.getInputStream();
+            }
+        };
+        MvcResult withData = mockMvc.perform(MockMvcRequestBuilders.multipart("/api/tasks/" + taskId2 + "/submissions/multipart")
+                        .file(data)
+                        .file(code)
+                        .header(HttpHeaders.AUTHORIZATION, "Bearer " + studentToken)
+                        .param("contentMd", "Same body"))
+                .andExpect(status().isOk())
+                .andReturn();
+        assertEquals(1, reads.get());
+        Number submissionId = JsonPath.read(withData.getResponse().getContentAsString(), "$.data.id");
+        mockMvc.perform(get("/api/submissions/" + submissionId.longValue() + "/attachments")
+                        .header(HttpHeaders.AUTHORIZATION, "Bearer " + teacherToken))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.data.length()").value(1))
+                .andExpect(jsonPath("$.data[0].fileName").value("data.csv"));
+        assertEquals(stagedBefore, stagingFiles());
+    }
+
+    private long stagingFiles() throws IOException {
+        Path tmp = Path.of("target", "test-uploads", "blobs", "tmp");
+        if (!Files.isDirectory(tmp)) {
+            return 0;
+        }
+        try (Stream<Path> files = Files.list(tmp)) {
+            return files.filter(p -> !p.getFileName().toString().startsWith("upload-")).count();
+        }
     }
 
     private String login(String username, String password) throws Exception {
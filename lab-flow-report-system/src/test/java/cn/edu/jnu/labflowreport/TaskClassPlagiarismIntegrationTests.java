@@ -15,21 +15,16 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
 import com.jayway.jsonpath.JsonPath;
 import java.time.LocalDateTime;
 import org.junit.jupiter.api.Test;
-import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.mock.web.MockMultipartFile;
-import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.MvcResult;
 
 @SpringBootTest
 @AutoConfigureMockMvc
-class TaskClassPlagiarismIntegrationTests {
-
-    @Autowired
-    private MockMvc mockMvc;
+class TaskClassPlagiarismIntegrationTests extends PlagiarismIntegrationTestSupport {
 
     @Test
     void tasksShouldSupportClassTargetingCloseAndPlagiarismAllVersions() throws Exception {
@@ -261,10 +256,12 @@ class TaskClassPlagiarismIntegrationTests {
         long pSubB1Id = ((Number) JsonPath.read(pSubB1.getResponse().getContentAsString(), "$.data.id")).longValue();
         assertTrue(pSubB1Id > 0);
 
-        mockMvc.perform(post("/api/teacher/tasks/" + taskPId + "/plagiarism/run")
+        MvcResult plagRunP = mockMvc.perform(post("/api/teacher/tasks/" + taskPId + "/plagiarism/run")
                         .header(HttpHeaders.AUTHORIZATION, "Bearer " + teacherToken))
                 .andExpect(status().isOk())
-                .andExpect(jsonPath("$.code").value(0));
+                .andExpect(jsonPath("$.code").value(0))
+                .andReturn();
+        awaitPlagiarismRun(teacherToken, plagRunP);
 
         // v2 should not match to student A v1; it should match to student B.
         mockMvc.perform(get("/api/teacher/submissions/" + pSubA2Id + "/plagiarism-summary")
@@ -319,10 +316,12 @@ class TaskClassPlagiarismIntegrationTests {
                 .andReturn();
         long hSubA2Id = ((Number) JsonPath.read(hSubA2.getResponse().getContentAsString(), "$.data.id")).longValue();
 
-        mockMvc.perform(post("/api/teacher/tasks/" + taskHId + "/plagiarism/run")
+        MvcResult plagRunH = mockMvc.perform(post("/api/teacher/tasks/" + taskHId + "/plagiarism/run")
                         .header(HttpHeaders.AUTHORIZATION, "Bearer " + teacherToken))
                 .andExpect(status().isOk())
-                .andExpect(jsonPath("$.code").value(0));
+                .andExpect(jsonPath("$.code").value(0))
+                .andReturn();
+        awaitPlagiarismRun(teacherToken, plagRunH);
 
         MvcResult histRes = mockMvc.perform(get("/api/teacher/submissions/" + hSubA2Id + "/plagiarism-history")
                         .header(HttpHeaders.AUTHORIZATION, "Bearer " + teacherToken))
@@ -344,32 +343,4 @@ class TaskClassPlagiarismIntegrationTests {
         assertTrue(maxEarlier != null);
         assertEquals(v1Score, maxEarlier, 0.0001);
     }
-
-    private void createStudent(String adminToken, String username, long classId) throws Exception {
-        mockMvc.perform(post("/api/admin/users")
-                        .header(HttpHeaders.AUTHORIZATION, "Bearer " + adminToken)
-                        .contentType(MediaType.APPLICATION_JSON)
-                        .content("""
-                                {
-                                  "username":"%s",
-                                  "displayName":"%s",
-                                  "password":"student123",
-                                  "enabled":true,
-                                  "classId":%d,
-                                  "roleCodes":["ROLE_STUDENT"]
-                                }
-                                """.formatted(username, username, classId)))
-                .andExpect(status().isOk())
-                .andExpect(jsonPath("$.code").value(0));
-    }
-
-    private String login(String username, String password) throws Exception {
-        MvcResult result = mockMvc.perform(post("/api/auth/login")
-                        .contentType(MediaType.APPLICATION_JSON)
-                        .content("{\"username\":\"" + username + "\",\"password\":\"" + password + "\"}"))
-                .andExpect(status().isOk())
-                .andExpect(jsonPath("$.code").value(0))
-                .andReturn();
-        return JsonPath.read(result.getResponse().getContentAsString(), "$.data.token");
-    }
 }
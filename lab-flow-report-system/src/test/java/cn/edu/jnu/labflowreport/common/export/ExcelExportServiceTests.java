@@ -0,0 +1,61 @@
+package cn.edu.jnu.labflowreport.common.export;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.jupiter.api.Test;
+
+class ExcelExportServiceTests {
+
+    private final ExcelExportService service = new ExcelExportService();
+
+    @Test
+    void rowsBeyondTheWindowShouldAllBeWrittenInOrder() throws Exception {
+        int rows = ExcelExportService.ROW_WINDOW * 25 + 7;
+        byte[] bytes = service.writeWorkbook(List.of(new ExcelExportService.SheetSpec(
+                "明细",
+                List.of("序号", "时间"),
+                sink -> {
+                    for (int i = 0; i < rows; i++) {
+                        sink.accept(List.of(i, LocalDateTime.of(2026, 3, 1, 8, 0).plusMinutes(i)));
+                    }
+                })));
+
+        try (XSSFWorkbook workbook = new XSSFWorkbook(new ByteArrayInputStream(bytes))) {
+            Sheet sheet = workbook.getSheet("明细");
+            assertEquals(rows, sheet.getLastRowNum());
+            assertEquals("序号", sheet.getRow(0).getCell(0).getStringCellValue());
+            assertEquals("0", sheet.getRow(1).getCell(0).getStringCellValue());
+            assertEquals(String.valueOf(rows - 1), sheet.getRow(rows).getCell(0).getStringCellValue());
+            assertEquals("2026-03-01 08:01:00", sheet.getRow(2).getCell(1).getStringCellValue());
+            assertEquals(1, sheet.getPaneInformation().getHorizontalSplitPosition());
+        }
+    }
+
+    @Test
+    void columnWidthsShouldFollowTheSampledRowsWithinBounds() throws Exception {
+        String wide = "x".repeat(40);
+        List<List<?>> rows = new ArrayList<>();
+        for (int i = 0; i < ExcelExportService.WIDTH_SAMPLE_ROWS; i++) {
+            rows.add(List.of("a", wide));
+        }
+        rows.add(List.of("y".repeat(100), "b"));
+        byte[] bytes = service.writeWorkbook(List.of(
+                new ExcelExportService.SheetSpec("明细", List.of("短", "长"), rows),
+                new ExcelExportService.SheetSpec("明细", null, List.of(List.of("z".repeat(100))))));
+
+        try (XSSFWorkbook workbook = new XSSFWorkbook(new ByteArrayInputStream(bytes))) {
+            Sheet first = workbook.getSheetAt(0);
+            assertEquals(12 * 256, first.getColumnWidth(0), "the long value past the sample is not measured");
+            assertEquals(42 * 256, first.getColumnWidth(1));
+            Sheet second = workbook.getSheetAt(1);
+            assertEquals("明细-2", second.getSheetName());
+            assertEquals(60 * 256, second.getColumnWidth(0));
+        }
+    }
+}
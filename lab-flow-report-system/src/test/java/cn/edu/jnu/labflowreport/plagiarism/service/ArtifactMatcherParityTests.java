@@ -0,0 +1,128 @@
+package cn.edu.jnu.labflowreport.plagiarism.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import cn.edu.jnu.labflowreport.plagiarism.service.ArtifactMatcher.Artifact;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+class ArtifactMatcherParityTests {
+
+    private static final double TEXT_THRESHOLD = 0.85;
+    private static final double IMAGE_THRESHOLD = 0.92;
+
+    @Test
+    void bandIndexShouldMatchBruteForceAtConfiguredThresholds() {
+        Random rnd = new Random(20260218L);
+        int submissions = 600;
+        List<List<Artifact>> artifacts = new ArrayList<>();
+        List<Long> fps = new ArrayList<>();
+        List<Long> imageFps = new ArrayList<>();
+        for (int i = 0; i < submissions; i++) {
+            List<Artifact> list = new ArrayList<>();
+            long text = rnd.nextLong();
+            // Roughly one in five submissions is a near-copy of an earlier one, some right at the threshold.
+            if (i > 0 && rnd.nextInt(5) == 0) {
+                text = flipBits(fps.get(rnd.nextInt(fps.size())), rnd.nextInt(Fp64BandIndex.maxDistance(TEXT_THRESHOLD) + 3), rnd);
+            }
+            fps.add(text);
+            list.add(Artifact.submissionText(text));
+            int images = rnd.nextInt(4);
+            for (int k = 0; k < images; k++) {
+                long img = rnd.nextLong();
+                if (!imageFps.isEmpty() && rnd.nextInt(4) == 0) {
+                    img = flipBits(imageFps.get(rnd.nextInt(imageFps.size())), rnd.nextInt(Fp64BandIndex.maxDistance(IMAGE_THRESHOLD) + 3), rnd);
+                }
+                imageFps.add(img);
+                list.add(Artifact.attachmentImage((long) (i * 10 + k), "img" + k + ".png", img));
+            }
+            artifacts.add(list);
+        }
+
+        ArtifactMatcher brute = new ArtifactMatcher(TEXT_THRESHOLD, IMAGE_THRESHOLD, false);
+        ArtifactMatcher indexed = new ArtifactMatcher(TEXT_THRESHOLD, IMAGE_THRESHOLD, true);
+        for (int i = 0; i < submissions; i++) {
+            // Two versions per student so same-student exclusion is exercised too.
+            long studentId = i / 2;
+            brute.add((long) i, studentId, artifacts.get(i));
+            indexed.add((long) i, studentId, artifacts.get(i));
+        }
+
+        int aboveThreshold = 0;
+        long candidatePairs = 0;
+        for (int i = 0; i < submissions; i++) {
+            ArtifactMatcher.Best b = brute.findBest((long) i);
+            ArtifactMatcher.Best l = indexed.findBest((long) i);
+            candidatePairs += indexed.candidates(i).length;
+            assertTrue(l.maxScore <= b.maxScore, "indexed score can never exceed the exact score");
+            if (reachesThreshold(artifacts, i, b)) {
+                aboveThreshold++;
+                assertEquals(b.maxScore, l.maxScore, 0.0, "submission " + i);
+                if (b.bestOtherSubmissionId.equals(l.bestOtherSubmissionId)) {
+                    assertEquals(b.evidence, l.evidence, "submission " + i);
+                } else {
+                    // Tie on score: either submission is an acceptable best match.
+                    assertEquals(b.maxScore, scoreAgainst(artifacts, i, l.bestOtherSubmissionId.intValue()), 0.0);
+                }
+            }
+        }
+        assertTrue(aboveThreshold > submissions / 10, "fixture should contain enough near-duplicates");
+        assertTrue(candidatePairs < (long) submissions * (submissions - 1) / 2, "index should prune candidate pairs");
+    }
+
+    @Test
+    void bandCountShouldCoverThresholdDistance() {
+        assertEquals(10, Fp64BandIndex.bandsFor(0.85));
+        assertEquals(6, Fp64BandIndex.bandsFor(0.92));
+        assertEquals(1, Fp64BandIndex.bandsFor(1.0));
+
+        Fp64BandIndex index = new Fp64BandIndex(0.92, 4);
+        long base = 0x0123456789abcdefL;
+        index.add(base ^ 0b11111L, 0);
+        index.add(~base, 1);
+        List<Integer> hits = new ArrayList<>();
+        index.forEachCandidate(base, hits::add);
+        assertTrue(hits.contains(0));
+        assertTrue(!hits.contains(1));
+    }
+
+    private static boolean reachesThreshold(List<List<Artifact>> artifacts, int self, ArtifactMatcher.Best best) {
+        if (best.bestOtherSubmissionId == null) return false;
+        List<Artifact> a = artifacts.get(self);
+        List<Artifact> b = artifacts.get(best.bestOtherSubmissionId.intValue());
+        for (Artifact x : a) {
+            for (Artifact y : b) {
+                if (!x.algo().equals(y.algo())) continue;
+                boolean image = ArtifactMatcher.ALGO_DHASH64.equals(x.algo());
+                double s = image ? DHash64.similarity(x.fp(), y.fp()) : SimHash64.similarity(x.fp(), y.fp());
+                if (s == best.maxScore && s >= (image ? IMAGE_THRESHOLD : TEXT_THRESHOLD)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static double scoreAgainst(List<List<Artifact>> artifacts, int self, int other) {
+        double max = 0.0;
+        for (Artifact x : artifacts.get(self)) {
+            for (Artifact y : artifacts.get(other)) {
+                if (x.algo().equals(y.algo())) {
+                    max = Math.max(max, SimHash64.similarity(x.fp(), y.fp()));
+                }
+            }
+        }
+        return max;
+    }
+
+    private static long flipBits(long fp, int bits, Random rnd) {
+        long out = fp;
+        for (int i = 0; i < bits; i++) {
+            out ^= 1L << rnd.nextInt(64);
+        }
+        return out;
+    }
+}
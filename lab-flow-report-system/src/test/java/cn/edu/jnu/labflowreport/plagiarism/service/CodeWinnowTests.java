@@ -0,0 +1,198 @@
+package cn.edu.jnu.labflowreport.plagiarism.service;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import cn.edu.jnu.labflowreport.plagiarism.service.ArtifactMatcher.Artifact;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class CodeWinnowTests {
+
+    private static final String ORIGINAL = """
+            import java.util.Scanner;
+
+            public class Main {
+                // 计算数组的最大子段和
+                public static int maxSubArray(int[] nums) {
+                    int best = nums[0];
+                    int current = 0;
+                    for (int i = 0; i < nums.length; i++) {
+                        current = Math.max(nums[i], current + nums[i]);
+                        best = Math.max(best, current);
+                    }
+                    return best;
+                }
+
+                public static void main(String[] args) {
+                    Scanner in = new Scanner(System.in);
+                    int n = in.nextInt();
+                    int[] a = new int[n];
+                    for (int i = 0; i < n; i++) a[i] = in.nextInt();
+                    System.out.println("answer: " + maxSubArray(a));
+                }
+            }
+            """;
+
+    // Same program: identifiers renamed, comments and literals changed, reformatted.
+    private static final String RENAMED = """
+            import java.util.Scanner;
+            /* my own solution */
+            public class Solution
+            {
+              public static int kadane(int[] arr)
+              {
+                int res = arr[0]; int sum = 0;
+                for (int k = 0; k < arr.length; k++)
+                {
+                  sum = Math.max(arr[k], sum + arr[k]);
+                  res = Math.max(res, sum);
+                }
+                return res;
+              }
+              public static void main(String[] argv) {
+                Scanner sc = new Scanner(System.in);
+                int len = sc.nextInt();
+                int[] values = new int[len];
+                for (int j = 0; j < len; j++) values[j] = sc.nextInt();
+                System.out.println("result = " + kadane(values));
+              }
+            }
+            """;
+
+    private static final String UNRELATED = """
+            public class Graph {
+                private final List<List<Integer>> adj = new ArrayList<>();
+
+                boolean hasPath(int from, int to) {
+                    Deque<Integer> queue = new ArrayDeque<>();
+                    boolean[] seen = new boolean[adj.size()];
+                    queue.add(from);
+                    while (!queue.isEmpty()) {
+                        int v = queue.poll();
+                        if (v == to) return true;
+                        if (seen[v]) continue;
+                        seen[v] = true;
+                        queue.addAll(adj.get(v));
+                    }
+                    return false;
+                }
+            }
+            """;
+
+    @Test
+    void lexerShouldNormalizeIdentifiersLiteralsAndComments() {
+        CodeLexer.Language java = CodeLexer.languageOf("Main.java");
+        assertEquals(CodeLexer.Language.JAVA, java);
+        assertNull(CodeLexer.languageOf("README.md"));
+        assertArrayEquals(
+                CodeLexer.tokens("int total = 42; // note\nString s = \"x\";", java),
+                CodeLexer.tokens("int  sum=7; /* c */ String label = \"y\";", java)
+        );
+
+        CodeLexer.Language py = CodeLexer.languageOf("a.py");
+        assertArrayEquals(
+                CodeLexer.tokens("def f(x):\n    \"\"\"doc\"\"\"\n    return x + 1  # inc\n", py),
+                CodeLexer.tokens("def g(y):\n    '''other'''\n    return y + 2\n", py)
+        );
+    }
+
+    @Test
+    void renamedAndReformattedCopyShouldKeepItsFingerprints() {
+        CodeLexer.Language java = CodeLexer.Language.JAVA;
+        int[] a = CodeWinnow.fingerprint(CodeLexer.tokens(ORIGINAL, java), 5, 4);
+        int[] b = CodeWinnow.fingerprint(CodeLexer.tokens(RENAMED, java), 5, 4);
+        int[] c = CodeWinnow.fingerprint(CodeLexer.tokens(UNRELATED, java), 5, 4);
+
+        assertTrue(a.length > 10);
+        assertEquals(1.0, CodeWinnow.similarity(a, b), 1e-9);
+        assertTrue(CodeWinnow.similarity(a, c) < 0.3, "unrelated: " + CodeWinnow.similarity(a, c));
+        assertArrayEquals(a, CodeWinnow.decode(CodeWinnow.encode(a)));
+    }
+
+    @Test
+    void winnowingShouldKeepAFingerprintOfEverySharedFragment() {
+        // Any common run of k + w - 1 tokens must leave a common fingerprint.
+        int[] shared = {101, 102, 103, 104, 105, 106, 107, 108};
+        int[] a = {1, 2, 3, 4, 5, 6, 7, 8, 9, 101, 102, 103, 104, 105, 106, 107, 108, 10, 11};
+        int[] b = {50, 51, 101, 102, 103, 104, 105, 106, 107, 108, 52, 53, 54, 55};
+        int[] fa = CodeWinnow.fingerprint(a, 5, 4);
+        int[] fb = CodeWinnow.fingerprint(b, 5, 4);
+        assertTrue(CodeWinnow.shared(fa, fb) >= 1);
+        assertTrue(CodeWinnow.fingerprint(shared, 5, 4).length >= 1);
+        assertEquals(0, CodeWinnow.fingerprint(new int[] {1, 2, 3}, 5, 4).length);
+    }
+
+    @Test
+    void matcherShouldIgnoreSkeletonCodeSharedByMostSubmissions() {
+        String skeleton = """
+                public class Lab3 {
+                    public static void main(String[] args) throws Exception {
+                        BufferedReader reader = new BufferedReader(new InputStreamReader(System.in));
+                        String line = reader.readLine();
+                        System.out.println(solve(line));
+                    }
+                """;
+        String copied = """
+                    static String solve(String s) {
+                        StringBuilder sb = new StringBuilder();
+                        for (int i = s.length() - 1; i >= 0; i--) {
+                            if (Character.isLetter(s.charAt(i))) sb.append(Character.toUpperCase(s.charAt(i)));
+                        }
+                        return sb.toString();
+                    }
+                }
+                """;
+        String own1 = """
+                    static String solve(String t) {
+                        return new StringBuilder(t).reverse().toString().toUpperCase();
+                    }
+                }
+                """;
+        String own2 = """
+                    static String solve(String x) {
+                        char[] cs = x.toCharArray();
+                        int l = 0, r = cs.length - 1;
+                        while (l < r) { char tmp = cs[l]; cs[l++] = cs[r]; cs[r--] = tmp; }
+                        return String.valueOf(cs);
+                    }
+                }
+                """;
+        String own3 = """
+                    static String solve(String y) {
+                        String out = "";
+                        for (char ch : y.toCharArray()) out = ch + out;
+                        return out.trim();
+                    }
+                }
+                """;
+
+        String[] bodies = {copied, copied, own1, own2, own3};
+        ArtifactMatcher matcher = withSources(new ArtifactMatcher(0.85, 0.92, false, 0.5), skeleton, bodies);
+
+        ArtifactMatcher.Best copy = matcher.findBest(1L);
+        assertEquals(2L, copy.bestOtherSubmissionId);
+        assertEquals(1.0, copy.maxScore, 1e-9);
+        assertEquals(ArtifactMatcher.ART_ATTACHMENT_CODE, copy.evidence.get(0).type());
+
+        // Only the skeleton is shared with the others; once it is dropped they score low.
+        ArtifactMatcher.Best own = matcher.findBest(3L);
+        assertTrue(own.maxScore < 0.3, "own solution: " + own.maxScore);
+        ArtifactMatcher unfiltered = withSources(new ArtifactMatcher(0.85, 0.92, false), skeleton, bodies);
+        assertTrue(unfiltered.findBest(3L).maxScore > own.maxScore);
+
+        // The inverted index finds the same best match as the full scan.
+        ArtifactMatcher indexed = withSources(new ArtifactMatcher(0.85, 0.92, true, 0.5), skeleton, bodies);
+        assertEquals(2L, indexed.findBest(1L).bestOtherSubmissionId);
+    }
+
+    private static ArtifactMatcher withSources(ArtifactMatcher matcher, String skeleton, String[] bodies) {
+        for (int i = 0; i < bodies.length; i++) {
+            int[] set = CodeWinnow.fingerprint(CodeLexer.tokens(skeleton + bodies[i], CodeLexer.Language.JAVA), 5, 4);
+            matcher.add((long) i + 1, (long) i + 100, List.of(Artifact.attachmentCode((long) i + 1000, "Lab3.java", set)));
+        }
+        return matcher;
+    }
+}
@@ -0,0 +1,140 @@
+package cn.edu.jnu.labflowreport.plagiarism.service;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.awt.Color;
+import java.awt.GradientPaint;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.Locale;
+import java.util.SplittableRandom;
+import javax.imageio.ImageIO;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+class DHash64Tests {
+
+    @Test
+    void smallImagesShouldHashExactlyLikeTheFullDecode() throws IOException {
+        SplittableRandom rnd = new SplittableRandom(11);
+        for (int i = 0; i < 20; i++) {
+            int w = 9 + rnd.nextInt(240);
+            int h = 8 + rnd.nextInt(240);
+            byte[] png = encode(scene(w, h, rnd.nextLong()), "png");
+            assertEquals(legacyFingerprint(png), DHash64.fingerprint(png), w + "x" + h);
+        }
+    }
+
+    @Test
+    void largeImagesShouldStayCloseToTheFullDecode() throws IOException {
+        SplittableRandom rnd = new SplittableRandom(5);
+        for (String format : new String[] {"png", "jpg"}) {
+            for (int i = 0; i < 4; i++) {
+                byte[] bytes = encode(scene(1600 + rnd.nextInt(800), 1200 + rnd.nextInt(600), rnd.nextLong()), format);
+                double sim = DHash64.similarity(legacyFingerprint(bytes), DHash64.fingerprint(bytes));
+                assertTrue(sim >= 0.9, format + " similarity: " + sim);
+            }
+        }
+    }
+
+    @Test
+    void shouldRejectBytesThatAreNotAnImage() {
+        assertThrows(IOException.class, () -> DHash64.fingerprint("not an image".getBytes()));
+        assertEquals(0L, assertDoesNotThrow(() -> DHash64.fingerprint(new byte[0])));
+    }
+
+    /**
+     * Heap allocation and time per image, subsampled read vs the former {@code ImageIO.read} full decode.
+     * Opt-in: {@code mvn test -Dtest=DHash64Tests -Dplag.bench=true}.
+     */
+    @Test
+    @EnabledIfSystemProperty(named = "plag.bench", matches = "true")
+    void compareSubsampledAndFullDecode() throws IOException {
+        com.sun.management.ThreadMXBean mx = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().getId();
+        for (String format : new String[] {"jpg", "png"}) {
+            byte[] bytes = encode(scene(4000, 3000, 42L), format);
+            for (int warmup = 0; warmup < 3; warmup++) {
+                legacyFingerprint(bytes);
+                DHash64.fingerprint(bytes);
+            }
+            int rounds = 10;
+            long bytesBefore = mx.getThreadAllocatedBytes(thread);
+            long start = System.nanoTime();
+            for (int r = 0; r < rounds; r++) {
+                legacyFingerprint(bytes);
+            }
+            long fullNs = (System.nanoTime() - start) / rounds;
+            long fullAlloc = (mx.getThreadAllocatedBytes(thread) - bytesBefore) / rounds;
+
+            bytesBefore = mx.getThreadAllocatedBytes(thread);
+            start = System.nanoTime();
+            for (int r = 0; r < rounds; r++) {
+                DHash64.fingerprint(bytes);
+            }
+            long subNs = (System.nanoTime() - start) / rounds;
+            long subAlloc = (mx.getThreadAllocatedBytes(thread) - bytesBefore) / rounds;
+
+            System.out.printf(Locale.ROOT,
+                    "%s 4000x3000 (%d KB): full=%.1fms %.1fMB/img subsampled=%.1fms %.1fMB/img%n",
+                    format, bytes.length / 1024, fullNs / 1e6, fullAlloc / 1048576.0, subNs / 1e6, subAlloc / 1048576.0);
+        }
+    }
+
+    private static BufferedImage scene(int w, int h, long seed) {
+        SplittableRandom rnd = new SplittableRandom(seed);
+        BufferedImage img = new BufferedImage(w, h, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = img.createGraphics();
+        try {
+            g.setPaint(new GradientPaint(0, 0, new Color(rnd.nextInt(0xFFFFFF)), w, h, new Color(rnd.nextInt(0xFFFFFF))));
+            g.fillRect(0, 0, w, h);
+            for (int i = 0; i < 12; i++) {
+                g.setColor(new Color(rnd.nextInt(0xFFFFFF)));
+                g.fillOval(rnd.nextInt(w), rnd.nextInt(h), 1 + rnd.nextInt(w / 2 + 1), 1 + rnd.nextInt(h / 2 + 1));
+            }
+        } finally {
+            g.dispose();
+        }
+        return img;
+    }
+
+    private static byte[] encode(BufferedImage img, String format) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(img, format, out);
+        return out.toByteArray();
+    }
+
+    /**
+     * The pre-subsampling implementation: full {@code ImageIO.read}, then a 9x8 grid of nearest pixels.
+     */
+    private static long legacyFingerprint(byte[] bytes) throws IOException {
+        BufferedImage src = ImageIO.read(new ByteArrayInputStream(bytes));
+        int sw = Math.max(1, src.getWidth());
+        int sh = Math.max(1, src.getHeight());
+        int[] g9x8 = new int[9 * 8];
+        for (int y = 0; y < 8; y++) {
+            int sy = Math.min(sh - 1, (int) ((y / 8.0) * sh));
+            for (int x = 0; x < 9; x++) {
+                int sx = Math.min(sw - 1, (int) ((x / 9.0) * sw));
+                int rgb = src.getRGB(sx, sy);
+                g9x8[y * 9 + x] = (((rgb >> 16) & 0xFF) * 299 + ((rgb >> 8) & 0xFF) * 587 + (rgb & 0xFF) * 114) / 1000;
+            }
+        }
+        long hash = 0L;
+        for (int y = 0; y < 8; y++) {
+            for (int x = 0; x < 8; x++) {
+                if (g9x8[y * 9 + x] > g9x8[y * 9 + x + 1]) {
+                    hash |= 1L << (y * 8 + x);
+                }
+            }
+        }
+        return hash;
+    }
+}
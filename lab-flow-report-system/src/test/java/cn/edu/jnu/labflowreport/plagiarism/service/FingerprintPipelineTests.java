@@ -0,0 +1,83 @@
+package cn.edu.jnu.labflowreport.plagiarism.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+class FingerprintPipelineTests {
+
+    private final ExecutorService pool = Executors.newFixedThreadPool(4);
+
+    @AfterEach
+    void shutdown() {
+        pool.shutdownNow();
+    }
+
+    @Test
+    void shouldWriteEveryResultOnceWithBoundedWorkInFlight() {
+        List<Integer> items = IntStream.range(0, 103).boxed().toList();
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger peak = new AtomicInteger();
+        List<List<Integer>> batches = new ArrayList<>();
+
+        boolean completed = FingerprintPipeline.run(pool, items, 6, 10, i -> {
+            peak.accumulateAndGet(running.incrementAndGet(), Math::max);
+            try {
+                Thread.sleep(i % 3);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            running.decrementAndGet();
+            return i * 2;
+        }, batches::add);
+
+        assertTrue(completed);
+        assertTrue(peak.get() <= 4, "never more workers than the pool: " + peak.get());
+        assertTrue(peak.get() > 1, "work actually ran in parallel");
+        assertEquals(11, batches.size());
+        batches.forEach(b -> assertEquals(b.stream().sorted().toList(), b, "each batch in input order"));
+        assertEquals(items.stream().map(i -> i * 2).toList(), batches.stream().flatMap(List::stream).sorted().toList());
+    }
+
+    @Test
+    void shouldStopWhenTheWriterSaysSo() {
+        List<Integer> items = IntStream.range(0, 50).boxed().toList();
+        AtomicInteger started = new AtomicInteger();
+        List<List<Integer>> batches = new ArrayList<>();
+
+        boolean completed = FingerprintPipeline.run(pool, items, 4, 5, i -> {
+            started.incrementAndGet();
+            return i;
+        }, b -> {
+            batches.add(b);
+            return false;
+        });
+
+        assertFalse(completed);
+        assertEquals(1, batches.size());
+        assertTrue(started.get() <= 5 + 4, "no new work after the writer stopped: " + started.get());
+    }
+
+    @Test
+    void shouldRethrowWorkerFailures() {
+        List<Integer> items = IntStream.range(0, 20).boxed().toList();
+        IllegalStateException e = assertThrows(IllegalStateException.class,
+                () -> FingerprintPipeline.run(pool, items, 4, 5, i -> {
+                    if (i == 7) {
+                        throw new IllegalStateException("broken attachment");
+                    }
+                    return i;
+                }, b -> true));
+        assertEquals("broken attachment", e.getMessage());
+    }
+}
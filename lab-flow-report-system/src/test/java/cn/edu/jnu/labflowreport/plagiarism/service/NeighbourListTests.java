@@ -0,0 +1,61 @@
+package cn.edu.jnu.labflowreport.plagiarism.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+import org.junit.jupiter.api.Test;
+
+class NeighbourListTests {
+
+    @Test
+    void builderShouldKeepTheHighestScoresInOrder() {
+        NeighbourList.Builder b = new NeighbourList.Builder(3);
+        b.offer(11, 0.40);
+        b.offer(12, 0.95);
+        b.offer(13, 0.0);
+        b.offer(14, 0.70);
+        b.offer(15, 0.70);
+        b.offer(16, 0.55);
+
+        NeighbourList list = b.build();
+        assertEquals(3, list.size());
+        assertEquals(12, list.id(0));
+        assertEquals(9500, list.score(0));
+        assertEquals(14, list.id(1), "equal scores keep the earlier offer first");
+        assertEquals(15, list.id(2));
+    }
+
+    @Test
+    void encodeShouldRoundTripAndMergeShouldKeepTheBetterScore() {
+        NeighbourList.Builder a = new NeighbourList.Builder(4);
+        a.offer(1L << 40, 0.91);
+        a.offer(2, 0.30);
+        NeighbourList carried = NeighbourList.decode(a.build().encode());
+        assertEquals(1L << 40, carried.id(0));
+        assertEquals(9100, carried.score(0));
+        assertEquals(NeighbourList.EMPTY, NeighbourList.decode(null));
+
+        NeighbourList.Builder b = new NeighbourList.Builder(4);
+        b.offer(2, 0.88);
+        b.offer(3, 0.20);
+        NeighbourList merged = carried.merge(b.build(), 2);
+        assertEquals(2, merged.size());
+        assertEquals(1L << 40, merged.id(0));
+        assertEquals(2, merged.id(1));
+        assertEquals(8800, merged.score(1));
+    }
+
+    @Test
+    void clustersShouldFollowChainsOfPairs() {
+        SubmissionClusters uf = new SubmissionClusters(6);
+        uf.union(0, 1);
+        uf.union(1, 2);
+        uf.union(4, 5);
+
+        assertEquals(uf.find(0), uf.find(2));
+        assertEquals(3, uf.sizeOf(2));
+        assertEquals(1, uf.sizeOf(3));
+        assertEquals(2, uf.sizeOf(4));
+        assertNotEquals(uf.find(0), uf.find(5));
+    }
+}
@@ -0,0 +1,139 @@
+package cn.edu.jnu.labflowreport.plagiarism.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+import org.apache.poi.xslf.usermodel.XMLSlideShow;
+import org.apache.poi.xslf.usermodel.XSLFTextBox;
+import org.apache.poi.xssf.usermodel.XSSFCellStyle;
+import org.apache.poi.xssf.usermodel.XSSFRow;
+import org.apache.poi.xssf.usermodel.XSSFSheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.apache.poi.xwpf.usermodel.XWPFDocument;
+import org.junit.jupiter.api.Test;
+
+class OoxmlTextExtractorTests {
+
+    private static final OoxmlTextExtractor.Budget LARGE = new OoxmlTextExtractor.Budget(64L << 20, 200_000, 10_000);
+
+    @Test
+    void shouldExtractParagraphsCellsAndSlides() throws IOException {
+        OoxmlTextExtractor.Result docx = extract(docx("实验目的：掌握数据库连接池的配置方法。", "实验结果：吞吐量下降约百分之十五。"), "r.docx", LARGE);
+        assertEquals("实验目的：掌握数据库连接池的配置方法。\n实验结果：吞吐量下降约百分之十五。\n", docx.text());
+        assertFalse(docx.truncated());
+
+        OoxmlTextExtractor.Result xlsx = extract(xlsx(), "data.xlsx", LARGE);
+        assertTrue(xlsx.text().contains("并发线程"), xlsx.text());
+        assertTrue(xlsx.text().contains("平均延迟"), xlsx.text());
+        assertTrue(xlsx.text().contains("16 12.5 12.50%"), xlsx.text());
+
+        OoxmlTextExtractor.Result pptx = extract(pptx("第一页 连接池原理", "第二页 测试结论"), "s.pptx", LARGE);
+        assertTrue(pptx.text().contains("第一页 连接池原理"), pptx.text());
+        assertTrue(pptx.text().contains("第二页 测试结论"), pptx.text());
+    }
+
+    @Test
+    void shouldStopAtTheBudgetAndKeepWhatWasRead() throws IOException {
+        String[] paragraphs = new String[2000];
+        for (int i = 0; i < paragraphs.length; i++) {
+            paragraphs[i] = "第" + i + "段：重复的实验记录内容，用于测试提取预算。";
+        }
+        byte[] big = docx(paragraphs);
+
+        OoxmlTextExtractor.Result byChars = extract(big, "big.docx", new OoxmlTextExtractor.Budget(64L << 20, 500, 10_000));
+        assertTrue(byChars.truncated());
+        assertEquals(500, byChars.text().length());
+        assertTrue(byChars.text().startsWith("第0段"));
+
+        OoxmlTextExtractor.Result byXml = extract(big, "big.docx", new OoxmlTextExtractor.Budget(8192, 200_000, 10_000));
+        assertTrue(byXml.truncated());
+        assertTrue(byXml.text().startsWith("第0段"));
+        assertTrue(byXml.text().length() < 8192);
+        assertFalse(byXml.timedOut());
+
+        OoxmlTextExtractor.Result byTime = extract(big, "big.docx", new OoxmlTextExtractor.Budget(64L << 20, 200_000, -1));
+        assertTrue(byTime.truncated());
+        assertTrue(byTime.timedOut());
+    }
+
+    @Test
+    void shouldCountSkippedPartsAgainstTheBudget() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ZipOutputStream zip = new ZipOutputStream(out)) {
+            zip.putNextEntry(new ZipEntry("word/media/padding.bin"));
+            zip.write(new byte[1 << 20]);
+            zip.closeEntry();
+            zip.putNextEntry(new ZipEntry("word/document.xml"));
+            zip.write("<w:document xmlns:w=\"w\"><w:body><w:p><w:r><w:t>正文</w:t></w:r></w:p></w:body></w:document>"
+                    .getBytes(StandardCharsets.UTF_8));
+            zip.closeEntry();
+        }
+
+        OoxmlTextExtractor.Result result = extract(out.toByteArray(), "bomb.docx", new OoxmlTextExtractor.Budget(8192, 200_000, 10_000));
+        assertTrue(result.truncated());
+        assertFalse(result.timedOut());
+        assertEquals("", result.text());
+        assertEquals("正文\n", extract(out.toByteArray(), "bomb.docx", LARGE).text());
+    }
+
+    @Test
+    void shouldRejectFilesThatAreNotOoxml() {
+        byte[] fake = "fake".getBytes(StandardCharsets.UTF_8);
+        assertThrows(IOException.class, () -> extract(fake, "data.xlsx", LARGE));
+        assertEquals(OoxmlTextExtractor.Format.DOCX, OoxmlTextExtractor.formatOf("报告.DOCX"));
+        assertEquals(AttachmentClassifier.AttachmentType.DOCUMENT, AttachmentClassifier.classify("a.pptx", null));
+        assertEquals(AttachmentClassifier.AttachmentType.SKIP, AttachmentClassifier.classify("a.pdf", "application/pdf"));
+    }
+
+    private static OoxmlTextExtractor.Result extract(byte[] bytes, String name, OoxmlTextExtractor.Budget budget)
+            throws IOException {
+        return OoxmlTextExtractor.extract(new ByteArrayInputStream(bytes), OoxmlTextExtractor.formatOf(name), budget);
+    }
+
+    private static byte[] docx(String... paragraphs) throws IOException {
+        try (XWPFDocument doc = new XWPFDocument(); ByteArrayOutputStream out = new ByteArrayOutputStream()) {
+            for (String p : paragraphs) {
+                doc.createParagraph().createRun().setText(p);
+            }
+            doc.write(out);
+            return out.toByteArray();
+        }
+    }
+
+    private static byte[] xlsx() throws IOException {
+        try (XSSFWorkbook wb = new XSSFWorkbook(); ByteArrayOutputStream out = new ByteArrayOutputStream()) {
+            XSSFSheet sheet = wb.createSheet("结果");
+            XSSFRow header = sheet.createRow(0);
+            header.createCell(0).setCellValue("并发线程");
+            header.createCell(1).setCellValue("平均延迟");
+            XSSFRow row = sheet.createRow(1);
+            row.createCell(0).setCellValue(16);
+            row.createCell(1).setCellValue(12.5);
+            XSSFCellStyle percent = wb.createCellStyle();
+            percent.setDataFormat(wb.createDataFormat().getFormat("0.00%"));
+            row.createCell(2).setCellValue(0.125);
+            row.getCell(2).setCellStyle(percent);
+            wb.write(out);
+            return out.toByteArray();
+        }
+    }
+
+    private static byte[] pptx(String... slides) throws IOException {
+        try (XMLSlideShow show = new XMLSlideShow(); ByteArrayOutputStream out = new ByteArrayOutputStream()) {
+            for (String text : slides) {
+                XSLFTextBox box = show.createSlide().createTextBox();
+                box.setText(text);
+            }
+            show.write(out);
+            return out.toByteArray();
+        }
+    }
+}
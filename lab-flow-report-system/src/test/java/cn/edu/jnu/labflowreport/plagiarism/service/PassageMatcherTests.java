@@ -0,0 +1,117 @@
+package cn.edu.jnu.labflowreport.plagiarism.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.SplittableRandom;
+import org.junit.jupiter.api.Test;
+
+class PassageMatcherTests {
+
+    @Test
+    void shouldReturnSharedPassagesWithOffsetsDespitePunctuation() {
+        String a = "实验目的：掌握数据库连接池的配置方法。本人独立完成了全部步骤，结果见附图。";
+        String b = "前言。掌握数据库连接池的配置方法!其余内容不同；结果见附图";
+        PassageMatcher.Result r = PassageMatcher.match(a, b, 6);
+
+        assertEquals(1, r.passages().size());
+        PassageMatcher.Passage p = r.passages().get(0);
+        assertEquals("掌握数据库连接池的配置方法", a.substring(p.aStart(), p.aEnd()));
+        assertEquals("掌握数据库连接池的配置方法", b.substring(p.bStart(), p.bEnd()));
+        assertEquals(13, p.length());
+
+        PassageMatcher.Result loose = PassageMatcher.match(a, b, 4);
+        assertEquals(2, loose.passages().size());
+        PassageMatcher.Passage tail = loose.passages().get(1);
+        assertEquals("结果见附图", a.substring(tail.aStart(), tail.aEnd()));
+        assertEquals("结果见附图", b.substring(tail.bStart(), tail.bEnd()));
+    }
+
+    @Test
+    void shouldIgnoreCaseAndWhitespaceInLatinText() {
+        String a = "Start the backend, then   start the FRONTEND and call the API.";
+        String b = "we start the backend then start the frontend";
+        PassageMatcher.Result r = PassageMatcher.match(a, b, 10);
+        assertEquals(1, r.passages().size());
+        PassageMatcher.Passage p = r.passages().get(0);
+        assertEquals("Start the backend, then   start the FRONTEND", a.substring(p.aStart(), p.aEnd()));
+        assertEquals("start the backend then start the frontend", b.substring(p.bStart(), p.bEnd()));
+    }
+
+    @Test
+    void shouldMatchBruteForceOnRandomTexts() {
+        SplittableRandom rnd = new SplittableRandom(7);
+        String alphabet = "ab数据cd库";
+        for (int round = 0; round < 300; round++) {
+            String a = randomText(rnd, alphabet, 1 + rnd.nextInt(60));
+            String b = rnd.nextBoolean() ? randomText(rnd, alphabet, 1 + rnd.nextInt(60)) : mutate(rnd, a, alphabet);
+            int min = 2 + rnd.nextInt(4);
+
+            PassageMatcher.Result r = PassageMatcher.match(a, b, min);
+            List<int[]> expected = bruteForce(a, b, min);
+            assertEquals(expected.size(), r.passages().size(), a + " | " + b);
+            int covered = 0;
+            for (int i = 0; i < expected.size(); i++) {
+                PassageMatcher.Passage p = r.passages().get(i);
+                assertEquals(expected.get(i)[0], p.aStart(), a + " | " + b);
+                assertEquals(expected.get(i)[1], p.aEnd(), a + " | " + b);
+                assertEquals(a.substring(p.aStart(), p.aEnd()).toLowerCase(Locale.ROOT),
+                        b.substring(p.bStart(), p.bEnd()).toLowerCase(Locale.ROOT));
+                covered += p.length();
+            }
+            assertEquals(covered, r.coveredChars());
+            assertTrue(r.coverage() <= 1.0);
+        }
+    }
+
+    /**
+     * Longest common suffix by dynamic programming, then the same right-maximal / non-overlapping selection.
+     * Random texts only contain single-char BMP letters, so normalized and original indices coincide.
+     */
+    private static List<int[]> bruteForce(String a, String b, int min) {
+        int n = a.length();
+        int m = b.length();
+        int[] matchLen = new int[n];
+        int[][] dp = new int[n + 1][m + 1];
+        for (int i = 1; i <= n; i++) {
+            for (int j = 1; j <= m; j++) {
+                if (a.charAt(i - 1) == b.charAt(j - 1)) {
+                    dp[i][j] = dp[i - 1][j - 1] + 1;
+                    matchLen[i - 1] = Math.max(matchLen[i - 1], dp[i][j]);
+                }
+            }
+        }
+        List<int[]> out = new ArrayList<>();
+        int coveredUntil = -1;
+        for (int i = 0; i < n; i++) {
+            int len = matchLen[i];
+            boolean rightMaximal = i == n - 1 || matchLen[i + 1] != len + 1;
+            if (len < min || !rightMaximal) continue;
+            int start = Math.max(i - len + 1, coveredUntil + 1);
+            if (i - start + 1 < min) continue;
+            out.add(new int[] {start, i + 1});
+            coveredUntil = i;
+        }
+        return out;
+    }
+
+    private static String randomText(SplittableRandom rnd, String alphabet, int len) {
+        StringBuilder sb = new StringBuilder(len);
+        for (int i = 0; i < len; i++) {
+            sb.append(alphabet.charAt(rnd.nextInt(alphabet.length())));
+        }
+        return sb.toString();
+    }
+
+    private static String mutate(SplittableRandom rnd, String s, String alphabet) {
+        StringBuilder sb = new StringBuilder(s);
+        int edits = 1 + rnd.nextInt(4);
+        for (int i = 0; i < edits && sb.length() > 0; i++) {
+            sb.setCharAt(rnd.nextInt(sb.length()), alphabet.charAt(rnd.nextInt(alphabet.length())));
+        }
+        return sb.toString();
+    }
+}
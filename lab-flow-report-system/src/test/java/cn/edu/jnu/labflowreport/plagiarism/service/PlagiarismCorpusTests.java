@@ -0,0 +1,45 @@
+package cn.edu.jnu.labflowreport.plagiarism.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import org.junit.jupiter.api.Test;
+
+class PlagiarismCorpusTests {
+
+    @Test
+    void probesShouldCoverEveryValueWithinTheRadius() {
+        Set<Integer> r2 = new HashSet<>();
+        PlagiarismCorpus.neighbours(0xbeef, 2, r2);
+        assertEquals(1 + 16 + 120, r2.size());
+        for (int v : r2) {
+            assertTrue(Integer.bitCount(v ^ 0xbeef) <= 2 && v >= 0 && v <= 0xffff);
+        }
+    }
+
+    @Test
+    void fingerprintsWithinTheThresholdShouldShareAProbedBand() {
+        // Text threshold 0.85 allows 9 differing bits: some 16-bit band then differs in at most 2.
+        int maxDistance = Fp64BandIndex.maxDistance(0.85);
+        int radius = maxDistance / PlagiarismCorpus.BANDS;
+        Random rnd = new Random(11);
+        for (int trial = 0; trial < 2000; trial++) {
+            long a = rnd.nextLong();
+            long b = a;
+            int flips = rnd.nextInt(maxDistance + 1);
+            for (int i = 0; i < flips; i++) {
+                b ^= 1L << rnd.nextInt(64);
+            }
+            boolean found = false;
+            for (int band = 0; band < PlagiarismCorpus.BANDS && !found; band++) {
+                Set<Integer> probes = new HashSet<>();
+                PlagiarismCorpus.neighbours(PlagiarismCorpus.band(a, band), radius, probes);
+                found = probes.contains(PlagiarismCorpus.band(b, band));
+            }
+            assertTrue(found, "missed pair at distance " + Long.bitCount(a ^ b));
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package cn.edu.jnu.labflowreport.plagiarism.service;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.LongStream;
+import org.junit.jupiter.api.Test;
+
+class TextTokenizerTests {
+
+    private static final String REPORT = """
+            实验目的：掌握数据库连接池的配置方法，理解事务隔离级别对并发读写的影响。
+            实验步骤：首先启动 MySQL 服务，然后在 application.yaml 中配置 HikariCP 的最大连接数为 20，
+            接着编写 JdbcTemplate 的测试代码，分别在 READ_COMMITTED 和 REPEATABLE_READ 下执行并发更新。
+            实验结果：在可重复读级别下没有出现不可重复读现象，但吞吐量下降了约百分之十五。
+            """;
+
+    @Test
+    void wordTokenizerShouldMatchTheOriginalRegexFingerprint() {
+        TextTokenizer word = TextTokenizer.of("word", 2);
+        for (String text : List.of(REPORT, "Hello, world_2 a b çava Straße 12 x", "单字 a 你 b 好好", "𠀀𠀁 test")) {
+            assertEquals(legacyFingerprint(text), SimHash64.fingerprint(text, word), text);
+        }
+    }
+
+    @Test
+    void cjkShinglesShouldEmitOverlappingNgramsAndWords() {
+        TextTokenizer cjk = TextTokenizer.of("cjk-shingle", 2);
+        assertEquals("cjk2", cjk.id());
+        // 数据库连接 -> 4 bigrams; "jdbc" -> 1 word; "的" alone is dropped.
+        assertArrayEquals(
+                LongStream.of(hash("数据"), hash("据库"), hash("库连"), hash("连接"), hash("jdbc")).toArray(),
+                tokens(cjk, "数据库连接 JDBC 的")
+        );
+        // Runs shorter than n are kept whole once they reach two characters.
+        TextTokenizer tri = TextTokenizer.of("cjk-shingle", 3);
+        assertArrayEquals(LongStream.of(hash("实验"), hash("步骤一"), hash("骤一二")).toArray(), tokens(tri, "实验，步骤一二"));
+    }
+
+    @Test
+    void oneChangedChineseCharacterShouldKeepTextSimilar() {
+        String changed = REPORT.replace("吞吐量下降", "吞吐量降低").replace("最大连接数为 20", "最大连接数为 30");
+        TextTokenizer word = TextTokenizer.of("word", 2);
+        TextTokenizer cjk = TextTokenizer.of("cjk-shingle", 2);
+
+        double wordJaccard = jaccard(word, REPORT, changed);
+        double cjkJaccard = jaccard(cjk, REPORT, changed);
+        assertTrue(cjkJaccard > 0.9, "cjk shingles: " + cjkJaccard);
+        assertTrue(cjkJaccard > wordJaccard, "word tokens: " + wordJaccard);
+
+        double sim = SimHash64.similarity(SimHash64.fingerprint(REPORT, cjk), SimHash64.fingerprint(changed, cjk));
+        assertTrue(sim >= 0.85, "simhash similarity: " + sim);
+    }
+
+    private static long[] tokens(TextTokenizer tokenizer, String text) {
+        LongStream.Builder out = LongStream.builder();
+        tokenizer.forEachToken(text, out);
+        return out.build().toArray();
+    }
+
+    /** Jaccard index of the distinct tokens of two texts. */
+    private static double jaccard(TextTokenizer tokenizer, String a, String b) {
+        Set<Long> sa = new HashSet<>();
+        Set<Long> sb = new HashSet<>();
+        tokenizer.forEachToken(a, sa::add);
+        tokenizer.forEachToken(b, sb::add);
+        Set<Long> union = new HashSet<>(sa);
+        union.addAll(sb);
+        sa.retainAll(sb);
+        return union.isEmpty() ? 1.0 : sa.size() * 1.0 / union.size();
+    }
+
+    private static long hash(String token) {
+        long h = TextTokenizer.hashStart();
+        for (byte b : token.getBytes(StandardCharsets.UTF_8)) {
+            h ^= (b & 0xffL);
+            h *= 0x100000001b3L;
+        }
+        return TextTokenizer.hashFinish(h);
+    }
+
+    /**
+     * The pre-tokenizer implementation: regex tokens, term-frequency map, FNV-1a over UTF-8.
+     */
+    private static long legacyFingerprint(String text) {
+        Map<String, Integer> freq = new HashMap<>();
+        Matcher m = Pattern.compile("[\\p{L}\\p{N}_]{2,}").matcher(text.toLowerCase(Locale.ROOT));
+        while (m.find()) {
+            freq.merge(m.group(), 1, Integer::sum);
+        }
+        int[] v = new int[64];
+        for (Map.Entry<String, Integer> e : freq.entrySet()) {
+            long h = hash(e.getKey());
+            for (int i = 0; i < 64; i++) {
+                v[i] += ((h >>> i) & 1L) == 1L ? e.getValue() : -e.getValue();
+            }
+        }
+        long out = 0L;
+        for (int i = 0; i < 64; i++) {
+            if (v[i] > 0) {
+                out |= (1L << i);
+            }
+        }
+        return out;
+    }
+}
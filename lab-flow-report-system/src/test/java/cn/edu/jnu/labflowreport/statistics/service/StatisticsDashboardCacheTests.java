@@ -0,0 +1,73 @@
+package cn.edu.jnu.labflowreport.statistics.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import cn.edu.jnu.labflowreport.config.StatisticsProperties;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+
+class StatisticsDashboardCacheTests {
+
+    private static final LocalDate MARCH_1 = LocalDate.of(2026, 3, 1);
+    private static final LocalDate MARCH_31 = LocalDate.of(2026, 3, 31);
+
+    @Test
+    void dashboardsShouldBeBuiltOncePerKeyUntilTheirRangeChanges() {
+        StatisticsDashboardCache cache = new StatisticsDashboardCache(new StatisticsProperties(Duration.ofMinutes(5), 10, 7));
+        AtomicInteger builds = new AtomicInteger();
+        StatisticsDashboardCache.Key march = key("TEACHER", MARCH_1, MARCH_31, 7L);
+        StatisticsDashboardCache.Key april = key("TEACHER", LocalDate.of(2026, 4, 1), LocalDate.of(2026, 4, 30), 7L);
+
+        assertEquals("march-1", cache.get(march, () -> "march-" + builds.incrementAndGet()));
+        assertEquals("march-1", cache.get(march, () -> "march-" + builds.incrementAndGet()));
+        assertEquals("april-2", cache.get(april, () -> "april-" + builds.incrementAndGet()));
+        assertEquals("other-3", cache.get(key("TEACHER", MARCH_1, MARCH_31, 8L), () -> "other-" + builds.incrementAndGet()));
+
+        // A write on March 31 only affects the dashboards whose range contains it.
+        cache.invalidateDay(MARCH_31);
+        assertEquals("march-4", cache.get(march, () -> "march-" + builds.incrementAndGet()));
+        assertEquals("april-2", cache.get(april, () -> "april-" + builds.incrementAndGet()));
+
+        cache.invalidateAll();
+        assertEquals("april-5", cache.get(april, () -> "april-" + builds.incrementAndGet()));
+    }
+
+    @Test
+    void leastRecentlyUsedDashboardsShouldBeEvictedBeyondTheLimit() {
+        StatisticsDashboardCache cache = new StatisticsDashboardCache(new StatisticsProperties(Duration.ofMinutes(5), 2, 7));
+        AtomicInteger builds = new AtomicInteger();
+        cache.get(key("ADMIN", MARCH_1, MARCH_31, 1L), builds::incrementAndGet);
+        cache.get(key("ADMIN", MARCH_1, MARCH_31, 2L), builds::incrementAndGet);
+        cache.get(key("ADMIN", MARCH_1, MARCH_31, 1L), builds::incrementAndGet);
+        cache.get(key("ADMIN", MARCH_1, MARCH_31, 3L), builds::incrementAndGet);
+        assertEquals(3, builds.get());
+
+        assertEquals(1, (int) cache.get(key("ADMIN", MARCH_1, MARCH_31, 1L), builds::incrementAndGet));
+        assertEquals(4, (int) cache.get(key("ADMIN", MARCH_1, MARCH_31, 2L), builds::incrementAndGet));
+    }
+
+    @Test
+    void expiredOrRacingDashboardsShouldNotBeServed() {
+        StatisticsDashboardCache expiring = new StatisticsDashboardCache(new StatisticsProperties(Duration.ZERO, 10, 7));
+        AtomicInteger builds = new AtomicInteger();
+        StatisticsDashboardCache.Key march = key("TEACHER", MARCH_1, MARCH_31, 7L);
+        expiring.get(march, builds::incrementAndGet);
+        expiring.get(march, builds::incrementAndGet);
+        assertEquals(2, builds.get());
+
+        // A write committed while the dashboard was being built: the result may predate it and is not kept.
+        StatisticsDashboardCache cache = new StatisticsDashboardCache(new StatisticsProperties(Duration.ofMinutes(5), 10, 7));
+        assertEquals(3, (int) cache.get(march, () -> {
+            cache.invalidateDay(LocalDate.of(2026, 5, 1));
+            return builds.incrementAndGet();
+        }));
+        assertEquals(4, (int) cache.get(march, builds::incrementAndGet));
+        assertEquals(4, (int) cache.get(march, builds::incrementAndGet));
+    }
+
+    private static StatisticsDashboardCache.Key key(String view, LocalDate from, LocalDate to, Long teacherId) {
+        return new StatisticsDashboardCache.Key(view, 1L, from, to, teacherId, null, null);
+    }
+}
@@ -0,0 +1,136 @@
+package cn.edu.jnu.labflowreport.statistics.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+import cn.edu.jnu.labflowreport.persistence.entity.SysUserEntity;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class TeachingAnalyticsFactsTests {
+
+    private static final LocalDateTime T0 = LocalDateTime.of(2026, 3, 2, 8, 0);
+
+    @Test
+    void aggregateShouldCountCellsAndFollowTasksInCreationOrder() {
+        SysUserEntity alice = student(1L, 10L);
+        SysUserEntity bob = student(2L, 10L);
+        SysUserEntity carol = student(3L, 20L);
+        // Reported order differs from creation order: task 30 was created first.
+        TeachingAnalyticsFacts facts = new TeachingAnalyticsFacts(
+                new long[] {10L, 20L, 30L},
+                new LocalDateTime[] {T0.plusDays(1), T0.plusDays(2), T0},
+                List.of(List.of(alice, bob, carol), List.of(alice, bob, bob), List.of(alice, bob))
+        );
+        facts.addSubmission(30L, 1L);
+        facts.addSubmission(30L, 2L);
+        facts.addSubmission(10L, 1L);
+        facts.addSubmission(20L, 1L);
+        facts.addSubmission(20L, 99L);
+        review(facts, 1L, 30L, 1L, T0.plusHours(1), 1, 5000);
+        review(facts, 2L, 30L, 2L, T0.plusHours(1), 1, 8000);
+        review(facts, 3L, 10L, 1L, T0.plusDays(1), 1, 5500);
+        review(facts, 4L, 20L, 1L, T0.plusDays(2), 1, 9000);
+        facts.addConfirmedCompletion(30L, 2L);
+        facts.addConfirmedCompletion(10L, 2L);
+        facts.aggregate();
+
+        assertEquals(3, facts.studentCount());
+        assertEquals(3, facts.taskVisibleCount(0));
+        assertEquals(2, facts.taskVisibleCount(1));
+        assertEquals(1, facts.taskSubmittedCount(1));
+        assertEquals(new BigDecimal("65.00"), facts.taskAvgScore(2));
+        assertEquals(new BigDecimal("80.00"), facts.taskMaxScore(2));
+        assertEquals(new BigDecimal("50.00"), facts.taskMinScore(2));
+        assertEquals(new BigDecimal("55.00"), facts.taskMaxScore(0));
+        assertEquals(1, facts.taskConfirmedCount(0));
+
+        // Alice: 50, 55, 90 in creation order.
+        assertEquals(3, facts.studentScoredCount(0));
+        assertEquals(2, facts.studentMaxLowScoreRun(0));
+        assertEquals(4000, facts.studentScoreDelta(0));
+        assertEquals(new BigDecimal("65.00"), facts.studentAvgScore(0));
+        assertEquals(new BigDecimal("65.00"), facts.studentRecentThreeAvgScore(0));
+        // Bob submitted the first task only.
+        assertEquals(2, facts.studentMaxUnsubmittedRun(1));
+        assertEquals(2, facts.studentConfirmedCount(1));
+        assertEquals(0, facts.studentScoreDelta(1));
+        assertEquals(1, facts.studentTaskCount(2));
+        assertFalse(facts.hasStudent(99L));
+        assertEquals(4, facts.reviewCount());
+    }
+
+    @Test
+    void cellShouldKeepTheLatestReviewButTallyEveryOne() {
+        SysUserEntity alice = student(1L, null);
+        TeachingAnalyticsFacts facts = new TeachingAnalyticsFacts(
+                new long[] {10L}, new LocalDateTime[] {T0}, List.of(List.of(alice)));
+        // Rows arrive newest first; an older review never replaces a newer one, a higher version wins a tie.
+        review(facts, 3L, 10L, 1L, T0.plusHours(2), 1, 7000);
+        review(facts, 2L, 10L, 1L, T0.plusHours(2), 2, 7500);
+        review(facts, 1L, 10L, 1L, T0.plusHours(1), 3, 4000);
+        review(facts, 5L, 10L, 7L, T0.plusHours(3), 1, 9900);
+        facts.aggregate();
+
+        assertEquals(new BigDecimal("75.00"), facts.taskAvgScore(0));
+        assertEquals(1, facts.taskReviewedCount(0));
+        assertEquals(4, facts.reviewCount());
+        assertEquals(7L, facts.reviewStudentId(3));
+        assertEquals(4000, facts.reviewScore(2));
+    }
+
+    @Test
+    void trendShouldCompareWithTheStudentsOwnClass() {
+        SysUserEntity alice = student(1L, 10L);
+        SysUserEntity bob = student(2L, 10L);
+        SysUserEntity carol = student(3L, 20L);
+        TeachingAnalyticsFacts facts = new TeachingAnalyticsFacts(
+                new long[] {10L, 20L},
+                new LocalDateTime[] {T0, null},
+                List.of(List.of(alice, bob, carol), List.of(bob, carol))
+        );
+        review(facts, 1L, 10L, 1L, T0, 1, 6000);
+        review(facts, 2L, 10L, 2L, T0, 1, 8000);
+        review(facts, 3L, 10L, 3L, T0, 1, 1000);
+        review(facts, 4L, 20L, 3L, T0, 1, 3000);
+        facts.aggregate();
+
+        List<String> points = new ArrayList<>();
+        facts.forEachTrendPoint(1L, (task, score, classAvg) -> points.add(task + ":" + score + ":" + classAvg));
+        assertEquals(List.of("0:60.00:70.00"), points);
+
+        points.clear();
+        facts.forEachTrendPoint(2L, (task, score, classAvg) -> points.add(task + ":" + score + ":" + classAvg));
+        assertEquals(List.of("0:80.00:70.00", "1:null:null"), points);
+        facts.forEachTrendPoint(99L, (task, score, classAvg) -> points.add("unexpected"));
+        assertEquals(2, points.size());
+    }
+
+    @Test
+    void longIndexShouldGrowAndKeepFirstValues() {
+        TeachingAnalyticsFacts.LongIndex index = new TeachingAnalyticsFacts.LongIndex(1);
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(i, index.putIfAbsent(i * 7919L - 500_000L, i));
+        }
+        assertEquals(1000, index.size());
+        assertEquals(3, index.putIfAbsent(3 * 7919L - 500_000L, 42));
+        assertEquals(999, index.get(999 * 7919L - 500_000L));
+        assertEquals(-1, index.get(Long.MAX_VALUE));
+    }
+
+    private static void review(TeachingAnalyticsFacts facts, long reviewId, long taskId, long studentId,
+                               LocalDateTime reviewedAt, int versionNo, int scoreCents) {
+        facts.addReview(reviewId, taskId, studentId, TeachingAnalyticsFacts.nanos(reviewedAt), versionNo, scoreCents);
+    }
+
+    private static SysUserEntity student(Long id, Long classId) {
+        SysUserEntity student = new SysUserEntity();
+        student.setId(id);
+        student.setUsername("s" + id);
+        student.setClassId(classId);
+        return student;
+    }
+}
@@ -0,0 +1,238 @@
+package cn.edu.jnu.labflowreport.storage;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * An in-process stand-in for MinIO: a single path-style bucket holding objects in memory, speaking the subset of
+ * the S3 REST API that {@link S3StorageBackend} uses. Requests must carry a SigV4 {@code Authorization} header
+ * for the expected access key or presigned query parameters, and signed payload hashes are checked against the
+ * body.
+ */
+final class FakeS3Server implements AutoCloseable {
+
+    static final String ACCESS_KEY = "minioadmin";
+    static final String BUCKET = "lab-flow";
+
+    final Map<String, byte[]> objects = new ConcurrentHashMap<>();
+    final AtomicInteger partsUploaded = new AtomicInteger();
+    final AtomicInteger rangeReads = new AtomicInteger();
+    final AtomicInteger presignedReads = new AtomicInteger();
+
+    private final Map<String, Map<Integer, byte[]>> uploads = new ConcurrentHashMap<>();
+    private final HttpServer server;
+
+    FakeS3Server() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", this::handle);
+        server.start();
+    }
+
+    String endpoint() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+
+    private void handle(HttpExchange ex) throws IOException {
+        try {
+            String method = ex.getRequestMethod();
+            Map<String, String> query = parseQuery(ex.getRequestURI().getRawQuery());
+            byte[] body = ex.getRequestBody().readAllBytes();
+            if (!authorized(ex, query, body)) {
+                send(ex, 403, "<Error><Code>AccessDenied</Code></Error>");
+                return;
+            }
+            String path = URLDecoder.decode(ex.getRequestURI().getRawPath(), StandardCharsets.UTF_8);
+            if (!path.startsWith("/" + BUCKET + "/")) {
+                send(ex, 404, "<Error><Code>NoSuchBucket</Code></Error>");
+                return;
+            }
+            String key = path.substring(BUCKET.length() + 2);
+            switch (method) {
+                case "PUT" -> put(ex, key, query, body);
+                case "POST" -> post(ex, key, query, body);
+                case "GET", "HEAD" -> get(ex, key, query, "HEAD".equals(method));
+                case "DELETE" -> {
+                    if (query.containsKey("uploadId")) {
+                        uploads.remove(query.get("uploadId"));
+                    } else {
+                        objects.remove(key);
+                    }
+                    ex.sendResponseHeaders(204, -1);
+                }
+                default -> send(ex, 405, "");
+            }
+        } finally {
+            ex.close();
+        }
+    }
+
+    private void put(HttpExchange ex, String key, Map<String, String> query, byte[] body) throws IOException {
+        String copySource = ex.getRequestHeaders().getFirst("x-amz-copy-source");
+        if (copySource != null) {
+            String source = URLDecoder.decode(copySource, StandardCharsets.UTF_8).substring(BUCKET.length() + 2);
+            byte[] data = objects.get(source);
+            if (data == null) {
+                send(ex, 404, "<Error><Code>NoSuchKey</Code></Error>");
+                return;
+            }
+            objects.put(key, data);
+            send(ex, 200, "<CopyObjectResult><ETag>\"x\"</ETag></CopyObjectResult>");
+            return;
+        }
+        if (query.containsKey("uploadId")) {
+            Map<Integer, byte[]> parts = uploads.get(query.get("uploadId"));
+            if (parts == null) {
+                send(ex, 404, "<Error><Code>NoSuchUpload</Code></Error>");
+                return;
+            }
+            int partNumber = Integer.parseInt(query.get("partNumber"));
+            parts.put(partNumber, body);
+            partsUploaded.incrementAndGet();
+            ex.getResponseHeaders().set("ETag", "\"part-" + partNumber + "\"");
+            ex.sendResponseHeaders(200, -1);
+            return;
+        }
+        objects.put(key, body);
+        ex.sendResponseHeaders(200, -1);
+    }
+
+    private void post(HttpExchange ex, String key, Map<String, String> query, byte[] body) throws IOException {
+        if (query.containsKey("uploads")) {
+            String uploadId = "upload-" + uploads.size() + "-" + System.nanoTime();
+            uploads.put(uploadId, new TreeMap<>());
+            send(ex, 200, "<InitiateMultipartUploadResult><Bucket>" + BUCKET + "</Bucket><Key>" + key
+                    + "</Key><UploadId>" + uploadId + "</UploadId></InitiateMultipartUploadResult>");
+            return;
+        }
+        Map<Integer, byte[]> parts = uploads.remove(query.get("uploadId"));
+        String xml = new String(body, StandardCharsets.UTF_8);
+        if (parts == null || parts.isEmpty() || !xml.contains("<PartNumber>" + parts.size() + "</PartNumber>")) {
+            // Like S3, a failed completion still answers 200 with an error document.
+            send(ex, 200, "<Error><Code>InvalidPart</Code></Error>");
+            return;
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (byte[] part : parts.values()) {
+            out.write(part);
+        }
+        objects.put(key, out.toByteArray());
+        send(ex, 200, "<CompleteMultipartUploadResult><Key>" + key + "</Key></CompleteMultipartUploadResult>");
+    }
+
+    private void get(HttpExchange ex, String key, Map<String, String> query, boolean head) throws IOException {
+        if (key.isEmpty() && "2".equals(query.get("list-type"))) {
+            list(ex, query);
+            return;
+        }
+        byte[] data = objects.get(key);
+        if (data == null) {
+            if (head) {
+                ex.sendResponseHeaders(404, -1);
+            } else {
+                send(ex, 404, "<Error><Code>NoSuchKey</Code></Error>");
+            }
+            return;
+        }
+        if (query.containsKey("X-Amz-Signature")) {
+            presignedReads.incrementAndGet();
+        }
+        if (query.containsKey("response-content-disposition")) {
+            ex.getResponseHeaders().set("Content-Disposition", query.get("response-content-disposition"));
+        }
+        ex.getResponseHeaders().set("Last-Modified",
+                DateTimeFormatter.RFC_1123_DATE_TIME.format(ZonedDateTime.of(2026, 10, 1, 8, 0, 0, 0, ZoneOffset.UTC)));
+        if (head) {
+            ex.getResponseHeaders().set("Content-Length", String.valueOf(data.length));
+            ex.sendResponseHeaders(200, -1);
+            return;
+        }
+        String range = ex.getRequestHeaders().getFirst("Range");
+        if (range != null && range.startsWith("bytes=")) {
+            rangeReads.incrementAndGet();
+            String[] bounds = range.substring(6).split("-");
+            int start = Integer.parseInt(bounds[0]);
+            int end = bounds.length > 1 && !bounds[1].isEmpty() ? Math.min(Integer.parseInt(bounds[1]), data.length - 1) : data.length - 1;
+            ex.getResponseHeaders().set("Content-Range", "bytes " + start + "-" + end + "/" + data.length);
+            ex.sendResponseHeaders(206, end - start + 1);
+            ex.getResponseBody().write(data, start, end - start + 1);
+            return;
+        }
+        ex.sendResponseHeaders(200, data.length == 0 ? -1 : data.length);
+        ex.getResponseBody().write(data);
+    }
+
+    private void list(HttpExchange ex, Map<String, String> query) throws IOException {
+        int maxKeys = Integer.parseInt(query.getOrDefault("max-keys", "1000"));
+        StringBuilder xml = new StringBuilder("<ListBucketResult><Name>" + BUCKET + "</Name>");
+        int count = 0;
+        String prefix = query.getOrDefault("prefix", "");
+        for (Map.Entry<String, byte[]> e : new TreeMap<>(objects).tailMap(query.getOrDefault("start-after", ""), false).entrySet()) {
+            if (!e.getKey().startsWith(prefix)) {
+                continue;
+            }
+            if (count++ == maxKeys) {
+                xml.append("<IsTruncated>true</IsTruncated>");
+                break;
+            }
+            xml.append("<Contents><Key>").append(e.getKey().replace("&", "&amp;").replace("<", "&lt;"))
+                    .append("</Key><LastModified>2026-10-01T08:00:00.000Z</LastModified><Size>")
+                    .append(e.getValue().length).append("</Size></Contents>");
+        }
+        send(ex, 200, xml.append("</ListBucketResult>").toString());
+    }
+
+    private boolean authorized(HttpExchange ex, Map<String, String> query, byte[] body) {
+        if (query.containsKey("X-Amz-Signature")) {
+            return query.getOrDefault("X-Amz-Credential", "").startsWith(ACCESS_KEY + "/")
+                    && query.containsKey("X-Amz-Expires");
+        }
+        String auth = ex.getRequestHeaders().getFirst("Authorization");
+        if (auth == null || !auth.startsWith("AWS4-HMAC-SHA256 Credential=" + ACCESS_KEY + "/")) {
+            return false;
+        }
+        String payload = ex.getRequestHeaders().getFirst("x-amz-content-sha256");
+        return AwsSigV4.UNSIGNED_PAYLOAD.equals(payload) || AwsSigV4.sha256Hex(body, 0, body.length).equals(payload);
+    }
+
+    private static Map<String, String> parseQuery(String raw) {
+        Map<String, String> query = new HashMap<>();
+        if (raw == null || raw.isEmpty()) {
+            return query;
+        }
+        for (String pair : raw.split("&")) {
+            int eq = pair.indexOf('=');
+            String name = eq < 0 ? pair : pair.substring(0, eq);
+            String value = eq < 0 ? "" : pair.substring(eq + 1);
+            query.put(URLDecoder.decode(name, StandardCharsets.UTF_8), URLDecoder.decode(value, StandardCharsets.UTF_8));
+        }
+        return query;
+    }
+
+    private static void send(HttpExchange ex, int status, String xml) throws IOException {
+        byte[] bytes = xml.getBytes(StandardCharsets.UTF_8);
+        ex.getResponseHeaders().set("Content-Type", "application/xml");
+        ex.sendResponseHeaders(status, bytes.length == 0 ? -1 : bytes.length);
+        try (OutputStream out = ex.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+}